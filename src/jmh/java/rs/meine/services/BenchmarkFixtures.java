@@ -0,0 +1,57 @@
+package rs.meine.services;
+
+import rs.meine.config.ConfigManager;
+import rs.meine.stubs.StubPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds the plugin objects the benchmarks need, on a stub plugin with the default configuration
+ */
+final class BenchmarkFixtures {
+    // Held so the level set on it is not lost when the log manager's weak references are cleared
+    private static final Logger SERVER_LOGGER = Logger.getLogger("Benchmarks");
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Creates a stub plugin writing its config.yml to a fresh temporary folder
+     * @return The plugin
+     * @throws IOException if the folder cannot be created
+     */
+    static StubPlugin plugin() throws IOException {
+        File dataFolder = Files.createTempDirectory("gpt-benchmarks").toFile();
+        StubPlugin plugin = new StubPlugin(dataFolder, SERVER_LOGGER, Runnable::run);
+        // The missing API key warning is expected here
+        plugin.getLogger().setLevel(Level.SEVERE);
+        return plugin;
+    }
+
+    /**
+     * Creates a configuration manager with the default configuration
+     * @param plugin The stub plugin
+     * @return The configuration manager
+     */
+    static ConfigManager configManager(StubPlugin plugin) {
+        return new ConfigManager(plugin);
+    }
+
+    /**
+     * Creates random player UUIDs
+     * @param count The number of players
+     * @return The UUIDs
+     */
+    static UUID[] players(int count) {
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,135 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs.meine.models.ChatMessage;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Appending to and summarizing a player's chat history, which happens twice per chat message, against the
+ * LinkedList-per-player store it replaced
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatHistoryBenchmark {
+    private static final int PLAYERS = 100;
+    private static final String MESSAGE = "how do I find diamonds faster without a fortune pickaxe?";
+
+    @Param({"5", "50"})
+    public int capacity;
+
+    private ChatHistoryStore store;
+    private Map<UUID, LinkedList<ChatMessage>> linkedLists;
+    private UUID[] players;
+    private int next;
+
+    /**
+     * Fills every player's history to capacity, so appends evict
+     */
+    @Setup
+    public void setup() {
+        players = BenchmarkFixtures.players(PLAYERS);
+        store = new ChatHistoryStore(capacity);
+        linkedLists = new HashMap<>();
+        for (UUID player : players) {
+            for (int i = 0; i < capacity; i++) {
+                store.add(player, i % 2 == 0 ? "Player" : "AI", MESSAGE);
+                linkedListAdd(player, i % 2 == 0 ? "Player" : "AI", MESSAGE);
+            }
+        }
+    }
+
+    /**
+     * Appends a message to the ring buffer
+     * @return The store
+     */
+    @Benchmark
+    public ChatHistoryStore add() {
+        store.add(nextPlayer(), "Player", MESSAGE);
+        return store;
+    }
+
+    /**
+     * Reads the joined history from the ring buffer after an append invalidated it
+     * @return The summary
+     */
+    @Benchmark
+    public String addThenSummary() {
+        UUID player = nextPlayer();
+        store.add(player, "Player", MESSAGE);
+        return store.getSummary(player);
+    }
+
+    /**
+     * Reads the cached joined history
+     * @return The summary
+     */
+    @Benchmark
+    public String summary() {
+        return store.getSummary(nextPlayer());
+    }
+
+    /**
+     * Appends a message the way the old store did
+     * @return The old store
+     */
+    @Benchmark
+    public Map<UUID, LinkedList<ChatMessage>> linkedListAdd() {
+        linkedListAdd(nextPlayer(), "Player", MESSAGE);
+        return linkedLists;
+    }
+
+    /**
+     * Joins the history the way the old store did, on every read
+     * @return The summary
+     */
+    @Benchmark
+    public String linkedListSummary() {
+        return linkedLists.get(nextPlayer()).stream()
+            .map(ChatMessage::toString)
+            .collect(Collectors.joining(" | "));
+    }
+
+    /**
+     * Appends a message to the old store, evicting the oldest ones
+     * @param player The player
+     * @param sender The sender of the message
+     * @param content The content of the message
+     */
+    private void linkedListAdd(UUID player, String sender, String content) {
+        linkedLists.putIfAbsent(player, new LinkedList<>());
+        LinkedList<ChatMessage> history = linkedLists.get(player);
+        history.add(new ChatMessage(sender, content));
+        while (history.size() > capacity) {
+            history.removeFirst();
+        }
+    }
+
+    /**
+     * Cycles through the players
+     * @return The next player
+     */
+    private UUID nextPlayer() {
+        next = next + 1 == PLAYERS ? 0 : next + 1;
+        return players[next];
+    }
+}
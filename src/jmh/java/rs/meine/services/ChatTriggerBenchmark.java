@@ -0,0 +1,93 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs.meine.config.ConfigManager;
+import rs.meine.stubs.StubPlugin;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deciding whether a chat message gets a reply, which runs on the chat thread for every message on the server,
+ * against checking each configured keyword with String.contains
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatTriggerBenchmark {
+    private static final String[] MESSAGES = {
+        "lol",
+        "anyone want to trade some iron for diamonds",
+        "How do I craft a beacon?",
+        "hey gpt, where is the nearest stronghold",
+        "!ai what does a conduit do",
+        "brb getting food",
+        "does anyone know a good mob farm design for 1.20",
+        "gg that was close, the creeper almost got me at spawn",
+    };
+
+    private ChatTriggers chatTriggers;
+    private List<String> keywords;
+    private int next;
+
+    /**
+     * Compiles the default triggers
+     * @throws IOException if the stub plugin cannot be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        StubPlugin plugin = BenchmarkFixtures.plugin();
+        ConfigManager configManager = BenchmarkFixtures.configManager(plugin);
+        chatTriggers = new ChatTriggers(configManager, new MetricsService(plugin));
+        keywords = configManager.getChatTriggerKeywords();
+    }
+
+    /**
+     * Filters the next message with the compiled triggers
+     * @return The message to answer, or null
+     */
+    @Benchmark
+    public String filter() {
+        return chatTriggers.filter(nextMessage(), "world");
+    }
+
+    /**
+     * Looks for each keyword in the lower-cased next message, as a naive filter would
+     * @return The number of keywords found
+     */
+    @Benchmark
+    public int containsPerKeyword() {
+        String message = nextMessage().toLowerCase(Locale.ROOT);
+        int found = 0;
+        for (String keyword : keywords) {
+            if (message.contains(keyword)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Cycles through the sample messages
+     * @return The next message
+     */
+    private String nextMessage() {
+        String message = MESSAGES[next];
+        next = (next + 1) % MESSAGES.length;
+        return message;
+    }
+}
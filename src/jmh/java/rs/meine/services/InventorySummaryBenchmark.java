@@ -0,0 +1,76 @@
+package rs.meine.services;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs.meine.config.ConfigManager;
+import rs.meine.stubs.StubPlayers;
+import rs.meine.stubs.StubPlugin;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summarizing a player's inventory, which the context service does on the main thread whenever the inventory changed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventorySummaryBenchmark {
+    private static final int SLOTS = 41;
+    private static final Material[] MATERIALS = {
+        Material.COBBLESTONE, Material.DIRT, Material.OAK_LOG, Material.OAK_PLANKS, Material.TORCH, Material.BREAD,
+        Material.IRON_INGOT, Material.DIAMOND, Material.COAL, Material.STICK, Material.ARROW, Material.DIAMOND_SWORD,
+        Material.BOW, Material.IRON_PICKAXE, Material.COOKED_BEEF, Material.GRAVEL, Material.SAND, Material.REDSTONE,
+    };
+
+    /** Occupied slots out of the 41 of a player inventory */
+    @Param({"4", "36"})
+    public int filledSlots;
+
+    private PlayerContextService contextService;
+    private Player player;
+
+    /**
+     * Fills the inventory with stacks of varying kinds and sizes
+     * @throws IOException if the stub plugin cannot be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        StubPlugin plugin = BenchmarkFixtures.plugin();
+        ConfigManager configManager = BenchmarkFixtures.configManager(plugin);
+        contextService = new PlayerContextService(plugin, configManager, new TickProfiler(plugin, configManager));
+
+        Random random = new Random(42);
+        ItemStack[] contents = new ItemStack[SLOTS];
+        for (int i = 0; i < filledSlots; i++) {
+            contents[i] = new ItemStack(MATERIALS[random.nextInt(MATERIALS.length)], 1 + random.nextInt(64));
+        }
+        player = StubPlayers.player("Steve", UUID.randomUUID(), contents);
+    }
+
+    /**
+     * Summarizes the inventory
+     * @return The summary
+     */
+    @Benchmark
+    public String inventorySummary() {
+        return contextService.getInventorySummary(player);
+    }
+}
@@ -0,0 +1,135 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rs.meine.models.RequestType;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording metrics from the request threads, alone and with 8 threads recording at once, and reading percentiles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+    private MetricsService metricsService;
+
+    /**
+     * Creates the metrics service with 10,000 chat requests already recorded, so percentile reads walk real buckets;
+     * its periodic report is never scheduled on the stub plugin
+     * @throws IOException if the stub plugin cannot be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        metricsService = new MetricsService(BenchmarkFixtures.plugin());
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            RequestTrace trace = metricsService.startRequest(RequestType.CHAT, null);
+            metricsService.recordQueueWait(trace);
+            metricsService.recordSuccess(trace, TimeUnit.MILLISECONDS.toNanos(200 + random.nextInt(3000)));
+            metricsService.recordCompletion(trace, null);
+        }
+    }
+
+    /**
+     * One player per benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+        private final UUID player = UUID.randomUUID();
+        private final long apiNanos = TimeUnit.MILLISECONDS.toNanos(800);
+    }
+
+    /**
+     * Records the whole life of a successful request: submission, queue wait, API call and completion
+     * @param state The thread's player
+     * @return The metrics service
+     */
+    @Benchmark
+    public MetricsService recordRequest(PlayerState state) {
+        return record(state);
+    }
+
+    /**
+     * Records the whole life of a successful request from 8 threads at once
+     * @param state The thread's player
+     * @return The metrics service
+     */
+    @Benchmark
+    @Threads(8)
+    public MetricsService recordRequestContended(PlayerState state) {
+        return record(state);
+    }
+
+    /**
+     * Records one successful chat request
+     * @param state The thread's player
+     * @return The metrics service
+     */
+    private MetricsService record(PlayerState state) {
+        RequestTrace trace = metricsService.startRequest(RequestType.CHAT, state.player);
+        metricsService.recordQueueWait(trace);
+        metricsService.recordSuccess(trace, state.apiNanos);
+        metricsService.recordCompletion(trace, null);
+        return metricsService;
+    }
+
+    /**
+     * Records the token usage of a completion
+     * @return The metrics service
+     */
+    @Benchmark
+    public MetricsService recordTokenUsage() {
+        metricsService.recordTokenUsage(RequestType.CHAT, 420, 60);
+        return metricsService;
+    }
+
+    /**
+     * Records the token usage of a completion from 8 threads at once
+     * @return The metrics service
+     */
+    @Benchmark
+    @Threads(8)
+    public MetricsService recordTokenUsageContended() {
+        metricsService.recordTokenUsage(RequestType.CHAT, 420, 60);
+        return metricsService;
+    }
+
+    /**
+     * Records a command cache hit
+     * @return The metrics service
+     */
+    @Benchmark
+    public MetricsService recordCacheHit() {
+        metricsService.recordCacheHit();
+        return metricsService;
+    }
+
+    /**
+     * Reads the percentiles /gptadmin metrics shows for one request type
+     * @return The sum of the percentiles
+     */
+    @Benchmark
+    public long readPercentiles() {
+        MetricsService.TypeMetrics metrics = metricsService.getTypeMetrics(RequestType.CHAT);
+        return metrics.getTotalLatency().getPercentileMicros(50) + metrics.getTotalLatency().getPercentileMicros(99)
+            + metrics.getQueueWait().getPercentileMicros(99) + metrics.getApiLatency().getPercentileMicros(99);
+    }
+}
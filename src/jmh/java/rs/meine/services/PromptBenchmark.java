@@ -0,0 +1,102 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs.meine.config.ConfigManager;
+import rs.meine.stubs.StubPlugin;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the system prompt of a player chat request within the token budget, against the single String.format call
+ * it replaced. The stub server never captures player context, so the builder renders the no-context sentence where
+ * the baseline formats server, world and inventory details.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBenchmark {
+    private static final String MESSAGE = "what should I build next to my castle?";
+    private static final String INVENTORY = "64 cobblestone, 32 oak log, 16 torch, 12 bread, 5 iron ingot, 3 diamond, "
+        + "1 diamond sword, 1 iron pickaxe and 4 other kinds of items";
+
+    /** 5 fits the default budget; 50 forces the summary path */
+    @Param({"5", "50"})
+    public int history;
+
+    private PromptBuilder promptBuilder;
+    private UUID player;
+    private String historySummary;
+
+    /**
+     * Fills one player's history
+     * @throws IOException if the stub plugin cannot be created
+     */
+    @Setup
+    public void setup() throws IOException {
+        StubPlugin plugin = BenchmarkFixtures.plugin();
+        ConfigManager configManager = BenchmarkFixtures.configManager(plugin);
+        ChatHistoryStore chatHistory = new ChatHistoryStore(history);
+        PlayerContextService contextService = new PlayerContextService(plugin, configManager, new TickProfiler(plugin, configManager));
+        promptBuilder = new PromptBuilder(configManager, chatHistory, contextService,
+            new PromptTemplates(configManager, plugin.getLogger()), prompt -> CompletableFuture.completedFuture("The player asked about castles and diamonds."));
+
+        player = UUID.randomUUID();
+        for (int i = 0; i < history; i++) {
+            chatHistory.add(player, i % 2 == 0 ? "Player" : "AI", "message number " + i + " about building a castle");
+        }
+        historySummary = chatHistory.getSummary(player);
+    }
+
+    /**
+     * Builds the prompt, counting tokens and trimming the history to the budget
+     * @return The system prompt
+     */
+    @Benchmark
+    public String promptBuilder() {
+        return promptBuilder.buildPlayerChatSystemPrompt("Steve", MESSAGE, player);
+    }
+
+    /**
+     * Formats the prompt the way generatePlayerChatResponse used to, with the full history
+     * @return The system prompt
+     */
+    @Benchmark
+    public String stringFormat() {
+        return String.format(
+            "You are a helpful AI assistant inside a Minecraft server. " +
+            "You're conversing with %s. " +
+            "Current server details: %d players online, running %s. " +
+            "World '%s' is currently experiencing %s time. " +
+            "Player is in %s biome. " +
+            "Player's inventory: %s. " +
+            "Recent conversation: %s " +
+            "Be concise, funny, and helpful.",
+            "Steve", 42, "git-Spigot-1.20.1", "world", "day", "PLAINS", INVENTORY, historySummary
+        );
+    }
+
+    /**
+     * Estimates the tokens of a formatted prompt
+     * @return The token count
+     */
+    @Benchmark
+    public int countTokens() {
+        return TokenCounter.count(historySummary);
+    }
+}
@@ -0,0 +1,82 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rs.meine.models.PromptKey;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the death commentary prompt from its parsed template, against the String.format call and the
+ * concatenation it replaced. Run with -prof gc to compare allocation per prompt as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptTemplateBenchmark {
+    private static final String FORMAT = "Generate a funny short message about the death of %s on the Minecraft server. " +
+        "Player died because %s. Player was at level %d.";
+
+    private String player = "Steve";
+    private String cause = "Steve was blown up by Creeper";
+    private int level = 27;
+
+    private PromptTemplate template;
+
+    /**
+     * Parses the default template
+     */
+    @Setup
+    public void setup() {
+        template = PromptTemplate.compile(PromptKey.PLAYER_DEATH.getDefaultTemplate(), PromptKey.PLAYER_DEATH.getPlaceholders());
+    }
+
+    /**
+     * Renders the parsed template into the thread's reused buffer
+     * @return The prompt
+     */
+    @Benchmark
+    public String template() {
+        return template.render(player, cause, level);
+    }
+
+    /**
+     * Formats the prompt with String.format
+     * @return The prompt
+     */
+    @Benchmark
+    public String stringFormat() {
+        return String.format(FORMAT, player, cause, level);
+    }
+
+    /**
+     * Concatenates the prompt the way the death listener used to
+     * @return The prompt
+     */
+    @Benchmark
+    public String concatenation() {
+        return "Generate a funny short message about the death of " + player +
+            " on the Minecraft server. Player died because " + cause +
+            ". Player was at level " + level + ".";
+    }
+
+    /**
+     * Parses the template, which happens once per template on startup and reload
+     * @return The parsed template
+     */
+    @Benchmark
+    public PromptTemplate compile() {
+        return PromptTemplate.compile(PromptKey.COMMAND_GENERATOR.getDefaultTemplate(), PromptKey.COMMAND_GENERATOR.getPlaceholders());
+    }
+}
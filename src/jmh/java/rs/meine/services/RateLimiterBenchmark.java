@@ -0,0 +1,66 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking a request against the player and global token buckets, alone and with 64 threads sharing the global bucket
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private RateLimiter rateLimiter;
+
+    /**
+     * Creates a limiter large enough that requests are always admitted, which is the path taken on every message
+     */
+    @Setup
+    public void setup() {
+        rateLimiter = new RateLimiter(1_000_000_000, 1_000_000_000, 1);
+    }
+
+    /**
+     * One player per benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class PlayerState {
+        private final UUID player = UUID.randomUUID();
+    }
+
+    /**
+     * Takes a token without contention
+     * @param state The thread's player
+     * @return The wait, always 0
+     */
+    @Benchmark
+    public long tryAcquire(PlayerState state) {
+        return rateLimiter.tryAcquire(state.player);
+    }
+
+    /**
+     * Takes a token while 63 other threads take tokens from the same global bucket
+     * @param state The thread's player
+     * @return The wait, always 0
+     */
+    @Benchmark
+    @Threads(64)
+    public long tryAcquireContended(PlayerState state) {
+        return rateLimiter.tryAcquire(state.player);
+    }
+}
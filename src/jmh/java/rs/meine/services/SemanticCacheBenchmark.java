@@ -0,0 +1,78 @@
+package rs.meine.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up a prompt in a full semantic cache, which scans every entry of the namespace
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SemanticCacheBenchmark {
+    private static final String NAMESPACE = "cmd:gpt-4o";
+    private static final String[] VERBS = {"give me", "spawn", "summon", "teleport me to", "build", "find", "kill all", "clear"};
+    private static final String[] THINGS = {
+        "diamond swords", "zombies", "a village", "the nether fortress", "oak trees", "iron golems", "torches", "creepers",
+        "a castle", "the end portal", "cows", "emeralds", "enchanted books", "a beacon", "skeleton horses", "tnt",
+    };
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private SemanticCache cache;
+    private String hit;
+
+    /**
+     * Fills the cache with distinct prompts
+     */
+    @Setup
+    public void setup() {
+        cache = new SemanticCache(entries, 0.9, 3600);
+        for (int i = 0; i < entries; i++) {
+            cache.put(NAMESPACE, prompt(i), "/say " + i);
+        }
+        hit = prompt(entries / 2);
+    }
+
+    /**
+     * Looks up a prompt that is cached
+     * @return The cached response
+     */
+    @Benchmark
+    public String hit() {
+        return cache.get(NAMESPACE, hit);
+    }
+
+    /**
+     * Looks up a prompt that matches nothing, the common case
+     * @return null
+     */
+    @Benchmark
+    public String miss() {
+        return cache.get(NAMESPACE, "what is the best way to tame a wolf quickly");
+    }
+
+    /**
+     * Generates the i-th distinct prompt
+     * @param i The prompt number
+     * @return The prompt
+     */
+    private static String prompt(int i) {
+        return VERBS[i % VERBS.length] + " " + THINGS[(i / VERBS.length) % THINGS.length] + " " + i;
+    }
+}
@@ -0,0 +1,489 @@
+package rs.meine.loadtest;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import rs.meine.config.ConfigManager;
+import rs.meine.models.Feature;
+import rs.meine.models.RequestType;
+import rs.meine.services.CircuitBreaker;
+import rs.meine.services.MetricsService;
+import rs.meine.services.OpenAIService;
+import rs.meine.services.PersistentStore;
+import rs.meine.services.PlayerContextService;
+import rs.meine.services.PromptTemplates;
+import rs.meine.services.RequestEngine;
+import rs.meine.services.TickProfiler;
+import rs.meine.stubs.StubPlugin;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives the plugin's request path end to end against the mock server (or any Chat Completions endpoint) and reports
+ * throughput, latency percentiles and error rates per kind of traffic.
+ * <p>
+ * N simulated players send chat messages, /cmd prompts and join and death events as one open Poisson stream: events
+ * arrive on schedule whether or not earlier ones finished, so a slow backend shows up as latency and queueing instead
+ * of silently lowering the offered load. Join and death commentary is requested the way the batcher sends single
+ * events, so its latency is per event.
+ * <p>
+ * Everything is configured with system properties, for example
+ * {@code mvn -Ploadtest test-compile exec:java -Dloadtest.players=200 -Dmock.rate_429=0.05}:
+ * <ul>
+ *     <li>{@code loadtest.players} (50), {@code loadtest.duration_seconds} (60), {@code loadtest.drain_seconds} (30)</li>
+ *     <li>{@code loadtest.chat_per_minute} (2), {@code loadtest.commands_per_minute} (0.5),
+ *     {@code loadtest.joins_per_minute} (0.2), {@code loadtest.deaths_per_minute} (0.3), per player</li>
+ *     <li>{@code loadtest.stream} (false) streams chat responses</li>
+ *     <li>{@code loadtest.base_url} targets another endpoint instead of starting the mock, with {@code loadtest.api_key}</li>
+ *     <li>{@code loadtest.max_error_rate} fails the run if more requests than this fraction fail</li>
+ *     <li>{@code loadtest.config.<path>} overrides any config.yml value, e.g. {@code loadtest.config.requests.max_in_flight=16}</li>
+ *     <li>{@code mock.latency} (lognormal:400,0.5), {@code mock.token_delay_ms} (15), {@code mock.rate_429} (0.02),
+ *     {@code mock.rate_500} (0.01)</li>
+ *     <li>{@code loadtest.verbose} (false) shows the plugin's own warnings</li>
+ * </ul>
+ */
+public final class LoadHarness {
+    private static final String CONFIG_PREFIX = "loadtest.config.";
+    // Held so the level set on them is not lost when the log manager's weak references are cleared
+    private static final Logger SERVER_LOGGER = Logger.getLogger("LoadHarness");
+    private static final Logger PLUGIN_PACKAGE_LOGGER = Logger.getLogger("rs.meine");
+    private static final String[] CHAT_MESSAGES = {
+        "hey ai, what should I build next?",
+        "how do I find diamonds faster",
+        "is it safe to sleep in the nether",
+        "what's the best food in the game?",
+        "help, a creeper blew up my house",
+        "can you rate my castle",
+    };
+    private static final String[] COMMAND_PROMPTS = {
+        "give me a diamond sword with sharpness 5",
+        "teleport me to spawn",
+        "make it day",
+        "clear the weather",
+        "give me 64 torches",
+        "kill all zombies near me",
+    };
+
+    private LoadHarness() {
+    }
+
+    /**
+     * Runs the load test and exits with 1 if the error rate exceeded loadtest.max_error_rate
+     * @param args Ignored; see the class documentation for the system properties
+     * @throws Exception if the harness cannot be set up
+     */
+    public static void main(String[] args) throws Exception {
+        int players = Integer.getInteger("loadtest.players", 50);
+        int durationSeconds = Integer.getInteger("loadtest.duration_seconds", 60);
+        int drainSeconds = Integer.getInteger("loadtest.drain_seconds", 30);
+        boolean stream = Boolean.getBoolean("loadtest.stream");
+        double maxErrorRate = doubleProperty("loadtest.max_error_rate", 1.0);
+
+        Map<Kind, Double> perMinute = new EnumMap<>(Kind.class);
+        perMinute.put(Kind.CHAT, doubleProperty("loadtest.chat_per_minute", 2));
+        perMinute.put(Kind.COMMAND, doubleProperty("loadtest.commands_per_minute", 0.5));
+        perMinute.put(Kind.JOIN, doubleProperty("loadtest.joins_per_minute", 0.2));
+        perMinute.put(Kind.DEATH, doubleProperty("loadtest.deaths_per_minute", 0.3));
+
+        boolean verbose = Boolean.getBoolean("loadtest.verbose");
+        if (!verbose) {
+            // Injected failures would otherwise print a stack trace per request
+            PLUGIN_PACKAGE_LOGGER.setLevel(Level.SEVERE);
+        }
+
+        MockOpenAIServer mock = null;
+        String baseUrl = System.getProperty("loadtest.base_url", "");
+        if (baseUrl.isEmpty()) {
+            mock = new MockOpenAIServer(
+                0,
+                MockOpenAIServer.Latency.parse(System.getProperty("mock.latency", "lognormal:400,0.5")),
+                Long.getLong("mock.token_delay_ms", 15),
+                doubleProperty("mock.rate_429", 0.02),
+                doubleProperty("mock.rate_500", 0.01)
+            );
+            mock.start();
+            baseUrl = mock.getBaseUrl();
+        }
+
+        File dataFolder = Files.createTempDirectory("gpt-loadtest").toFile();
+        ExecutorService mainThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LoadHarness-Main");
+            thread.setDaemon(true);
+            return thread;
+        });
+        StubPlugin plugin = new StubPlugin(dataFolder, SERVER_LOGGER, mainThread);
+        if (!verbose) {
+            plugin.getLogger().setLevel(Level.SEVERE);
+        }
+
+        FileConfiguration config = plugin.getConfig();
+        config.set("openai.api_key", System.getProperty("loadtest.api_key", "mock-key"));
+        config.set("openai.base_url", baseUrl);
+        // The harness measures the request path, not the per-player limits in front of it
+        config.set("rate_limiting.requests_per_window", 1_000_000);
+        config.set("rate_limiting.global_requests_per_window", 1_000_000);
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(CONFIG_PREFIX)) {
+                config.set(name.substring(CONFIG_PREFIX.length()), parseValue(System.getProperty(name)));
+            }
+        }
+
+        ConfigManager configManager = new ConfigManager(plugin);
+        MetricsService metricsService = new MetricsService(plugin);
+        PlayerContextService contextService = new PlayerContextService(plugin, configManager, new TickProfiler(plugin, configManager));
+        PersistentStore persistentStore = new PersistentStore(dataFolder, configManager, plugin.getLogger());
+        PromptTemplates promptTemplates = new PromptTemplates(configManager, plugin.getLogger());
+        OpenAIService openAIService = new OpenAIService(configManager, metricsService, contextService, promptTemplates, persistentStore);
+
+        UUID[] uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+        }
+
+        Map<Kind, Stats> stats = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            stats.put(kind, new Stats());
+        }
+
+        double totalPerSecond = players * perMinute.values().stream().mapToDouble(Double::doubleValue).sum() / 60.0;
+        System.out.printf("Load test: %d players for %d s at %.1f events/s against %s%s%n",
+            players, durationSeconds, totalPerSecond, baseUrl, stream ? ", streaming chat" : "");
+
+        AtomicInteger outstanding = new AtomicInteger();
+        Random random = new Random();
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long nextNanos = startNanos;
+
+        while (totalPerSecond > 0) {
+            // Exponential gaps make the arrivals a Poisson process; scheduling against the clock keeps the rate exact
+            nextNanos += (long) (-Math.log(1 - random.nextDouble()) / totalPerSecond * 1e9);
+            if (nextNanos >= endNanos) {
+                break;
+            }
+            LockSupport.parkNanos(nextNanos - System.nanoTime());
+
+            Kind kind = pick(perMinute, random);
+            int player = random.nextInt(players);
+            String name = "Player" + player;
+            Stats kindStats = stats.get(kind);
+            kindStats.sent.incrementAndGet();
+            outstanding.incrementAndGet();
+            long sentNanos = System.nanoTime();
+
+            CompletableFuture<String> response;
+            try {
+                response = send(openAIService, kind, name, uuids[player], random, stream);
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((text, error) -> {
+                kindStats.record(text, error, System.nanoTime() - sentNanos);
+                outstanding.decrementAndGet();
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        boolean failed = report(stats, elapsedSeconds, outstanding.get(), maxErrorRate, openAIService, metricsService, mock);
+
+        openAIService.shutdown();
+        persistentStore.shutdown();
+        mainThread.shutdownNow();
+        if (mock != null) {
+            mock.close();
+        }
+
+        // The SDK's HTTP dispatcher threads would keep the JVM alive for another minute
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Sends one simulated event through the same service calls the listeners and commands use
+     * @param openAIService The OpenAI service
+     * @param kind The kind of event
+     * @param name The player's name
+     * @param uuid The player's UUID
+     * @param random The random source
+     * @param stream Whether chat responses are streamed
+     * @return The response
+     */
+    private static CompletableFuture<String> send(OpenAIService openAIService, Kind kind, String name, UUID uuid,
+                                                  Random random, boolean stream) {
+        switch (kind) {
+            case CHAT:
+                String message = CHAT_MESSAGES[random.nextInt(CHAT_MESSAGES.length)];
+                return stream
+                    ? openAIService.streamPlayerChatResponseAsync(name, message, uuid, chunk -> { })
+                    : openAIService.generatePlayerChatResponseAsync(name, message, uuid);
+            case COMMAND:
+                return openAIService.generateMinecraftCommandAsync(COMMAND_PROMPTS[random.nextInt(COMMAND_PROMPTS.length)], uuid);
+            case JOIN:
+                return openAIService.generateSimpleResponseAsync(
+                    "Generate a short greeting of the player " + name + " on the Minecraft server.",
+                    Feature.JOIN, null);
+            case DEATH:
+                return openAIService.generateSimpleResponseAsync(
+                    "Generate a funny short message about the death of " + name + " who was slain by a zombie.",
+                    Feature.DEATH, null);
+            default:
+                throw new IllegalArgumentException("Unknown kind " + kind);
+        }
+    }
+
+    /**
+     * Prints the results
+     * @param stats The results per kind of traffic
+     * @param elapsedSeconds The time from the first event until the last response or the drain timeout
+     * @param unfinished Responses still outstanding after the drain timeout
+     * @param maxErrorRate The highest acceptable fraction of failed requests
+     * @param openAIService The OpenAI service
+     * @param metricsService The metrics service
+     * @param mock The mock server, or null if another endpoint was tested
+     * @return true if the error rate was exceeded
+     */
+    private static boolean report(Map<Kind, Stats> stats, double elapsedSeconds, int unfinished, double maxErrorRate,
+                                  OpenAIService openAIService, MetricsService metricsService, MockOpenAIServer mock) {
+        System.out.println();
+        System.out.printf("%-8s %8s %8s %8s %9s %8s %9s %9s %9s%n",
+            "kind", "sent", "ok", "errors", "rejected", "ok/s", "p50 ms", "p99 ms", "max ms");
+
+        Stats total = new Stats();
+        for (Map.Entry<Kind, Stats> entry : stats.entrySet()) {
+            printRow(entry.getKey().name().toLowerCase(), entry.getValue(), elapsedSeconds);
+            total.add(entry.getValue());
+        }
+        printRow("total", total, elapsedSeconds);
+        System.out.println();
+
+        RequestEngine engine = openAIService.getRequestEngine();
+        System.out.printf("Request engine: %d rejected, %d shed, %d expired; adaptive limit ended at %d%n",
+            engine.getRejectedRequests(), engine.getShedRequests(), engine.getExpiredRequests(),
+            openAIService.getAdaptiveLimiter().getEffectiveLimit());
+        long retries = 0;
+        long hedges = 0;
+        long hedgeWins = 0;
+        long fallbacks = 0;
+        for (RequestType type : RequestType.values()) {
+            MetricsService.TypeMetrics metrics = metricsService.getTypeMetrics(type);
+            retries += metrics.getRetries();
+            hedges += metrics.getHedges();
+            hedgeWins += metrics.getHedgeWins();
+            fallbacks += metrics.getFallbacks();
+        }
+        CircuitBreaker circuitBreaker = openAIService.getCircuitBreaker();
+        System.out.printf("Resilience: %d retries, %d hedges (%d won), %d fallbacks; circuit breaker opened %d times, refused %d calls%n",
+            retries, hedges, hedgeWins, fallbacks, circuitBreaker.getOpens(), circuitBreaker.getRejected());
+        System.out.printf("Tokens: %d prompt, %d completion%n",
+            metricsService.getTotalPromptTokens(), metricsService.getTotalCompletionTokens());
+        if (mock != null) {
+            System.out.printf("Mock server: %d requests (%d streamed), %d 429s and %d 500s injected, peak %d in flight%n",
+                mock.getRequests(), mock.getStreamedRequests(), mock.getInjected429(), mock.getInjected500(),
+                mock.getPeakInFlight());
+        }
+        if (unfinished > 0) {
+            System.out.printf("%d responses were still outstanding when the drain timeout ended%n", unfinished);
+        }
+
+        long sent = total.sent.get();
+        long failed = total.errors.get() + total.rejected.get() + unfinished;
+        double errorRate = sent > 0 ? (double) failed / sent : 0;
+        System.out.printf("Error rate: %.2f%%%n", errorRate * 100);
+        if (errorRate > maxErrorRate) {
+            System.out.printf("FAILED: error rate above %.2f%%%n", maxErrorRate * 100);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Prints one row of the result table
+     * @param label The row label
+     * @param stats The results
+     * @param elapsedSeconds The run time
+     */
+    private static void printRow(String label, Stats stats, double elapsedSeconds) {
+        long[] latencies = stats.sortedLatencies();
+        System.out.printf("%-8s %8d %8d %8d %9d %8.2f %9s %9s %9s%n",
+            label, stats.sent.get(), stats.ok.get(), stats.errors.get(), stats.rejected.get(),
+            stats.ok.get() / elapsedSeconds,
+            percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    /**
+     * Gets a latency percentile with the nearest-rank method
+     * @param sorted The latencies in nanoseconds, sorted
+     * @param quantile The quantile, from 0 to 1
+     * @return The latency in milliseconds, or "-" if there were no samples
+     */
+    private static String percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return String.valueOf(TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]));
+    }
+
+    /**
+     * Picks a kind of traffic in proportion to its rate
+     * @param perMinute The rate of each kind
+     * @param random The random source
+     * @return The kind
+     */
+    private static Kind pick(Map<Kind, Double> perMinute, Random random) {
+        double total = perMinute.values().stream().mapToDouble(Double::doubleValue).sum();
+        double roll = random.nextDouble() * total;
+        Kind last = Kind.CHAT;
+        for (Map.Entry<Kind, Double> entry : perMinute.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            last = entry.getKey();
+            roll -= entry.getValue();
+            if (roll < 0) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Reads a decimal system property
+     * @param name The property name
+     * @param fallback The value if the property is not set
+     * @return The value
+     */
+    private static double doubleProperty(String name, double fallback) {
+        String value = System.getProperty(name);
+        return value != null ? Double.parseDouble(value.trim()) : fallback;
+    }
+
+    /**
+     * Turns a config override into the type config.yml would have parsed it as
+     * @param value The property value
+     * @return A boolean, long, double or the string itself
+     */
+    private static Object parseValue(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(trimmed);
+        }
+        try {
+            long number = Long.parseLong(trimmed);
+            return number == (int) number ? (Object) (int) number : (Object) number;
+        } catch (NumberFormatException e) {
+            // Not an integer
+        }
+        try {
+            return Double.parseDouble(trimmed);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    /**
+     * A kind of simulated traffic
+     */
+    private enum Kind {
+        CHAT, COMMAND, JOIN, DEATH
+    }
+
+    /**
+     * Outcomes and latencies of one kind of traffic
+     */
+    private static final class Stats {
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger ok = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private long[] latencies = new long[1024];
+        private int count = 0;
+
+        /**
+         * Records a finished request. Answers from the mock carry its marker, so anything else is an error message;
+         * a failed future means the request was rate limited, not admitted or expired.
+         * @param text The response
+         * @param error The failure, or null
+         * @param latencyNanos The time from sending to completion
+         */
+        private void record(String text, Throwable error, long latencyNanos) {
+            if (error != null) {
+                rejected.incrementAndGet();
+                return;
+            }
+            if (text == null || !isAnswer(text)) {
+                errors.incrementAndGet();
+                return;
+            }
+            ok.incrementAndGet();
+            synchronized (this) {
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = latencyNanos;
+            }
+        }
+
+        /**
+         * Adds another kind's results to this one
+         * @param other The other results
+         */
+        private void add(Stats other) {
+            sent.addAndGet(other.sent.get());
+            ok.addAndGet(other.ok.get());
+            errors.addAndGet(other.errors.get());
+            rejected.addAndGet(other.rejected.get());
+            long[] samples = other.sortedLatencies();
+            synchronized (this) {
+                if (count + samples.length > latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count + samples.length);
+                }
+                System.arraycopy(samples, 0, latencies, count, samples.length);
+                count += samples.length;
+            }
+        }
+
+        /**
+         * Gets the recorded latencies
+         * @return The latencies in nanoseconds, sorted
+         */
+        private synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        /**
+         * Tells an answer from an error message. Against a real endpoint there is no marker, so only the
+         * plugin's own error messages count as errors.
+         * @param text The response
+         * @return true if the response is an answer
+         */
+        private static boolean isAnswer(String text) {
+            if (text.contains(MockOpenAIServer.MARKER)) {
+                return true;
+            }
+            return !text.startsWith("Error:")
+                && !text.startsWith("Sorry, I encountered an error")
+                && !text.startsWith("The AI is receiving too many requests")
+                && !text.startsWith("No response generated")
+                && !text.startsWith("No command generated");
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package rs.meine.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Chat Completions endpoint, served on the loopback interface by the JDK's HTTP server.
+ * Answers plain and streamed (server-sent events) completions after a sampled latency, and injects 429 and 500
+ * responses at configurable rates so retries, the adaptive limiter and the request engine see realistic failures.
+ * Every generated answer contains {@link #MARKER}, which lets the harness tell real answers from error messages.
+ */
+public final class MockOpenAIServer implements AutoCloseable {
+    /** Contained in every answer the mock generates */
+    public static final String MARKER = "[mock]";
+
+    private static final Pattern STREAM = Pattern.compile("\"stream\"\\s*:\\s*true");
+    private static final Pattern INCLUDE_USAGE = Pattern.compile("\"include_usage\"\\s*:\\s*true");
+    private static final Pattern MODEL = Pattern.compile("\"model\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern BATCH = Pattern.compile("Answer with exactly (\\d+) lines");
+    private static final String[] WORDS = {
+        "Nice", "one,", "the", "creepers", "are", "watching", "and", "the", "diamonds", "are", "waiting", "for", "you."
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Latency latency;
+    private final long tokenDelayMillis;
+    private final double rate429;
+    private final double rate500;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streamedRequests = new AtomicLong();
+    private final AtomicLong injected429 = new AtomicLong();
+    private final AtomicLong injected500 = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    /**
+     * Creates a new MockOpenAIServer. It does not accept connections until {@link #start()} is called.
+     * @param port The port to listen on, or 0 to pick a free one
+     * @param latency The time until the first token
+     * @param tokenDelayMillis The delay between streamed tokens
+     * @param rate429 The fraction of requests answered with 429 Too Many Requests
+     * @param rate500 The fraction of requests answered with 500 Internal Server Error
+     * @throws IOException if the port cannot be bound
+     */
+    public MockOpenAIServer(int port, Latency latency, long tokenDelayMillis, double rate429, double rate500) throws IOException {
+        this.latency = latency;
+        this.tokenDelayMillis = Math.max(0, tokenDelayMillis);
+        this.rate429 = rate429;
+        this.rate500 = rate500;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // Responses sleep for their latency, so every connection needs a thread of its own
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "MockOpenAIServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Gets the base URL to configure as openai.base_url
+     * @return The base URL
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v1";
+    }
+
+    /**
+     * Handles one request without letting an exception escape to the server thread
+     * @param exchange The exchange
+     */
+    private void handle(HttpExchange exchange) {
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+                sendJson(exchange, 404, error("Unknown endpoint " + exchange.getRequestURI().getPath(), "invalid_request_error", null));
+                return;
+            }
+
+            String body = readBody(exchange.getRequestBody());
+            requests.incrementAndGet();
+            sleep(latency.sampleMillis());
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < rate429) {
+                injected429.incrementAndGet();
+                exchange.getResponseHeaders().add("retry-after-ms", "500");
+                sendJson(exchange, 429, error("Rate limit reached (mock)", "requests", "rate_limit_exceeded"));
+                return;
+            }
+            if (roll < rate429 + rate500) {
+                injected500.incrementAndGet();
+                sendJson(exchange, 500, error("The server had an error while processing your request (mock)", "server_error", null));
+                return;
+            }
+
+            String model = find(MODEL, body, "mock");
+            String content = answer(body);
+            int promptTokens = Math.max(1, body.length() / 4);
+            int completionTokens = Math.max(1, content.length() / 4);
+
+            if (STREAM.matcher(body).find()) {
+                streamedRequests.incrementAndGet();
+                stream(exchange, model, content, promptTokens, completionTokens, INCLUDE_USAGE.matcher(body).find());
+            } else {
+                sendJson(exchange, 200, completion("chatcmpl-mock-" + ids.incrementAndGet(), model, content, promptTokens, completionTokens));
+            }
+        } catch (IOException e) {
+            // Nothing left to answer if the client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Streams an answer as chat.completion.chunk events, one word per event
+     * @param exchange The exchange
+     * @param model The model the client asked for
+     * @param content The answer
+     * @param promptTokens The reported prompt tokens
+     * @param completionTokens The reported completion tokens
+     * @param includeUsage Whether to send the usage chunk before [DONE]
+     * @throws IOException if the client went away
+     * @throws InterruptedException if the server is stopping
+     */
+    private void stream(HttpExchange exchange, String model, String content, int promptTokens, int completionTokens,
+                        boolean includeUsage) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String id = "chatcmpl-mock-" + ids.incrementAndGet();
+        long created = System.currentTimeMillis() / 1000;
+
+        String[] pieces = content.split("(?<= )");
+        for (int i = 0; i < pieces.length; i++) {
+            if (i > 0) {
+                sleep(tokenDelayMillis);
+            }
+            sendEvent(out, "{\"id\":\"" + id + "\",\"object\":\"chat.completion.chunk\",\"created\":" + created
+                + ",\"model\":" + json(model) + ",\"choices\":[{\"index\":0,\"delta\":{"
+                + (i == 0 ? "\"role\":\"assistant\"," : "") + "\"content\":" + json(pieces[i]) + "},\"logprobs\":null,\"finish_reason\":null}]}");
+        }
+
+        sendEvent(out, "{\"id\":\"" + id + "\",\"object\":\"chat.completion.chunk\",\"created\":" + created
+            + ",\"model\":" + json(model) + ",\"choices\":[{\"index\":0,\"delta\":{},\"logprobs\":null,\"finish_reason\":\"stop\"}]}");
+        if (includeUsage) {
+            sendEvent(out, "{\"id\":\"" + id + "\",\"object\":\"chat.completion.chunk\",\"created\":" + created
+                + ",\"model\":" + json(model) + ",\"choices\":[]," + usage(promptTokens, completionTokens) + "}");
+        }
+        sendEvent(out, "[DONE]");
+    }
+
+    /**
+     * Builds the answer to a request: a command for the command generator, numbered lines for batched
+     * commentary and a sentence for everything else
+     * @param body The request body
+     * @return The answer
+     */
+    private static String answer(String body) {
+        if (body.contains("Minecraft command generator")) {
+            return "/say " + MARKER + " hello";
+        }
+
+        Matcher batch = BATCH.matcher(body);
+        if (batch.find()) {
+            int lines = Integer.parseInt(batch.group(1));
+            StringBuilder builder = new StringBuilder(lines * 32);
+            for (int i = 1; i <= lines; i++) {
+                builder.append(i).append(". ").append(MARKER).append(" Line number ").append(i).append('\n');
+            }
+            return builder.toString();
+        }
+
+        int words = 4 + ThreadLocalRandom.current().nextInt(WORDS.length - 4);
+        StringBuilder builder = new StringBuilder(MARKER);
+        for (int i = 0; i < words; i++) {
+            builder.append(' ').append(WORDS[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds a chat.completion response body
+     * @param id The completion ID
+     * @param model The model the client asked for
+     * @param content The answer
+     * @param promptTokens The reported prompt tokens
+     * @param completionTokens The reported completion tokens
+     * @return The JSON body
+     */
+    private static String completion(String id, String model, String content, int promptTokens, int completionTokens) {
+        return "{\"id\":\"" + id + "\",\"object\":\"chat.completion\",\"created\":"
+            + System.currentTimeMillis() / 1000 + ",\"model\":" + json(model) + ",\"choices\":[{\"index\":0,"
+            + "\"message\":{\"role\":\"assistant\",\"content\":" + json(content) + ",\"refusal\":null},"
+            + "\"logprobs\":null,\"finish_reason\":\"stop\"}]," + usage(promptTokens, completionTokens) + "}";
+    }
+
+    /**
+     * Builds the usage field of a response
+     * @param promptTokens The reported prompt tokens
+     * @param completionTokens The reported completion tokens
+     * @return The JSON field
+     */
+    private static String usage(int promptTokens, int completionTokens) {
+        return "\"usage\":{\"prompt_tokens\":" + promptTokens + ",\"completion_tokens\":" + completionTokens
+            + ",\"total_tokens\":" + (promptTokens + completionTokens) + "}";
+    }
+
+    /**
+     * Builds an error body in the shape the SDK parses into its exceptions
+     * @param message The error message
+     * @param type The error type
+     * @param code The error code, or null
+     * @return The JSON body
+     */
+    private static String error(String message, String type, String code) {
+        return "{\"error\":{\"message\":" + json(message) + ",\"type\":" + json(type) + ",\"param\":null,\"code\":"
+            + (code != null ? json(code) : "null") + "}}";
+    }
+
+    /**
+     * Sends a complete JSON response
+     * @param exchange The exchange
+     * @param status The HTTP status
+     * @param json The body
+     * @throws IOException if the client went away
+     */
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Sends one server-sent event and flushes it to the client
+     * @param out The response body
+     * @param data The event data
+     * @throws IOException if the client went away
+     */
+    private static void sendEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Reads a request body
+     * @param in The request body stream
+     * @return The body
+     * @throws IOException if the client went away
+     */
+    private static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the first group of a pattern in a request body
+     * @param pattern The pattern
+     * @param body The request body
+     * @param fallback Returned if the pattern does not match
+     * @return The matched group or the fallback
+     */
+    private static String find(Pattern pattern, String body, String fallback) {
+        Matcher matcher = pattern.matcher(body);
+        return matcher.find() ? matcher.group(1) : fallback;
+    }
+
+    /**
+     * Sleeps unless the delay is zero
+     * @param millis The delay in milliseconds
+     * @throws InterruptedException if the server is stopping
+     */
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * Quotes and escapes a string as a JSON string literal
+     * @param value The string
+     * @return The JSON literal
+     */
+    private static String json(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Gets the number of completion requests received
+     * @return The number of requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of completion requests answered as a stream
+     * @return The number of streamed requests
+     */
+    public long getStreamedRequests() {
+        return streamedRequests.get();
+    }
+
+    /**
+     * Gets the number of injected 429 responses
+     * @return The number of 429 responses
+     */
+    public long getInjected429() {
+        return injected429.get();
+    }
+
+    /**
+     * Gets the number of injected 500 responses
+     * @return The number of 500 responses
+     */
+    public long getInjected500() {
+        return injected500.get();
+    }
+
+    /**
+     * Gets the highest number of requests the mock was handling at once
+     * @return The peak concurrency
+     */
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * Stops accepting requests and abandons the ones still being answered
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * A distribution of response latencies in milliseconds
+     */
+    public interface Latency {
+        /**
+         * Draws one latency
+         * @return The latency in milliseconds
+         */
+        long sampleMillis();
+
+        /**
+         * Parses a latency spec: fixed:MILLIS, uniform:MIN-MAX or lognormal:MEDIAN,SIGMA
+         * @param spec The spec
+         * @return The distribution
+         * @throws IllegalArgumentException if the spec cannot be parsed
+         */
+        static Latency parse(String spec) {
+            String[] parts = spec.trim().split(":", 2);
+            String kind = parts[0].toLowerCase();
+            String[] args = parts.length > 1 ? parts[1].split("[-,]") : new String[0];
+            try {
+                switch (kind) {
+                    case "fixed":
+                        return fixed(Long.parseLong(args[0].trim()));
+                    case "uniform":
+                        return uniform(Long.parseLong(args[0].trim()), Long.parseLong(args[1].trim()));
+                    case "lognormal":
+                        return logNormal(Double.parseDouble(args[0].trim()), Double.parseDouble(args[1].trim()));
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid latency spec: " + spec, e);
+            }
+            throw new IllegalArgumentException("Unknown latency distribution: " + kind);
+        }
+
+        /**
+         * Always the same latency
+         * @param millis The latency in milliseconds
+         * @return The distribution
+         */
+        static Latency fixed(long millis) {
+            return () -> millis;
+        }
+
+        /**
+         * Latencies spread evenly over a range
+         * @param minMillis The lowest latency in milliseconds
+         * @param maxMillis The highest latency in milliseconds
+         * @return The distribution
+         */
+        static Latency uniform(long minMillis, long maxMillis) {
+            return () -> ThreadLocalRandom.current().nextLong(minMillis, Math.max(minMillis, maxMillis) + 1);
+        }
+
+        /**
+         * Latencies with the long right tail real model endpoints show
+         * @param medianMillis The median latency in milliseconds
+         * @param sigma The standard deviation of the latency's logarithm; 0.5 puts p99 at about 3.2x the median
+         * @return The distribution
+         */
+        static Latency logNormal(double medianMillis, double sigma) {
+            double mu = Math.log(Math.max(1, medianMillis));
+            return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+}
@@ -9,11 +9,22 @@ import rs.meine.commands.CommandGeneratorExecutor;
 import rs.meine.config.ConfigManager;
 import rs.meine.listeners.PlayerAchievementListener;
 import rs.meine.listeners.PlayerChatListener;
+import rs.meine.listeners.PlayerContextListener;
 import rs.meine.listeners.PlayerDeathListener;
+import rs.meine.listeners.PlayerHistoryListener;
 import rs.meine.listeners.PlayerJoinListener;
 import rs.meine.listeners.PlayerQuitListener;
+import rs.meine.services.ChatAggregator;
+import rs.meine.services.ChatDelivery;
+import rs.meine.services.ChatTriggers;
+import rs.meine.services.CommentaryBatcher;
+import rs.meine.services.MetricsExporter;
 import rs.meine.services.MetricsService;
 import rs.meine.services.OpenAIService;
+import rs.meine.services.PersistentStore;
+import rs.meine.services.PlayerContextService;
+import rs.meine.services.PromptTemplates;
+import rs.meine.services.TickProfiler;
 
 /**
  * Main plugin class for MinecraftGPTCommenter
@@ -22,6 +33,15 @@ public class Main extends JavaPlugin {
     private ConfigManager configManager;
     private OpenAIService openAIService;
     private MetricsService metricsService;
+    private MetricsExporter metricsExporter;
+    private CommentaryBatcher commentaryBatcher;
+    private PlayerContextService contextService;
+    private PersistentStore persistentStore;
+    private TickProfiler tickProfiler;
+    private PromptTemplates promptTemplates;
+    private ChatTriggers chatTriggers;
+    private ChatAggregator chatAggregator;
+    private ChatDelivery chatDelivery;
     
     @Override
     public void onEnable() {
@@ -29,34 +49,59 @@ public class Main extends JavaPlugin {
             // Initialize configuration
             saveDefaultConfig();
             configManager = new ConfigManager(this);
+            tickProfiler = new TickProfiler(this, configManager);
+            tickProfiler.start();
+            chatDelivery = new ChatDelivery(this, configManager, tickProfiler);
+            chatDelivery.start();
+            promptTemplates = new PromptTemplates(configManager, getLogger());
             
             // Initialize services
-            openAIService = new OpenAIService(configManager);
             metricsService = new MetricsService(this);
+            chatTriggers = new ChatTriggers(configManager, metricsService);
+            contextService = new PlayerContextService(this, configManager, tickProfiler);
+            persistentStore = new PersistentStore(getDataFolder(), configManager, getLogger());
+            openAIService = new OpenAIService(configManager, metricsService, contextService, promptTemplates, persistentStore);
+            commentaryBatcher = new CommentaryBatcher(this, openAIService, metricsService, configManager, chatDelivery);
+            chatAggregator = new ChatAggregator(this, openAIService, metricsService, configManager, chatDelivery);
+            metricsExporter = new MetricsExporter(configManager, metricsService, openAIService, tickProfiler, chatDelivery, getLogger());
+            metricsExporter.start();
+            
+            // Applied in this order on /gptadmin reload
+            configManager.addListener((previous, current) -> tickProfiler.reload());
+            configManager.addListener((previous, current) -> promptTemplates.reload());
+            configManager.addListener((previous, current) -> chatTriggers.reload());
+            configManager.addListener(openAIService::onConfigChanged);
+            configManager.addListener((previous, current) -> metricsExporter.reload());
             
             // Register event listeners
             if (configManager.isFeatureEnabled("player_join")) {
-                getServer().getPluginManager().registerEvents(new PlayerJoinListener(this, openAIService), this);
+                tickProfiler.registerEvents(new PlayerJoinListener(commentaryBatcher, promptTemplates));
                 getLogger().info("Player join listener registered");
             }
             
             if (configManager.isFeatureEnabled("player_death")) {
-                getServer().getPluginManager().registerEvents(new PlayerDeathListener(this, openAIService), this);
+                tickProfiler.registerEvents(new PlayerDeathListener(commentaryBatcher, promptTemplates));
                 getLogger().info("Player death listener registered");
             }
             
             if (configManager.isFeatureEnabled("player_achievement")) {
-                getServer().getPluginManager().registerEvents(new PlayerAchievementListener(this, openAIService), this);
+                tickProfiler.registerEvents(new PlayerAchievementListener(commentaryBatcher, promptTemplates));
                 getLogger().info("Player achievement listener registered");
             }
-
+            
             if (configManager.isFeatureEnabled("player_chat")) {
-                getServer().getPluginManager().registerEvents(new PlayerChatListener(this, openAIService), this);
+                tickProfiler.registerEvents(new PlayerContextListener(contextService));
+                tickProfiler.registerEvents(new PlayerChatListener(openAIService, chatTriggers, chatAggregator));
                 getLogger().info("Player chat listener registered");
             }
             
             // Always register player quit listener to clean up resources
-            getServer().getPluginManager().registerEvents(new PlayerQuitListener(this, openAIService), this);
+            tickProfiler.registerEvents(new PlayerQuitListener(this, openAIService));
+            
+            if (persistentStore.isEnabled()) {
+                tickProfiler.registerEvents(new PlayerHistoryListener(openAIService));
+                getLogger().info("Chat history and caches are persisted to disk");
+            }
             
             // Register commands
             registerCommands();
@@ -73,13 +118,13 @@ public class Main extends JavaPlugin {
      */
     private void registerCommands() {
         // Chat commands
-        ChatCommandExecutor chatCommandExecutor = new ChatCommandExecutor(this, openAIService);
+        ChatCommandExecutor chatCommandExecutor = new ChatCommandExecutor(configManager, openAIService, chatDelivery);
         registerCommand("chatgpt", chatCommandExecutor);
         registerCommand("chat", chatCommandExecutor);
         
         // Command generator
         if (configManager.isFeatureEnabled("command_generation")) {
-            CommandGeneratorExecutor commandGeneratorExecutor = new CommandGeneratorExecutor(this, openAIService);
+            CommandGeneratorExecutor commandGeneratorExecutor = new CommandGeneratorExecutor(openAIService, chatDelivery);
             registerCommand("cmd", commandGeneratorExecutor);
             registerCommand("minecraft", commandGeneratorExecutor);
             getLogger().info("Command generator commands registered");
@@ -128,11 +173,71 @@ public class Main extends JavaPlugin {
         return openAIService;
     }
     
+    /**
+     * Gets the metrics service
+     * @return The metrics service
+     */
+    public MetricsService getMetricsService() {
+        return metricsService;
+    }
+    
+    /**
+     * Gets the OpenMetrics endpoint
+     * @return The metrics exporter
+     */
+    public MetricsExporter getMetricsExporter() {
+        return metricsExporter;
+    }
+    
+    /**
+     * Gets the main-thread tick profiler
+     * @return The tick profiler
+     */
+    public TickProfiler getTickProfiler() {
+        return tickProfiler;
+    }
+    
+    /**
+     * Gets the queue everything the plugin says in chat is sent through
+     * @return The chat delivery queue
+     */
+    public ChatDelivery getChatDelivery() {
+        return chatDelivery;
+    }
+    
+    /**
+     * Gets the parsed prompt templates
+     * @return The prompt templates
+     */
+    public PromptTemplates getPromptTemplates() {
+        return promptTemplates;
+    }
+    
     @Override
     public void onDisable() {
         // Gracefully shut down any ongoing operations
+        if (metricsExporter != null) {
+            metricsExporter.shutdown();
+        }
+        
+        if (commentaryBatcher != null) {
+            commentaryBatcher.shutdown();
+        }
+        
+        if (chatAggregator != null) {
+            chatAggregator.shutdown();
+        }
+        
+        if (chatDelivery != null) {
+            chatDelivery.shutdown();
+        }
+        
         if (openAIService != null) {
-            // Nothing to do currently, but we could add shutdown logic here
+            openAIService.shutdown();
+        }
+        
+        if (persistentStore != null) {
+            persistentStore.shutdown();
         }
         
         getLogger().info("MinecraftGPTCommenter plugin disabled!");
@@ -8,7 +8,21 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import rs.meine.Main;
 import rs.meine.config.ConfigManager;
+import rs.meine.models.ChatTrigger;
+import rs.meine.models.FailureType;
+import rs.meine.models.RequestPriority;
+import rs.meine.models.RequestType;
+import rs.meine.services.AdaptiveLimiter;
+import rs.meine.services.ChatDelivery;
+import rs.meine.services.CircuitBreaker;
+import rs.meine.services.ClientManager;
+import rs.meine.services.LatencyHistogram;
+import rs.meine.services.MetricsService;
 import rs.meine.services.OpenAIService;
+import rs.meine.services.PooledHttpClient;
+import rs.meine.services.RequestEngine;
+import rs.meine.services.ResponseCache;
+import rs.meine.services.TickProfiler;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,7 +38,7 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
     private final OpenAIService openAIService;
     
     private static final List<String> SUBCOMMANDS = Arrays.asList(
-        "reload", "status", "reset", "help"
+        "reload", "status", "reset", "cache", "metrics", "profile", "help"
     );
     
     /**
@@ -67,6 +81,26 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
                     sender.sendMessage(ChatColor.RED + "Usage: /gptadmin reset chat");
                 }
                 break;
+            case "cache":
+                if (args.length > 1 && args[1].equalsIgnoreCase("stats")) {
+                    showCacheStats(sender);
+                } else if (args.length > 1 && args[1].equalsIgnoreCase("clear")) {
+                    openAIService.clearCaches();
+                    sender.sendMessage(ChatColor.GREEN + "Response caches cleared.");
+                } else {
+                    sender.sendMessage(ChatColor.RED + "Usage: /gptadmin cache <stats|clear>");
+                }
+                break;
+            case "metrics":
+                if (args.length > 1) {
+                    showTypeMetrics(sender, args[1]);
+                } else {
+                    showMetrics(sender);
+                }
+                break;
+            case "profile":
+                showProfile(sender);
+                break;
             case "help":
             default:
                 showHelp(sender);
@@ -82,9 +116,8 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
      */
     private void reloadConfig(CommandSender sender) {
         try {
-            plugin.reloadConfig();
+            // Services pick up the new settings through their config listeners
             configManager.reloadConfig();
-            openAIService.initializeClient();
             
             sender.sendMessage(ChatColor.GREEN + "Configuration reloaded successfully!");
         } catch (Exception e) {
@@ -104,6 +137,84 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "API Key Configured: " + ChatColor.WHITE + 
             (!configManager.getApiKey().isEmpty() ? "Yes" : "No"));
         
+        RequestEngine requestEngine = openAIService.getRequestEngine();
+        sender.sendMessage(ChatColor.YELLOW + "Requests: " + ChatColor.WHITE + 
+            requestEngine.getInFlight() + "/" + requestEngine.getMaxInFlight() + " in flight, " + 
+            requestEngine.getQueued() + " queued, " + 
+            requestEngine.getRejectedRequests() + " rejected, " + 
+            requestEngine.getShedRequests() + " shed, " + 
+            requestEngine.getExpiredRequests() + " expired");
+        for (RequestPriority priority : RequestPriority.values()) {
+            sender.sendMessage(ChatColor.YELLOW + "  - " + priority.getConfigKey() + ": " + ChatColor.WHITE + 
+                requestEngine.getInFlight(priority) + " in flight, " + 
+                requestEngine.getQueued(priority) + " queued");
+        }
+        
+        AdaptiveLimiter adaptiveLimiter = openAIService.getAdaptiveLimiter();
+        long pauseMillis = adaptiveLimiter.getRemainingPauseMillis();
+        sender.sendMessage(ChatColor.YELLOW + "Adaptive Limit: " + ChatColor.WHITE + 
+            adaptiveLimiter.getInFlight() + "/" + adaptiveLimiter.getEffectiveLimit() + " calls" + 
+            (pauseMillis > 0 ? ChatColor.RED + " (paused for " + (pauseMillis + 999) / 1000 + "s by Retry-After)" : ""));
+        
+        ClientManager clientManager = openAIService.getClientManager();
+        sender.sendMessage(ChatColor.YELLOW + "HTTP Client: " + ChatColor.WHITE + 
+            (clientManager.hasClient() ? clientManager.getInFlight() + " calls" : "not initialized") + ", " + 
+            clientManager.getBuilds() + " built, " + clientManager.getCloses() + " closed, " + 
+            clientManager.getDraining() + " draining");
+        PooledHttpClient httpClient = clientManager.getHttpClient();
+        if (httpClient != null) {
+            sender.sendMessage(ChatColor.YELLOW + "HTTP Pool: " + ChatColor.WHITE + 
+                httpClient.getConnectionCount() + " connections (" + httpClient.getIdleConnectionCount() + " idle), " + 
+                httpClient.getRunningCalls() + " calls running (" + httpClient.getMaxRequestsPerHost() + " per host allowed), " + 
+                httpClient.getQueuedCalls() + " queued");
+        }
+        
+        CircuitBreaker circuitBreaker = openAIService.getCircuitBreaker();
+        CircuitBreaker.State breakerState = circuitBreaker.getState();
+        long retries = 0;
+        long hedges = 0;
+        long hedgeWins = 0;
+        long fallbacks = 0;
+        for (RequestType type : RequestType.values()) {
+            MetricsService.TypeMetrics metrics = plugin.getMetricsService().getTypeMetrics(type);
+            retries += metrics.getRetries();
+            hedges += metrics.getHedges();
+            hedgeWins += metrics.getHedgeWins();
+            fallbacks += metrics.getFallbacks();
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Circuit Breaker: " + 
+            (breakerState == CircuitBreaker.State.CLOSED ? ChatColor.GREEN + "closed" 
+                : breakerState == CircuitBreaker.State.HALF_OPEN ? ChatColor.GOLD + "probing" 
+                : ChatColor.RED + "open for " + (circuitBreaker.getRemainingOpenMillis() + 999) / 1000 + "s") + 
+            ChatColor.WHITE + ", " + circuitBreaker.getOpens() + " opens, " + circuitBreaker.getRejected() + " refused, " + 
+            retries + " retries, " + hedges + " hedges (" + hedgeWins + " won), " + fallbacks + " fallbacks");
+        
+        MetricsService metricsService = plugin.getMetricsService();
+        long chatMessages = 0;
+        long chatAnswered = 0;
+        for (ChatTrigger trigger : ChatTrigger.values()) {
+            long count = metricsService.getChatMessages(trigger);
+            chatMessages += count;
+            if (trigger.isAnswered()) {
+                chatAnswered += count;
+            }
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Chat Replies: " + ChatColor.WHITE + 
+            chatAnswered + " of " + chatMessages + " messages answered, " + 
+            metricsService.getChatMessagesCombined() + " combined, " + 
+            metricsService.getChatRepliesSuperseded() + " replies superseded, " + 
+            metricsService.getChatMessagesDropped() + " dropped" + 
+            (configManager.isChatTriggersEnabled() ? "" : ChatColor.RED + " (triggers disabled)"));
+        
+        ChatDelivery chatDelivery = plugin.getChatDelivery();
+        sender.sendMessage(ChatColor.YELLOW + "Chat Delivery: " + ChatColor.WHITE + 
+            chatDelivery.getQueued() + " queued, " + 
+            chatDelivery.getSent() + " sent, " + 
+            chatDelivery.getMerged() + " merged, " + 
+            chatDelivery.getSplit() + " split, " + 
+            chatDelivery.getExpired() + " expired, " + 
+            chatDelivery.getUndeliverable() + " undeliverable");
+        
         // Show feature status
         sender.sendMessage(ChatColor.YELLOW + "Features:");
         sender.sendMessage(ChatColor.YELLOW + "  - Player Join: " + 
@@ -114,6 +225,180 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
             (configManager.isFeatureEnabled("player_chat") ? ChatColor.GREEN + "Enabled" : ChatColor.RED + "Disabled"));
     }
     
+    /**
+     * Shows command cache statistics
+     * @param sender The command sender
+     */
+    private void showCacheStats(CommandSender sender) {
+        ResponseCache commandCache = openAIService.getCommandCache();
+        MetricsService metricsService = plugin.getMetricsService();
+        long hits = metricsService.getCacheHits();
+        long misses = metricsService.getCacheMisses();
+        long lookups = hits + misses;
+        
+        sender.sendMessage(ChatColor.GOLD + "=== Command Cache ===");
+        sender.sendMessage(ChatColor.YELLOW + "Entries: " + ChatColor.WHITE + 
+            commandCache.size() + "/" + commandCache.getMaxEntries());
+        sender.sendMessage(ChatColor.YELLOW + "Hits: " + ChatColor.WHITE + hits + 
+            ChatColor.YELLOW + " Misses: " + ChatColor.WHITE + misses + 
+            ChatColor.YELLOW + " Hit rate: " + ChatColor.WHITE + 
+            (lookups == 0 ? "n/a" : String.format("%.1f%%", hits * 100.0 / lookups)));
+        sender.sendMessage(ChatColor.YELLOW + "Evictions: " + ChatColor.WHITE + commandCache.getEvictions());
+        
+        if (configManager.isSemanticCacheEnabled()) {
+            sender.sendMessage(ChatColor.GOLD + "=== Semantic Cache ===");
+            sender.sendMessage(ChatColor.YELLOW + "Entries: " + ChatColor.WHITE + 
+                openAIService.getSemanticCache().size() + "/" + configManager.getSemanticCacheMaxEntries());
+            sender.sendMessage(ChatColor.YELLOW + "Hits: " + ChatColor.WHITE + metricsService.getSemanticCacheHits() + 
+                ChatColor.YELLOW + " Misses: " + ChatColor.WHITE + metricsService.getSemanticCacheMisses());
+        }
+    }
+    
+    /**
+     * Shows one line of request metrics per request type that has seen requests
+     * @param sender The command sender
+     */
+    private void showMetrics(CommandSender sender) {
+        MetricsService metricsService = plugin.getMetricsService();
+        sender.sendMessage(ChatColor.GOLD + "=== Request Metrics ===");
+        sender.sendMessage(ChatColor.YELLOW + "Requests: " + ChatColor.WHITE + metricsService.getTotalRequests() + 
+            ChatColor.YELLOW + " OK: " + ChatColor.WHITE + metricsService.getSuccessfulRequests() + 
+            ChatColor.YELLOW + " Failed: " + ChatColor.WHITE + metricsService.getFailedRequests() + 
+            ChatColor.YELLOW + " Players: " + ChatColor.WHITE + metricsService.getUniquePlayers());
+        sender.sendMessage(ChatColor.YELLOW + "Tokens: " + ChatColor.WHITE + 
+            metricsService.getTotalPromptTokens() + " in, " + metricsService.getTotalCompletionTokens() + " out");
+        
+        boolean any = false;
+        for (RequestType type : RequestType.values()) {
+            MetricsService.TypeMetrics metrics = metricsService.getTypeMetrics(type);
+            if (metrics.getRequests() == 0) {
+                continue;
+            }
+            
+            any = true;
+            LatencyHistogram total = metrics.getTotalLatency();
+            sender.sendMessage(ChatColor.YELLOW + "  - " + type.getMetricName() + ": " + ChatColor.WHITE + 
+                metrics.getRequests() + " req, " + metrics.getSuccesses() + " ok, " + metrics.getFailures() + " failed, " + 
+                "p50/p99 " + total.getPercentileMillis(50) + "/" + total.getPercentileMillis(99) + " ms, " + 
+                String.format("%.2f/s (1m)", metrics.getRequestRate(60)));
+        }
+        
+        if (!any) {
+            sender.sendMessage(ChatColor.GRAY + "No requests yet.");
+        } else {
+            sender.sendMessage(ChatColor.GRAY + "Use /gptadmin metrics <type> for latency and error details.");
+        }
+    }
+    
+    /**
+     * Shows latency percentiles, failure classes, rates and token usage of one request type
+     * @param sender The command sender
+     * @param typeName The metric name of the request type
+     */
+    private void showTypeMetrics(CommandSender sender, String typeName) {
+        RequestType type = null;
+        for (RequestType candidate : RequestType.values()) {
+            if (candidate.getMetricName().equalsIgnoreCase(typeName)) {
+                type = candidate;
+                break;
+            }
+        }
+        if (type == null) {
+            sender.sendMessage(ChatColor.RED + "Unknown request type. Use one of: " + getRequestTypeNames());
+            return;
+        }
+        
+        MetricsService.TypeMetrics metrics = plugin.getMetricsService().getTypeMetrics(type);
+        sender.sendMessage(ChatColor.GOLD + "=== " + type.getMetricName() + " Requests ===");
+        sender.sendMessage(ChatColor.YELLOW + "Requests: " + ChatColor.WHITE + metrics.getRequests() + 
+            ChatColor.YELLOW + " OK: " + ChatColor.WHITE + metrics.getSuccesses() + 
+            ChatColor.YELLOW + " Failed: " + ChatColor.WHITE + metrics.getFailures() + 
+            ChatColor.YELLOW + " Deduplicated: " + ChatColor.WHITE + metrics.getDeduplicated());
+        
+        StringBuilder failures = new StringBuilder();
+        for (FailureType failure : FailureType.values()) {
+            if (failures.length() > 0) {
+                failures.append(", ");
+            }
+            failures.append(failure.getLabel()).append(' ').append(metrics.getFailures(failure));
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Failures: " + ChatColor.WHITE + failures);
+        sender.sendMessage(ChatColor.YELLOW + "Rate: " + ChatColor.WHITE + 
+            String.format("%.2f/s (1m), %.2f/s (5m)", metrics.getRequestRate(60), metrics.getRequestRate(300)) + 
+            ChatColor.YELLOW + " Errors: " + ChatColor.WHITE + 
+            String.format("%.2f/s (1m), %.2f/s (5m)", metrics.getErrorRate(60), metrics.getErrorRate(300)));
+        sendLatency(sender, "Total", metrics.getTotalLatency());
+        sendLatency(sender, "Queue wait", metrics.getQueueWait());
+        sendLatency(sender, "API", metrics.getApiLatency());
+        if (metrics.getTimeToFirstToken().getCount() > 0) {
+            sendLatency(sender, "First token", metrics.getTimeToFirstToken());
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Tokens: " + ChatColor.WHITE + 
+            metrics.getPromptTokens() + " in, " + metrics.getCompletionTokens() + " out");
+    }
+    
+    /**
+     * Shows the percentiles of one latency histogram
+     * @param sender The command sender
+     * @param name The name of the latency
+     * @param histogram The histogram
+     */
+    private void sendLatency(CommandSender sender, String name, LatencyHistogram histogram) {
+        sender.sendMessage(ChatColor.YELLOW + name + ": " + ChatColor.WHITE + 
+            "p50 " + histogram.getPercentileMillis(50) + " ms, " + 
+            "p90 " + histogram.getPercentileMillis(90) + " ms, " + 
+            "p99 " + histogram.getPercentileMillis(99) + " ms, " + 
+            "max " + (histogram.getMaxMicros() + 999) / 1000 + " ms" + 
+            ChatColor.GRAY + " (" + histogram.getCount() + ")");
+    }
+    
+    /**
+     * Shows how much main-thread time the plugin uses per tick and its most expensive handlers and callbacks
+     * @param sender The command sender
+     */
+    private void showProfile(CommandSender sender) {
+        TickProfiler profiler = plugin.getTickProfiler();
+        sender.sendMessage(ChatColor.GOLD + "=== Main Thread Profile ===");
+        if (!profiler.isEnabled()) {
+            sender.sendMessage(ChatColor.GRAY + "The profiler is disabled (profiler.enabled).");
+            return;
+        }
+        
+        LatencyHistogram tickTime = profiler.getTickTime();
+        sender.sendMessage(ChatColor.YELLOW + "Per tick: " + ChatColor.WHITE + 
+            String.format("p50 %.2f ms, p99 %.2f ms, max %.2f ms", 
+                tickTime.getPercentileMicros(50) / 1000.0, tickTime.getPercentileMicros(99) / 1000.0, 
+                profiler.getWorstTickNanos() / 1_000_000.0) + 
+            ChatColor.GRAY + " (" + tickTime.getCount() + " ticks)");
+        sender.sendMessage(ChatColor.YELLOW + "Budget: " + ChatColor.WHITE + 
+            String.format("%.2f ms", profiler.getBudgetNanos() / 1_000_000.0) + 
+            ChatColor.YELLOW + " Over budget: " + ChatColor.WHITE + profiler.getTicksOverBudget() + " ticks" + 
+            ChatColor.YELLOW + " Deferred: " + ChatColor.WHITE + profiler.getDeferredTasks() + " tasks");
+        
+        List<TickProfiler.Section> worst = profiler.getWorstSections(5);
+        if (worst.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "Nothing has run on the main thread yet.");
+            return;
+        }
+        
+        sender.sendMessage(ChatColor.YELLOW + "Most main-thread time:");
+        for (TickProfiler.Section section : worst) {
+            sender.sendMessage(ChatColor.YELLOW + "  - " + section.getName() + ": " + ChatColor.WHITE + 
+                String.format("%.1f ms total, %.2f ms max, %d calls", 
+                    section.getMainThreadNanos() / 1_000_000.0, section.getMaxNanos() / 1_000_000.0, section.getCalls()));
+        }
+    }
+    
+    /**
+     * Gets the metric names of all request types
+     * @return The names
+     */
+    private static List<String> getRequestTypeNames() {
+        return Arrays.stream(RequestType.values())
+            .map(RequestType::getMetricName)
+            .collect(Collectors.toList());
+    }
+    
     /**
      * Resets the chat history for a player
      * @param player The player
@@ -133,6 +418,9 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "/gptadmin reload" + ChatColor.WHITE + " - Reloads the plugin configuration");
         sender.sendMessage(ChatColor.YELLOW + "/gptadmin status" + ChatColor.WHITE + " - Shows the current plugin status");
         sender.sendMessage(ChatColor.YELLOW + "/gptadmin reset chat" + ChatColor.WHITE + " - Resets your chat history");
+        sender.sendMessage(ChatColor.YELLOW + "/gptadmin cache <stats|clear>" + ChatColor.WHITE + " - Shows or clears the response caches");
+        sender.sendMessage(ChatColor.YELLOW + "/gptadmin metrics [type]" + ChatColor.WHITE + " - Shows request latency, error and token metrics");
+        sender.sendMessage(ChatColor.YELLOW + "/gptadmin profile" + ChatColor.WHITE + " - Shows the plugin's main-thread time per tick");
         sender.sendMessage(ChatColor.YELLOW + "/gptadmin help" + ChatColor.WHITE + " - Shows this help message");
     }
     
@@ -153,6 +441,17 @@ public class AdminCommandExecutor implements CommandExecutor, TabCompleter {
             return resetOptions.stream()
                 .filter(opt -> opt.startsWith(partialArg))
                 .collect(Collectors.toList());
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("cache")) {
+            String partialArg = args[1].toLowerCase();
+            List<String> cacheOptions = Arrays.asList("stats", "clear");
+            return cacheOptions.stream()
+                .filter(opt -> opt.startsWith(partialArg))
+                .collect(Collectors.toList());
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("metrics")) {
+            String partialArg = args[1].toLowerCase();
+            return getRequestTypeNames().stream()
+                .filter(opt -> opt.startsWith(partialArg))
+                .collect(Collectors.toList());
         }
         
         return new ArrayList<>();
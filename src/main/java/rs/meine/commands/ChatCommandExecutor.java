@@ -4,16 +4,21 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.config.ConfigManager;
+import rs.meine.services.ChatDelivery;
 import rs.meine.services.OpenAIService;
 
+import java.util.UUID;
+
 public class ChatCommandExecutor implements CommandExecutor {
-    private final JavaPlugin plugin;
+    private final ConfigManager configManager;
     private final OpenAIService openAIService;
+    private final ChatDelivery chatDelivery;
     
-    public ChatCommandExecutor(JavaPlugin plugin, OpenAIService openAIService) {
-        this.plugin = plugin;
+    public ChatCommandExecutor(ConfigManager configManager, OpenAIService openAIService, ChatDelivery chatDelivery) {
+        this.configManager = configManager;
         this.openAIService = openAIService;
+        this.chatDelivery = chatDelivery;
     }
     
     @Override
@@ -24,19 +29,38 @@ public class ChatCommandExecutor implements CommandExecutor {
         }
         
         String prompt = String.join(" ", args);
+        UUID playerUUID = sender instanceof Player player ? player.getUniqueId() : null;
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            String response = openAIService.generateSimpleResponse(prompt);
+        if (configManager.isStreamingEnabled("chat_command")) {
+            openAIService.streamChatCommandResponseAsync(prompt, playerUUID, chatDelivery.sendStream(sender))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        chatDelivery.send(sender, "The AI is busy right now. Please try again in a moment.");
+                        return;
+                    }
+                    
+                    // Add to chat history if sender is a player
+                    if (sender instanceof Player player) {
+                        openAIService.addMessageToHistory(player.getUniqueId(), player.getName(), prompt);
+                        openAIService.addMessageToHistory(player.getUniqueId(), "AI", response);
+                    }
+                });
+            return true;
+        }
+        
+        openAIService.generateChatCommandResponseAsync(prompt, playerUUID).whenComplete((response, error) -> {
+            if (error != null) {
+                chatDelivery.send(sender, "The AI is busy right now. Please try again in a moment.");
+                return;
+            }
+            
+            chatDelivery.send(sender, response);
             
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                sender.sendMessage(response);
-                
-                // Add to chat history if sender is a player
-                if (sender instanceof Player player) {
-                    openAIService.addMessageToHistory(player.getUniqueId(), player.getName(), prompt);
-                    openAIService.addMessageToHistory(player.getUniqueId(), "AI", response);
-                }
-            });
+            // Add to chat history if sender is a player
+            if (sender instanceof Player player) {
+                openAIService.addMessageToHistory(player.getUniqueId(), player.getName(), prompt);
+                openAIService.addMessageToHistory(player.getUniqueId(), "AI", response);
+            }
         });
         
         return true;
@@ -5,19 +5,20 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
-import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.services.ChatDelivery;
 import rs.meine.services.OpenAIService;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 public class CommandGeneratorExecutor implements CommandExecutor, TabCompleter {
-    private final JavaPlugin plugin;
     private final OpenAIService openAIService;
+    private final ChatDelivery chatDelivery;
     
-    public CommandGeneratorExecutor(JavaPlugin plugin, OpenAIService openAIService) {
-        this.plugin = plugin;
+    public CommandGeneratorExecutor(OpenAIService openAIService, ChatDelivery chatDelivery) {
         this.openAIService = openAIService;
+        this.chatDelivery = chatDelivery;
     }
     
     @Override
@@ -28,34 +29,42 @@ public class CommandGeneratorExecutor implements CommandExecutor, TabCompleter {
         }
         
         String prompt = String.join(" ", args);
+        UUID playerUUID = sender instanceof Player player ? player.getUniqueId() : null;
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            String generatedCommand = openAIService.generateMinecraftCommand(prompt);
+        openAIService.generateMinecraftCommandAsync(prompt, playerUUID).whenComplete((generatedCommand, error) -> {
+            if (error != null) {
+                chatDelivery.send(sender, "§cThe AI is busy right now. Please try again in a moment.");
+                return;
+            }
             
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                if (sender instanceof Player player) {
-                    player.sendMessage("§6Generated command: §f" + generatedCommand);
-                    
-                    // Create a clickable command suggestion
-                    net.md_5.bungee.api.chat.TextComponent message = new net.md_5.bungee.api.chat.TextComponent("§a[Click to Execute]");
-                    message.setClickEvent(new net.md_5.bungee.api.chat.ClickEvent(
-                        net.md_5.bungee.api.chat.ClickEvent.Action.RUN_COMMAND, 
-                        generatedCommand
-                    ));
-                    message.setHoverEvent(new net.md_5.bungee.api.chat.HoverEvent(
-                        net.md_5.bungee.api.chat.HoverEvent.Action.SHOW_TEXT,
-                        new net.md_5.bungee.api.chat.ComponentBuilder("Click to run: " + generatedCommand).create()
-                    ));
-                    player.spigot().sendMessage(message);
-                    
-                    // Add to chat history
-                    openAIService.addMessageToHistory(player.getUniqueId(), player.getName(), "Generate command: " + prompt);
-                    openAIService.addMessageToHistory(player.getUniqueId(), "AI", "Generated: " + generatedCommand);
-                } else {
-                    sender.sendMessage("Generated command: " + generatedCommand);
-                    sender.sendMessage("Use the command in game: " + generatedCommand);
-                }
-            });
+            // Errors and fallback lines are not commands, so they get no link to run them
+            if (!generatedCommand.startsWith("/")) {
+                chatDelivery.send(sender, "§c" + generatedCommand);
+                return;
+            }
+            
+            if (sender instanceof Player player) {
+                chatDelivery.send(player, "§6Generated command: §f" + generatedCommand);
+                
+                // Create a clickable command suggestion
+                net.md_5.bungee.api.chat.TextComponent message = new net.md_5.bungee.api.chat.TextComponent("§a[Click to Execute]");
+                message.setClickEvent(new net.md_5.bungee.api.chat.ClickEvent(
+                    net.md_5.bungee.api.chat.ClickEvent.Action.RUN_COMMAND, 
+                    generatedCommand
+                ));
+                message.setHoverEvent(new net.md_5.bungee.api.chat.HoverEvent(
+                    net.md_5.bungee.api.chat.HoverEvent.Action.SHOW_TEXT,
+                    new net.md_5.bungee.api.chat.ComponentBuilder("Click to run: " + generatedCommand).create()
+                ));
+                chatDelivery.send(player, message);
+                
+                // Add to chat history
+                openAIService.addMessageToHistory(player.getUniqueId(), player.getName(), "Generate command: " + prompt);
+                openAIService.addMessageToHistory(player.getUniqueId(), "AI", "Generated: " + generatedCommand);
+            } else {
+                chatDelivery.send(sender, "Generated command: " + generatedCommand);
+                chatDelivery.send(sender, "Use the command in game: " + generatedCommand);
+            }
         });
         
         return true;
@@ -0,0 +1,14 @@
+package rs.meine.config;
+
+/**
+ * Applies a reloaded configuration. Listeners compare the two snapshots to rebuild only what a change affects.
+ */
+@FunctionalInterface
+public interface ConfigListener {
+    /**
+     * Called on the reloading thread after the new snapshot was swapped in
+     * @param previous The settings before the reload
+     * @param current The settings after the reload
+     */
+    void onConfigChanged(ConfigSnapshot previous, ConfigSnapshot current);
+}
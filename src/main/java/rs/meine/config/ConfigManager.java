@@ -2,25 +2,22 @@ package rs.meine.config;
 
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.models.PromptKey;
+import rs.meine.models.RequestPriority;
+import rs.meine.models.RequestType;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
- * Manages plugin configuration
+ * Manages plugin configuration. Settings are read into an immutable snapshot on startup and on every reload,
+ * which is swapped in at once; the getters read from the current snapshot without touching the configuration.
  */
 public class ConfigManager {
     private final JavaPlugin plugin;
-    private final FileConfiguration config;
     private final Logger logger;
-    
-    // Default values
-    private static final String DEFAULT_API_KEY = "";
-    private static final String DEFAULT_MODEL = "gpt-5.6-luna";
-    private static final double DEFAULT_TEMPERATURE = 1.0;
-    private static final int DEFAULT_MAX_HISTORY = 5;
-    private static final int DEFAULT_MAX_TOKENS = 150;
-    private static final int DEFAULT_REQUESTS_PER_WINDOW = 10;
-    private static final int DEFAULT_RATE_LIMIT_WINDOW_SECONDS = 60;
-    private static final int DEFAULT_CONNECTION_TIMEOUT = 10;
+    private final List<ConfigListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ConfigSnapshot snapshot;
     
     /**
      * Creates a new ConfigManager
@@ -28,28 +25,122 @@ public class ConfigManager {
      */
     public ConfigManager(JavaPlugin plugin) {
         this.plugin = plugin;
-        this.config = plugin.getConfig();
         this.logger = plugin.getLogger();
         
         // Set default config values
-        initDefaultConfig();
+        FileConfiguration config = plugin.getConfig();
+        applyDefaults(config);
+        plugin.saveConfig();
+        
+        snapshot = new ConfigSnapshot(config);
+        validateConfig();
     }
     
     /**
-     * Initializes the default configuration
+     * Adds the default value of every setting to a configuration, copying missing ones into it
+     * @param config The configuration
      */
-    private void initDefaultConfig() {
-        config.addDefault("openai.api_key", DEFAULT_API_KEY);
-        config.addDefault("openai.model", DEFAULT_MODEL);
-        config.addDefault("openai.temperature", DEFAULT_TEMPERATURE);
-        config.addDefault("openai.max_tokens", DEFAULT_MAX_TOKENS);
+    private void applyDefaults(FileConfiguration config) {
+        config.addDefault("openai.api_key", ConfigSnapshot.DEFAULT_API_KEY);
+        config.addDefault("openai.base_url", ConfigSnapshot.DEFAULT_BASE_URL);
+        config.addDefault("openai.model", ConfigSnapshot.DEFAULT_MODEL);
+        config.addDefault("openai.temperature", ConfigSnapshot.DEFAULT_TEMPERATURE);
+        config.addDefault("openai.max_tokens", ConfigSnapshot.DEFAULT_MAX_TOKENS);
+        config.addDefault("openai.max_retries", ConfigSnapshot.DEFAULT_MAX_RETRIES);
+        
+        config.addDefault("chat.max_history", ConfigSnapshot.DEFAULT_MAX_HISTORY);
+        config.addDefault("chat.context_refresh_ticks", ConfigSnapshot.DEFAULT_CONTEXT_REFRESH_TICKS);
+        config.addDefault("chat.context_full_refresh_seconds", ConfigSnapshot.DEFAULT_CONTEXT_FULL_REFRESH_SECONDS);
+        config.addDefault("chat.max_input_tokens", ConfigSnapshot.DEFAULT_MAX_INPUT_TOKENS);
+        config.addDefault("chat.inventory_top_n", ConfigSnapshot.DEFAULT_INVENTORY_TOP_N);
+        config.addDefault("chat.summary_refresh_seconds", ConfigSnapshot.DEFAULT_SUMMARY_REFRESH_SECONDS);
+        config.addDefault("chat.triggers.enabled", true);
+        config.addDefault("chat.triggers.names", ConfigSnapshot.DEFAULT_TRIGGER_NAMES);
+        config.addDefault("chat.triggers.prefixes", ConfigSnapshot.DEFAULT_TRIGGER_PREFIXES);
+        config.addDefault("chat.triggers.keywords", ConfigSnapshot.DEFAULT_TRIGGER_KEYWORDS);
+        config.addDefault("chat.triggers.min_relevance", ConfigSnapshot.DEFAULT_TRIGGER_MIN_RELEVANCE);
+        config.addDefault("chat.triggers.sampling.default", ConfigSnapshot.DEFAULT_TRIGGER_SAMPLING);
+        config.addDefault("chat.aggregation.enabled", true);
+        config.addDefault("chat.aggregation.debounce_ms", ConfigSnapshot.DEFAULT_CHAT_DEBOUNCE_MILLIS);
+        config.addDefault("chat.aggregation.max_wait_ms", ConfigSnapshot.DEFAULT_CHAT_MAX_WAIT_MILLIS);
+        config.addDefault("chat.aggregation.max_messages", ConfigSnapshot.DEFAULT_CHAT_AGGREGATION_MAX_MESSAGES);
+        
+        config.addDefault("rate_limiting.requests_per_window", ConfigSnapshot.DEFAULT_REQUESTS_PER_WINDOW);
+        config.addDefault("rate_limiting.window_seconds", ConfigSnapshot.DEFAULT_RATE_LIMIT_WINDOW_SECONDS);
+        config.addDefault("rate_limiting.global_requests_per_window", ConfigSnapshot.DEFAULT_GLOBAL_REQUESTS_PER_WINDOW);
+        
+        config.addDefault("timeouts.connection", ConfigSnapshot.DEFAULT_CONNECTION_TIMEOUT);
+        config.addDefault("timeouts.connect", ConfigSnapshot.DEFAULT_CONNECT_TIMEOUT);
+        config.addDefault("timeouts.read", ConfigSnapshot.DEFAULT_READ_TIMEOUT);
+        config.addDefault("timeouts.write", ConfigSnapshot.DEFAULT_WRITE_TIMEOUT);
+        
+        config.addDefault("http.max_idle_connections", ConfigSnapshot.DEFAULT_HTTP_MAX_IDLE_CONNECTIONS);
+        config.addDefault("http.keep_alive_seconds", ConfigSnapshot.DEFAULT_HTTP_KEEP_ALIVE_SECONDS);
+        config.addDefault("http.max_requests", ConfigSnapshot.DEFAULT_HTTP_MAX_REQUESTS);
+        config.addDefault("http.max_requests_per_host", ConfigSnapshot.DEFAULT_HTTP_MAX_REQUESTS_PER_HOST);
+        config.addDefault("http.http2", true);
+        
+        config.addDefault("requests.max_in_flight", ConfigSnapshot.DEFAULT_MAX_IN_FLIGHT);
+        config.addDefault("requests.adaptive_limit", true);
+        config.addDefault("requests.min_in_flight", ConfigSnapshot.DEFAULT_MIN_IN_FLIGHT);
+        config.addDefault("requests.queue_capacity", ConfigSnapshot.DEFAULT_QUEUE_CAPACITY);
+        config.addDefault("requests.overflow_policy", ConfigSnapshot.DEFAULT_OVERFLOW_POLICY);
+        for (RequestPriority priority : RequestPriority.values()) {
+            config.addDefault("requests.shares." + priority.getConfigKey(), priority.getDefaultShare());
+            config.addDefault("requests.max_age_seconds." + priority.getConfigKey(), priority.getDefaultMaxAgeSeconds());
+        }
+        
+        config.addDefault("batching.window_ms", ConfigSnapshot.DEFAULT_BATCH_WINDOW_MILLIS);
+        config.addDefault("batching.max_events", ConfigSnapshot.DEFAULT_BATCH_MAX_EVENTS);
         
-        config.addDefault("chat.max_history", DEFAULT_MAX_HISTORY);
+        config.addDefault("streaming.player_chat", true);
+        config.addDefault("streaming.chat_command", true);
+        config.addDefault("streaming.min_chunk_chars", ConfigSnapshot.DEFAULT_STREAMING_MIN_CHUNK_CHARS);
+        config.addDefault("streaming.max_chunk_chars", ConfigSnapshot.DEFAULT_STREAMING_MAX_CHUNK_CHARS);
         
-        config.addDefault("rate_limiting.requests_per_window", DEFAULT_REQUESTS_PER_WINDOW);
-        config.addDefault("rate_limiting.window_seconds", DEFAULT_RATE_LIMIT_WINDOW_SECONDS);
+        config.addDefault("cache.commands.max_entries", ConfigSnapshot.DEFAULT_COMMAND_CACHE_MAX_ENTRIES);
+        config.addDefault("cache.commands.ttl_seconds", ConfigSnapshot.DEFAULT_COMMAND_CACHE_TTL_SECONDS);
+        config.addDefault("cache.semantic.enabled", false);
+        config.addDefault("cache.semantic.max_entries", ConfigSnapshot.DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES);
+        config.addDefault("cache.semantic.similarity_threshold", ConfigSnapshot.DEFAULT_SEMANTIC_CACHE_THRESHOLD);
+        config.addDefault("cache.semantic.ttl_seconds", ConfigSnapshot.DEFAULT_SEMANTIC_CACHE_TTL_SECONDS);
         
-        config.addDefault("timeouts.connection", DEFAULT_CONNECTION_TIMEOUT);
+        config.addDefault("persistence.enabled", false);
+        config.addDefault("persistence.flush_interval_seconds", ConfigSnapshot.DEFAULT_PERSISTENCE_FLUSH_SECONDS);
+        config.addDefault("persistence.segment_size_mb", ConfigSnapshot.DEFAULT_PERSISTENCE_SEGMENT_MB);
+        
+        config.addDefault("metrics.enabled", false);
+        config.addDefault("metrics.bind_address", ConfigSnapshot.DEFAULT_METRICS_BIND_ADDRESS);
+        config.addDefault("metrics.port", ConfigSnapshot.DEFAULT_METRICS_PORT);
+        
+        config.addDefault("profiler.enabled", true);
+        config.addDefault("profiler.tick_budget_ms", ConfigSnapshot.DEFAULT_PROFILER_TICK_BUDGET_MILLIS);
+        config.addDefault("profiler.defer_over_budget", false);
+        config.addDefault("profiler.max_defer_ticks", ConfigSnapshot.DEFAULT_PROFILER_MAX_DEFER_TICKS);
+        config.addDefault("profiler.warning_interval_seconds", ConfigSnapshot.DEFAULT_PROFILER_WARNING_INTERVAL_SECONDS);
+        
+        config.addDefault("delivery.max_messages_per_tick", ConfigSnapshot.DEFAULT_DELIVERY_MAX_MESSAGES_PER_TICK);
+        config.addDefault("delivery.max_message_chars", ConfigSnapshot.DEFAULT_DELIVERY_MAX_MESSAGE_CHARS);
+        config.addDefault("delivery.max_age_seconds", ConfigSnapshot.DEFAULT_DELIVERY_MAX_AGE_SECONDS);
+        config.addDefault("delivery.merge_chunks", true);
+        
+        config.addDefault("resilience.backoff_base_ms", ConfigSnapshot.DEFAULT_BACKOFF_BASE_MILLIS);
+        config.addDefault("resilience.backoff_max_ms", ConfigSnapshot.DEFAULT_BACKOFF_MAX_MILLIS);
+        config.addDefault("resilience.hedging.enabled", false);
+        config.addDefault("resilience.hedging.percentile", ConfigSnapshot.DEFAULT_HEDGING_PERCENTILE);
+        config.addDefault("resilience.hedging.min_delay_ms", ConfigSnapshot.DEFAULT_HEDGING_MIN_DELAY_MILLIS);
+        config.addDefault("resilience.hedging.min_samples", ConfigSnapshot.DEFAULT_HEDGING_MIN_SAMPLES);
+        config.addDefault("resilience.circuit_breaker.enabled", true);
+        config.addDefault("resilience.circuit_breaker.failure_threshold", ConfigSnapshot.DEFAULT_BREAKER_FAILURE_THRESHOLD);
+        config.addDefault("resilience.circuit_breaker.open_seconds", ConfigSnapshot.DEFAULT_BREAKER_OPEN_SECONDS);
+        for (RequestType type : RequestType.values()) {
+            config.addDefault("resilience.deadlines." + type.getMetricName(), type.getDefaultDeadlineSeconds());
+            config.addDefault("resilience.fallbacks." + type.getMetricName(), type.getDefaultFallbacks());
+        }
+        
+        for (PromptKey key : PromptKey.values()) {
+            config.addDefault("prompts." + key.getConfigKey(), key.getDefaultTemplate());
+        }
         
         config.addDefault("features.player_join", true);
         config.addDefault("features.player_death", true);
@@ -58,10 +149,6 @@ public class ConfigManager {
         config.addDefault("features.command_generation", true);
         
         config.options().copyDefaults(true);
-        plugin.saveConfig();
-        
-        // Validate configuration
-        validateConfig();
     }
     
     /**
@@ -76,19 +163,36 @@ public class ConfigManager {
         }
     }
     
+    /**
+     * Gets the current settings. Read values that must agree with each other from one snapshot.
+     * @return The current snapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Registers a listener that is called after every reload
+     * @param listener The listener
+     */
+    public void addListener(ConfigListener listener) {
+        listeners.add(listener);
+    }
+    
     /**
      * Gets the OpenAI API key
      * @return The API key
      */
     public String getApiKey() {
-        String apiKey = config.getString("openai.api_key", "");
-        
-        // Try to get from environment variable if not set in config
-        if (apiKey.isEmpty()) {
-            apiKey = System.getenv("OPENAI_API_KEY");
-        }
-        
-        return apiKey != null ? apiKey : "";
+        return snapshot.getApiKey();
+    }
+    
+    /**
+     * Gets the base URL of the Chat Completions API, for proxies, compatible providers or a local mock server
+     * @return The base URL, or an empty string to use the official OpenAI endpoint
+     */
+    public String getBaseUrl() {
+        return snapshot.getBaseUrl();
     }
     
     /**
@@ -96,7 +200,7 @@ public class ConfigManager {
      * @return The model name
      */
     public String getModel() {
-        return config.getString("openai.model", DEFAULT_MODEL);
+        return snapshot.getModel();
     }
     
     /**
@@ -104,7 +208,7 @@ public class ConfigManager {
      * @return The temperature value
      */
     public double getTemperature() {
-        return config.getDouble("openai.temperature", DEFAULT_TEMPERATURE);
+        return snapshot.getTemperature();
     }
     
     /**
@@ -112,7 +216,7 @@ public class ConfigManager {
      * @return The maximum number of tokens
      */
     public int getMaxTokens() {
-        return config.getInt("openai.max_tokens", DEFAULT_MAX_TOKENS);
+        return snapshot.getMaxTokens();
     }
     
     /**
@@ -120,7 +224,128 @@ public class ConfigManager {
      * @return The maximum history size
      */
     public int getMaxHistory() {
-        return config.getInt("chat.max_history", DEFAULT_MAX_HISTORY);
+        return snapshot.getMaxHistory();
+    }
+    
+    /**
+     * Gets how often stale player context is recaptured on the main thread
+     * @return The refresh period in ticks
+     */
+    public int getContextRefreshTicks() {
+        return snapshot.getContextRefreshTicks();
+    }
+    
+    /**
+     * Gets how often every player's context is recaptured even if no event marked it stale
+     * @return The full refresh period in seconds
+     */
+    public int getContextFullRefreshSeconds() {
+        return snapshot.getContextFullRefreshSeconds();
+    }
+    
+    /**
+     * Gets the input token budget of a chat request, covering the system prompt, history and the player's message
+     * @return The budget in tokens
+     */
+    public int getMaxInputTokens() {
+        return snapshot.getMaxInputTokens();
+    }
+    
+    /**
+     * Gets how many of the largest item stacks are listed in a player's inventory context
+     * @return The number of stacks, 0 for all of them
+     */
+    public int getInventoryTopN() {
+        return snapshot.getInventoryTopN();
+    }
+    
+    /**
+     * Gets how often the summary of chat history that no longer fits the token budget may be regenerated
+     * @return The minimum interval in seconds
+     */
+    public int getSummaryRefreshSeconds() {
+        return snapshot.getSummaryRefreshSeconds();
+    }
+    
+    /**
+     * Checks if chat messages must trigger a reply, instead of every message being answered
+     * @return true if chat triggers are enabled
+     */
+    public boolean isChatTriggersEnabled() {
+        return snapshot.isChatTriggersEnabled();
+    }
+    
+    /**
+     * Gets the names that address the bot when they appear as a word in a chat message
+     * @return The names
+     */
+    public List<String> getChatTriggerNames() {
+        return snapshot.getChatTriggerNames();
+    }
+    
+    /**
+     * Gets the prefixes that address the bot when a chat message starts with them
+     * @return The prefixes
+     */
+    public List<String> getChatTriggerPrefixes() {
+        return snapshot.getChatTriggerPrefixes();
+    }
+    
+    /**
+     * Gets the words and phrases that make a chat message more likely to deserve a reply
+     * @return The keywords
+     */
+    public List<String> getChatTriggerKeywords() {
+        return snapshot.getChatTriggerKeywords();
+    }
+    
+    /**
+     * Gets the relevance a chat message that does not address the bot needs to be answered
+     * @return The minimum relevance from 0.0 to 1.0
+     */
+    public double getChatTriggerMinRelevance() {
+        return snapshot.getChatTriggerMinRelevance();
+    }
+    
+    /**
+     * Gets the fraction of relevant chat messages answered in a world
+     * @param world The world's name
+     * @return The world's sampling ratio, or the default one if the world has none
+     */
+    public double getChatTriggerSampling(String world) {
+        return snapshot.getChatTriggerSampling(world);
+    }
+    
+    /**
+     * Checks if the chat of a world is answered one burst at a time, instead of one reply per message
+     * @return true if chat aggregation is enabled
+     */
+    public boolean isChatAggregationEnabled() {
+        return snapshot.isChatAggregationEnabled();
+    }
+    
+    /**
+     * Gets how long a world's chat must be quiet before its buffered messages are answered
+     * @return The debounce window in milliseconds
+     */
+    public long getChatDebounceMillis() {
+        return snapshot.getChatDebounceMillis();
+    }
+    
+    /**
+     * Gets the longest a buffered chat message waits for its burst to end
+     * @return The maximum wait in milliseconds
+     */
+    public long getChatMaxWaitMillis() {
+        return snapshot.getChatMaxWaitMillis();
+    }
+    
+    /**
+     * Gets the most chat messages answered by one reply; a burst this long is answered without waiting
+     * @return The maximum number of messages
+     */
+    public int getChatAggregationMaxMessages() {
+        return snapshot.getChatAggregationMaxMessages();
     }
     
     /**
@@ -129,7 +354,7 @@ public class ConfigManager {
      * @return true if the feature is enabled
      */
     public boolean isFeatureEnabled(String feature) {
-        return config.getBoolean("features." + feature, true);
+        return snapshot.isFeatureEnabled(feature);
     }
     
     /**
@@ -137,7 +362,15 @@ public class ConfigManager {
      * @return The number of requests
      */
     public int getRequestsPerWindow() {
-        return config.getInt("rate_limiting.requests_per_window", DEFAULT_REQUESTS_PER_WINDOW);
+        return snapshot.getRequestsPerWindow();
+    }
+    
+    /**
+     * Gets the number of requests the whole server may make per rate limit window
+     * @return The number of requests
+     */
+    public int getGlobalRequestsPerWindow() {
+        return snapshot.getGlobalRequestsPerWindow();
     }
     
     /**
@@ -145,22 +378,485 @@ public class ConfigManager {
      * @return The window size in seconds
      */
     public int getRateLimitWindowSeconds() {
-        return config.getInt("rate_limiting.window_seconds", DEFAULT_RATE_LIMIT_WINDOW_SECONDS);
+        return snapshot.getRateLimitWindowSeconds();
     }
     
     /**
-     * Gets the connection timeout in seconds
-     * @return The connection timeout
+     * Gets how long a whole request to the API may take
+     * @return The request timeout in seconds
      */
     public int getConnectionTimeout() {
-        return config.getInt("timeouts.connection", DEFAULT_CONNECTION_TIMEOUT);
+        return snapshot.getConnectionTimeout();
+    }
+    
+    /**
+     * Gets how long establishing a connection to the API may take
+     * @return The connect timeout in seconds
+     */
+    public int getConnectTimeout() {
+        return snapshot.getConnectTimeout();
+    }
+    
+    /**
+     * Gets how long the API may stay silent while a response is read, including between streamed chunks
+     * @return The read timeout in seconds
+     */
+    public int getReadTimeout() {
+        return snapshot.getReadTimeout();
+    }
+    
+    /**
+     * Gets how long sending a request body may stall
+     * @return The write timeout in seconds
+     */
+    public int getWriteTimeout() {
+        return snapshot.getWriteTimeout();
+    }
+    
+    /**
+     * Gets how many times the client retries a request that failed with a connection error, 408, 409, 429 or 5xx
+     * @return The number of retries
+     */
+    public int getMaxRetries() {
+        return snapshot.getMaxRetries();
+    }
+    
+    /**
+     * Gets how many idle connections to the API are kept open for reuse
+     * @return The number of connections
+     */
+    public int getHttpMaxIdleConnections() {
+        return snapshot.getHttpMaxIdleConnections();
+    }
+    
+    /**
+     * Gets how long an idle connection to the API is kept open
+     * @return The keep-alive time in seconds
+     */
+    public int getHttpKeepAliveSeconds() {
+        return snapshot.getHttpKeepAliveSeconds();
+    }
+    
+    /**
+     * Gets how many calls the HTTP client runs at once
+     * @return The number of calls
+     */
+    public int getHttpMaxRequests() {
+        return snapshot.getHttpMaxRequests();
+    }
+    
+    /**
+     * Gets how many calls the HTTP client runs at once against one host
+     * @return The number of calls
+     */
+    public int getHttpMaxRequestsPerHost() {
+        return snapshot.getHttpMaxRequestsPerHost();
+    }
+    
+    /**
+     * Checks if HTTP/2 is negotiated with HTTPS endpoints
+     * @return true if HTTP/2 is preferred
+     */
+    public boolean isHttp2Enabled() {
+        return snapshot.isHttp2Enabled();
+    }
+    
+    /**
+     * Gets the maximum number of OpenAI requests executing at the same time
+     * @return The in-flight limit
+     */
+    public int getMaxInFlightRequests() {
+        return snapshot.getMaxInFlightRequests();
+    }
+    
+    /**
+     * Checks if the in-flight limit adapts to OpenAI 429s, timeouts and latency
+     * @return true if the adaptive limit is enabled
+     */
+    public boolean isAdaptiveLimitEnabled() {
+        return snapshot.isAdaptiveLimitEnabled();
+    }
+    
+    /**
+     * Gets the smallest in-flight limit the adaptive limiter may shrink to
+     * @return The minimum in-flight limit
+     */
+    public int getMinInFlightRequests() {
+        return snapshot.getMinInFlightRequests();
+    }
+    
+    /**
+     * Gets the maximum number of OpenAI requests waiting for a free slot
+     * @return The queue capacity
+     */
+    public int getRequestQueueCapacity() {
+        return snapshot.getRequestQueueCapacity();
+    }
+    
+    /**
+     * Gets the policy applied when the request queue is full ("reject" or "drop_oldest")
+     * @return The overflow policy name
+     */
+    public String getRequestOverflowPolicy() {
+        return snapshot.getRequestOverflowPolicy();
+    }
+    
+    /**
+     * Gets the fraction of the in-flight slots a request class may occupy at once
+     * @param priority The request class
+     * @return The share between 0 and 1
+     */
+    public double getRequestShare(RequestPriority priority) {
+        return snapshot.getRequestShare(priority);
     }
     
     /**
-     * Reloads the configuration from disk
+     * Gets how long a request of a class may wait for a free slot before it is dropped
+     * @param priority The request class
+     * @return The maximum age in seconds, 0 for no limit
+     */
+    public long getRequestMaxAgeSeconds(RequestPriority priority) {
+        return snapshot.getRequestMaxAgeSeconds(priority);
+    }
+    
+    /**
+     * Gets how long a request of a type has for all its attempts, counted from when it was submitted
+     * @param type The request type
+     * @return The deadline in seconds, 0 or less for none
+     */
+    public int getRequestDeadlineSeconds(RequestType type) {
+        return snapshot.getRequestDeadlineSeconds(type);
+    }
+    
+    /**
+     * Gets the lines a request of a type is answered with while the API is unavailable
+     * @param type The request type
+     * @return The fallback lines, empty to answer with the usual error message
+     */
+    public List<String> getFallbacks(RequestType type) {
+        return snapshot.getFallbacks(type);
+    }
+    
+    /**
+     * Gets how long join, death and achievement events are collected before one batched request is sent
+     * @return The batching window in milliseconds, 0 to disable batching
+     */
+    public long getBatchWindowMillis() {
+        return snapshot.getBatchWindowMillis();
+    }
+    
+    /**
+     * Gets the number of events after which a batch is sent before its window ends
+     * @return The maximum batch size
+     */
+    public int getBatchMaxEvents() {
+        return snapshot.getBatchMaxEvents();
+    }
+    
+    /**
+     * Checks if responses for a feature are streamed to players as they are generated
+     * @param feature The feature name
+     * @return true if streaming is enabled for the feature
+     */
+    public boolean isStreamingEnabled(String feature) {
+        return snapshot.isStreamingEnabled(feature);
+    }
+    
+    /**
+     * Gets the minimum length of a streamed chunk that ends at a sentence boundary
+     * @return The minimum chunk length in characters
+     */
+    public int getStreamingMinChunkChars() {
+        return snapshot.getStreamingMinChunkChars();
+    }
+    
+    /**
+     * Gets the length after which a streamed chunk is sent even without a sentence boundary
+     * @return The maximum chunk length in characters
+     */
+    public int getStreamingMaxChunkChars() {
+        return snapshot.getStreamingMaxChunkChars();
+    }
+    
+    /**
+     * Gets the maximum number of generated commands kept in the command cache
+     * @return The maximum number of entries, 0 to disable the cache
+     */
+    public int getCommandCacheMaxEntries() {
+        return snapshot.getCommandCacheMaxEntries();
+    }
+    
+    /**
+     * Gets how long a generated command stays in the command cache
+     * @return The time to live in seconds
+     */
+    public long getCommandCacheTtlSeconds() {
+        return snapshot.getCommandCacheTtlSeconds();
+    }
+    
+    /**
+     * Checks if near-duplicate /cmd and /chatgpt prompts are answered from the semantic cache
+     * @return true if the semantic cache is enabled
+     */
+    public boolean isSemanticCacheEnabled() {
+        return snapshot.isSemanticCacheEnabled();
+    }
+    
+    /**
+     * Gets the maximum number of responses kept in the semantic cache
+     * @return The maximum number of entries
+     */
+    public int getSemanticCacheMaxEntries() {
+        return snapshot.getSemanticCacheMaxEntries();
+    }
+    
+    /**
+     * Gets the minimum cosine similarity for a semantic cache hit
+     * @return The similarity threshold between 0 and 1
+     */
+    public double getSemanticCacheThreshold() {
+        return snapshot.getSemanticCacheThreshold();
+    }
+    
+    /**
+     * Gets how long a response stays in the semantic cache
+     * @return The time to live in seconds
+     */
+    public long getSemanticCacheTtlSeconds() {
+        return snapshot.getSemanticCacheTtlSeconds();
+    }
+    
+    /**
+     * Checks if chat history and cached responses are saved to disk
+     * @return true if persistence is enabled
+     */
+    public boolean isPersistenceEnabled() {
+        return snapshot.isPersistenceEnabled();
+    }
+    
+    /**
+     * Gets how often persisted records are forced to disk
+     * @return The flush interval in seconds
+     */
+    public int getPersistenceFlushSeconds() {
+        return snapshot.getPersistenceFlushSeconds();
+    }
+    
+    /**
+     * Gets the initial size of the persistent store file, which grows when its live records need more room
+     * @return The size in megabytes
+     */
+    public int getPersistenceSegmentMegabytes() {
+        return snapshot.getPersistenceSegmentMegabytes();
+    }
+    
+    /**
+     * Checks if the OpenMetrics scrape endpoint is served
+     * @return true if the endpoint is enabled
+     */
+    public boolean isMetricsEndpointEnabled() {
+        return snapshot.isMetricsEndpointEnabled();
+    }
+    
+    /**
+     * Gets the address the OpenMetrics endpoint listens on
+     * @return The bind address
+     */
+    public String getMetricsBindAddress() {
+        return snapshot.getMetricsBindAddress();
+    }
+    
+    /**
+     * Gets the port the OpenMetrics endpoint listens on
+     * @return The port
+     */
+    public int getMetricsPort() {
+        return snapshot.getMetricsPort();
+    }
+    
+    /**
+     * Checks if the plugin's main-thread time is measured
+     * @return true if the tick profiler is enabled
+     */
+    public boolean isProfilerEnabled() {
+        return snapshot.isProfilerEnabled();
+    }
+    
+    /**
+     * Gets how much of each 50 ms tick the plugin may use on the main thread before it is reported
+     * @return The budget in milliseconds
+     */
+    public double getProfilerTickBudgetMillis() {
+        return snapshot.getProfilerTickBudgetMillis();
+    }
+    
+    /**
+     * Checks if scheduled callbacks are moved to the next tick while the plugin is over its tick budget
+     * @return true if callbacks are deferred
+     */
+    public boolean isProfilerDeferEnabled() {
+        return snapshot.isProfilerDeferEnabled();
+    }
+    
+    /**
+     * Gets how many ticks a callback may be deferred before it runs regardless of the budget
+     * @return The number of ticks
+     */
+    public int getProfilerMaxDeferTicks() {
+        return snapshot.getProfilerMaxDeferTicks();
+    }
+    
+    /**
+     * Gets the minimum time between two over-budget warnings in the log
+     * @return The interval in seconds
+     */
+    public int getProfilerWarningIntervalSeconds() {
+        return snapshot.getProfilerWarningIntervalSeconds();
+    }
+    
+    /**
+     * Gets the most chat lines the plugin sends in one tick
+     * @return The number of lines
+     */
+    public int getDeliveryMaxMessagesPerTick() {
+        return snapshot.getDeliveryMaxMessagesPerTick();
+    }
+    
+    /**
+     * Gets the length a chat line is split at
+     * @return The number of characters, 0 or less to never split
+     */
+    public int getDeliveryMaxMessageChars() {
+        return snapshot.getDeliveryMaxMessageChars();
+    }
+    
+    /**
+     * Gets how long a chat line may wait to be sent before it is dropped
+     * @return The maximum age in seconds, 0 or less to never drop
+     */
+    public int getDeliveryMaxAgeSeconds() {
+        return snapshot.getDeliveryMaxAgeSeconds();
+    }
+    
+    /**
+     * Checks if streamed chunks of a reply that are waiting to be sent together are merged into one line
+     * @return true if chunks are merged
+     */
+    public boolean isDeliveryMergeEnabled() {
+        return snapshot.isDeliveryMergeEnabled();
+    }
+    
+    /**
+     * Gets the backoff before the first retry of a failed call, which doubles with every further retry
+     * @return The base backoff in milliseconds
+     */
+    public long getBackoffBaseMillis() {
+        return snapshot.getBackoffBaseMillis();
+    }
+    
+    /**
+     * Gets the longest backoff before a retry
+     * @return The maximum backoff in milliseconds
+     */
+    public long getBackoffMaxMillis() {
+        return snapshot.getBackoffMaxMillis();
+    }
+    
+    /**
+     * Checks if a call that takes longer than usual is raced by a second one
+     * @return true if calls are hedged
+     */
+    public boolean isHedgingEnabled() {
+        return snapshot.isHedgingEnabled();
+    }
+    
+    /**
+     * Gets the API latency percentile of a request type after which its call is hedged
+     * @return The percentile, from 0 to 100
+     */
+    public double getHedgingPercentile() {
+        return snapshot.getHedgingPercentile();
+    }
+    
+    /**
+     * Gets the shortest time a call runs alone before it is hedged
+     * @return The minimum hedge delay in milliseconds
+     */
+    public long getHedgingMinDelayMillis() {
+        return snapshot.getHedgingMinDelayMillis();
+    }
+    
+    /**
+     * Gets the number of answered calls of a request type needed before its calls are hedged
+     * @return The number of latency samples
+     */
+    public int getHedgingMinSamples() {
+        return snapshot.getHedgingMinSamples();
+    }
+    
+    /**
+     * Checks if calls to OpenAI stop while it keeps failing
+     * @return true if the circuit breaker is enabled
+     */
+    public boolean isCircuitBreakerEnabled() {
+        return snapshot.isCircuitBreakerEnabled();
+    }
+    
+    /**
+     * Gets the number of calls in a row that must fail for the circuit breaker to open
+     * @return The number of failures
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return snapshot.getCircuitBreakerFailureThreshold();
+    }
+    
+    /**
+     * Gets how long the circuit breaker stays open before it probes the API again
+     * @return The open time in seconds
+     */
+    public int getCircuitBreakerOpenSeconds() {
+        return snapshot.getCircuitBreakerOpenSeconds();
+    }
+    
+    /**
+     * Gets the configured template of a prompt
+     * @param key The prompt
+     * @return The template text, not yet validated
+     */
+    public String getPromptTemplate(PromptKey key) {
+        return snapshot.getPromptTemplate(key);
+    }
+    
+    /**
+     * Reloads the configuration from disk, swaps in a new snapshot and notifies the listeners
+     * @throws RuntimeException the first exception thrown by a listener, after all listeners were called
      */
     public void reloadConfig() {
         plugin.reloadConfig();
+        // reloadConfig replaces the plugin's configuration object, so the defaults go onto the new one
+        FileConfiguration config = plugin.getConfig();
+        applyDefaults(config);
+        
+        ConfigSnapshot previous = snapshot;
+        ConfigSnapshot current = new ConfigSnapshot(config);
+        snapshot = current;
         validateConfig();
+        
+        // A failing listener does not keep the others from applying the new settings
+        RuntimeException failure = null;
+        for (ConfigListener listener : listeners) {
+            try {
+                listener.onConfigChanged(previous, current);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 } 
\ No newline at end of file
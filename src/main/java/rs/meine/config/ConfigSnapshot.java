@@ -0,0 +1,982 @@
+package rs.meine.config;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import rs.meine.models.PromptKey;
+import rs.meine.models.RequestPriority;
+import rs.meine.models.RequestType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of every setting, read from the configuration once per load or reload.
+ * Reading a setting from a snapshot is a field read, where the configuration itself walks its section tree for every
+ * lookup. A snapshot never changes, so values read from the same snapshot are always consistent with each other.
+ */
+public final class ConfigSnapshot {
+    static final String DEFAULT_API_KEY = "";
+    static final String DEFAULT_BASE_URL = "";
+    static final String DEFAULT_MODEL = "gpt-5.6-luna";
+    static final double DEFAULT_TEMPERATURE = 1.0;
+    static final int DEFAULT_MAX_HISTORY = 5;
+    static final int DEFAULT_MAX_TOKENS = 150;
+    static final int DEFAULT_REQUESTS_PER_WINDOW = 10;
+    static final int DEFAULT_RATE_LIMIT_WINDOW_SECONDS = 60;
+    static final int DEFAULT_GLOBAL_REQUESTS_PER_WINDOW = 200;
+    static final int DEFAULT_CONNECTION_TIMEOUT = 10;
+    static final int DEFAULT_CONNECT_TIMEOUT = 10;
+    static final int DEFAULT_READ_TIMEOUT = 30;
+    static final int DEFAULT_WRITE_TIMEOUT = 30;
+    static final int DEFAULT_MAX_RETRIES = 2;
+    static final int DEFAULT_HTTP_MAX_IDLE_CONNECTIONS = 5;
+    static final int DEFAULT_HTTP_KEEP_ALIVE_SECONDS = 300;
+    static final int DEFAULT_HTTP_MAX_REQUESTS = 64;
+    static final int DEFAULT_HTTP_MAX_REQUESTS_PER_HOST = 32;
+    static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    static final int DEFAULT_MIN_IN_FLIGHT = 1;
+    static final int DEFAULT_QUEUE_CAPACITY = 32;
+    static final String DEFAULT_OVERFLOW_POLICY = "reject";
+    static final long DEFAULT_BATCH_WINDOW_MILLIS = 500;
+    static final int DEFAULT_BATCH_MAX_EVENTS = 10;
+    static final int DEFAULT_STREAMING_MIN_CHUNK_CHARS = 40;
+    static final int DEFAULT_STREAMING_MAX_CHUNK_CHARS = 200;
+    static final int DEFAULT_COMMAND_CACHE_MAX_ENTRIES = 256;
+    static final long DEFAULT_COMMAND_CACHE_TTL_SECONDS = 3600;
+    static final int DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES = 2048;
+    static final double DEFAULT_SEMANTIC_CACHE_THRESHOLD = 0.9;
+    static final long DEFAULT_SEMANTIC_CACHE_TTL_SECONDS = 3600;
+    static final int DEFAULT_CONTEXT_REFRESH_TICKS = 20;
+    static final int DEFAULT_CONTEXT_FULL_REFRESH_SECONDS = 60;
+    static final int DEFAULT_MAX_INPUT_TOKENS = 600;
+    static final int DEFAULT_PERSISTENCE_FLUSH_SECONDS = 5;
+    static final int DEFAULT_PERSISTENCE_SEGMENT_MB = 8;
+    static final int DEFAULT_INVENTORY_TOP_N = 8;
+    static final int DEFAULT_SUMMARY_REFRESH_SECONDS = 120;
+    static final List<String> DEFAULT_TRIGGER_NAMES = Collections.unmodifiableList(Arrays.asList("gpt", "chatgpt", "bot"));
+    static final List<String> DEFAULT_TRIGGER_PREFIXES = Collections.unmodifiableList(Arrays.asList("!ai", "!gpt"));
+    static final List<String> DEFAULT_TRIGGER_KEYWORDS = Collections.unmodifiableList(Arrays.asList(
+        "how do i", "how do you", "how to", "what is", "where is", "where do i", "can someone", "does anyone know",
+        "recipe", "craft", "enchant", "brew", "farm", "biome"));
+    static final double DEFAULT_TRIGGER_MIN_RELEVANCE = 0.6;
+    static final double DEFAULT_TRIGGER_SAMPLING = 1.0;
+    static final long DEFAULT_CHAT_DEBOUNCE_MILLIS = 1500;
+    static final long DEFAULT_CHAT_MAX_WAIT_MILLIS = 5000;
+    static final int DEFAULT_CHAT_AGGREGATION_MAX_MESSAGES = 8;
+    static final String DEFAULT_METRICS_BIND_ADDRESS = "127.0.0.1";
+    static final int DEFAULT_METRICS_PORT = 9464;
+    static final double DEFAULT_PROFILER_TICK_BUDGET_MILLIS = 2.5;
+    static final int DEFAULT_PROFILER_MAX_DEFER_TICKS = 10;
+    static final int DEFAULT_PROFILER_WARNING_INTERVAL_SECONDS = 60;
+    static final int DEFAULT_DELIVERY_MAX_MESSAGES_PER_TICK = 3;
+    static final int DEFAULT_DELIVERY_MAX_MESSAGE_CHARS = 256;
+    static final int DEFAULT_DELIVERY_MAX_AGE_SECONDS = 30;
+    static final long DEFAULT_BACKOFF_BASE_MILLIS = 500;
+    static final long DEFAULT_BACKOFF_MAX_MILLIS = 8000;
+    static final double DEFAULT_HEDGING_PERCENTILE = 95.0;
+    static final long DEFAULT_HEDGING_MIN_DELAY_MILLIS = 250;
+    static final int DEFAULT_HEDGING_MIN_SAMPLES = 100;
+    static final int DEFAULT_BREAKER_FAILURE_THRESHOLD = 5;
+    static final int DEFAULT_BREAKER_OPEN_SECONDS = 30;
+
+    private final String apiKey;
+    private final String baseUrl;
+    private final String model;
+    private final double temperature;
+    private final int maxTokens;
+    private final int maxHistory;
+    private final int contextRefreshTicks;
+    private final int contextFullRefreshSeconds;
+    private final int maxInputTokens;
+    private final int inventoryTopN;
+    private final int summaryRefreshSeconds;
+    private final boolean chatTriggersEnabled;
+    private final List<String> chatTriggerNames;
+    private final List<String> chatTriggerPrefixes;
+    private final List<String> chatTriggerKeywords;
+    private final double chatTriggerMinRelevance;
+    private final Map<String, Double> chatTriggerSampling;
+    private final boolean chatAggregationEnabled;
+    private final long chatDebounceMillis;
+    private final long chatMaxWaitMillis;
+    private final int chatAggregationMaxMessages;
+    private final int requestsPerWindow;
+    private final int globalRequestsPerWindow;
+    private final int rateLimitWindowSeconds;
+    private final int connectionTimeout;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int writeTimeout;
+    private final int maxRetries;
+    private final int httpMaxIdleConnections;
+    private final int httpKeepAliveSeconds;
+    private final int httpMaxRequests;
+    private final int httpMaxRequestsPerHost;
+    private final boolean http2Enabled;
+    private final int maxInFlightRequests;
+    private final boolean adaptiveLimitEnabled;
+    private final int minInFlightRequests;
+    private final int requestQueueCapacity;
+    private final String requestOverflowPolicy;
+    private final long batchWindowMillis;
+    private final int batchMaxEvents;
+    private final int streamingMinChunkChars;
+    private final int streamingMaxChunkChars;
+    private final int commandCacheMaxEntries;
+    private final long commandCacheTtlSeconds;
+    private final boolean semanticCacheEnabled;
+    private final int semanticCacheMaxEntries;
+    private final double semanticCacheThreshold;
+    private final long semanticCacheTtlSeconds;
+    private final boolean persistenceEnabled;
+    private final int persistenceFlushSeconds;
+    private final int persistenceSegmentMegabytes;
+    private final boolean metricsEndpointEnabled;
+    private final String metricsBindAddress;
+    private final int metricsPort;
+    private final boolean profilerEnabled;
+    private final double profilerTickBudgetMillis;
+    private final boolean profilerDeferEnabled;
+    private final int profilerMaxDeferTicks;
+    private final int profilerWarningIntervalSeconds;
+    private final int deliveryMaxMessagesPerTick;
+    private final int deliveryMaxMessageChars;
+    private final int deliveryMaxAgeSeconds;
+    private final boolean deliveryMergeEnabled;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final boolean hedgingEnabled;
+    private final double hedgingPercentile;
+    private final long hedgingMinDelayMillis;
+    private final int hedgingMinSamples;
+    private final boolean circuitBreakerEnabled;
+    private final int circuitBreakerFailureThreshold;
+    private final int circuitBreakerOpenSeconds;
+    private final Map<String, Boolean> features;
+    private final Map<String, Boolean> streaming;
+    private final Map<RequestPriority, Double> requestShares = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Long> requestMaxAgeSeconds = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestType, Integer> requestDeadlineSeconds = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, List<String>> fallbacks = new EnumMap<>(RequestType.class);
+    private final Map<PromptKey, String> promptTemplates = new EnumMap<>(PromptKey.class);
+
+    /**
+     * Reads every setting from a configuration
+     * @param config The configuration, with the defaults applied
+     */
+    ConfigSnapshot(FileConfiguration config) {
+        // Taken from the environment once here instead of on every request
+        String configuredKey = config.getString("openai.api_key", "");
+        if (configuredKey == null || configuredKey.isEmpty()) {
+            configuredKey = System.getenv("OPENAI_API_KEY");
+        }
+        this.apiKey = configuredKey != null ? configuredKey : "";
+
+        this.baseUrl = config.getString("openai.base_url", DEFAULT_BASE_URL).trim();
+        this.model = config.getString("openai.model", DEFAULT_MODEL);
+        this.temperature = config.getDouble("openai.temperature", DEFAULT_TEMPERATURE);
+        this.maxTokens = config.getInt("openai.max_tokens", DEFAULT_MAX_TOKENS);
+        this.maxHistory = config.getInt("chat.max_history", DEFAULT_MAX_HISTORY);
+        this.contextRefreshTicks = config.getInt("chat.context_refresh_ticks", DEFAULT_CONTEXT_REFRESH_TICKS);
+        this.contextFullRefreshSeconds = config.getInt("chat.context_full_refresh_seconds", DEFAULT_CONTEXT_FULL_REFRESH_SECONDS);
+        this.maxInputTokens = config.getInt("chat.max_input_tokens", DEFAULT_MAX_INPUT_TOKENS);
+        this.inventoryTopN = config.getInt("chat.inventory_top_n", DEFAULT_INVENTORY_TOP_N);
+        this.summaryRefreshSeconds = config.getInt("chat.summary_refresh_seconds", DEFAULT_SUMMARY_REFRESH_SECONDS);
+        this.chatTriggersEnabled = config.getBoolean("chat.triggers.enabled", true);
+        this.chatTriggerNames = readList(config, "chat.triggers.names");
+        this.chatTriggerPrefixes = readList(config, "chat.triggers.prefixes");
+        this.chatTriggerKeywords = readList(config, "chat.triggers.keywords");
+        this.chatTriggerMinRelevance = config.getDouble("chat.triggers.min_relevance", DEFAULT_TRIGGER_MIN_RELEVANCE);
+        this.chatTriggerSampling = readRatios(config, "chat.triggers.sampling");
+        this.chatAggregationEnabled = config.getBoolean("chat.aggregation.enabled", true);
+        this.chatDebounceMillis = config.getLong("chat.aggregation.debounce_ms", DEFAULT_CHAT_DEBOUNCE_MILLIS);
+        this.chatMaxWaitMillis = config.getLong("chat.aggregation.max_wait_ms", DEFAULT_CHAT_MAX_WAIT_MILLIS);
+        this.chatAggregationMaxMessages = config.getInt("chat.aggregation.max_messages", DEFAULT_CHAT_AGGREGATION_MAX_MESSAGES);
+        this.requestsPerWindow = config.getInt("rate_limiting.requests_per_window", DEFAULT_REQUESTS_PER_WINDOW);
+        this.globalRequestsPerWindow = config.getInt("rate_limiting.global_requests_per_window", DEFAULT_GLOBAL_REQUESTS_PER_WINDOW);
+        this.rateLimitWindowSeconds = config.getInt("rate_limiting.window_seconds", DEFAULT_RATE_LIMIT_WINDOW_SECONDS);
+        this.connectionTimeout = config.getInt("timeouts.connection", DEFAULT_CONNECTION_TIMEOUT);
+        this.connectTimeout = config.getInt("timeouts.connect", DEFAULT_CONNECT_TIMEOUT);
+        this.readTimeout = config.getInt("timeouts.read", DEFAULT_READ_TIMEOUT);
+        this.writeTimeout = config.getInt("timeouts.write", DEFAULT_WRITE_TIMEOUT);
+        this.maxRetries = config.getInt("openai.max_retries", DEFAULT_MAX_RETRIES);
+        this.httpMaxIdleConnections = config.getInt("http.max_idle_connections", DEFAULT_HTTP_MAX_IDLE_CONNECTIONS);
+        this.httpKeepAliveSeconds = config.getInt("http.keep_alive_seconds", DEFAULT_HTTP_KEEP_ALIVE_SECONDS);
+        this.httpMaxRequests = config.getInt("http.max_requests", DEFAULT_HTTP_MAX_REQUESTS);
+        this.httpMaxRequestsPerHost = config.getInt("http.max_requests_per_host", DEFAULT_HTTP_MAX_REQUESTS_PER_HOST);
+        this.http2Enabled = config.getBoolean("http.http2", true);
+        this.maxInFlightRequests = config.getInt("requests.max_in_flight", DEFAULT_MAX_IN_FLIGHT);
+        this.adaptiveLimitEnabled = config.getBoolean("requests.adaptive_limit", true);
+        this.minInFlightRequests = config.getInt("requests.min_in_flight", DEFAULT_MIN_IN_FLIGHT);
+        this.requestQueueCapacity = config.getInt("requests.queue_capacity", DEFAULT_QUEUE_CAPACITY);
+        this.requestOverflowPolicy = config.getString("requests.overflow_policy", DEFAULT_OVERFLOW_POLICY);
+        this.batchWindowMillis = config.getLong("batching.window_ms", DEFAULT_BATCH_WINDOW_MILLIS);
+        this.batchMaxEvents = config.getInt("batching.max_events", DEFAULT_BATCH_MAX_EVENTS);
+        this.streamingMinChunkChars = config.getInt("streaming.min_chunk_chars", DEFAULT_STREAMING_MIN_CHUNK_CHARS);
+        this.streamingMaxChunkChars = config.getInt("streaming.max_chunk_chars", DEFAULT_STREAMING_MAX_CHUNK_CHARS);
+        this.commandCacheMaxEntries = config.getInt("cache.commands.max_entries", DEFAULT_COMMAND_CACHE_MAX_ENTRIES);
+        this.commandCacheTtlSeconds = config.getLong("cache.commands.ttl_seconds", DEFAULT_COMMAND_CACHE_TTL_SECONDS);
+        this.semanticCacheEnabled = config.getBoolean("cache.semantic.enabled", false);
+        this.semanticCacheMaxEntries = config.getInt("cache.semantic.max_entries", DEFAULT_SEMANTIC_CACHE_MAX_ENTRIES);
+        this.semanticCacheThreshold = config.getDouble("cache.semantic.similarity_threshold", DEFAULT_SEMANTIC_CACHE_THRESHOLD);
+        this.semanticCacheTtlSeconds = config.getLong("cache.semantic.ttl_seconds", DEFAULT_SEMANTIC_CACHE_TTL_SECONDS);
+        this.persistenceEnabled = config.getBoolean("persistence.enabled", false);
+        this.persistenceFlushSeconds = config.getInt("persistence.flush_interval_seconds", DEFAULT_PERSISTENCE_FLUSH_SECONDS);
+        this.persistenceSegmentMegabytes = config.getInt("persistence.segment_size_mb", DEFAULT_PERSISTENCE_SEGMENT_MB);
+        this.metricsEndpointEnabled = config.getBoolean("metrics.enabled", false);
+        this.metricsBindAddress = config.getString("metrics.bind_address", DEFAULT_METRICS_BIND_ADDRESS).trim();
+        this.metricsPort = config.getInt("metrics.port", DEFAULT_METRICS_PORT);
+        this.profilerEnabled = config.getBoolean("profiler.enabled", true);
+        this.profilerTickBudgetMillis = config.getDouble("profiler.tick_budget_ms", DEFAULT_PROFILER_TICK_BUDGET_MILLIS);
+        this.profilerDeferEnabled = config.getBoolean("profiler.defer_over_budget", false);
+        this.profilerMaxDeferTicks = config.getInt("profiler.max_defer_ticks", DEFAULT_PROFILER_MAX_DEFER_TICKS);
+        this.profilerWarningIntervalSeconds = config.getInt("profiler.warning_interval_seconds", DEFAULT_PROFILER_WARNING_INTERVAL_SECONDS);
+        this.deliveryMaxMessagesPerTick = config.getInt("delivery.max_messages_per_tick", DEFAULT_DELIVERY_MAX_MESSAGES_PER_TICK);
+        this.deliveryMaxMessageChars = config.getInt("delivery.max_message_chars", DEFAULT_DELIVERY_MAX_MESSAGE_CHARS);
+        this.deliveryMaxAgeSeconds = config.getInt("delivery.max_age_seconds", DEFAULT_DELIVERY_MAX_AGE_SECONDS);
+        this.deliveryMergeEnabled = config.getBoolean("delivery.merge_chunks", true);
+        this.backoffBaseMillis = config.getLong("resilience.backoff_base_ms", DEFAULT_BACKOFF_BASE_MILLIS);
+        this.backoffMaxMillis = config.getLong("resilience.backoff_max_ms", DEFAULT_BACKOFF_MAX_MILLIS);
+        this.hedgingEnabled = config.getBoolean("resilience.hedging.enabled", false);
+        this.hedgingPercentile = config.getDouble("resilience.hedging.percentile", DEFAULT_HEDGING_PERCENTILE);
+        this.hedgingMinDelayMillis = config.getLong("resilience.hedging.min_delay_ms", DEFAULT_HEDGING_MIN_DELAY_MILLIS);
+        this.hedgingMinSamples = config.getInt("resilience.hedging.min_samples", DEFAULT_HEDGING_MIN_SAMPLES);
+        this.circuitBreakerEnabled = config.getBoolean("resilience.circuit_breaker.enabled", true);
+        this.circuitBreakerFailureThreshold = config.getInt("resilience.circuit_breaker.failure_threshold", DEFAULT_BREAKER_FAILURE_THRESHOLD);
+        this.circuitBreakerOpenSeconds = config.getInt("resilience.circuit_breaker.open_seconds", DEFAULT_BREAKER_OPEN_SECONDS);
+
+        this.features = readFlags(config, "features");
+        this.streaming = readFlags(config, "streaming");
+        for (RequestPriority priority : RequestPriority.values()) {
+            requestShares.put(priority,
+                config.getDouble("requests.shares." + priority.getConfigKey(), priority.getDefaultShare()));
+            requestMaxAgeSeconds.put(priority,
+                config.getLong("requests.max_age_seconds." + priority.getConfigKey(), priority.getDefaultMaxAgeSeconds()));
+        }
+        for (RequestType type : RequestType.values()) {
+            requestDeadlineSeconds.put(type,
+                config.getInt("resilience.deadlines." + type.getMetricName(), type.getDefaultDeadlineSeconds()));
+            fallbacks.put(type, readList(config, "resilience.fallbacks." + type.getMetricName()));
+        }
+        for (PromptKey key : PromptKey.values()) {
+            promptTemplates.put(key, config.getString("prompts." + key.getConfigKey(), key.getDefaultTemplate()));
+        }
+    }
+
+    /**
+     * Reads the boolean settings directly below a section
+     * @param config The configuration
+     * @param path The section's path
+     * @return The settings by key
+     */
+    private static Map<String, Boolean> readFlags(FileConfiguration config, String path) {
+        ConfigurationSection section = config.getConfigurationSection(path);
+        if (section == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Boolean> flags = new HashMap<>();
+        for (String key : section.getKeys(false)) {
+            Object value = section.get(key);
+            if (value instanceof Boolean) {
+                flags.put(key, (Boolean) value);
+            }
+        }
+        return Collections.unmodifiableMap(flags);
+    }
+
+    /**
+     * Reads a list of strings, leaving out blank entries
+     * @param config The configuration
+     * @param path The list's path
+     * @return The entries
+     */
+    private static List<String> readList(FileConfiguration config, String path) {
+        List<String> entries = new ArrayList<>();
+        for (String entry : config.getStringList(path)) {
+            if (entry != null && !entry.trim().isEmpty()) {
+                entries.add(entry.trim());
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Reads the numeric settings directly below a section
+     * @param config The configuration
+     * @param path The section's path
+     * @return The settings by key
+     */
+    private static Map<String, Double> readRatios(FileConfiguration config, String path) {
+        ConfigurationSection section = config.getConfigurationSection(path);
+        if (section == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Double> ratios = new HashMap<>();
+        for (String key : section.getKeys(false)) {
+            Object value = section.get(key);
+            if (value instanceof Number) {
+                ratios.put(key, ((Number) value).doubleValue());
+            }
+        }
+        return Collections.unmodifiableMap(ratios);
+    }
+
+    /**
+     * Gets the OpenAI API key, from the configuration or else the OPENAI_API_KEY environment variable
+     * @return The API key, or an empty string if neither is set
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Gets the base URL of the Chat Completions API, for proxies, compatible providers or a local mock server
+     * @return The base URL, or an empty string to use the official OpenAI endpoint
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Gets the OpenAI model to use
+     * @return The model name
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Gets the temperature for OpenAI requests
+     * @return The temperature value
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Gets the maximum number of tokens for OpenAI requests
+     * @return The maximum number of tokens
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Gets the maximum number of chat history messages to store per player
+     * @return The maximum history size
+     */
+    public int getMaxHistory() {
+        return maxHistory;
+    }
+
+    /**
+     * Gets how often stale player context is recaptured on the main thread
+     * @return The refresh period in ticks
+     */
+    public int getContextRefreshTicks() {
+        return contextRefreshTicks;
+    }
+
+    /**
+     * Gets how often every player's context is recaptured even if no event marked it stale
+     * @return The full refresh period in seconds
+     */
+    public int getContextFullRefreshSeconds() {
+        return contextFullRefreshSeconds;
+    }
+
+    /**
+     * Gets the input token budget of a chat request, covering the system prompt, history and the player's message
+     * @return The budget in tokens
+     */
+    public int getMaxInputTokens() {
+        return maxInputTokens;
+    }
+
+    /**
+     * Gets how many of the largest item stacks are listed in a player's inventory context
+     * @return The number of stacks, 0 for all of them
+     */
+    public int getInventoryTopN() {
+        return inventoryTopN;
+    }
+
+    /**
+     * Gets how often the summary of chat history that no longer fits the token budget may be regenerated
+     * @return The minimum interval in seconds
+     */
+    public int getSummaryRefreshSeconds() {
+        return summaryRefreshSeconds;
+    }
+
+    /**
+     * Checks if chat messages must trigger a reply, instead of every message being answered
+     * @return true if chat triggers are enabled
+     */
+    public boolean isChatTriggersEnabled() {
+        return chatTriggersEnabled;
+    }
+
+    /**
+     * Gets the names that address the bot when they appear as a word in a chat message
+     * @return The names
+     */
+    public List<String> getChatTriggerNames() {
+        return chatTriggerNames;
+    }
+
+    /**
+     * Gets the prefixes that address the bot when a chat message starts with them
+     * @return The prefixes
+     */
+    public List<String> getChatTriggerPrefixes() {
+        return chatTriggerPrefixes;
+    }
+
+    /**
+     * Gets the words and phrases that make a chat message more likely to deserve a reply
+     * @return The keywords
+     */
+    public List<String> getChatTriggerKeywords() {
+        return chatTriggerKeywords;
+    }
+
+    /**
+     * Gets the relevance a chat message that does not address the bot needs to be answered
+     * @return The minimum relevance from 0.0 to 1.0
+     */
+    public double getChatTriggerMinRelevance() {
+        return chatTriggerMinRelevance;
+    }
+
+    /**
+     * Gets the fraction of relevant chat messages answered in a world
+     * @param world The world's name
+     * @return The world's sampling ratio, or the default one if the world has none
+     */
+    public double getChatTriggerSampling(String world) {
+        Double ratio = chatTriggerSampling.get(world);
+        if (ratio == null) {
+            ratio = chatTriggerSampling.getOrDefault("default", DEFAULT_TRIGGER_SAMPLING);
+        }
+        return ratio;
+    }
+
+    /**
+     * Checks if the chat of a world is answered one burst at a time, instead of one reply per message
+     * @return true if chat aggregation is enabled
+     */
+    public boolean isChatAggregationEnabled() {
+        return chatAggregationEnabled;
+    }
+
+    /**
+     * Gets how long a world's chat must be quiet before its buffered messages are answered
+     * @return The debounce window in milliseconds
+     */
+    public long getChatDebounceMillis() {
+        return chatDebounceMillis;
+    }
+
+    /**
+     * Gets the longest a buffered chat message waits for its burst to end
+     * @return The maximum wait in milliseconds
+     */
+    public long getChatMaxWaitMillis() {
+        return chatMaxWaitMillis;
+    }
+
+    /**
+     * Gets the most chat messages answered by one reply; a burst this long is answered without waiting
+     * @return The maximum number of messages
+     */
+    public int getChatAggregationMaxMessages() {
+        return chatAggregationMaxMessages;
+    }
+
+    /**
+     * Gets the number of requests allowed per rate limit window
+     * @return The number of requests
+     */
+    public int getRequestsPerWindow() {
+        return requestsPerWindow;
+    }
+
+    /**
+     * Gets the number of requests the whole server may make per rate limit window
+     * @return The number of requests
+     */
+    public int getGlobalRequestsPerWindow() {
+        return globalRequestsPerWindow;
+    }
+
+    /**
+     * Gets the rate limit window size in seconds
+     * @return The window size in seconds
+     */
+    public int getRateLimitWindowSeconds() {
+        return rateLimitWindowSeconds;
+    }
+
+    /**
+     * Gets how long a whole request to the API may take
+     * @return The request timeout in seconds
+     */
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * Gets how long establishing a connection to the API may take
+     * @return The connect timeout in seconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Gets how long the API may stay silent while a response is read, including between streamed chunks
+     * @return The read timeout in seconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Gets how long sending a request body may stall
+     * @return The write timeout in seconds
+     */
+    public int getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * Gets how many times the client retries a request that failed with a connection error, 408, 409, 429 or 5xx
+     * @return The number of retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Gets how many idle connections to the API are kept open for reuse
+     * @return The number of connections
+     */
+    public int getHttpMaxIdleConnections() {
+        return httpMaxIdleConnections;
+    }
+
+    /**
+     * Gets how long an idle connection to the API is kept open
+     * @return The keep-alive time in seconds
+     */
+    public int getHttpKeepAliveSeconds() {
+        return httpKeepAliveSeconds;
+    }
+
+    /**
+     * Gets how many calls the HTTP client runs at once
+     * @return The number of calls
+     */
+    public int getHttpMaxRequests() {
+        return httpMaxRequests;
+    }
+
+    /**
+     * Gets how many calls the HTTP client runs at once against one host
+     * @return The number of calls
+     */
+    public int getHttpMaxRequestsPerHost() {
+        return httpMaxRequestsPerHost;
+    }
+
+    /**
+     * Checks if HTTP/2 is negotiated with HTTPS endpoints
+     * @return true if HTTP/2 is preferred
+     */
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    /**
+     * Gets the maximum number of OpenAI requests executing at the same time
+     * @return The in-flight limit
+     */
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    /**
+     * Checks if the in-flight limit adapts to OpenAI 429s, timeouts and latency
+     * @return true if the adaptive limit is enabled
+     */
+    public boolean isAdaptiveLimitEnabled() {
+        return adaptiveLimitEnabled;
+    }
+
+    /**
+     * Gets the smallest in-flight limit the adaptive limiter may shrink to
+     * @return The minimum in-flight limit
+     */
+    public int getMinInFlightRequests() {
+        return minInFlightRequests;
+    }
+
+    /**
+     * Gets the maximum number of OpenAI requests waiting for a free slot
+     * @return The queue capacity
+     */
+    public int getRequestQueueCapacity() {
+        return requestQueueCapacity;
+    }
+
+    /**
+     * Gets the policy applied when the request queue is full ("reject" or "drop_oldest")
+     * @return The overflow policy name
+     */
+    public String getRequestOverflowPolicy() {
+        return requestOverflowPolicy;
+    }
+
+    /**
+     * Gets how long join, death and achievement events are collected before one batched request is sent
+     * @return The batching window in milliseconds, 0 to disable batching
+     */
+    public long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+
+    /**
+     * Gets the number of events after which a batch is sent before its window ends
+     * @return The maximum batch size
+     */
+    public int getBatchMaxEvents() {
+        return batchMaxEvents;
+    }
+
+    /**
+     * Gets the minimum length of a streamed chunk that ends at a sentence boundary
+     * @return The minimum chunk length in characters
+     */
+    public int getStreamingMinChunkChars() {
+        return streamingMinChunkChars;
+    }
+
+    /**
+     * Gets the length after which a streamed chunk is sent even without a sentence boundary
+     * @return The maximum chunk length in characters
+     */
+    public int getStreamingMaxChunkChars() {
+        return streamingMaxChunkChars;
+    }
+
+    /**
+     * Gets the maximum number of generated commands kept in the command cache
+     * @return The maximum number of entries, 0 to disable the cache
+     */
+    public int getCommandCacheMaxEntries() {
+        return commandCacheMaxEntries;
+    }
+
+    /**
+     * Gets how long a generated command stays in the command cache
+     * @return The time to live in seconds
+     */
+    public long getCommandCacheTtlSeconds() {
+        return commandCacheTtlSeconds;
+    }
+
+    /**
+     * Checks if near-duplicate /cmd and /chatgpt prompts are answered from the semantic cache
+     * @return true if the semantic cache is enabled
+     */
+    public boolean isSemanticCacheEnabled() {
+        return semanticCacheEnabled;
+    }
+
+    /**
+     * Gets the maximum number of responses kept in the semantic cache
+     * @return The maximum number of entries
+     */
+    public int getSemanticCacheMaxEntries() {
+        return semanticCacheMaxEntries;
+    }
+
+    /**
+     * Gets the minimum cosine similarity for a semantic cache hit
+     * @return The similarity threshold between 0 and 1
+     */
+    public double getSemanticCacheThreshold() {
+        return semanticCacheThreshold;
+    }
+
+    /**
+     * Gets how long a response stays in the semantic cache
+     * @return The time to live in seconds
+     */
+    public long getSemanticCacheTtlSeconds() {
+        return semanticCacheTtlSeconds;
+    }
+
+    /**
+     * Checks if chat history and cached responses are saved to disk
+     * @return true if persistence is enabled
+     */
+    public boolean isPersistenceEnabled() {
+        return persistenceEnabled;
+    }
+
+    /**
+     * Gets how often persisted records are forced to disk
+     * @return The flush interval in seconds
+     */
+    public int getPersistenceFlushSeconds() {
+        return persistenceFlushSeconds;
+    }
+
+    /**
+     * Gets the initial size of the persistent store file, which grows when its live records need more room
+     * @return The size in megabytes
+     */
+    public int getPersistenceSegmentMegabytes() {
+        return persistenceSegmentMegabytes;
+    }
+
+    /**
+     * Checks if the OpenMetrics scrape endpoint is served
+     * @return true if the endpoint is enabled
+     */
+    public boolean isMetricsEndpointEnabled() {
+        return metricsEndpointEnabled;
+    }
+
+    /**
+     * Gets the address the OpenMetrics endpoint listens on
+     * @return The bind address
+     */
+    public String getMetricsBindAddress() {
+        return metricsBindAddress;
+    }
+
+    /**
+     * Gets the port the OpenMetrics endpoint listens on
+     * @return The port
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * Checks if the plugin's main-thread time is measured
+     * @return true if the tick profiler is enabled
+     */
+    public boolean isProfilerEnabled() {
+        return profilerEnabled;
+    }
+
+    /**
+     * Gets how much of each 50 ms tick the plugin may use on the main thread before it is reported
+     * @return The budget in milliseconds
+     */
+    public double getProfilerTickBudgetMillis() {
+        return profilerTickBudgetMillis;
+    }
+
+    /**
+     * Checks if scheduled callbacks are moved to the next tick while the plugin is over its tick budget
+     * @return true if callbacks are deferred
+     */
+    public boolean isProfilerDeferEnabled() {
+        return profilerDeferEnabled;
+    }
+
+    /**
+     * Gets how many ticks a callback may be deferred before it runs regardless of the budget
+     * @return The number of ticks
+     */
+    public int getProfilerMaxDeferTicks() {
+        return profilerMaxDeferTicks;
+    }
+
+    /**
+     * Gets the minimum time between two over-budget warnings in the log
+     * @return The interval in seconds
+     */
+    public int getProfilerWarningIntervalSeconds() {
+        return profilerWarningIntervalSeconds;
+    }
+
+    /**
+     * Gets the most chat lines the plugin sends in one tick
+     * @return The number of lines
+     */
+    public int getDeliveryMaxMessagesPerTick() {
+        return deliveryMaxMessagesPerTick;
+    }
+
+    /**
+     * Gets the length a chat line is split at
+     * @return The number of characters, 0 or less to never split
+     */
+    public int getDeliveryMaxMessageChars() {
+        return deliveryMaxMessageChars;
+    }
+
+    /**
+     * Gets how long a chat line may wait to be sent before it is dropped
+     * @return The maximum age in seconds, 0 or less to never drop
+     */
+    public int getDeliveryMaxAgeSeconds() {
+        return deliveryMaxAgeSeconds;
+    }
+
+    /**
+     * Checks if streamed chunks of a reply that are waiting to be sent together are merged into one line
+     * @return true if chunks are merged
+     */
+    public boolean isDeliveryMergeEnabled() {
+        return deliveryMergeEnabled;
+    }
+
+    /**
+     * Gets the backoff before the first retry of a failed call, which doubles with every further retry
+     * @return The base backoff in milliseconds
+     */
+    public long getBackoffBaseMillis() {
+        return backoffBaseMillis;
+    }
+
+    /**
+     * Gets the longest backoff before a retry
+     * @return The maximum backoff in milliseconds
+     */
+    public long getBackoffMaxMillis() {
+        return backoffMaxMillis;
+    }
+
+    /**
+     * Checks if a call that takes longer than usual is raced by a second one
+     * @return true if calls are hedged
+     */
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    /**
+     * Gets the API latency percentile of a request type after which its call is hedged
+     * @return The percentile, from 0 to 100
+     */
+    public double getHedgingPercentile() {
+        return hedgingPercentile;
+    }
+
+    /**
+     * Gets the shortest time a call runs alone before it is hedged
+     * @return The minimum hedge delay in milliseconds
+     */
+    public long getHedgingMinDelayMillis() {
+        return hedgingMinDelayMillis;
+    }
+
+    /**
+     * Gets the number of answered calls of a request type needed before its calls are hedged
+     * @return The number of latency samples
+     */
+    public int getHedgingMinSamples() {
+        return hedgingMinSamples;
+    }
+
+    /**
+     * Checks if calls to OpenAI stop while it keeps failing
+     * @return true if the circuit breaker is enabled
+     */
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    /**
+     * Gets the number of calls in a row that must fail for the circuit breaker to open
+     * @return The number of failures
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Gets how long the circuit breaker stays open before it probes the API again
+     * @return The open time in seconds
+     */
+    public int getCircuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds;
+    }
+
+    /**
+     * Checks if a feature is enabled
+     * @param feature The feature name
+     * @return true if the feature is enabled
+     */
+    public boolean isFeatureEnabled(String feature) {
+        return features.getOrDefault(feature, true);
+    }
+
+    /**
+     * Checks if responses for a feature are streamed to players as they are generated
+     * @param feature The feature name
+     * @return true if streaming is enabled for the feature
+     */
+    public boolean isStreamingEnabled(String feature) {
+        return streaming.getOrDefault(feature, false);
+    }
+
+    /**
+     * Gets the fraction of the in-flight slots a request class may occupy at once
+     * @param priority The request class
+     * @return The share between 0 and 1
+     */
+    public double getRequestShare(RequestPriority priority) {
+        return requestShares.get(priority);
+    }
+
+    /**
+     * Gets how long a request of a class may wait for a free slot before it is dropped
+     * @param priority The request class
+     * @return The maximum age in seconds, 0 for no limit
+     */
+    public long getRequestMaxAgeSeconds(RequestPriority priority) {
+        return requestMaxAgeSeconds.get(priority);
+    }
+
+    /**
+     * Gets how long a request of a type has for all its attempts, counted from when it was submitted
+     * @param type The request type
+     * @return The deadline in seconds, 0 or less for none
+     */
+    public int getRequestDeadlineSeconds(RequestType type) {
+        return requestDeadlineSeconds.get(type);
+    }
+
+    /**
+     * Gets the lines a request of a type is answered with while the API is unavailable
+     * @param type The request type
+     * @return The fallback lines, empty to answer with the usual error message
+     */
+    public List<String> getFallbacks(RequestType type) {
+        return fallbacks.get(type);
+    }
+
+    /**
+     * Gets the configured template of a prompt
+     * @param key The prompt
+     * @return The template text, not yet validated
+     */
+    public String getPromptTemplate(PromptKey key) {
+        return promptTemplates.get(key);
+    }
+}
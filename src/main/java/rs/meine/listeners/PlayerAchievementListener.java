@@ -5,16 +5,18 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerAdvancementDoneEvent;
-import org.bukkit.plugin.java.JavaPlugin;
-import rs.meine.services.OpenAIService;
+import rs.meine.models.Feature;
+import rs.meine.models.PromptKey;
+import rs.meine.services.CommentaryBatcher;
+import rs.meine.services.PromptTemplates;
 
 public class PlayerAchievementListener implements Listener {
-    private final JavaPlugin plugin;
-    private final OpenAIService openAIService;
+    private final CommentaryBatcher commentaryBatcher;
+    private final PromptTemplates promptTemplates;
 
-    public PlayerAchievementListener(JavaPlugin plugin, OpenAIService openAIService) {
-        this.plugin = plugin;
-        this.openAIService = openAIService;
+    public PlayerAchievementListener(CommentaryBatcher commentaryBatcher, PromptTemplates promptTemplates) {
+        this.commentaryBatcher = commentaryBatcher;
+        this.promptTemplates = promptTemplates;
     }
 
     @EventHandler
@@ -29,15 +31,8 @@ public class PlayerAchievementListener implements Listener {
         Player player = event.getPlayer();
         String achievementName = advancement.getDisplay().getTitle();
 
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            String message = openAIService.generateSimpleResponse(
-                "Generate a short congratulatory message celebrating " + player.getName() +
-                " for earning the achievement \"" + achievementName + "\" on the Minecraft server."
-            );
+        String prompt = promptTemplates.render(PromptKey.PLAYER_ACHIEVEMENT, player.getName(), achievementName);
 
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                plugin.getServer().broadcastMessage(message);
-            });
-        });
+        commentaryBatcher.submit(Feature.ACHIEVEMENT, prompt);
     }
 }
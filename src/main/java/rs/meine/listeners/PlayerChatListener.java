@@ -3,18 +3,21 @@ package rs.meine.listeners;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
-import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.services.ChatAggregator;
+import rs.meine.services.ChatTriggers;
 import rs.meine.services.OpenAIService;
 
 import java.util.UUID;
 
 public class PlayerChatListener implements Listener {
-    private final JavaPlugin plugin;
     private final OpenAIService openAIService;
+    private final ChatTriggers chatTriggers;
+    private final ChatAggregator chatAggregator;
     
-    public PlayerChatListener(JavaPlugin plugin, OpenAIService openAIService) {
-        this.plugin = plugin;
+    public PlayerChatListener(OpenAIService openAIService, ChatTriggers chatTriggers, ChatAggregator chatAggregator) {
         this.openAIService = openAIService;
+        this.chatTriggers = chatTriggers;
+        this.chatAggregator = chatAggregator;
     }
     
     @EventHandler
@@ -22,18 +25,18 @@ public class PlayerChatListener implements Listener {
         String playerMessage = event.getMessage();
         String playerName = event.getPlayer().getName();
         UUID playerUUID = event.getPlayer().getUniqueId();
+        String world = event.getPlayer().getWorld().getName();
         
         // Add player message to chat history
         openAIService.addMessageToHistory(playerUUID, playerName, playerMessage);
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            String response = openAIService.generatePlayerChatResponse(playerName, playerMessage, event);
-            
-            // Add AI response to chat history
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                openAIService.addMessageToHistory(playerUUID, "AI", response);
-                plugin.getServer().broadcastMessage(response);
-            });
-        });
+        // Only messages that address the bot are answered
+        String prompt = chatTriggers.filter(playerMessage, world);
+        if (prompt == null) {
+            return;
+        }
+        
+        // Answered together with the rest of the world's chat once it quiets down
+        chatAggregator.submit(world, playerName, playerUUID, prompt);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,91 @@
+package rs.meine.listeners;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import rs.meine.services.PlayerContextService;
+
+/**
+ * Marks cached player context as stale when the player's surroundings or inventory change
+ */
+public class PlayerContextListener implements Listener {
+    private final PlayerContextService contextService;
+
+    /**
+     * Creates a new PlayerContextListener
+     * @param contextService The player context service
+     */
+    public PlayerContextListener(PlayerContextService contextService) {
+        this.contextService = contextService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        contextService.capture(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        contextService.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+
+        // Biomes are stored per 4x4x4 block cell, so smaller moves cannot change the biome
+        if (to == null || ((from.getBlockX() >> 2) == (to.getBlockX() >> 2)
+                && (from.getBlockY() >> 2) == (to.getBlockY() >> 2)
+                && (from.getBlockZ() >> 2) == (to.getBlockZ() >> 2))) {
+            return;
+        }
+
+        contextService.markDirty(event.getPlayer().getUniqueId(), PlayerContextService.DIRTY_LOCATION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        contextService.markDirty(event.getPlayer().getUniqueId(), PlayerContextService.DIRTY_LOCATION);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        contextService.markDirty(event.getPlayer().getUniqueId(), PlayerContextService.DIRTY_ALL);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getPlayer() instanceof Player player) {
+            contextService.markDirty(player.getUniqueId(), PlayerContextService.DIRTY_INVENTORY);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityPickupItem(EntityPickupItemEvent event) {
+        if (event.getEntity() instanceof Player player) {
+            contextService.markDirty(player.getUniqueId(), PlayerContextService.DIRTY_INVENTORY);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerDropItem(PlayerDropItemEvent event) {
+        contextService.markDirty(event.getPlayer().getUniqueId(), PlayerContextService.DIRTY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerItemConsume(PlayerItemConsumeEvent event) {
+        contextService.markDirty(event.getPlayer().getUniqueId(), PlayerContextService.DIRTY_INVENTORY);
+    }
+}
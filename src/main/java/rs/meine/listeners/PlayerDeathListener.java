@@ -4,16 +4,18 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.PlayerDeathEvent;
-import org.bukkit.plugin.java.JavaPlugin;
-import rs.meine.services.OpenAIService;
+import rs.meine.models.Feature;
+import rs.meine.models.PromptKey;
+import rs.meine.services.CommentaryBatcher;
+import rs.meine.services.PromptTemplates;
 
 public class PlayerDeathListener implements Listener {
-    private final JavaPlugin plugin;
-    private final OpenAIService openAIService;
+    private final CommentaryBatcher commentaryBatcher;
+    private final PromptTemplates promptTemplates;
     
-    public PlayerDeathListener(JavaPlugin plugin, OpenAIService openAIService) {
-        this.plugin = plugin;
-        this.openAIService = openAIService;
+    public PlayerDeathListener(CommentaryBatcher commentaryBatcher, PromptTemplates promptTemplates) {
+        this.commentaryBatcher = commentaryBatcher;
+        this.promptTemplates = promptTemplates;
     }
     
     @EventHandler
@@ -22,16 +24,8 @@ public class PlayerDeathListener implements Listener {
         Player player = event.getEntity();
         int playerLevel = player.getLevel();
         
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            String message = openAIService.generateSimpleResponse(
-                "Generate a funny short message about the death of " + player.getName() + 
-                " on the Minecraft server. Player died because " + deathMessage + 
-                ". Player was at level " + playerLevel + "."
-            );
-            
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                plugin.getServer().broadcastMessage(message);
-            });
-        });
+        String prompt = promptTemplates.render(PromptKey.PLAYER_DEATH, player.getName(), deathMessage, playerLevel);
+        
+        commentaryBatcher.submit(Feature.DEATH, prompt);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,27 @@
+package rs.meine.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import rs.meine.services.OpenAIService;
+
+/**
+ * Restores a player's persisted chat history when they join
+ */
+public class PlayerHistoryListener implements Listener {
+    private final OpenAIService openAIService;
+
+    /**
+     * Creates a new PlayerHistoryListener
+     * @param openAIService The OpenAI service
+     */
+    public PlayerHistoryListener(OpenAIService openAIService) {
+        this.openAIService = openAIService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        openAIService.loadChatHistory(event.getPlayer().getUniqueId());
+    }
+}
@@ -1,30 +1,44 @@
 package rs.meine.listeners;
 
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.plugin.java.JavaPlugin;
-import rs.meine.services.OpenAIService;
+import org.bukkit.event.player.PlayerQuitEvent;
+import rs.meine.models.Feature;
+import rs.meine.models.PromptKey;
+import rs.meine.services.CommentaryBatcher;
+import rs.meine.services.PromptTemplates;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PlayerJoinListener implements Listener {
-    private final JavaPlugin plugin;
-    private final OpenAIService openAIService;
+    private final CommentaryBatcher commentaryBatcher;
+    private final PromptTemplates promptTemplates;
+    // Players who joined and have not quit, kept on the main thread for checks made on request threads
+    private final Set<UUID> onlinePlayers = ConcurrentHashMap.newKeySet();
     
-    public PlayerJoinListener(JavaPlugin plugin, OpenAIService openAIService) {
-        this.plugin = plugin;
-        this.openAIService = openAIService;
+    public PlayerJoinListener(CommentaryBatcher commentaryBatcher, PromptTemplates promptTemplates) {
+        this.commentaryBatcher = commentaryBatcher;
+        this.promptTemplates = promptTemplates;
     }
     
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            String message = openAIService.generateSimpleResponse(
-                "Generate a short greeting of the player " + event.getPlayer().getName() + " on the Minecraft server."
-            );
-            
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                plugin.getServer().broadcastMessage(message);
-            });
-        });
+        Player player = event.getPlayer();
+        UUID playerUUID = player.getUniqueId();
+        String prompt = promptTemplates.render(PromptKey.PLAYER_JOIN, player.getName());
+        onlinePlayers.add(playerUUID);
+        
+        // Greeting someone who has already left is pointless, so drop it if the request is still waiting by then
+        commentaryBatcher.submit(Feature.JOIN, prompt, () -> onlinePlayers.contains(playerUUID));
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        onlinePlayers.remove(event.getPlayer().getUniqueId());
     }
 } 
\ No newline at end of file
@@ -32,8 +32,8 @@ public class PlayerQuitListener implements Listener {
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         
-        // Clean up chat history and rate limit info
-        openAIService.clearChatHistory(player.getUniqueId());
+        // Clean up chat history and rate limit info; persisted history stays on disk for the next join
+        openAIService.unloadChatHistory(player.getUniqueId());
         openAIService.resetRateLimit(player.getUniqueId());
         
         plugin.getLogger().fine("Cleaned up resources for player: " + player.getName());
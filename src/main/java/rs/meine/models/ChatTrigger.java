@@ -0,0 +1,43 @@
+package rs.meine.models;
+
+/**
+ * Why a chat message was or was not answered
+ */
+public enum ChatTrigger {
+    /** The message started with a trigger prefix */
+    PREFIX("prefix", true),
+    /** The message mentioned one of the bot's names */
+    MENTION("mention", true),
+    /** The message looked like a question worth answering and was sampled for its world */
+    RELEVANT("relevant", true),
+    /** Chat triggers are disabled, so every message is answered */
+    UNFILTERED("unfiltered", true),
+    /** The message looked like a question worth answering but was not sampled for its world */
+    SAMPLED_OUT("sampled_out", false),
+    /** The message did not address the bot */
+    IGNORED("ignored", false);
+
+    private final String metricName;
+    private final boolean answered;
+
+    ChatTrigger(String metricName, boolean answered) {
+        this.metricName = metricName;
+        this.answered = answered;
+    }
+
+    /**
+     * Gets the name this outcome is reported under
+     * @return The metric name
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * Checks if messages with this outcome are answered
+     * @return true if the message is sent to OpenAI
+     */
+    public boolean isAnswered() {
+        return answered;
+    }
+}
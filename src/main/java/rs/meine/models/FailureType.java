@@ -0,0 +1,43 @@
+package rs.meine.models;
+
+/**
+ * Why a request to OpenAI did not produce an answer
+ */
+public enum FailureType {
+    /** The connection or the response timed out */
+    TIMEOUT("timeout", "timeout"),
+    /** OpenAI answered 429 Too Many Requests */
+    RATE_LIMITED("rate_limited", "429"),
+    /** OpenAI answered with a 5xx status */
+    SERVER_ERROR("server_error", "5xx"),
+    /** The response could not be parsed or used */
+    PARSE("parse", "parse"),
+    /** The request never reached OpenAI: rate limited locally, rejected by a full queue, shed, expired or cut off by the circuit breaker */
+    REJECTED("rejected", "rejected"),
+    /** Anything else */
+    OTHER("other", "other");
+
+    private final String metricName;
+    private final String label;
+
+    FailureType(String metricName, String label) {
+        this.metricName = metricName;
+        this.label = label;
+    }
+
+    /**
+     * Gets the name this failure is reported under
+     * @return The metric name
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * Gets the short label shown in chat
+     * @return The label
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,44 @@
+package rs.meine.models;
+
+/**
+ * The plugin features that send requests to OpenAI
+ */
+public enum Feature {
+    JOIN("player_join", RequestPriority.GREETING, RequestType.JOIN),
+    DEATH("player_death", RequestPriority.EVENT, RequestType.DEATH),
+    ACHIEVEMENT("player_achievement", RequestPriority.EVENT, RequestType.ACHIEVEMENT);
+
+    private final String configKey;
+    private final RequestPriority priority;
+    private final RequestType requestType;
+
+    Feature(String configKey, RequestPriority priority, RequestType requestType) {
+        this.configKey = configKey;
+        this.priority = priority;
+        this.requestType = requestType;
+    }
+
+    /**
+     * Gets the key of this feature below "features." in config.yml
+     * @return The configuration key
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    /**
+     * Gets the scheduling class of this feature's requests
+     * @return The request priority
+     */
+    public RequestPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the type this feature's requests are reported under
+     * @return The request type
+     */
+    public RequestType getRequestType() {
+        return requestType;
+    }
+}
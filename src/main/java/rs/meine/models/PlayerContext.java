@@ -0,0 +1,50 @@
+package rs.meine.models;
+
+/**
+ * Immutable snapshot of a player's surroundings, captured on the main thread and rendered once for prompts
+ */
+public class PlayerContext {
+    private final String worldName;
+    private final String biome;
+    private final String inventorySummary;
+    private final String promptText;
+    
+    /**
+     * Creates a new player context
+     * @param worldName The name of the player's world
+     * @param biome The biome the player is in
+     * @param inventorySummary A summary of the player's inventory
+     * @param promptText The context rendered for the system prompt
+     */
+    public PlayerContext(String worldName, String biome, String inventorySummary, String promptText) {
+        this.worldName = worldName;
+        this.biome = biome;
+        this.inventorySummary = inventorySummary;
+        this.promptText = promptText;
+    }
+    
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    public String getBiome() {
+        return biome;
+    }
+    
+    public String getInventorySummary() {
+        return inventorySummary;
+    }
+    
+    /**
+     * Gets the context rendered for the system prompt
+     * @return The prompt text
+     */
+    public String getPromptText() {
+        return promptText;
+    }
+    
+    @Override
+    public String toString() {
+        return promptText;
+    }
+}
@@ -0,0 +1,86 @@
+package rs.meine.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The prompts that can be replaced in the prompts section of the configuration, with the placeholders each may use
+ */
+public enum PromptKey {
+    /** The event prompt of a join greeting */
+    PLAYER_JOIN("player_join",
+        "Generate a short greeting of the player {player} on the Minecraft server.",
+        "player"),
+    /** The event prompt of death commentary */
+    PLAYER_DEATH("player_death",
+        "Generate a funny short message about the death of {player} on the Minecraft server. " +
+        "Player died because {cause}. Player was at level {level}.",
+        "player", "cause", "level"),
+    /** The event prompt of achievement commentary */
+    PLAYER_ACHIEVEMENT("player_achievement",
+        "Generate a short congratulatory message celebrating {player} for earning the achievement " +
+        "\"{achievement}\" on the Minecraft server.",
+        "player", "achievement"),
+    /** The system prompt of chat replies; history is trimmed to fit whatever the rest leaves of the input budget */
+    PLAYER_CHAT("player_chat",
+        "You are a helpful AI assistant inside a Minecraft server. You're conversing with {player}. {context} " +
+        "Recent conversation: {history} Be concise, funny, and helpful.",
+        "player", "context", "history"),
+    /** The system prompt of one reply to a burst of chat messages in a world, which follow as the user message */
+    WORLD_CHAT("world_chat",
+        "You are a helpful AI assistant inside a Minecraft server, chatting with the players in the world {world}. " +
+        "Several players spoke since your last reply; their messages follow, one per line. " +
+        "Answer them in a single short reply, addressing players by name where it helps. Be concise, funny, and helpful.",
+        "world"),
+    /** The system prompt of /cmd */
+    COMMAND_GENERATOR("command_generator",
+        "You are a Minecraft command generator. Convert natural language descriptions into valid Minecraft commands. " +
+        "Only output the exact command to run, nothing else. " +
+        "Make sure to format commands properly with appropriate syntax, including proper use of selectors (@p, @a, @e, etc), " +
+        "coordinates, and proper escaping of text for JSON components. " +
+        "If the request seems ambiguous, generate the most reasonable command that seems to match the intent. " +
+        "Do not include any explanation, just output the command. " +
+        "Always start commands with '/'. " +
+        "Examples: " +
+        "User: give me a diamond sword with sharpness 5 named Excalibur " +
+        "Output: /give @p diamond_sword{display:{Name:'{\"text\":\"Excalibur\"}'},Enchantments:[{id:\"minecraft:sharpness\",lvl:5}]} 1 " +
+        "User: teleport me to coordinates 100 64 -200 " +
+        "Output: /tp @p 100 64 -200 " +
+        "User: kill all zombies in a 50 block radius " +
+        "Output: /kill @e[type=zombie,distance=..50]");
+
+    private final String configKey;
+    private final String defaultTemplate;
+    private final List<String> placeholders;
+
+    PromptKey(String configKey, String defaultTemplate, String... placeholders) {
+        this.configKey = configKey;
+        this.defaultTemplate = defaultTemplate;
+        this.placeholders = Collections.unmodifiableList(Arrays.asList(placeholders));
+    }
+
+    /**
+     * Gets the key of this prompt below prompts in the configuration
+     * @return The config key
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    /**
+     * Gets the template used when none is configured or the configured one is invalid
+     * @return The default template
+     */
+    public String getDefaultTemplate() {
+        return defaultTemplate;
+    }
+
+    /**
+     * Gets the names of the placeholders the template may use, in the order their values are passed when rendering
+     * @return The placeholder names
+     */
+    public List<String> getPlaceholders() {
+        return placeholders;
+    }
+}
@@ -0,0 +1,51 @@
+package rs.meine.models;
+
+/**
+ * Scheduling classes for OpenAI requests, from most to least urgent
+ */
+public enum RequestPriority {
+    /** Commands a player typed and is waiting for (/cmd, /chatgpt) */
+    COMMAND("command", 1.0, 0),
+    /** Replies to players chatting */
+    CHAT("chat", 0.75, 0),
+    /** Death and achievement commentary */
+    EVENT("event", 0.5, 30),
+    /** Join greetings */
+    GREETING("greeting", 0.25, 15),
+    /** Housekeeping nobody is waiting for, such as summarizing old chat history */
+    BACKGROUND("background", 0.25, 60);
+
+    private final String configKey;
+    private final double defaultShare;
+    private final int defaultMaxAgeSeconds;
+
+    RequestPriority(String configKey, double defaultShare, int defaultMaxAgeSeconds) {
+        this.configKey = configKey;
+        this.defaultShare = defaultShare;
+        this.defaultMaxAgeSeconds = defaultMaxAgeSeconds;
+    }
+
+    /**
+     * Gets the key of this class in the requests.shares and requests.max_age_seconds config sections
+     * @return The configuration key
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    /**
+     * Gets the default fraction of request slots this class may occupy
+     * @return The default share between 0 and 1
+     */
+    public double getDefaultShare() {
+        return defaultShare;
+    }
+
+    /**
+     * Gets the default age after which a queued request of this class is dropped
+     * @return The default maximum age in seconds, 0 for no limit
+     */
+    public int getDefaultMaxAgeSeconds() {
+        return defaultMaxAgeSeconds;
+    }
+}
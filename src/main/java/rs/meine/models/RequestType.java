@@ -0,0 +1,59 @@
+package rs.meine.models;
+
+import java.util.List;
+
+/**
+ * What a request to OpenAI is for, as broken down in the metrics and the resilience settings
+ */
+public enum RequestType {
+    /** Join greetings */
+    JOIN("join", 15, List.of("Welcome to the server!", "Good to see you here!")),
+    /** Death commentary */
+    DEATH("death", 20, List.of("Ouch. That looked like it hurt.", "Respawn, regroup, try again!")),
+    /** Achievement commentary */
+    ACHIEVEMENT("achievement", 20, List.of("Nicely done!", "Well played, that one took some work!")),
+    /** Replies to players chatting */
+    CHAT("chat", 20, List.of(
+        "My head is a bit foggy right now. Ask me again in a minute!",
+        "I can't reach my thoughts at the moment. Try me again shortly.")),
+    /** Minecraft commands generated with /cmd */
+    COMMAND("command", 20, List.of("The AI is unavailable right now. Please try again in a minute.")),
+    /** Answers to /chatgpt prompts */
+    SIMPLE("simple", 30, List.of("The AI is unavailable right now. Please try again in a minute.")),
+    /** Summaries of old chat history */
+    SUMMARY("summary", 60, List.of());
+
+    private final String metricName;
+    private final int defaultDeadlineSeconds;
+    private final List<String> defaultFallbacks;
+
+    RequestType(String metricName, int defaultDeadlineSeconds, List<String> defaultFallbacks) {
+        this.metricName = metricName;
+        this.defaultDeadlineSeconds = defaultDeadlineSeconds;
+        this.defaultFallbacks = defaultFallbacks;
+    }
+
+    /**
+     * Gets the name this type is reported under, which is also its key in the resilience config sections
+     * @return The metric name
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /**
+     * Gets the default time a request of this type has for all its attempts, counted from when it was submitted
+     * @return The default deadline in seconds, 0 for none
+     */
+    public int getDefaultDeadlineSeconds() {
+        return defaultDeadlineSeconds;
+    }
+
+    /**
+     * Gets the default lines a request of this type is answered with while the API is unavailable
+     * @return The default fallback lines, empty for none
+     */
+    public List<String> getDefaultFallbacks() {
+        return defaultFallbacks;
+    }
+}
@@ -0,0 +1,158 @@
+package rs.meine.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive cap on the number of OpenAI calls in flight (additive increase, multiplicative decrease).
+ * The cap halves when OpenAI answers 429 or a call times out, pauses all calls for any Retry-After
+ * period the API asks for, and grows back by roughly one slot per round trip once latency is back
+ * within twice the best latency seen recently.
+ * The limiter never blocks: the request engine only hands a request to a worker once it got a slot, and leaves it
+ * queued otherwise, so waiting for a slot keeps following the engine's priorities.
+ */
+public class AdaptiveLimiter {
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double HEALTHY_LATENCY_FACTOR = 2.0;
+
+    private volatile int minLimit;
+    private volatile int maxLimit;
+    private volatile boolean enabled;
+    private volatile Runnable capacityListener;
+
+    // Guarded by this
+    private double limit;
+    private int inFlight = 0;
+    private long pausedUntilNanos = System.nanoTime();
+    private double baselineLatencyNanos = 0;
+
+    /**
+     * Creates a new AdaptiveLimiter starting halfway between its bounds
+     * @param minLimit The smallest cap the limiter may shrink to
+     * @param maxLimit The largest cap the limiter may grow to
+     * @param enabled false to only enforce the maximum
+     */
+    public AdaptiveLimiter(int minLimit, int maxLimit, boolean enabled) {
+        configure(minLimit, maxLimit, enabled);
+        this.limit = Math.max(this.minLimit, this.maxLimit / 2.0);
+    }
+
+    /**
+     * Sets who to tell when a slot may have become free, outside of the limiter's lock
+     * @param capacityListener Called after a slot was released or the cap was raised; may be null
+     */
+    public void setCapacityListener(Runnable capacityListener) {
+        this.capacityListener = capacityListener;
+    }
+
+    /**
+     * Applies new bounds, clamping the current cap into them
+     * @param minLimit The smallest cap the limiter may shrink to
+     * @param maxLimit The largest cap the limiter may grow to
+     * @param enabled false to only enforce the maximum
+     */
+    public void configure(int minLimit, int maxLimit, boolean enabled) {
+        synchronized (this) {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.enabled = enabled;
+            this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, limit));
+        }
+        notifyCapacity();
+    }
+
+    /**
+     * Takes a slot under the current cap if one is free right away
+     * @return true if a slot was taken; it must be given back with {@link #release()}
+     */
+    public synchronized boolean tryAcquire() {
+        if (pausedUntilNanos - System.nanoTime() > 0 || inFlight >= getEffectiveLimit()) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Gives back a slot taken with {@link #tryAcquire()}
+     */
+    public void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        notifyCapacity();
+    }
+
+    /**
+     * Adapts the cap to the latency of a successful call
+     * @param latencyNanos How long the call took
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            // Let the baseline drift upwards slowly so a permanently slower API is not treated as overload forever
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) * 0.01;
+        }
+
+        if (latencyNanos <= baselineLatencyNanos * HEALTHY_LATENCY_FACTOR) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Shrinks the cap after the API signalled overload (429, timeout or 5xx)
+     * @param retryAfterNanos How long the API asked us to wait, or 0 if it did not say
+     */
+    public synchronized void onOverload(long retryAfterNanos) {
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+
+        if (retryAfterNanos > 0) {
+            long until = System.nanoTime() + retryAfterNanos;
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+    }
+
+    /**
+     * Gets the current cap on calls in flight
+     * @return The cap
+     */
+    public synchronized int getEffectiveLimit() {
+        return enabled ? (int) limit : maxLimit;
+    }
+
+    /**
+     * Gets the number of calls in flight
+     * @return The number of calls
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets how much longer calls are paused because of a Retry-After header
+     * @return The remaining pause in milliseconds, or 0 if calls are not paused
+     */
+    public long getRemainingPauseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(getRemainingPauseNanos());
+    }
+
+    /**
+     * Gets how much longer calls are paused because of a Retry-After header
+     * @return The remaining pause in nanoseconds, or 0 if calls are not paused
+     */
+    public synchronized long getRemainingPauseNanos() {
+        return Math.max(0, pausedUntilNanos - System.nanoTime());
+    }
+
+    /**
+     * Tells the capacity listener, if any, that a slot may have become free
+     */
+    private void notifyCapacity() {
+        Runnable listener = capacityListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
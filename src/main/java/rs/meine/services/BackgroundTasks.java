@@ -0,0 +1,62 @@
+package rs.meine.services;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Threads and tasks for the plugin's background work.
+ * Every thread is a daemon, so work still running never keeps a stopping server alive, and is named after the plugin
+ * and its purpose so it can be told apart in thread dumps.
+ */
+public final class BackgroundTasks {
+    private static final String THREAD_PREFIX = "MinecraftGPTCommenter-";
+
+    private BackgroundTasks() {
+    }
+
+    /**
+     * Creates a factory of daemon threads that all share one name, for single-threaded executors
+     * @param purpose What the threads do, appended to the plugin's name
+     * @return The thread factory
+     */
+    public static ThreadFactory threads(String purpose) {
+        String name = THREAD_PREFIX + purpose;
+        return runnable -> daemon(runnable, name);
+    }
+
+    /**
+     * Creates a factory of daemon threads numbered from 1, for pools
+     * @param purpose What the threads do, appended to the plugin's name
+     * @return The thread factory
+     */
+    public static ThreadFactory numberedThreads(String purpose) {
+        String name = THREAD_PREFIX + purpose + "-";
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> daemon(runnable, name + counter.incrementAndGet());
+    }
+
+    /**
+     * Wraps a scheduled task so its failures are logged; an executor would otherwise keep them in a future nobody reads
+     * @param logger The logger to report failures on
+     * @param action What the task does, completing "Error ..." in the log message
+     * @param task The task
+     * @return The wrapped task
+     */
+    public static Runnable logFailures(Logger logger, String action, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error " + action, e);
+            }
+        };
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,327 @@
+package rs.meine.services;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.config.ConfigManager;
+import rs.meine.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Answers the chat of each world one burst at a time.
+ * Messages that get a reply are buffered per world until the world's chat has been quiet for the debounce window, the
+ * first of them has waited the maximum wait, or enough of them arrived, and are then answered in one request: a single
+ * message through the usual per-player chat request, several as one transcript.
+ * A world has at most one reply in flight. A reply still queued when the next flush comes is superseded: it is dropped
+ * before it is sent, and the new reply answers its messages too. A reply whose call already started is never
+ * superseded, as that would waste the call and cut a streamed reply off mid-sentence; messages arriving meanwhile wait,
+ * and are answered by the next reply once it finished. Replies therefore come out in order and every message is
+ * answered once, except that at most the message limit waits per world: older waiting messages are dropped and
+ * counted in the metrics.
+ */
+public class ChatAggregator {
+    private final JavaPlugin plugin;
+    private final OpenAIService openAIService;
+    private final MetricsService metricsService;
+    private final ConfigManager configManager;
+    private final ChatDelivery chatDelivery;
+    private final Logger logger;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new ChatAggregator
+     * @param plugin The plugin instance
+     * @param openAIService The OpenAI service
+     * @param metricsService The metrics service to count combined and superseded replies on
+     * @param configManager The configuration manager
+     * @param chatDelivery The queue to broadcast replies through
+     */
+    public ChatAggregator(JavaPlugin plugin, OpenAIService openAIService, MetricsService metricsService,
+                          ConfigManager configManager, ChatDelivery chatDelivery) {
+        this.plugin = plugin;
+        this.openAIService = openAIService;
+        this.metricsService = metricsService;
+        this.configManager = configManager;
+        this.chatDelivery = chatDelivery;
+        this.logger = plugin.getLogger();
+        this.timer = new ScheduledThreadPoolExecutor(1, BackgroundTasks.threads("Conversations"));
+        // Every message pushes its world's flush back, so cancelled flushes are frequent and must not pile up
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Queues a chat message for its world's next reply
+     * @param world The name of the player's world
+     * @param playerName The name of the player
+     * @param playerUUID The UUID of the player
+     * @param message The message to answer
+     */
+    public void submit(String world, String playerName, UUID playerUUID, String message) {
+        if (!configManager.isChatAggregationEnabled()) {
+            sendDirect(playerName, playerUUID, message);
+            return;
+        }
+
+        int maxMessages = Math.max(1, configManager.getChatAggregationMaxMessages());
+        long debounceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, configManager.getChatDebounceMillis()));
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, configManager.getChatMaxWaitMillis()));
+        Conversation conversation = conversations.computeIfAbsent(world, Conversation::new);
+
+        boolean flushNow;
+        int dropped;
+        synchronized (conversation) {
+            long now = System.nanoTime();
+            dropped = conversation.add(new PendingLine(++conversation.lastSequence, playerName, playerUUID, message), maxMessages);
+            if (conversation.burstSize++ == 0) {
+                conversation.burstStartNanos = now;
+            }
+
+            long delay = Math.min(debounceNanos, Math.max(0, conversation.burstStartNanos + maxWaitNanos - now));
+            flushNow = conversation.burstSize >= maxMessages || delay == 0;
+            if (conversation.flushTask != null) {
+                conversation.flushTask.cancel(false);
+                conversation.flushTask = null;
+            }
+            if (!flushNow) {
+                conversation.flushTask = timer.schedule(BackgroundTasks.logFailures(logger,
+                    "answering the chat of " + conversation.world, () -> flush(conversation)), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (dropped > 0) {
+            metricsService.recordChatMessagesDropped(dropped);
+        }
+        if (flushNow) {
+            flush(conversation);
+        }
+    }
+
+    /**
+     * Starts a reply answering every unanswered message of a world. A reply still queued is superseded by it; if a
+     * reply's call already started, the flush is put off until that reply completed.
+     * @param conversation The world's conversation
+     */
+    private void flush(Conversation conversation) {
+        List<PendingLine> lines;
+        Reply reply;
+        synchronized (conversation) {
+            if (conversation.flushTask != null) {
+                conversation.flushTask.cancel(false);
+                conversation.flushTask = null;
+            }
+            conversation.burstSize = 0;
+            if (conversation.unanswered.isEmpty()) {
+                return;
+            }
+
+            if (conversation.reply != null) {
+                if (conversation.reply.started) {
+                    conversation.flushPending = true;
+                    return;
+                }
+                metricsService.recordChatReplySuperseded();
+            }
+            conversation.flushPending = false;
+            lines = new ArrayList<>(conversation.unanswered);
+            reply = new Reply(lines.get(lines.size() - 1).sequence);
+            conversation.reply = reply;
+        }
+
+        BooleanSupplier current = () -> conversation.start(reply);
+        boolean streaming = configManager.isStreamingEnabled("player_chat");
+        Consumer<String> broadcastChunk = streaming ? chatDelivery.broadcastStream() : null;
+        Consumer<String> chunkConsumer = chunk -> {
+            if (conversation.reply == reply) {
+                broadcastChunk.accept(chunk);
+            }
+        };
+
+        CompletableFuture<String> response;
+        if (lines.size() == 1) {
+            PendingLine line = lines.get(0);
+            response = streaming
+                ? openAIService.streamPlayerChatResponseAsync(line.playerName, line.message, line.playerUUID, current, chunkConsumer)
+                : openAIService.generatePlayerChatResponseAsync(line.playerName, line.message, line.playerUUID, current);
+        } else {
+            metricsService.recordChatMessagesCombined(lines.size());
+            List<ChatMessage> transcript = new ArrayList<>(lines.size());
+            for (PendingLine line : lines) {
+                transcript.add(new ChatMessage(line.playerName, line.message));
+            }
+            Set<UUID> speakers = new LinkedHashSet<>();
+            for (PendingLine line : lines) {
+                speakers.add(line.playerUUID);
+            }
+            UUID lastSpeaker = lines.get(lines.size() - 1).playerUUID;
+            response = streaming
+                ? openAIService.streamConversationResponseAsync(conversation.world, transcript, speakers, lastSpeaker, current, chunkConsumer)
+                : openAIService.generateConversationResponseAsync(conversation.world, transcript, speakers, lastSpeaker, current);
+        }
+
+        response.whenComplete((text, error) -> {
+            if (!complete(conversation, reply)) {
+                return;
+            }
+            if (error != null) {
+                logger.log(Level.FINE, "No reply to the chat of " + conversation.world, error);
+            } else if (!streaming) {
+                chatDelivery.broadcast(text);
+            }
+            // Answer what arrived while the reply was being written
+            boolean flushPending;
+            synchronized (conversation) {
+                flushPending = conversation.flushPending;
+            }
+            if (flushPending) {
+                flush(conversation);
+            }
+        });
+    }
+
+    /**
+     * Marks a reply's messages answered, unless a newer reply superseded it
+     * @param conversation The world's conversation
+     * @param reply The reply that completed
+     * @return true if the reply is still the current one and may be delivered
+     */
+    private boolean complete(Conversation conversation, Reply reply) {
+        synchronized (conversation) {
+            if (conversation.reply != reply) {
+                return false;
+            }
+            conversation.reply = null;
+            conversation.answering = 0;
+            conversation.unanswered.removeIf(line -> line.sequence <= reply.answeredSequence);
+            return true;
+        }
+    }
+
+    /**
+     * Answers a message on its own right away, as when aggregation is disabled
+     * @param playerName The name of the player
+     * @param playerUUID The UUID of the player
+     * @param message The message to answer
+     */
+    private void sendDirect(String playerName, UUID playerUUID, String message) {
+        if (configManager.isStreamingEnabled("player_chat")) {
+            openAIService.streamPlayerChatResponseAsync(playerName, message, playerUUID, chatDelivery.broadcastStream());
+            return;
+        }
+
+        openAIService.generatePlayerChatResponseAsync(playerName, message, playerUUID)
+            .thenAccept(chatDelivery::broadcast);
+    }
+
+    /**
+     * Stops the debounce timer and discards messages that were not answered yet
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        conversations.clear();
+    }
+
+    /**
+     * The unanswered chat of one world and the reply answering it
+     */
+    private static final class Conversation {
+        private final String world;
+        // The messages of a started reply come first, followed by the ones waiting for the next reply
+        private final List<PendingLine> unanswered = new ArrayList<>();
+        private long lastSequence;
+        private int burstSize;
+        private long burstStartNanos;
+        private ScheduledFuture<?> flushTask;
+        private int answering;
+        private boolean flushPending;
+        // Read without the lock by streamed chunks to check if their reply was superseded
+        private volatile Reply reply;
+
+        private Conversation(String world) {
+            this.world = world;
+        }
+
+        /**
+         * Adds a message, dropping the oldest waiting ones beyond the limit. Messages a started reply is answering
+         * are not counted.
+         * @param line The message
+         * @param maxMessages The most messages one reply answers
+         * @return The number of messages dropped
+         */
+        private int add(PendingLine line, int maxMessages) {
+            unanswered.add(line);
+            int dropped = 0;
+            while (unanswered.size() - answering > maxMessages) {
+                unanswered.remove(answering);
+                dropped++;
+            }
+            return dropped;
+        }
+
+        /**
+         * Checks, just before its call starts, if a reply is still wanted, and if so marks it started so no flush
+         * supersedes it anymore. Later checks, such as before a retry, keep answering true.
+         * @param reply The reply
+         * @return true if the reply was not superseded
+         */
+        private synchronized boolean start(Reply reply) {
+            if (this.reply != reply) {
+                return false;
+            }
+            if (!reply.started) {
+                reply.started = true;
+                // Older waiting messages may have been dropped since the reply was made, so count what is left of it
+                answering = 0;
+                while (answering < unanswered.size() && unanswered.get(answering).sequence <= reply.answeredSequence) {
+                    answering++;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One reply to a world's chat
+     */
+    private static final class Reply {
+        // The sequence number of the last message it answers
+        private final long answeredSequence;
+        // Guarded by the conversation
+        private boolean started;
+
+        private Reply(long answeredSequence) {
+            this.answeredSequence = answeredSequence;
+        }
+    }
+
+    /**
+     * A chat message waiting for a reply
+     */
+    private static final class PendingLine {
+        private final long sequence;
+        private final String playerName;
+        private final UUID playerUUID;
+        private final String message;
+
+        private PendingLine(long sequence, String playerName, UUID playerUUID, String message) {
+            this.sequence = sequence;
+            this.playerName = playerName;
+            this.playerUUID = playerUUID;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package rs.meine.services;
+
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.config.ConfigManager;
+import rs.meine.config.ConfigSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sends everything the plugin says in chat through one queue, drained by a single main-thread task.
+ * Messages may be queued from any thread. Each tick at most the configured number of chat lines is sent, in the
+ * order they were queued, so a player sees broadcasts and replies addressed to them in the order they were produced
+ * however many completions arrive together. Messages longer than the chat length limit are split at word boundaries
+ * when they are queued; streamed chunks of the same reply that queued up behind each other are merged into one line
+ * when they fit. Messages that waited longer than the maximum age are dropped, along with the rest of their reply,
+ * and so are messages to players who left.
+ */
+public class ChatDelivery {
+    private static final String SECTION = "ChatDelivery.drain";
+    private static final long NO_REPLY = 0;
+
+    private final JavaPlugin plugin;
+    private final ConfigManager configManager;
+    private final TickProfiler tickProfiler;
+
+    private final ConcurrentLinkedQueue<Outbound> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size walks the queue, so the depth is counted on the side
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong replies = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder split = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder undeliverable = new LongAdder();
+
+    // Only touched on the main thread
+    private long expiredReply = NO_REPLY;
+    private int deferredTicks = 0;
+
+    /**
+     * Creates a new ChatDelivery. Nothing is sent until start is called.
+     * @param plugin The plugin instance
+     * @param configManager The configuration manager
+     * @param tickProfiler The profiler to run the draining task through
+     */
+    public ChatDelivery(JavaPlugin plugin, ConfigManager configManager, TickProfiler tickProfiler) {
+        this.plugin = plugin;
+        this.configManager = configManager;
+        this.tickProfiler = tickProfiler;
+    }
+
+    /**
+     * Starts the one-tick task that drains the queue
+     */
+    public void start() {
+        tickProfiler.runTaskTimer(SECTION, this::drain, 1, 1);
+    }
+
+    /**
+     * Queues a message for every player
+     * @param message The message
+     */
+    public void broadcast(String message) {
+        enqueue(null, NO_REPLY, message);
+    }
+
+    /**
+     * Starts a streamed reply for every player
+     * @return Queues each chunk of the reply; chunks that queue up behind each other may be merged
+     */
+    public Consumer<String> broadcastStream() {
+        long reply = replies.incrementAndGet();
+        return chunk -> enqueue(null, reply, chunk);
+    }
+
+    /**
+     * Queues a message for one recipient
+     * @param recipient The player or console to send it to
+     * @param message The message
+     */
+    public void send(CommandSender recipient, String message) {
+        enqueue(recipient, NO_REPLY, message);
+    }
+
+    /**
+     * Starts a streamed reply for one recipient
+     * @param recipient The player or console to send it to
+     * @return Queues each chunk of the reply; chunks that queue up behind each other may be merged
+     */
+    public Consumer<String> sendStream(CommandSender recipient) {
+        long reply = replies.incrementAndGet();
+        return chunk -> enqueue(recipient, reply, chunk);
+    }
+
+    /**
+     * Queues a formatted message, such as a clickable one, for one player. It is never split or merged.
+     * @param player The player to send it to
+     * @param component The message
+     */
+    public void send(Player player, BaseComponent component) {
+        add(new Outbound(player, NO_REPLY, null, component));
+    }
+
+    /**
+     * Splits a message to the chat length limit and queues its lines
+     * @param recipient The recipient, or null for every player
+     * @param reply The reply the message is a chunk of, or NO_REPLY
+     * @param message The message
+     */
+    private void enqueue(CommandSender recipient, long reply, String message) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+
+        List<String> lines = split(message, configManager.getDeliveryMaxMessageChars());
+        if (lines.size() > 1) {
+            split.increment();
+        }
+        for (String line : lines) {
+            add(new Outbound(recipient, reply, line, null));
+        }
+    }
+
+    /**
+     * Adds a message to the end of the queue
+     * @param message The message
+     */
+    private void add(Outbound message) {
+        queued.incrementAndGet();
+        queue.add(message);
+    }
+
+    /**
+     * Sends up to a tick's budget of queued messages, dropping expired and undeliverable ones on the way.
+     * Nothing is sent in a tick the plugin already went over its main-thread budget in, if the profiler defers work.
+     */
+    private void drain() {
+        if (queued.get() == 0) {
+            return;
+        }
+        if (tickProfiler.deferIfOverBudget(SECTION, deferredTicks)) {
+            deferredTicks++;
+            return;
+        }
+        deferredTicks = 0;
+
+        ConfigSnapshot settings = configManager.getSnapshot();
+        int budget = Math.max(1, settings.getDeliveryMaxMessagesPerTick());
+        int maxChars = settings.getDeliveryMaxMessageChars();
+        boolean merge = settings.isDeliveryMergeEnabled();
+        long maxAgeNanos = TimeUnit.SECONDS.toNanos(settings.getDeliveryMaxAgeSeconds());
+        long now = System.nanoTime();
+
+        int lines = 0;
+        while (lines < budget) {
+            Outbound message = poll();
+            if (message == null) {
+                return;
+            }
+
+            // The rest of a reply is dropped with its first expired chunk, so no one sees a reply's ending alone
+            boolean tooOld = maxAgeNanos > 0 && now - message.queuedNanos > maxAgeNanos;
+            if (tooOld || (message.reply != NO_REPLY && message.reply == expiredReply)) {
+                expiredReply = message.reply;
+                expired.increment();
+                continue;
+            }
+            if (message.recipient instanceof Player player && !player.isOnline()) {
+                undeliverable.increment();
+                continue;
+            }
+
+            if (message.component != null) {
+                ((Player) message.recipient).spigot().sendMessage(message.component);
+            } else {
+                deliver(message.recipient, merge ? mergeFollowing(message, maxChars) : message.text);
+            }
+            sent.increment();
+            lines++;
+        }
+    }
+
+    /**
+     * Takes the queued chunks of the same reply that directly follow a message and fit on its line
+     * @param message The message just taken from the queue
+     * @param maxChars The chat length limit
+     * @return The message's text with the merged chunks appended
+     */
+    private String mergeFollowing(Outbound message, int maxChars) {
+        if (message.reply == NO_REPLY) {
+            return message.text;
+        }
+
+        StringBuilder line = null;
+        int length = message.text.length();
+        Outbound next;
+        // Only the main thread takes from the queue, so the message peeked at is the one polled
+        while ((next = queue.peek()) != null && next.reply == message.reply && next.recipient == message.recipient
+                && (maxChars <= 0 || length + 1 + next.text.length() <= maxChars)) {
+            poll();
+            if (line == null) {
+                line = new StringBuilder(Math.max(16, maxChars)).append(message.text);
+            }
+            line.append(' ').append(next.text);
+            length = line.length();
+            merged.increment();
+        }
+        return line != null ? line.toString() : message.text;
+    }
+
+    /**
+     * Takes the message at the head of the queue
+     * @return The message, or null if the queue is empty
+     */
+    private Outbound poll() {
+        Outbound message = queue.poll();
+        if (message != null) {
+            queued.decrementAndGet();
+        }
+        return message;
+    }
+
+    /**
+     * Sends a line of chat
+     * @param recipient The recipient, or null for every player
+     * @param line The line
+     */
+    private void deliver(CommandSender recipient, String line) {
+        if (recipient == null) {
+            plugin.getServer().broadcastMessage(line);
+        } else {
+            recipient.sendMessage(line);
+        }
+    }
+
+    /**
+     * Splits a message into lines no longer than the chat length limit, at whitespace where possible.
+     * Each line after the first starts with the colors in effect where the previous one ended.
+     * @param message The message
+     * @param maxChars The chat length limit; 0 or less disables splitting
+     * @return The lines
+     */
+    static List<String> split(String message, int maxChars) {
+        if (maxChars <= 0 || message.length() <= maxChars) {
+            return List.of(message);
+        }
+
+        List<String> lines = new ArrayList<>(message.length() / maxChars + 1);
+        String colors = "";
+        int start = 0;
+        int length = message.length();
+        while (start < length) {
+            // Colors take room on the line, but never all of it
+            int room = maxChars - colors.length();
+            if (room < maxChars / 2) {
+                colors = "";
+                room = maxChars;
+            }
+
+            int end;
+            if (length - start <= room) {
+                end = length;
+            } else {
+                end = start + room;
+                int space = end;
+                while (space > start && !Character.isWhitespace(message.charAt(space))) {
+                    space--;
+                }
+                if (space > start) {
+                    end = space;
+                } else if (end - 1 > start && message.charAt(end - 1) == ChatColor.COLOR_CHAR) {
+                    // No word boundary; cut inside the word, but never between a color code's two characters
+                    end--;
+                }
+            }
+
+            String line = colors + message.substring(start, end).stripTrailing();
+            if (line.length() > colors.length()) {
+                lines.add(line);
+            }
+            colors = ChatColor.getLastColors(line);
+
+            start = end;
+            while (start < length && Character.isWhitespace(message.charAt(start))) {
+                start++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the number of messages waiting to be sent
+     * @return The number of messages
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Gets the number of chat lines sent
+     * @return The number of lines
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Gets the number of streamed chunks sent on the line of the chunk before them
+     * @return The number of chunks
+     */
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    /**
+     * Gets the number of messages split into several lines to fit the chat length limit
+     * @return The number of messages
+     */
+    public long getSplit() {
+        return split.sum();
+    }
+
+    /**
+     * Gets the number of messages dropped because they waited too long or belonged to a reply that did
+     * @return The number of messages
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Gets the number of messages dropped because their recipient left
+     * @return The number of messages
+     */
+    public long getUndeliverable() {
+        return undeliverable.sum();
+    }
+
+    /**
+     * Discards the messages that were not sent yet
+     */
+    public void shutdown() {
+        queue.clear();
+        queued.set(0);
+    }
+
+    /**
+     * A queued chat line
+     */
+    private static final class Outbound {
+        private final CommandSender recipient;
+        private final long reply;
+        private final String text;
+        private final BaseComponent component;
+        private final long queuedNanos = System.nanoTime();
+
+        private Outbound(CommandSender recipient, long reply, String text, BaseComponent component) {
+            this.recipient = recipient;
+            this.reply = reply;
+            this.text = text;
+            this.component = component;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package rs.meine.services;
+
+import rs.meine.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe store of each player's recent chat messages, written from the async chat thread and request threads.
+ * Every player gets a fixed-capacity ring buffer, so appending and evicting are O(1), and the " | "-joined
+ * summary used in prompts is maintained alongside it instead of being re-joined on every request.
+ */
+public class ChatHistoryStore {
+    static final String SEPARATOR = " | ";
+
+    private final Map<UUID, History> histories = new ConcurrentHashMap<>();
+    private volatile int capacity;
+
+    /**
+     * Creates a new ChatHistoryStore
+     * @param capacity The number of messages kept per player
+     */
+    public ChatHistoryStore(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Changes the number of messages kept per player. Existing histories are trimmed on their next write.
+     * @param capacity The number of messages kept per player
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * Appends a message to a player's history, evicting the oldest one if the history is full
+     * @param playerUUID The UUID of the player
+     * @param sender The sender of the message
+     * @param content The content of the message
+     */
+    public void add(UUID playerUUID, String sender, String content) {
+        int limit = capacity;
+        if (limit == 0) {
+            return;
+        }
+        histories.computeIfAbsent(playerUUID, uuid -> new History(limit)).add(new ChatMessage(sender, content), limit);
+    }
+
+    /**
+     * Inserts messages restored from disk before any the player sent since, keeping the newest ones that fit
+     * @param playerUUID The UUID of the player
+     * @param older The restored messages, oldest first
+     */
+    public void preload(UUID playerUUID, List<ChatMessage> older) {
+        int limit = capacity;
+        if (limit == 0 || older.isEmpty()) {
+            return;
+        }
+        histories.computeIfAbsent(playerUUID, uuid -> new History(limit)).prepend(older, limit);
+    }
+
+    /**
+     * Gets a player's history joined into one line, oldest message first
+     * @param playerUUID The UUID of the player
+     * @return The joined history, or null if the player has no history
+     */
+    public String getSummary(UUID playerUUID) {
+        History history = histories.get(playerUUID);
+        return history != null ? history.getSummary() : null;
+    }
+
+    /**
+     * Gets a snapshot of a player's history
+     * @param playerUUID The UUID of the player
+     * @return The messages, oldest first
+     */
+    public List<ChatMessage> getMessages(UUID playerUUID) {
+        History history = histories.get(playerUUID);
+        return history != null ? history.getMessages() : Collections.emptyList();
+    }
+
+    /**
+     * Removes a player's history
+     * @param playerUUID The UUID of the player
+     */
+    public void clear(UUID playerUUID) {
+        histories.remove(playerUUID);
+    }
+
+    /**
+     * Gets the number of players with a history
+     * @return The number of players
+     */
+    public int size() {
+        return histories.size();
+    }
+
+    /**
+     * One player's ring buffer and its joined summary
+     */
+    private static final class History {
+        private ChatMessage[] messages;
+        private int head = 0;
+        private int count = 0;
+
+        // Always equals the non-null messages from head on, formatted and joined with SEPARATOR
+        private final StringBuilder joined = new StringBuilder(256);
+        private String summary;
+
+        private History(int capacity) {
+            this.messages = new ChatMessage[capacity];
+        }
+
+        private synchronized void add(ChatMessage message, int capacity) {
+            if (capacity != messages.length) {
+                resize(capacity);
+            }
+
+            if (count == messages.length) {
+                ChatMessage evicted = messages[head];
+                messages[head] = null;
+                head = (head + 1) % messages.length;
+                count--;
+                joined.delete(0, Math.min(joined.length(), lineLength(evicted) + (count > 0 ? SEPARATOR.length() : 0)));
+            }
+
+            messages[(head + count) % messages.length] = message;
+            count++;
+            if (count > 1) {
+                joined.append(SEPARATOR);
+            }
+            appendLine(joined, message);
+            summary = null;
+        }
+
+        private synchronized void prepend(List<ChatMessage> older, int capacity) {
+            List<ChatMessage> newer = getMessages();
+            List<ChatMessage> combined = new ArrayList<>(older.size() + newer.size());
+            combined.addAll(older);
+            combined.addAll(newer);
+
+            // Rebuild through resize so the summary stays consistent with the ring
+            messages = combined.toArray(new ChatMessage[0]);
+            head = 0;
+            count = messages.length;
+            resize(capacity);
+        }
+
+        private synchronized String getSummary() {
+            if (count == 0) {
+                return null;
+            }
+            if (summary == null) {
+                summary = joined.toString();
+            }
+            return summary;
+        }
+
+        private synchronized List<ChatMessage> getMessages() {
+            List<ChatMessage> snapshot = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                snapshot.add(messages[(head + i) % messages.length]);
+            }
+            return snapshot;
+        }
+
+        /**
+         * Moves the newest messages into a ring of a different size and rebuilds the summary
+         * @param capacity The new ring size
+         */
+        private void resize(int capacity) {
+            List<ChatMessage> kept = getMessages();
+            if (kept.size() > capacity) {
+                kept = kept.subList(kept.size() - capacity, kept.size());
+            }
+
+            messages = new ChatMessage[capacity];
+            head = 0;
+            count = 0;
+            joined.setLength(0);
+            for (ChatMessage message : kept) {
+                messages[count++] = message;
+                if (joined.length() > 0) {
+                    joined.append(SEPARATOR);
+                }
+                appendLine(joined, message);
+            }
+            summary = null;
+        }
+
+        private static void appendLine(StringBuilder builder, ChatMessage message) {
+            builder.append(message.getSender()).append(": ").append(message.getContent());
+        }
+
+        private static int lineLength(ChatMessage message) {
+            return message.getSender().length() + 2 + message.getContent().length();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package rs.meine.services;
+
+import rs.meine.config.ConfigManager;
+import rs.meine.config.ConfigSnapshot;
+import rs.meine.models.ChatTrigger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which chat messages get a reply, on the chat thread and without calling the API.
+ * A message is answered if it starts with a trigger prefix, which is removed, or mentions one of the bot's names.
+ * Any other message is scored by a local relevance classifier that looks for the shape of a question and for
+ * configured keywords; messages that score high enough are answered at their world's sampling ratio.
+ * Names and keywords are compiled into keyword matchers whenever the configuration is loaded.
+ */
+public class ChatTriggers {
+    private static final String[] QUESTION_WORDS = {
+        "how", "what", "where", "why", "when", "who", "which", "can", "could", "does", "do", "is", "are", "should", "will", "would"
+    };
+    private static final double QUESTION_MARK_SCORE = 0.4;
+    private static final double QUESTION_WORD_SCORE = 0.3;
+    private static final double KEYWORD_SCORE = 0.3;
+    private static final int MAX_SCORED_KEYWORDS = 2;
+    // Messages this short are mostly reactions ("lol what?") and score half
+    private static final int MIN_WORDS = 3;
+
+    private final ConfigManager configManager;
+    private final MetricsService metricsService;
+
+    private volatile Rules rules;
+
+    /**
+     * Creates new ChatTriggers and compiles the configured triggers
+     * @param configManager The configuration manager
+     * @param metricsService The metrics service to count each message's outcome on
+     */
+    public ChatTriggers(ConfigManager configManager, MetricsService metricsService) {
+        this.configManager = configManager;
+        this.metricsService = metricsService;
+        reload();
+    }
+
+    /**
+     * Compiles the triggers from the current configuration and swaps them in
+     */
+    public void reload() {
+        rules = new Rules(configManager.getSnapshot());
+    }
+
+    /**
+     * Decides if a chat message gets a reply and counts the outcome
+     * @param message The message as the player sent it
+     * @param world The name of the player's world
+     * @return The message to answer, without its trigger prefix, or null if it gets no reply
+     */
+    public String filter(String message, String world) {
+        Rules current = rules;
+        String prompt = message;
+        ChatTrigger trigger;
+
+        if (!current.settings.isChatTriggersEnabled()) {
+            trigger = ChatTrigger.UNFILTERED;
+        } else {
+            int promptStart = current.matchPrefix(message);
+            if (promptStart >= 0) {
+                prompt = message.substring(promptStart);
+                trigger = prompt.isEmpty() ? ChatTrigger.IGNORED : ChatTrigger.PREFIX;
+            } else if (current.names.matches(message)) {
+                trigger = ChatTrigger.MENTION;
+            } else if (relevance(message, current.keywords) < current.settings.getChatTriggerMinRelevance()) {
+                trigger = ChatTrigger.IGNORED;
+            } else if (ThreadLocalRandom.current().nextDouble() < current.settings.getChatTriggerSampling(world)) {
+                trigger = ChatTrigger.RELEVANT;
+            } else {
+                trigger = ChatTrigger.SAMPLED_OUT;
+            }
+        }
+
+        metricsService.recordChatTrigger(trigger);
+        return trigger.isAnswered() ? prompt : null;
+    }
+
+    /**
+     * Scores how likely a message is a question meant for the bot, with the configured keywords
+     * @param message The message
+     * @return The relevance from 0.0 to 1.0
+     */
+    public double relevance(String message) {
+        return relevance(message, rules.keywords);
+    }
+
+    /**
+     * Scores how likely a message is a question meant for the bot
+     * @param message The message
+     * @param keywords The keywords that make a message more relevant
+     * @return The relevance from 0.0 to 1.0
+     */
+    private static double relevance(String message, KeywordMatcher keywords) {
+        int end = message.length();
+        while (end > 0 && Character.isWhitespace(message.charAt(end - 1))) {
+            end--;
+        }
+
+        double score = 0;
+        if (end > 0 && message.charAt(end - 1) == '?') {
+            score += QUESTION_MARK_SCORE;
+        }
+
+        int words = 0;
+        int firstWordStart = -1;
+        int firstWordEnd = -1;
+        boolean inWord = false;
+        for (int i = 0; i < end; i++) {
+            boolean wordChar = KeywordMatcher.isWordChar(message.charAt(i));
+            if (wordChar && !inWord) {
+                words++;
+                if (firstWordStart < 0) {
+                    firstWordStart = i;
+                }
+            } else if (!wordChar && inWord && firstWordEnd < 0) {
+                firstWordEnd = i;
+            }
+            inWord = wordChar;
+        }
+        if (firstWordStart >= 0 && isQuestionWord(message, firstWordStart, firstWordEnd < 0 ? end : firstWordEnd)) {
+            score += QUESTION_WORD_SCORE;
+        }
+
+        score += Math.min(keywords.count(message), MAX_SCORED_KEYWORDS) * KEYWORD_SCORE;
+        if (words < MIN_WORDS) {
+            score /= 2;
+        }
+        return Math.min(1.0, score);
+    }
+
+    /**
+     * Checks if a word opens a question
+     * @param message The message
+     * @param start The index of the word's first character
+     * @param end The index after the word's last character
+     * @return true if the word is a question word
+     */
+    private static boolean isQuestionWord(String message, int start, int end) {
+        int length = end - start;
+        for (String word : QUESTION_WORDS) {
+            if (word.length() == length && message.regionMatches(true, start, word, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The triggers compiled from one configuration snapshot
+     */
+    private static final class Rules {
+        private final ConfigSnapshot settings;
+        // Longest first, so "!gpt" is matched before a shorter prefix like "!" that it starts with
+        private final String[] prefixes;
+        private final KeywordMatcher names;
+        private final KeywordMatcher keywords;
+
+        private Rules(ConfigSnapshot settings) {
+            this.settings = settings;
+            List<String> sorted = new ArrayList<>(settings.getChatTriggerPrefixes());
+            sorted.sort(Comparator.comparingInt(String::length).reversed());
+            this.prefixes = sorted.toArray(new String[0]);
+            this.names = KeywordMatcher.compile(settings.getChatTriggerNames());
+            this.keywords = KeywordMatcher.compile(settings.getChatTriggerKeywords());
+        }
+
+        /**
+         * Finds a trigger prefix at the start of a message
+         * @param message The message
+         * @return The index the message continues at after the prefix and any separator, or -1 if it has no prefix
+         */
+        private int matchPrefix(String message) {
+            int start = 0;
+            while (start < message.length() && Character.isWhitespace(message.charAt(start))) {
+                start++;
+            }
+
+            for (String prefix : prefixes) {
+                int end = start + prefix.length();
+                if (!message.regionMatches(true, start, prefix, 0, prefix.length())) {
+                    continue;
+                }
+                // A prefix ending in a letter must end a word, so "!ai" does not trigger on "!aim"
+                if (end < message.length() && KeywordMatcher.isWordChar(prefix.charAt(prefix.length() - 1)) &&
+                    KeywordMatcher.isWordChar(message.charAt(end))) {
+                    continue;
+                }
+
+                while (end < message.length() && (Character.isWhitespace(message.charAt(end)) ||
+                    message.charAt(end) == ',' || message.charAt(end) == ':')) {
+                    end++;
+                }
+                return end;
+            }
+            return -1;
+        }
+    }
+}
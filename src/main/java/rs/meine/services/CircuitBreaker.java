@@ -0,0 +1,161 @@
+package rs.meine.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calling OpenAI while it is down.
+ * The breaker opens after a number of consecutive calls failed with a timeout, a connection error or a 5xx answer,
+ * and refuses every call at once while it is open. Once it has been open for the configured time it lets a single
+ * call through as a probe, and closes if the probe succeeds or opens again if it fails. Answers that show the API is
+ * up, such as a 429 or a bad request, never count towards opening it.
+ */
+public class CircuitBreaker {
+    /**
+     * The states of a circuit breaker
+     */
+    public enum State {
+        /** Calls go through */
+        CLOSED,
+        /** Calls are refused */
+        OPEN,
+        /** A probe call is in flight and other calls are refused */
+        HALF_OPEN
+    }
+
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean enabled;
+    private volatile int failureThreshold;
+    private volatile long openNanos;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtNanos;
+
+    /**
+     * Creates a new, closed CircuitBreaker
+     * @param enabled false to let every call through
+     * @param failureThreshold The consecutive failures that open the breaker
+     * @param openSeconds How long the breaker stays open before it probes the API
+     */
+    public CircuitBreaker(boolean enabled, int failureThreshold, int openSeconds) {
+        configure(enabled, failureThreshold, openSeconds);
+    }
+
+    /**
+     * Applies new settings. Disabling the breaker closes it.
+     * @param enabled false to let every call through
+     * @param failureThreshold The consecutive failures that open the breaker
+     * @param openSeconds How long the breaker stays open before it probes the API
+     */
+    public synchronized void configure(boolean enabled, int failureThreshold, int openSeconds) {
+        this.enabled = enabled;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.SECONDS.toNanos(Math.max(1, openSeconds));
+        if (!enabled) {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Asks to make a call. Every call let through must be followed by onSuccess, onFailure or onIgnored.
+     * @throws CircuitOpenException if the breaker is open, or half open with its probe still in flight
+     */
+    public synchronized void acquire() {
+        if (!enabled || state == State.CLOSED) {
+            return;
+        }
+
+        long waitNanos = openedAtNanos + openNanos - System.nanoTime();
+        if (state == State.OPEN && waitNanos <= 0) {
+            // This call is the probe
+            state = State.HALF_OPEN;
+            return;
+        }
+
+        rejected.increment();
+        throw new CircuitOpenException(Math.max(0, waitNanos));
+    }
+
+    /**
+     * Reports a call the API answered, closing the breaker if the call was its probe
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+        }
+    }
+
+    /**
+     * Reports a call that failed because the API was unreachable, overloaded or broken, opening the breaker once
+     * enough of them failed in a row or if the call was its probe
+     */
+    public synchronized void onFailure() {
+        if (!enabled || state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            opens.increment();
+        }
+    }
+
+    /**
+     * Reports a call that failed for reasons that say nothing about the API's health, such as a bad request or a
+     * request that was never sent. A probe that ends this way lets the next call probe again.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Gets the current state
+     * @return The state, which becomes HALF_OPEN only when a probe is let through
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Checks if calls are currently let through without restriction
+     * @return true if the breaker is closed or disabled
+     */
+    public synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Gets how long until the breaker lets a probe through
+     * @return The wait in milliseconds, or 0 if it is not open or a probe may go now
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openedAtNanos + openNanos - System.nanoTime()));
+    }
+
+    /**
+     * Gets the number of times the breaker opened
+     * @return The number of openings
+     */
+    public long getOpens() {
+        return opens.sum();
+    }
+
+    /**
+     * Gets the number of calls refused while the breaker was open
+     * @return The number of calls
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
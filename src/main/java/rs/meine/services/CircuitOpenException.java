@@ -0,0 +1,28 @@
+package rs.meine.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails a request without calling OpenAI while the circuit breaker is open
+ */
+public class CircuitOpenException extends RuntimeException {
+    private final long retryAfterNanos;
+
+    /**
+     * Creates a new CircuitOpenException
+     * @param retryAfterNanos Nanoseconds until the breaker lets a probe call through
+     */
+    public CircuitOpenException(long retryAfterNanos) {
+        super("OpenAI is unavailable, circuit breaker open for another " + TimeUnit.NANOSECONDS.toMillis(retryAfterNanos) + " ms",
+            null, false, false);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * Gets how long until the breaker tries the API again
+     * @return The wait time in nanoseconds
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+}
@@ -0,0 +1,229 @@
+package rs.meine.services;
+
+import com.openai.client.OpenAIClient;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns the OpenAI client and closes each client the plugin stops using.
+ * Every call acquires the current client and releases it when its response has been read. A client replaced on
+ * reload is closed, releasing its connection pool and dispatcher threads, as soon as the calls still using it finish,
+ * so a reload never cuts off a response that is being streamed. Closing a client closes the HTTP client under it.
+ */
+public class ClientManager {
+    private final Logger logger;
+
+    private volatile Handle current;
+    private final Set<Handle> draining = ConcurrentHashMap.newKeySet();
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder closes = new LongAdder();
+
+    /**
+     * Creates a new ClientManager without a client
+     * @param logger The logger to report close failures to
+     */
+    public ClientManager(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Makes a newly built client the current one and retires the previous one
+     * @param client The new client
+     * @param httpClient The HTTP client the new client sends its calls with
+     */
+    public void replace(OpenAIClient client, PooledHttpClient httpClient) {
+        builds.increment();
+        retire(swap(new Handle(client, httpClient)));
+    }
+
+    /**
+     * Retires the current client without replacing it
+     */
+    public void clear() {
+        retire(swap(null));
+    }
+
+    /**
+     * Retires and closes every client, including ones still in use
+     */
+    public void shutdown() {
+        Handle previous = swap(null);
+        if (previous != null) {
+            previous.retired = true;
+            previous.closeOnce();
+        }
+        for (Handle handle : draining) {
+            handle.closeOnce();
+        }
+    }
+
+    /**
+     * Acquires the current client for one call. The handle must be released when the call is done.
+     * @return The handle of the current client, or null if there is none
+     */
+    public Handle acquire() {
+        while (true) {
+            Handle handle = current;
+            if (handle == null) {
+                return null;
+            }
+            if (handle.tryAcquire()) {
+                return handle;
+            }
+            // Retired between the read and the acquire; the replacement is already published
+        }
+    }
+
+    /**
+     * Checks if a client is available
+     * @return true if there is a current client
+     */
+    public boolean hasClient() {
+        return current != null;
+    }
+
+    /**
+     * Gets the HTTP client of the current client, for its pool and dispatcher statistics
+     * @return The HTTP client, or null if there is no current client
+     */
+    public PooledHttpClient getHttpClient() {
+        Handle handle = current;
+        return handle != null ? handle.httpClient : null;
+    }
+
+    /**
+     * Publishes a new current handle
+     * @param handle The new handle, or null
+     * @return The previous handle, or null
+     */
+    private synchronized Handle swap(Handle handle) {
+        Handle previous = current;
+        current = handle;
+        return previous;
+    }
+
+    /**
+     * Retires a handle, closing it now if no call is using it
+     * @param handle The handle, or null
+     */
+    private void retire(Handle handle) {
+        if (handle == null) {
+            return;
+        }
+        draining.add(handle);
+        handle.retired = true;
+        // Drop the reference held while the client was current
+        handle.release();
+    }
+
+    /**
+     * Gets the number of calls using the current client
+     * @return The number of calls
+     */
+    public int getInFlight() {
+        Handle handle = current;
+        return handle != null ? handle.references.get() - 1 : 0;
+    }
+
+    /**
+     * Gets the number of replaced clients still finishing calls
+     * @return The number of clients
+     */
+    public int getDraining() {
+        return draining.size();
+    }
+
+    /**
+     * Gets the number of clients built since the plugin started
+     * @return The number of clients
+     */
+    public long getBuilds() {
+        return builds.sum();
+    }
+
+    /**
+     * Gets the number of clients closed since the plugin started
+     * @return The number of clients
+     */
+    public long getCloses() {
+        return closes.sum();
+    }
+
+    /**
+     * One client and the calls using it
+     */
+    public final class Handle {
+        private final OpenAIClient client;
+        private final PooledHttpClient httpClient;
+        // One per call plus one while the client is current; the client is closed when this drops to zero
+        private final AtomicInteger references = new AtomicInteger(1);
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+
+        private Handle(OpenAIClient client, PooledHttpClient httpClient) {
+            this.client = client;
+            this.httpClient = httpClient;
+        }
+
+        /**
+         * Gets the client
+         * @return The client
+         */
+        public OpenAIClient getClient() {
+            return client;
+        }
+
+        /**
+         * Ends a call, closing the client if it was retired and this was its last call
+         */
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                closeOnce();
+            }
+        }
+
+        /**
+         * Starts a call unless the client was retired
+         * @return true if the call may use the client
+         */
+        private boolean tryAcquire() {
+            if (retired) {
+                return false;
+            }
+            // Never revive a client whose last reference is gone, it is being closed
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        /**
+         * Closes the client unless it was already closed
+         */
+        private void closeOnce() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            draining.remove(this);
+            closes.increment();
+            try {
+                client.close();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error closing the previous OpenAI client", e);
+            } finally {
+                // The client closes its HTTP client too; this makes sure the pool and threads go even if it failed
+                httpClient.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package rs.meine.services;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.config.ConfigManager;
+import rs.meine.models.Feature;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects event commentary of the same kind over a short window and asks for all of it in one request.
+ * Bursts of joins or deaths (raids, restarts) then cost one round trip instead of one per event.
+ */
+public class CommentaryBatcher {
+    private static final Pattern NUMBERED_LINE = Pattern.compile("^\\s*(\\d+)\\s*[.):-]\\s*(.+)$");
+
+    private final JavaPlugin plugin;
+    private final OpenAIService openAIService;
+    private final MetricsService metricsService;
+    private final ConfigManager configManager;
+    private final ChatDelivery chatDelivery;
+    private final Logger logger;
+    private final ScheduledExecutorService timer;
+
+    private final Map<Feature, List<PendingEvent>> pending = new EnumMap<>(Feature.class);
+
+    /**
+     * Creates a new CommentaryBatcher
+     * @param plugin The plugin instance
+     * @param openAIService The OpenAI service
+     * @param metricsService The metrics service, told about batched answers that could not be parsed and dropped events
+     * @param configManager The configuration manager
+     * @param chatDelivery The queue to broadcast generated lines through
+     */
+    public CommentaryBatcher(JavaPlugin plugin, OpenAIService openAIService, MetricsService metricsService,
+                             ConfigManager configManager, ChatDelivery chatDelivery) {
+        this.plugin = plugin;
+        this.openAIService = openAIService;
+        this.metricsService = metricsService;
+        this.configManager = configManager;
+        this.chatDelivery = chatDelivery;
+        this.logger = plugin.getLogger();
+        this.timer = Executors.newSingleThreadScheduledExecutor(BackgroundTasks.threads("Batcher"));
+    }
+
+    /**
+     * Queues commentary for an event. The generated line is broadcast once its batch completes.
+     * @param feature The kind of event
+     * @param prompt The prompt describing this single event
+     */
+    public void submit(Feature feature, String prompt) {
+        submit(feature, prompt, null);
+    }
+
+    /**
+     * Queues commentary for an event that may stop being worth commenting on, such as greeting a player who already left.
+     * The generated line is broadcast once its batch completes.
+     * @param feature The kind of event
+     * @param prompt The prompt describing this single event
+     * @param stillRelevant Checked before the request is sent; returning false drops the event. It is called off the
+     *                      server thread, so it must not call the Bukkit API. May be null.
+     */
+    public void submit(Feature feature, String prompt, BooleanSupplier stillRelevant) {
+        long windowMillis = configManager.getBatchWindowMillis();
+        int maxEvents = configManager.getBatchMaxEvents();
+        PendingEvent event = new PendingEvent(prompt, stillRelevant);
+
+        if (windowMillis <= 0 || maxEvents <= 1) {
+            sendSingle(feature, event);
+            return;
+        }
+
+        List<PendingEvent> batch;
+        boolean flushNow;
+        synchronized (pending) {
+            batch = pending.get(feature);
+            if (batch == null) {
+                List<PendingEvent> created = new ArrayList<>();
+                pending.put(feature, created);
+                timer.schedule(BackgroundTasks.logFailures(logger, "flushing " + feature + " commentary",
+                    () -> flush(feature, created)), windowMillis, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.add(event);
+            flushNow = batch.size() >= maxEvents;
+        }
+
+        if (flushNow) {
+            flush(feature, batch);
+        }
+    }
+
+    /**
+     * Sends a batch if it is still the one collecting events for its feature
+     * @param feature The kind of event
+     * @param collected The events collected for the batch
+     */
+    private void flush(Feature feature, List<PendingEvent> collected) {
+        synchronized (pending) {
+            // The batch may already have been sent because it filled up before its window ended
+            if (pending.get(feature) != collected) {
+                return;
+            }
+            pending.remove(feature);
+        }
+
+        List<PendingEvent> batch = new ArrayList<>(collected.size());
+        for (PendingEvent event : collected) {
+            if (event.isRelevant()) {
+                batch.add(event);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // While OpenAI is down every event gets its own fallback line, which a batched answer could not be split into
+        if (batch.size() == 1 || !openAIService.isAvailable()) {
+            batch.forEach(event -> sendSingle(feature, event));
+            return;
+        }
+
+        List<String> prompts = new ArrayList<>(batch.size());
+        for (PendingEvent event : batch) {
+            prompts.add(event.prompt);
+        }
+
+        long maxTokens = (long) configManager.getMaxTokens() * batch.size();
+        BooleanSupplier anyRelevant = () -> batch.stream().anyMatch(PendingEvent::isRelevant);
+        openAIService.generateSimpleResponseAsync(buildBatchPrompt(prompts), maxTokens, feature, anyRelevant)
+            .whenComplete((response, error) -> {
+                if (error != null) {
+                    handleFailure(feature, batch.size(), error);
+                    return;
+                }
+
+                List<String> lines = parseNumberedLines(response, batch.size());
+                if (lines == null) {
+                    logger.fine("Could not parse batched " + feature + " commentary, falling back to single requests");
+                    metricsService.recordParseFailure(feature.getRequestType());
+                    batch.forEach(event -> sendSingle(feature, event));
+                    return;
+                }
+
+                broadcast(lines);
+            });
+    }
+
+    /**
+     * Requests commentary for a single event
+     * @param feature The kind of event
+     * @param event The event
+     */
+    private void sendSingle(Feature feature, PendingEvent event) {
+        openAIService.generateSimpleResponseAsync(event.prompt, feature, event.stillRelevant)
+            .whenComplete((message, error) -> {
+                if (error != null) {
+                    handleFailure(feature, 1, error);
+                } else {
+                    broadcast(List.of(message));
+                }
+            });
+    }
+
+    /**
+     * Handles a commentary request that produced no answer. While OpenAI is unavailable one fallback line stands in
+     * for the whole request; otherwise its events are dropped and counted.
+     * @param feature The kind of event
+     * @param events The number of events the request was for
+     * @param error Why the request failed
+     */
+    private void handleFailure(Feature feature, int events, Throwable error) {
+        String fallback = openAIService.getFallback(error, feature.getRequestType());
+        if (fallback != null) {
+            chatDelivery.broadcast(fallback);
+            return;
+        }
+
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        logger.fine("Dropped " + events + " " + feature + " commentary event(s): " + cause);
+        metricsService.recordCommentaryDropped(events);
+    }
+
+    /**
+     * Queues generated lines for broadcast
+     * @param messages The lines to broadcast, in order
+     */
+    private void broadcast(List<String> messages) {
+        for (String message : messages) {
+            chatDelivery.broadcast(message);
+        }
+    }
+
+    /**
+     * Builds one prompt asking for a numbered line per event
+     * @param prompts The single-event prompts
+     * @return The combined prompt
+     */
+    static String buildBatchPrompt(List<String> prompts) {
+        StringBuilder builder = new StringBuilder(256 + prompts.size() * 128);
+        builder.append("Handle each of the following ").append(prompts.size())
+            .append(" Minecraft server events independently. ")
+            .append("Answer with exactly ").append(prompts.size())
+            .append(" lines numbered 1 to ").append(prompts.size())
+            .append(" in the same order, one line per event, and nothing else.\n");
+
+        for (int i = 0; i < prompts.size(); i++) {
+            builder.append(i + 1).append(". ").append(prompts.get(i)).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Parses a numbered answer back into one line per event
+     * @param response The model's answer
+     * @param expected The number of events in the batch
+     * @return The lines in event order, or null if the answer does not contain every number exactly once
+     */
+    static List<String> parseNumberedLines(String response, int expected) {
+        if (response == null) {
+            return null;
+        }
+
+        String[] lines = new String[expected];
+        for (String line : response.split("\\R")) {
+            Matcher matcher = NUMBERED_LINE.matcher(line);
+            if (!matcher.matches()) {
+                continue;
+            }
+
+            int index;
+            try {
+                index = Integer.parseInt(matcher.group(1)) - 1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (index < 0 || index >= expected || lines[index] != null) {
+                return null;
+            }
+            lines[index] = matcher.group(2).trim();
+        }
+
+        for (String line : lines) {
+            if (line == null || line.isEmpty()) {
+                return null;
+            }
+        }
+
+        return List.of(lines);
+    }
+
+    /**
+     * Stops the window timer and discards batches that were not sent yet
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    /**
+     * An event waiting for its batch to be sent
+     */
+    private static final class PendingEvent {
+        private final String prompt;
+        private final BooleanSupplier stillRelevant;
+
+        private PendingEvent(String prompt, BooleanSupplier stillRelevant) {
+            this.prompt = prompt;
+            this.stillRelevant = stillRelevant;
+        }
+
+        private boolean isRelevant() {
+            return stillRelevant == null || stillRelevant.getAsBoolean();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package rs.meine.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds whole-word occurrences of a fixed set of words and phrases in one pass over a text (Aho-Corasick).
+ * Matching ignores case and treats any run of whitespace as one space, in the phrases and the text alike, so
+ * "ender  dragon" in chat still matches the phrase "ender dragon". The automaton is compiled
+ * into one flat transition table over the characters the phrases use, so matching costs one table lookup per
+ * character however many phrases there are, and allocates nothing.
+ */
+public final class KeywordMatcher {
+    // Classes of ASCII characters, and of the other characters the phrases use by binary search of wideChars
+    private final int[] asciiClasses;
+    private final char[] wideChars;
+    private final int[] wideClasses;
+    private final int classCount;
+    // transitions[state * classCount + class] is the next state; state 0 is the root
+    private final int[] transitions;
+    // The lengths of the phrases that end in each state, including those ending in its suffixes
+    private final int[][] matchLengths;
+
+    private KeywordMatcher(int[] asciiClasses, char[] wideChars, int[] wideClasses, int classCount, int[] transitions,
+                           int[][] matchLengths) {
+        this.asciiClasses = asciiClasses;
+        this.wideChars = wideChars;
+        this.wideClasses = wideClasses;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.matchLengths = matchLengths;
+    }
+
+    /**
+     * Compiles a matcher
+     * @param phrases The words and phrases to find; blank ones are ignored
+     * @return The matcher
+     */
+    public static KeywordMatcher compile(List<String> phrases) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String phrase : phrases) {
+            String folded = fold(phrase);
+            if (!folded.isEmpty()) {
+                normalized.add(folded);
+            }
+        }
+
+        // Number the characters the phrases use; every other character is class 0 and leads back to the root
+        Set<Character> alphabet = new TreeSet<>();
+        for (String phrase : normalized) {
+            for (int i = 0; i < phrase.length(); i++) {
+                alphabet.add(phrase.charAt(i));
+            }
+        }
+        int[] asciiClasses = new int[128];
+        List<Character> wide = new ArrayList<>();
+        int classCount = 1;
+        for (char c : alphabet) {
+            if (c < 128) {
+                asciiClasses[c] = classCount++;
+            } else {
+                wide.add(c);
+            }
+        }
+        char[] wideChars = new char[wide.size()];
+        int[] wideClasses = new int[wide.size()];
+        for (int i = 0; i < wideChars.length; i++) {
+            wideChars[i] = wide.get(i);
+            wideClasses[i] = classCount++;
+        }
+
+        // Build the trie
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<List<Integer>> lengths = new ArrayList<>();
+        children.add(new HashMap<>());
+        lengths.add(new ArrayList<>());
+        for (String phrase : normalized) {
+            int state = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                int charClass = classOf(phrase.charAt(i), asciiClasses, wideChars, wideClasses);
+                Integer next = children.get(state).get(charClass);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(charClass, next);
+                    children.add(new HashMap<>());
+                    lengths.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            lengths.get(state).add(phrase.length());
+        }
+
+        // Fill in the missing transitions from the failure links, breadth first so a state's suffixes come first
+        int stateCount = children.size();
+        int[] transitions = new int[stateCount * classCount];
+        int[] failure = new int[stateCount];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (Map.Entry<Integer, Integer> child : children.get(0).entrySet()) {
+            transitions[child.getKey()] = child.getValue();
+            queue.add(child.getValue());
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            lengths.get(state).addAll(lengths.get(failure[state]));
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                Integer child = children.get(state).get(charClass);
+                int fallback = transitions[failure[state] * classCount + charClass];
+                if (child == null) {
+                    transitions[state * classCount + charClass] = fallback;
+                } else {
+                    transitions[state * classCount + charClass] = child;
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+
+        int[][] matchLengths = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            List<Integer> stateLengths = lengths.get(state);
+            matchLengths[state] = new int[stateLengths.size()];
+            for (int i = 0; i < matchLengths[state].length; i++) {
+                matchLengths[state][i] = stateLengths.get(i);
+            }
+        }
+        return new KeywordMatcher(asciiClasses, wideChars, wideClasses, classCount, transitions, matchLengths);
+    }
+
+    /**
+     * Checks if a text contains at least one of the phrases as a whole word
+     * @param text The text
+     * @return true if a phrase was found
+     */
+    public boolean matches(CharSequence text) {
+        return count(text, 1) > 0;
+    }
+
+    /**
+     * Counts the whole-word occurrences of the phrases in a text
+     * @param text The text
+     * @return The number of occurrences; overlapping phrases are each counted
+     */
+    public int count(CharSequence text) {
+        return count(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Counts whole-word occurrences of the phrases, stopping at a limit
+     * @param text The text
+     * @param limit The count to stop at
+     * @return The number of occurrences, at most the limit
+     */
+    private int count(CharSequence text, int limit) {
+        if (transitions.length == classCount) {
+            return 0;
+        }
+
+        int found = 0;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (i > 0 && Character.isWhitespace(c) && Character.isWhitespace(text.charAt(i - 1))) {
+                // The rest of a whitespace run folds into the space its first character became
+                continue;
+            }
+            state = transitions[state * classCount + classOf(foldChar(c), asciiClasses, wideChars, wideClasses)];
+            for (int matchLength : matchLengths[state]) {
+                int start = startOf(text, i, matchLength);
+                if ((start == 0 || !isWordChar(text.charAt(start - 1))) && (i + 1 == length || !isWordChar(text.charAt(i + 1)))) {
+                    if (++found >= limit) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds where a match starts in the text. Phrases never start with a space, so the start is never inside a
+     * whitespace run.
+     * @param text The text
+     * @param end The index of the match's last character
+     * @param matchLength The length of the matched phrase, in folded characters
+     * @return The index of the match's first character
+     */
+    private static int startOf(CharSequence text, int end, int matchLength) {
+        int start = end;
+        for (int remaining = matchLength - 1; remaining > 0; remaining--) {
+            start--;
+            while (start > 0 && Character.isWhitespace(text.charAt(start)) && Character.isWhitespace(text.charAt(start - 1))) {
+                start--;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Looks up the class of a character
+     * @param c The folded character
+     * @param asciiClasses The classes of ASCII characters
+     * @param wideChars The other characters the phrases use, sorted
+     * @param wideClasses The classes of wideChars
+     * @return The class, 0 if no phrase uses the character
+     */
+    private static int classOf(char c, int[] asciiClasses, char[] wideChars, int[] wideClasses) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(wideChars, c);
+        return index >= 0 ? wideClasses[index] : 0;
+    }
+
+    /**
+     * Folds a phrase the way matched text is folded
+     * @param phrase The phrase
+     * @return The lower-cased phrase with whitespace runs collapsed to single spaces and trimmed
+     */
+    private static String fold(String phrase) {
+        StringBuilder folded = new StringBuilder(phrase.length());
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = foldChar(phrase.charAt(i));
+            if (c == ' ' && (folded.length() == 0 || folded.charAt(folded.length() - 1) == ' ')) {
+                continue;
+            }
+            folded.append(c);
+        }
+        int end = folded.length();
+        while (end > 0 && folded.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return folded.substring(0, end);
+    }
+
+    /**
+     * Folds one character
+     * @param c The character
+     * @return The lower-cased character, or a space for any whitespace
+     */
+    private static char foldChar(char c) {
+        return Character.isWhitespace(c) ? ' ' : Character.toLowerCase(c);
+    }
+
+    /**
+     * Checks if a character is part of a word
+     * @param c The character
+     * @return true for letters, digits and underscores
+     */
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,212 @@
+package rs.meine.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * Values are kept in microseconds. Below 16 µs every value has its own bucket; above that every power of two
+ * is split into 16 equal sub-buckets, so a reported percentile is never more than 1/16 (6.25%) above the true
+ * value. Values are capped just below 2^32 µs (about 71 minutes), which makes 464 buckets in total.
+ * Recording is one array increment plus two adders and never allocates. Percentiles read on every request come
+ * from a snapshot of cumulative counts that is taken again at most once a second.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_MICROS = (1L << 32) - 1;
+    static final int BUCKETS = bucketIndex(MAX_MICROS) + 1;
+    private static final long SNAPSHOT_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot = new Snapshot(new long[BUCKETS], 0, System.nanoTime() - SNAPSHOT_MAX_AGE_NANOS);
+
+    /**
+     * Records a latency
+     * @param nanos The latency in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long micros = Math.min(MAX_MICROS, Math.max(0, nanos / 1000));
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * Gets the number of recorded latencies
+     * @return The count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of all recorded latencies
+     * @return The sum in microseconds
+     */
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * Gets the largest recorded latency
+     * @return The maximum in microseconds, or 0 if nothing was recorded
+     */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Gets the mean of the recorded latencies
+     * @return The mean in milliseconds, or 0 if nothing was recorded
+     */
+    public long getMeanMillis() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : TimeUnit.MICROSECONDS.toMillis(sumMicros.sum() / recorded);
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies. Concurrent recording may or may not be included.
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket holding the percentile in microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        return takeSnapshot().getPercentileMicros(percentile);
+    }
+
+    /**
+     * Gets a percentile of the latencies recorded until about a second ago, cheaply enough to call on every request.
+     * At most one caller a second pays for a new snapshot; the others read the previous one.
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket holding the percentile in microseconds, or 0 if nothing was recorded
+     */
+    public long getRecentPercentileMicros(double percentile) {
+        Snapshot current = snapshot;
+        if (System.nanoTime() - current.takenNanos >= SNAPSHOT_MAX_AGE_NANOS && refreshing.compareAndSet(false, true)) {
+            try {
+                current = takeSnapshot();
+                snapshot = current;
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return current.getPercentileMicros(percentile);
+    }
+
+    /**
+     * Copies the buckets into cumulative counts
+     * @return The snapshot
+     */
+    private Snapshot takeSnapshot() {
+        long[] cumulative = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+            cumulative[i] = total;
+        }
+        return new Snapshot(cumulative, maxMicros.get(), System.nanoTime());
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies in milliseconds
+     * @param percentile The percentile, from 0 to 100
+     * @return The percentile in milliseconds, rounded up
+     */
+    public long getPercentileMillis(double percentile) {
+        return (getPercentileMicros(percentile) + 999) / 1000;
+    }
+
+    /**
+     * Folds the buckets into cumulative counts at coarser bounds, for exporting fixed buckets.
+     * All counts come from one pass, so they never decrease from one bound to the next.
+     * @param boundsMicros The bounds in microseconds, ascending
+     * @param counts Receives, for each bound, the latencies in buckets whose upper bound is at most that bound
+     * @return The number of latencies in all buckets
+     */
+    public long getCumulativeCounts(long[] boundsMicros, long[] counts) {
+        long total = 0;
+        int bound = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long upper = bucketUpperBound(i);
+            while (bound < boundsMicros.length && upper > boundsMicros[bound]) {
+                counts[bound++] = total;
+            }
+            total += buckets.get(i);
+        }
+        while (bound < boundsMicros.length) {
+            counts[bound++] = total;
+        }
+        return total;
+    }
+
+    /**
+     * Finds the bucket a value falls in
+     * @param micros The value in microseconds, at most MAX_MICROS
+     * @return The bucket index
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the largest value that falls in a bucket
+     * @param index The bucket index
+     * @return The value in microseconds
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Cumulative bucket counts as of one moment
+     */
+    private static final class Snapshot {
+        private final long[] cumulative;
+        private final long maxMicros;
+        private final long takenNanos;
+
+        private Snapshot(long[] cumulative, long maxMicros, long takenNanos) {
+            this.cumulative = cumulative;
+            this.maxMicros = maxMicros;
+            this.takenNanos = takenNanos;
+        }
+
+        private long getPercentileMicros(double percentile) {
+            long total = cumulative[BUCKETS - 1];
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+            int low = 0;
+            int high = BUCKETS - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] >= rank) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            return Math.min(bucketUpperBound(low), maxMicros);
+        }
+    }
+}
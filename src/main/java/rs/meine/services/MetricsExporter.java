@@ -0,0 +1,533 @@
+package rs.meine.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import rs.meine.config.ConfigManager;
+import rs.meine.models.ChatTrigger;
+import rs.meine.models.FailureType;
+import rs.meine.models.RequestPriority;
+import rs.meine.models.RequestType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the plugin's metrics at /metrics in the OpenMetrics text format, for Prometheus and compatible scrapers.
+ * Scrapes are answered one at a time by a single daemon thread, rendering into a text buffer and a byte buffer
+ * that are reused across scrapes. Nothing is exported per player, so a scrape costs the same on an empty server
+ * and a full one.
+ */
+public class MetricsExporter {
+    private static final String PREFIX = "gptcommenter_";
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final RequestType[] TYPES = RequestType.values();
+    private static final FailureType[] FAILURES = FailureType.values();
+    private static final ChatTrigger[] CHAT_TRIGGERS = ChatTrigger.values();
+    private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+
+    // Exported histogram buckets, coarser than the recorded ones
+    private static final long[] BUCKET_MICROS = {
+        5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000, 60_000_000
+    };
+    private static final String[] BUCKET_LABELS = {
+        "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10", "30", "60"
+    };
+    // Main-thread time per tick, up to the whole 50 ms tick
+    private static final long[] TICK_BUCKET_MICROS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000
+    };
+    private static final String[] TICK_BUCKET_LABELS = {
+        "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05"
+    };
+
+    private final ConfigManager configManager;
+    private final MetricsService metricsService;
+    private final OpenAIService openAIService;
+    private final TickProfiler tickProfiler;
+    private final ChatDelivery chatDelivery;
+    private final Logger logger;
+
+    // Reused by every scrape; only touched by the single server thread
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+    private final long[] bucketCounts = new long[BUCKET_MICROS.length];
+    private final long[] tickBucketCounts = new long[TICK_BUCKET_MICROS.length];
+    private byte[] bytes = new byte[16 * 1024];
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String boundAddress;
+    private int boundPort;
+
+    /**
+     * Creates a new MetricsExporter. Nothing is served until start is called.
+     * @param configManager The configuration manager
+     * @param metricsService The metrics service
+     * @param openAIService The OpenAI service, for queue, limiter and cache state
+     * @param tickProfiler The main-thread profiler
+     * @param chatDelivery The outbound chat queue
+     * @param logger The logger to report the endpoint's state to
+     */
+    public MetricsExporter(ConfigManager configManager, MetricsService metricsService, OpenAIService openAIService,
+                           TickProfiler tickProfiler, ChatDelivery chatDelivery, Logger logger) {
+        this.configManager = configManager;
+        this.metricsService = metricsService;
+        this.openAIService = openAIService;
+        this.tickProfiler = tickProfiler;
+        this.chatDelivery = chatDelivery;
+        this.logger = logger;
+    }
+
+    /**
+     * Starts serving if the endpoint is enabled
+     */
+    public synchronized void start() {
+        if (!configManager.isMetricsEndpointEnabled() || server != null) {
+            return;
+        }
+
+        String address = configManager.getMetricsBindAddress();
+        int port = configManager.getMetricsPort();
+        try {
+            HttpServer created = HttpServer.create(new InetSocketAddress(address, port), 0);
+            executor = Executors.newSingleThreadExecutor(BackgroundTasks.threads("Metrics"));
+            created.setExecutor(executor);
+            created.createContext("/metrics", this::handle);
+            created.start();
+
+            server = created;
+            boundAddress = address;
+            boundPort = port;
+            logger.info("Serving metrics at http://" + address + ":" + port + "/metrics");
+        } catch (IOException | IllegalArgumentException e) {
+            logger.log(Level.WARNING, "Could not serve metrics on " + address + ":" + port, e);
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    /**
+     * Applies the current configuration, restarting the endpoint if it was enabled, disabled or moved
+     */
+    public synchronized void reload() {
+        boolean enabled = configManager.isMetricsEndpointEnabled();
+        if (server != null && enabled && configManager.getMetricsBindAddress().equals(boundAddress)
+                && configManager.getMetricsPort() == boundPort) {
+            return;
+        }
+
+        shutdown();
+        start();
+    }
+
+    /**
+     * Stops serving
+     */
+    public synchronized void shutdown() {
+        if (server == null) {
+            return;
+        }
+
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Answers one scrape
+     * @param exchange The HTTP exchange
+     * @throws IOException if the response could not be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            int length = render();
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(bytes, 0, length);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error rendering metrics", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders every metric into the reused byte buffer
+     * @return The number of bytes rendered
+     */
+    int render() {
+        text.setLength(0);
+        renderRequests();
+        renderLatency();
+        renderCaches();
+        renderEngine();
+        renderResilience();
+        renderProfiler();
+        renderDelivery();
+        text.append("# EOF\n");
+
+        // Everything rendered is ASCII, so each char is one byte
+        int length = text.length();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return length;
+    }
+
+    /**
+     * Renders request, failure and token counters per request type
+     */
+    private void renderRequests() {
+        family("requests", "counter", "Requests submitted to OpenAI, including ones rejected before they were sent.");
+        for (RequestType type : TYPES) {
+            sample("requests_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getRequests()).append('\n');
+        }
+
+        family("requests_deduplicated", "counter", "Requests answered by an identical request already in flight.");
+        for (RequestType type : TYPES) {
+            sample("requests_deduplicated_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getDeduplicated()).append('\n');
+        }
+
+        family("request_successes", "counter", "Requests OpenAI answered.");
+        for (RequestType type : TYPES) {
+            sample("request_successes_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getSuccesses()).append('\n');
+        }
+
+        family("request_failures", "counter", "Requests that failed, by cause.");
+        for (RequestType type : TYPES) {
+            MetricsService.TypeMetrics metrics = metricsService.getTypeMetrics(type);
+            for (FailureType failure : FAILURES) {
+                sample("request_failures_total").append("{type=\"").append(type.getMetricName())
+                    .append("\",reason=\"").append(failure.getMetricName()).append("\"} ")
+                    .append(metrics.getFailures(failure)).append('\n');
+            }
+        }
+
+        family("response_parse_failures", "counter", "Answers that came back but could not be used, such as batched "
+            + "commentary that could not be split; the requests themselves count as successes.");
+        for (RequestType type : TYPES) {
+            sample("response_parse_failures_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getParseFailures()).append('\n');
+        }
+
+        family("tokens", "counter", "Tokens used as counted by OpenAI.");
+        for (RequestType type : TYPES) {
+            MetricsService.TypeMetrics metrics = metricsService.getTypeMetrics(type);
+            sample("tokens_total").append("{type=\"").append(type.getMetricName()).append("\",kind=\"prompt\"} ")
+                .append(metrics.getPromptTokens()).append('\n');
+            sample("tokens_total").append("{type=\"").append(type.getMetricName()).append("\",kind=\"completion\"} ")
+                .append(metrics.getCompletionTokens()).append('\n');
+        }
+
+        family("players", "gauge", "Players who have made at least one request since the server started.");
+        sample("players").append(' ').append(metricsService.getUniquePlayers()).append('\n');
+
+        family("chat_messages", "counter", "Chat messages seen by the chat listener, by whether and why they were answered.");
+        for (ChatTrigger trigger : CHAT_TRIGGERS) {
+            sample("chat_messages_total").append("{outcome=\"").append(trigger.getMetricName()).append("\"} ")
+                .append(metricsService.getChatMessages(trigger)).append('\n');
+        }
+
+        family("chat_messages_combined", "counter", "Chat messages answered by one reply to several messages of a world.");
+        sample("chat_messages_combined_total").append(' ').append(metricsService.getChatMessagesCombined()).append('\n');
+
+        family("chat_replies_superseded", "counter", "Chat replies dropped before they were sent because newer messages needed a reply.");
+        sample("chat_replies_superseded_total").append(' ').append(metricsService.getChatRepliesSuperseded()).append('\n');
+
+        family("chat_messages_dropped", "counter", "Chat messages dropped unanswered because more than chat.aggregation.max_messages waited for a reply.");
+        sample("chat_messages_dropped_total").append(' ').append(metricsService.getChatMessagesDropped()).append('\n');
+
+        family("commentary_dropped", "counter", "Event commentary never broadcast because its request failed without a fallback line.");
+        sample("commentary_dropped_total").append(' ').append(metricsService.getCommentaryDropped()).append('\n');
+    }
+
+    /**
+     * Renders the latency histograms of every request type and stage
+     */
+    private void renderLatency() {
+        family("request_duration_seconds", "histogram", "Request latency by stage: queue wait, API call, "
+            + "time to first streamed token, and submission to completion.");
+        text.append("# UNIT ").append(PREFIX).append("request_duration_seconds seconds\n");
+        for (RequestType type : TYPES) {
+            MetricsService.TypeMetrics metrics = metricsService.getTypeMetrics(type);
+            histogram(type, "queue", metrics.getQueueWait());
+            histogram(type, "api", metrics.getApiLatency());
+            histogram(type, "first_token", metrics.getTimeToFirstToken());
+            histogram(type, "total", metrics.getTotalLatency());
+        }
+    }
+
+    /**
+     * Renders one histogram's buckets, count and sum
+     * @param type The request type
+     * @param stage The stage label
+     * @param histogram The histogram
+     */
+    private void histogram(RequestType type, String stage, LatencyHistogram histogram) {
+        long count = histogram.getCumulativeCounts(BUCKET_MICROS, bucketCounts);
+        for (int i = 0; i < BUCKET_MICROS.length; i++) {
+            histogramLabels("request_duration_seconds_bucket", type, stage).append(",le=\"").append(BUCKET_LABELS[i])
+                .append("\"} ").append(bucketCounts[i]).append('\n');
+        }
+        histogramLabels("request_duration_seconds_bucket", type, stage).append(",le=\"+Inf\"} ").append(count).append('\n');
+        histogramLabels("request_duration_seconds_count", type, stage).append("} ").append(count).append('\n');
+        appendSeconds(histogramLabels("request_duration_seconds_sum", type, stage).append("} "), histogram.getSumMicros())
+            .append('\n');
+    }
+
+    /**
+     * Starts a histogram sample with its type and stage labels, leaving the label set open
+     * @param name The sample name without the prefix
+     * @param type The request type
+     * @param stage The stage label
+     * @return The text buffer
+     */
+    private StringBuilder histogramLabels(String name, RequestType type, String stage) {
+        return sample(name).append("{type=\"").append(type.getMetricName()).append("\",stage=\"").append(stage).append('"');
+    }
+
+    /**
+     * Renders cache lookups, sizes and evictions
+     */
+    private void renderCaches() {
+        ResponseCache commandCache = openAIService.getCommandCache();
+
+        family("cache_hits", "counter", "Response cache hits.");
+        sample("cache_hits_total").append("{cache=\"command\"} ").append(metricsService.getCacheHits()).append('\n');
+        sample("cache_hits_total").append("{cache=\"semantic\"} ").append(metricsService.getSemanticCacheHits()).append('\n');
+
+        family("cache_misses", "counter", "Response cache misses.");
+        sample("cache_misses_total").append("{cache=\"command\"} ").append(metricsService.getCacheMisses()).append('\n');
+        sample("cache_misses_total").append("{cache=\"semantic\"} ").append(metricsService.getSemanticCacheMisses()).append('\n');
+
+        family("cache_entries", "gauge", "Responses held in each cache.");
+        sample("cache_entries").append("{cache=\"command\"} ").append(commandCache.size()).append('\n');
+        sample("cache_entries").append("{cache=\"semantic\"} ").append(openAIService.getSemanticCache().size()).append('\n');
+
+        family("cache_evictions", "counter", "Command cache entries evicted to make room.");
+        sample("cache_evictions_total").append("{cache=\"command\"} ").append(commandCache.getEvictions()).append('\n');
+    }
+
+    /**
+     * Renders the request engine's queues, the adaptive limiter's state and the HTTP client's use and pool
+     */
+    private void renderEngine() {
+        RequestEngine requestEngine = openAIService.getRequestEngine();
+        AdaptiveLimiter adaptiveLimiter = openAIService.getAdaptiveLimiter();
+
+        family("queue_depth", "gauge", "Requests waiting for a request thread, by scheduling class.");
+        for (RequestPriority priority : PRIORITIES) {
+            sample("queue_depth").append("{priority=\"").append(priority.getConfigKey()).append("\"} ")
+                .append(requestEngine.getQueued(priority)).append('\n');
+        }
+
+        family("requests_in_flight", "gauge", "Requests running on a request thread, by scheduling class.");
+        for (RequestPriority priority : PRIORITIES) {
+            sample("requests_in_flight").append("{priority=\"").append(priority.getConfigKey()).append("\"} ")
+                .append(requestEngine.getInFlight(priority)).append('\n');
+        }
+
+        family("request_threads", "gauge", "Maximum number of requests running at once.");
+        sample("request_threads").append(' ').append(requestEngine.getMaxInFlight()).append('\n');
+
+        family("engine_dropped", "counter", "Requests the engine dropped before running them, by reason.");
+        sample("engine_dropped_total").append("{reason=\"rejected\"} ").append(requestEngine.getRejectedRequests()).append('\n');
+        sample("engine_dropped_total").append("{reason=\"shed\"} ").append(requestEngine.getShedRequests()).append('\n');
+        sample("engine_dropped_total").append("{reason=\"expired\"} ").append(requestEngine.getExpiredRequests()).append('\n');
+
+        family("limiter_limit", "gauge", "OpenAI calls the adaptive limiter currently allows at once.");
+        sample("limiter_limit").append(' ').append(adaptiveLimiter.getEffectiveLimit()).append('\n');
+
+        family("limiter_in_flight", "gauge", "OpenAI calls currently holding an adaptive limiter slot.");
+        sample("limiter_in_flight").append(' ').append(adaptiveLimiter.getInFlight()).append('\n');
+
+        family("limiter_pause_seconds", "gauge", "Time left on a Retry-After pause requested by OpenAI.");
+        appendSeconds(sample("limiter_pause_seconds").append(' '), adaptiveLimiter.getRemainingPauseMillis() * 1000)
+            .append('\n');
+
+        ClientManager clientManager = openAIService.getClientManager();
+        family("http_client_in_flight", "gauge", "Calls using the current OpenAI HTTP client.");
+        sample("http_client_in_flight").append(' ').append(clientManager.getInFlight()).append('\n');
+
+        family("http_clients_draining", "gauge", "Replaced OpenAI HTTP clients waiting for their last calls before closing.");
+        sample("http_clients_draining").append(' ').append(clientManager.getDraining()).append('\n');
+
+        family("http_client_builds", "counter", "OpenAI HTTP clients built, on startup and on reloads that changed client settings.");
+        sample("http_client_builds_total").append(' ').append(clientManager.getBuilds()).append('\n');
+
+        family("http_client_closes", "counter", "OpenAI HTTP clients closed.");
+        sample("http_client_closes_total").append(' ').append(clientManager.getCloses()).append('\n');
+
+        PooledHttpClient httpClient = clientManager.getHttpClient();
+        if (httpClient != null) {
+            family("http_pool_connections", "gauge", "Connections in the current HTTP client's pool, busy or idle.");
+            sample("http_pool_connections").append(' ').append(httpClient.getConnectionCount()).append('\n');
+
+            family("http_pool_idle_connections", "gauge", "Pooled connections no call is using.");
+            sample("http_pool_idle_connections").append(' ').append(httpClient.getIdleConnectionCount()).append('\n');
+
+            family("http_dispatcher_running", "gauge", "Calls the HTTP client's dispatcher is running, until their response headers arrive.");
+            sample("http_dispatcher_running").append(' ').append(httpClient.getRunningCalls()).append('\n');
+
+            family("http_dispatcher_queued", "gauge", "Calls waiting in the HTTP client's dispatcher for http.max_requests or http.max_requests_per_host.");
+            sample("http_dispatcher_queued").append(' ').append(httpClient.getQueuedCalls()).append('\n');
+        }
+    }
+
+    /**
+     * Renders retries, hedged calls and fallbacks per request type, and the circuit breaker's state
+     */
+    private void renderResilience() {
+        family("request_retries", "counter", "Failed OpenAI calls that were sent again.");
+        for (RequestType type : TYPES) {
+            sample("request_retries_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getRetries()).append('\n');
+        }
+
+        family("request_hedges", "counter", "Second OpenAI calls sent to race a slow one.");
+        for (RequestType type : TYPES) {
+            sample("request_hedges_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getHedges()).append('\n');
+        }
+
+        family("request_hedge_wins", "counter", "Hedged requests the second call answered first.");
+        for (RequestType type : TYPES) {
+            sample("request_hedge_wins_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getHedgeWins()).append('\n');
+        }
+
+        family("request_fallbacks", "counter", "Requests answered with a canned line because OpenAI was unavailable.");
+        for (RequestType type : TYPES) {
+            sample("request_fallbacks_total").append("{type=\"").append(type.getMetricName()).append("\"} ")
+                .append(metricsService.getTypeMetrics(type).getFallbacks()).append('\n');
+        }
+
+        CircuitBreaker circuitBreaker = openAIService.getCircuitBreaker();
+        family("circuit_open", "gauge", "1 while the circuit breaker refuses OpenAI calls, including while its probe is in flight.");
+        sample("circuit_open").append(' ').append(circuitBreaker.isClosed() ? 0 : 1).append('\n');
+
+        family("circuit_opens", "counter", "Times the circuit breaker opened.");
+        sample("circuit_opens_total").append(' ').append(circuitBreaker.getOpens()).append('\n');
+
+        family("circuit_rejected", "counter", "OpenAI calls refused by the open circuit breaker.");
+        sample("circuit_rejected_total").append(' ').append(circuitBreaker.getRejected()).append('\n');
+    }
+
+    /**
+     * Renders the plugin's main-thread time per tick and per section
+     */
+    private void renderProfiler() {
+        List<TickProfiler.Section> sections = tickProfiler.getSections();
+        int sectionCount = sections.size();
+
+        family("main_thread_seconds", "counter", "Main-thread time spent in each event handler and scheduled callback.");
+        for (int i = 0; i < sectionCount; i++) {
+            TickProfiler.Section section = sections.get(i);
+            appendSeconds(sample("main_thread_seconds_total").append("{section=\"").append(section.getName()).append("\"} "),
+                section.getMainThreadNanos() / 1000).append('\n');
+        }
+
+        family("section_calls", "counter", "Runs of each event handler and scheduled callback, on any thread.");
+        for (int i = 0; i < sectionCount; i++) {
+            TickProfiler.Section section = sections.get(i);
+            sample("section_calls_total").append("{section=\"").append(section.getName()).append("\"} ")
+                .append(section.getCalls()).append('\n');
+        }
+
+        LatencyHistogram tickTime = tickProfiler.getTickTime();
+        family("tick_plugin_seconds", "histogram", "Main-thread time the plugin used per server tick.");
+        text.append("# UNIT ").append(PREFIX).append("tick_plugin_seconds seconds\n");
+        long count = tickTime.getCumulativeCounts(TICK_BUCKET_MICROS, tickBucketCounts);
+        for (int i = 0; i < TICK_BUCKET_MICROS.length; i++) {
+            sample("tick_plugin_seconds_bucket").append("{le=\"").append(TICK_BUCKET_LABELS[i]).append("\"} ")
+                .append(tickBucketCounts[i]).append('\n');
+        }
+        sample("tick_plugin_seconds_bucket").append("{le=\"+Inf\"} ").append(count).append('\n');
+        sample("tick_plugin_seconds_count").append(' ').append(count).append('\n');
+        appendSeconds(sample("tick_plugin_seconds_sum").append(' '), tickTime.getSumMicros()).append('\n');
+
+        family("ticks_over_budget", "counter", "Ticks in which the plugin used more main-thread time than its budget.");
+        sample("ticks_over_budget_total").append(' ').append(tickProfiler.getTicksOverBudget()).append('\n');
+
+        family("deferred_tasks", "counter", "Scheduled callbacks moved to a later tick because the plugin was over budget.");
+        sample("deferred_tasks_total").append(' ').append(tickProfiler.getDeferredTasks()).append('\n');
+    }
+
+    /**
+     * Renders the outbound chat queue
+     */
+    private void renderDelivery() {
+        family("delivery_queue_depth", "gauge", "Chat lines waiting to be sent.");
+        sample("delivery_queue_depth").append(' ').append(chatDelivery.getQueued()).append('\n');
+
+        family("delivery_messages", "counter", "Chat lines taken from the queue, by outcome: sent on their own line, "
+            + "merged into the line before, or dropped because they expired or their recipient left.");
+        sample("delivery_messages_total").append("{outcome=\"sent\"} ").append(chatDelivery.getSent()).append('\n');
+        sample("delivery_messages_total").append("{outcome=\"merged\"} ").append(chatDelivery.getMerged()).append('\n');
+        sample("delivery_messages_total").append("{outcome=\"expired\"} ").append(chatDelivery.getExpired()).append('\n');
+        sample("delivery_messages_total").append("{outcome=\"undeliverable\"} ").append(chatDelivery.getUndeliverable())
+            .append('\n');
+
+        family("delivery_split_messages", "counter", "Messages split into several chat lines to fit the length limit.");
+        sample("delivery_split_messages_total").append(' ').append(chatDelivery.getSplit()).append('\n');
+    }
+
+    /**
+     * Writes the TYPE and HELP lines of a metric family
+     * @param name The family name without the prefix
+     * @param type The OpenMetrics type
+     * @param help The description
+     */
+    private void family(String name, String type, String help) {
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    }
+
+    /**
+     * Starts a sample line
+     * @param name The sample name without the prefix
+     * @return The text buffer
+     */
+    private StringBuilder sample(String name) {
+        return text.append(PREFIX).append(name);
+    }
+
+    /**
+     * Appends microseconds as decimal seconds without going through a double
+     * @param builder The buffer to append to
+     * @param micros The duration in microseconds
+     * @return The buffer
+     */
+    static StringBuilder appendSeconds(StringBuilder builder, long micros) {
+        builder.append(micros / 1_000_000).append('.');
+        long fraction = micros % 1_000_000;
+        for (long digit = 100_000; digit > 1 && fraction < digit; digit /= 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+}
@@ -1,24 +1,49 @@
 package rs.meine.services;
 
 import org.bukkit.plugin.java.JavaPlugin;
-import java.util.HashMap;
+import rs.meine.models.ChatTrigger;
+import rs.meine.models.FailureType;
+import rs.meine.models.RequestType;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 /**
- * Service for tracking plugin usage metrics
+ * Service for tracking plugin usage metrics.
+ * Every request is followed by a RequestTrace from submission to completion, and counted per request type with
+ * lock-free counters, latency histograms split into queue wait and API time, and sliding-window rates.
+ * Counters are never reset, so rates and percentiles always cover the whole uptime or the stated window.
  */
 public class MetricsService {
+    private static final long RATE_SLOT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int RATE_SLOTS = 60;
+    
     private final JavaPlugin plugin;
     private final Logger logger;
     
-    // Metrics counters
-    private final AtomicInteger totalRequests = new AtomicInteger(0);
-    private final AtomicInteger successfulRequests = new AtomicInteger(0);
-    private final AtomicInteger failedRequests = new AtomicInteger(0);
-    private final Map<UUID, Integer> requestsPerPlayer = new HashMap<>();
+    // Per request type counters, histograms and rates
+    private final Map<RequestType, TypeMetrics> typeMetrics = new EnumMap<>(RequestType.class);
+    private final Set<UUID> players = ConcurrentHashMap.newKeySet();
+    
+    // Command cache lookups
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder semanticCacheHits = new LongAdder();
+    private final LongAdder semanticCacheMisses = new LongAdder();
+    
+    // Chat messages by why they were or were not answered
+    private final LongAdder[] chatTriggers = new LongAdder[ChatTrigger.values().length];
+    private final LongAdder chatMessagesCombined = new LongAdder();
+    private final LongAdder chatRepliesSuperseded = new LongAdder();
+    private final LongAdder chatMessagesDropped = new LongAdder();
+    
+    // Event commentary that was never broadcast because its request failed
+    private final LongAdder commentaryDropped = new LongAdder();
     
     /**
      * Creates a new MetricsService
@@ -27,6 +52,12 @@ public class MetricsService {
     public MetricsService(JavaPlugin plugin) {
         this.plugin = plugin;
         this.logger = plugin.getLogger();
+        for (RequestType type : RequestType.values()) {
+            typeMetrics.put(type, new TypeMetrics());
+        }
+        for (int i = 0; i < chatTriggers.length; i++) {
+            chatTriggers[i] = new LongAdder();
+        }
         
         // Start metrics reporting task
         startMetricsReporting();
@@ -41,68 +72,338 @@ public class MetricsService {
     }
     
     /**
-     * Records a successful API request
-     * @param playerUUID The UUID of the player who made the request
+     * Records that a request was submitted
+     * @param type What the request is for
+     * @param playerUUID The player the request is for, or null if it was not made for a player
+     * @return The trace to record the rest of the request's life on
      */
-    public void recordSuccessfulRequest(UUID playerUUID) {
-        totalRequests.incrementAndGet();
-        successfulRequests.incrementAndGet();
-        
-        requestsPerPlayer.compute(playerUUID, (uuid, count) -> count == null ? 1 : count + 1);
+    public RequestTrace startRequest(RequestType type, UUID playerUUID) {
+        long now = System.nanoTime();
+        TypeMetrics metrics = typeMetrics.get(type);
+        metrics.requests.increment();
+        metrics.requestRate.increment(now);
+        if (playerUUID != null) {
+            players.add(playerUUID);
+        }
+        return new RequestTrace(type, playerUUID, now);
+    }
+    
+    /**
+     * Records the time a request spent queued and waiting for a free slot, ending now as its API call starts
+     * @param trace The request
+     */
+    public void recordQueueWait(RequestTrace trace) {
+        if (trace.markQueueWaitRecorded()) {
+            typeMetrics.get(trace.getType()).queueWait.record(System.nanoTime() - trace.getSubmittedNanos());
+        }
+    }
+    
+    /**
+     * Records that OpenAI answered a request
+     * @param trace The request
+     * @param apiNanos Nanoseconds the API call took
+     */
+    public void recordSuccess(RequestTrace trace, long apiNanos) {
+        if (trace.markOutcomeRecorded()) {
+            trace.markSucceeded();
+            TypeMetrics metrics = typeMetrics.get(trace.getType());
+            metrics.successes.increment();
+            metrics.apiLatency.record(apiNanos);
+        }
+    }
+    
+    /**
+     * Records that a request failed. Only the first outcome recorded for a request counts.
+     * @param trace The request
+     * @param failure Why the request failed
+     */
+    public void recordFailure(RequestTrace trace, FailureType failure) {
+        if (trace.markOutcomeRecorded()) {
+            typeMetrics.get(trace.getType()).recordFailure(failure, System.nanoTime());
+        }
+    }
+    
+    /**
+     * Records that a request was answered from cache without calling OpenAI. It counts as neither a success nor a failure.
+     * @param trace The request
+     */
+    public void recordCacheAnswer(RequestTrace trace) {
+        trace.markOutcomeRecorded();
+    }
+    
+    /**
+     * Records that a request's future completed. Requests that succeeded get their end-to-end latency recorded;
+     * requests that never recorded an outcome are counted as failed.
+     * @param trace The request
+     * @param failure Why the future failed, or null if it completed normally
+     */
+    public void recordCompletion(RequestTrace trace, FailureType failure) {
+        if (trace.isSucceeded()) {
+            typeMetrics.get(trace.getType()).totalLatency.record(System.nanoTime() - trace.getSubmittedNanos());
+        } else {
+            recordFailure(trace, failure != null ? failure : FailureType.OTHER);
+        }
+    }
+    
+    /**
+     * Records a request that was answered by an identical request already in flight instead of its own API call
+     * @param type The request type
+     */
+    public void recordDeduplicated(RequestType type) {
+        typeMetrics.get(type).deduplicated.increment();
+    }
+    
+    /**
+     * Records that a failed call was sent again
+     * @param type The request type
+     */
+    public void recordRetry(RequestType type) {
+        typeMetrics.get(type).retries.increment();
+    }
+    
+    /**
+     * Records that a slow call was raced by a second one
+     * @param type The request type
+     */
+    public void recordHedge(RequestType type) {
+        typeMetrics.get(type).hedges.increment();
+    }
+    
+    /**
+     * Records that the second call of a hedged request answered first
+     * @param type The request type
+     */
+    public void recordHedgeWin(RequestType type) {
+        typeMetrics.get(type).hedgeWins.increment();
+    }
+    
+    /**
+     * Records that a request was answered with a canned line because the API was unavailable
+     * @param type The request type
+     */
+    public void recordFallback(RequestType type) {
+        typeMetrics.get(type).fallbacks.increment();
+    }
+    
+    /**
+     * Records a response that came back but could not be used. The request itself already counted as a success, so
+     * this is counted apart from request failures.
+     * @param type The request type the response was for
+     */
+    public void recordParseFailure(RequestType type) {
+        typeMetrics.get(type).parseFailures.increment();
+    }
+    
+    /**
+     * Records the time to first token of a streamed response
+     * @param trace The request
+     * @param timeToFirstTokenNanos Nanoseconds from sending the request to receiving the first token
+     */
+    public void recordStreamLatency(RequestTrace trace, long timeToFirstTokenNanos) {
+        typeMetrics.get(trace.getType()).timeToFirstToken.record(timeToFirstTokenNanos);
+    }
+    
+    /**
+     * Records the tokens a request used
+     * @param type The request type
+     * @param promptTokens The input tokens, as counted by the API
+     * @param completionTokens The output tokens, as counted by the API
+     */
+    public void recordTokenUsage(RequestType type, long promptTokens, long completionTokens) {
+        TypeMetrics metrics = typeMetrics.get(type);
+        metrics.promptTokens.add(promptTokens);
+        metrics.completionTokens.add(completionTokens);
+    }
+    
+    /**
+     * Records a command cache hit
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+    
+    /**
+     * Records a command cache miss
+     */
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+    
+    /**
+     * Records a semantic cache hit
+     */
+    public void recordSemanticCacheHit() {
+        semanticCacheHits.increment();
+    }
+    
+    /**
+     * Records a semantic cache miss
+     */
+    public void recordSemanticCacheMiss() {
+        semanticCacheMisses.increment();
+    }
+    
+    /**
+     * Records whether and why a chat message was answered
+     * @param trigger The outcome
+     */
+    public void recordChatTrigger(ChatTrigger trigger) {
+        chatTriggers[trigger.ordinal()].increment();
+    }
+    
+    /**
+     * Records a reply that answers several chat messages at once
+     * @param messages The number of messages it answers
+     */
+    public void recordChatMessagesCombined(int messages) {
+        chatMessagesCombined.add(messages);
     }
     
     /**
-     * Records a failed API request
-     * @param playerUUID The UUID of the player who made the request
+     * Records a chat reply that was dropped before it was sent because newer messages needed a reply
      */
-    public void recordFailedRequest(UUID playerUUID) {
-        totalRequests.incrementAndGet();
-        failedRequests.incrementAndGet();
+    public void recordChatReplySuperseded() {
+        chatRepliesSuperseded.increment();
+    }
+    
+    /**
+     * Records chat messages dropped unanswered because more than the message limit waited for a world's next reply
+     * @param messages The number of messages
+     */
+    public void recordChatMessagesDropped(int messages) {
+        chatMessagesDropped.add(messages);
+    }
+    
+    /**
+     * Records event commentary that was dropped because its request failed and no fallback line stood in for it
+     * @param events The number of events that got no commentary
+     */
+    public void recordCommentaryDropped(int events) {
+        commentaryDropped.add(events);
     }
     
     /**
      * Reports current metrics to the log
      */
     private void reportMetrics() {
-        int total = totalRequests.get();
-        int success = successfulRequests.get();
-        int failed = failedRequests.get();
-        int uniquePlayers = requestsPerPlayer.size();
+        logger.info(String.format("MetricsService Report: Total requests: %d, Successful: %d, Failed: %d, Unique players: %d",
+            getTotalRequests(), getSuccessfulRequests(), getFailedRequests(), getUniquePlayers()));
+        
+        for (RequestType type : RequestType.values()) {
+            TypeMetrics metrics = typeMetrics.get(type);
+            if (metrics.getRequests() == 0) {
+                continue;
+            }
+            
+            logger.info(String.format("MetricsService Report: %s: %d requests (%.2f/s over 5m), %d ok, %d failed [%s], " +
+                "total p50/p99 %d/%d ms, queue p99 %d ms, api p99 %d ms, tokens in %d out %d, " +
+                "retries %d, hedges %d (%d won), fallbacks %d, unparseable answers %d",
+                type.getMetricName(), metrics.getRequests(), metrics.getRequestRate(300), metrics.getSuccesses(),
+                metrics.getFailures(), metrics.describeFailures(),
+                metrics.getTotalLatency().getPercentileMillis(50), metrics.getTotalLatency().getPercentileMillis(99),
+                metrics.getQueueWait().getPercentileMillis(99), metrics.getApiLatency().getPercentileMillis(99),
+                metrics.getPromptTokens(), metrics.getCompletionTokens(),
+                metrics.getRetries(), metrics.getHedges(), metrics.getHedgeWins(), metrics.getFallbacks(),
+                metrics.getParseFailures()));
+        }
         
-        logger.info(String.format("MetricsService Report: Total requests: %d, Successful: %d, Failed: %d, Unique players: %d", 
-            total, success, failed, uniquePlayers));
+        long hits = cacheHits.sum();
+        long misses = cacheMisses.sum();
+        if (hits + misses > 0) {
+            logger.info(String.format("MetricsService Report: Command cache hits: %d, misses: %d", hits, misses));
+        }
         
-        // Reset counters after reporting
-        if (total > 10000) {  // Only reset if there's a significant number to avoid losing data
-            totalRequests.set(0);
-            successfulRequests.set(0);
-            failedRequests.set(0);
-            requestsPerPlayer.clear();
+        long semanticHits = semanticCacheHits.sum();
+        long semanticMisses = semanticCacheMisses.sum();
+        if (semanticHits + semanticMisses > 0) {
+            logger.info(String.format("MetricsService Report: Semantic cache hits: %d, misses: %d", semanticHits, semanticMisses));
         }
     }
     
+    /**
+     * Gets the metrics of one request type
+     * @param type The request type
+     * @return The metrics
+     */
+    public TypeMetrics getTypeMetrics(RequestType type) {
+        return typeMetrics.get(type);
+    }
+    
+    /**
+     * Gets the number of chat messages with one outcome
+     * @param trigger The outcome
+     * @return The number of messages
+     */
+    public long getChatMessages(ChatTrigger trigger) {
+        return chatTriggers[trigger.ordinal()].sum();
+    }
+    
+    /**
+     * Gets the number of chat messages answered by a reply to several messages
+     * @return The number of messages
+     */
+    public long getChatMessagesCombined() {
+        return chatMessagesCombined.sum();
+    }
+    
+    /**
+     * Gets the number of chat replies dropped before they were sent because newer messages needed a reply
+     * @return The number of replies
+     */
+    public long getChatRepliesSuperseded() {
+        return chatRepliesSuperseded.sum();
+    }
+    
+    /**
+     * Gets the number of chat messages dropped unanswered because too many waited for their world's next reply
+     * @return The number of messages
+     */
+    public long getChatMessagesDropped() {
+        return chatMessagesDropped.sum();
+    }
+    
+    /**
+     * Gets the number of events whose commentary was dropped because its request failed
+     * @return The number of events
+     */
+    public long getCommentaryDropped() {
+        return commentaryDropped.sum();
+    }
+    
     /**
      * Gets the total number of requests
      * @return The total number of requests
      */
-    public int getTotalRequests() {
-        return totalRequests.get();
+    public long getTotalRequests() {
+        long total = 0;
+        for (TypeMetrics metrics : typeMetrics.values()) {
+            total += metrics.getRequests();
+        }
+        return total;
     }
     
     /**
      * Gets the number of successful requests
      * @return The number of successful requests
      */
-    public int getSuccessfulRequests() {
-        return successfulRequests.get();
+    public long getSuccessfulRequests() {
+        long total = 0;
+        for (TypeMetrics metrics : typeMetrics.values()) {
+            total += metrics.getSuccesses();
+        }
+        return total;
     }
     
     /**
      * Gets the number of failed requests
      * @return The number of failed requests
      */
-    public int getFailedRequests() {
-        return failedRequests.get();
+    public long getFailedRequests() {
+        long total = 0;
+        for (TypeMetrics metrics : typeMetrics.values()) {
+            total += metrics.getFailures();
+        }
+        return total;
     }
     
     /**
@@ -110,6 +411,269 @@ public class MetricsService {
      * @return The number of unique players
      */
     public int getUniquePlayers() {
-        return requestsPerPlayer.size();
+        return players.size();
+    }
+    
+    /**
+     * Gets the number of command cache hits
+     * @return The number of cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+    
+    /**
+     * Gets the number of command cache misses
+     * @return The number of cache misses
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+    
+    /**
+     * Gets the number of semantic cache hits
+     * @return The number of semantic cache hits
+     */
+    public long getSemanticCacheHits() {
+        return semanticCacheHits.sum();
+    }
+    
+    /**
+     * Gets the number of semantic cache misses
+     * @return The number of semantic cache misses
+     */
+    public long getSemanticCacheMisses() {
+        return semanticCacheMisses.sum();
+    }
+    
+    /**
+     * Gets the total number of input tokens used
+     * @return The number of input tokens
+     */
+    public long getTotalPromptTokens() {
+        long total = 0;
+        for (TypeMetrics metrics : typeMetrics.values()) {
+            total += metrics.getPromptTokens();
+        }
+        return total;
+    }
+    
+    /**
+     * Gets the total number of output tokens used
+     * @return The number of output tokens
+     */
+    public long getTotalCompletionTokens() {
+        long total = 0;
+        for (TypeMetrics metrics : typeMetrics.values()) {
+            total += metrics.getCompletionTokens();
+        }
+        return total;
+    }
+    
+    /**
+     * Counters, latency histograms and rates of one request type
+     */
+    public static final class TypeMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder[] failures = new LongAdder[FailureType.values().length];
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder deduplicated = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder fallbacks = new LongAdder();
+        private final LongAdder parseFailures = new LongAdder();
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram apiLatency = new LatencyHistogram();
+        private final LatencyHistogram totalLatency = new LatencyHistogram();
+        private final LatencyHistogram timeToFirstToken = new LatencyHistogram();
+        private final SlidingWindowCounter requestRate = new SlidingWindowCounter(RATE_SLOTS, RATE_SLOT_NANOS);
+        private final SlidingWindowCounter errorRate = new SlidingWindowCounter(RATE_SLOTS, RATE_SLOT_NANOS);
+        
+        private TypeMetrics() {
+            for (int i = 0; i < failures.length; i++) {
+                failures[i] = new LongAdder();
+            }
+        }
+        
+        private void recordFailure(FailureType failure, long nowNanos) {
+            failures[failure.ordinal()].increment();
+            errorRate.increment(nowNanos);
+        }
+        
+        /**
+         * Lists the failure classes that occurred
+         * @return The failure labels and counts, or "none"
+         */
+        private String describeFailures() {
+            StringBuilder description = new StringBuilder();
+            for (FailureType failure : FailureType.values()) {
+                long count = getFailures(failure);
+                if (count > 0) {
+                    if (description.length() > 0) {
+                        description.append(", ");
+                    }
+                    description.append(failure.getLabel()).append(' ').append(count);
+                }
+            }
+            return description.length() == 0 ? "none" : description.toString();
+        }
+        
+        /**
+         * Gets the number of submitted requests
+         * @return The number of requests
+         */
+        public long getRequests() {
+            return requests.sum();
+        }
+        
+        /**
+         * Gets the number of requests answered by an identical request in flight, which are not counted as requests
+         * @return The number of deduplicated requests
+         */
+        public long getDeduplicated() {
+            return deduplicated.sum();
+        }
+        
+        /**
+         * Gets the number of failed calls that were sent again
+         * @return The number of retries
+         */
+        public long getRetries() {
+            return retries.sum();
+        }
+        
+        /**
+         * Gets the number of second calls sent to race a slow one
+         * @return The number of hedged calls
+         */
+        public long getHedges() {
+            return hedges.sum();
+        }
+        
+        /**
+         * Gets the number of hedged requests the second call answered first
+         * @return The number of hedge wins
+         */
+        public long getHedgeWins() {
+            return hedgeWins.sum();
+        }
+        
+        /**
+         * Gets the number of requests answered with a canned line because the API was unavailable
+         * @return The number of fallbacks
+         */
+        public long getFallbacks() {
+            return fallbacks.sum();
+        }
+        
+        /**
+         * Gets the number of answers that came back but could not be used, which are not counted as failures
+         * @return The number of unparseable answers
+         */
+        public long getParseFailures() {
+            return parseFailures.sum();
+        }
+        
+        /**
+         * Gets the number of requests OpenAI answered
+         * @return The number of successes
+         */
+        public long getSuccesses() {
+            return successes.sum();
+        }
+        
+        /**
+         * Gets the number of failures of one class
+         * @param failure The failure class
+         * @return The number of failures
+         */
+        public long getFailures(FailureType failure) {
+            return failures[failure.ordinal()].sum();
+        }
+        
+        /**
+         * Gets the number of failures of all classes
+         * @return The number of failures
+         */
+        public long getFailures() {
+            long total = 0;
+            for (LongAdder failure : failures) {
+                total += failure.sum();
+            }
+            return total;
+        }
+        
+        /**
+         * Gets the input tokens used
+         * @return The number of input tokens
+         */
+        public long getPromptTokens() {
+            return promptTokens.sum();
+        }
+        
+        /**
+         * Gets the output tokens used
+         * @return The number of output tokens
+         */
+        public long getCompletionTokens() {
+            return completionTokens.sum();
+        }
+        
+        /**
+         * Gets the time from submission until the API call started, covering the request queue and the adaptive limiter
+         * @return The queue wait histogram
+         */
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+        
+        /**
+         * Gets the duration of successful API calls
+         * @return The API latency histogram
+         */
+        public LatencyHistogram getApiLatency() {
+            return apiLatency;
+        }
+        
+        /**
+         * Gets the time from submission until a successful request's future completed
+         * @return The end-to-end latency histogram
+         */
+        public LatencyHistogram getTotalLatency() {
+            return totalLatency;
+        }
+        
+        /**
+         * Gets the time from sending a streamed request to receiving its first token
+         * @return The time to first token histogram
+         */
+        public LatencyHistogram getTimeToFirstToken() {
+            return timeToFirstToken;
+        }
+        
+        /**
+         * Gets the rate of submitted requests
+         * @param windowSeconds The window to average over, at most 300 seconds
+         * @return The requests per second
+         */
+        public double getRequestRate(int windowSeconds) {
+            return requestRate.getRatePerSecond(toSlots(windowSeconds), System.nanoTime());
+        }
+        
+        /**
+         * Gets the rate of failures
+         * @param windowSeconds The window to average over, at most 300 seconds
+         * @return The failures per second
+         */
+        public double getErrorRate(int windowSeconds) {
+            return errorRate.getRatePerSecond(toSlots(windowSeconds), System.nanoTime());
+        }
+        
+        private static int toSlots(int windowSeconds) {
+            return (int) Math.max(1, TimeUnit.SECONDS.toNanos(windowSeconds) / RATE_SLOT_NANOS);
+        }
     }
 } 
\ No newline at end of file
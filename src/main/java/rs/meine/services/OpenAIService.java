@@ -1,56 +1,290 @@
 package rs.meine.services;
 
-import com.openai.client.OpenAIClient;
-import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.client.OpenAIClientImpl;
+import com.openai.core.ClientOptions;
+import com.openai.core.RequestOptions;
+import com.openai.core.Timeout;
+import com.openai.core.http.Headers;
+import com.openai.core.http.StreamResponse;
+import com.openai.errors.InternalServerException;
+import com.openai.errors.OpenAIInvalidDataException;
+import com.openai.errors.OpenAIIoException;
+import com.openai.errors.OpenAIServiceException;
+import com.openai.errors.RateLimitException;
 import com.openai.models.chat.completions.ChatCompletion;
+import com.openai.models.chat.completions.ChatCompletionChunk;
 import com.openai.models.chat.completions.ChatCompletionCreateParams;
+import com.openai.models.chat.completions.ChatCompletionStreamOptions;
+import com.openai.models.completions.CompletionUsage;
+import java.io.InterruptedIOException;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import org.bukkit.entity.Player;
-import org.bukkit.event.player.AsyncPlayerChatEvent;
 import rs.meine.config.ConfigManager;
+import rs.meine.config.ConfigSnapshot;
 import rs.meine.models.ChatMessage;
-import rs.meine.models.RateLimitInfo;
+import rs.meine.models.FailureType;
+import rs.meine.models.Feature;
+import rs.meine.models.PromptKey;
+import rs.meine.models.RequestPriority;
+import rs.meine.models.RequestType;
 
 public class OpenAIService {
-    private OpenAIClient client;
+    private static final String COMMAND_NAMESPACE = "command|";
+    private static final String CHAT_NAMESPACE = "chat|";
+    private static final long SUMMARY_MAX_TOKENS = 60;
+    // Lower temperature for more predictable commands
+    private static final double COMMAND_TEMPERATURE = 0.3;
+    // Stands in for a deadline of 0; a day is as good as none and keeps deadline arithmetic clear of overflow
+    private static final long NO_DEADLINE_NANOS = TimeUnit.DAYS.toNanos(1);
+    private static final ChatCompletionStreamOptions INCLUDE_USAGE = ChatCompletionStreamOptions.builder()
+        .includeUsage(true)
+        .build();
+    
+    private final ClientManager clientManager;
     private final ConfigManager configManager;
-    private final Map<UUID, LinkedList<ChatMessage>> chatHistory = new HashMap<>();
-    private final Map<UUID, RateLimitInfo> rateLimits = new ConcurrentHashMap<>();
+    private final ChatHistoryStore chatHistory;
+    private final PromptBuilder promptBuilder;
+    private final RateLimiter rateLimiter;
+    private final AdaptiveLimiter adaptiveLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor hedgeExecutor;
+    private final ScheduledExecutorService retryScheduler;
+    private final RequestEngine requestEngine;
+    private final ResponseCache commandCache;
+    private final SemanticCache semanticCache;
+    private final SingleFlight<String, String> inFlightRequests = new SingleFlight<>();
+    private final MetricsService metricsService;
+    private final PlayerContextService contextService;
+    private final PromptTemplates promptTemplates;
+    private final PersistentStore persistentStore;
     private final Logger logger;
-    private boolean isInitialized = false;
+    private volatile boolean isInitialized = false;
     
-    public OpenAIService(ConfigManager configManager) {
+    public OpenAIService(ConfigManager configManager, MetricsService metricsService, PlayerContextService contextService,
+                         PromptTemplates promptTemplates, PersistentStore persistentStore) {
         this.configManager = configManager;
+        this.metricsService = metricsService;
+        this.contextService = contextService;
+        this.promptTemplates = promptTemplates;
+        this.persistentStore = persistentStore;
         this.logger = Logger.getLogger(OpenAIService.class.getName());
+        this.clientManager = new ClientManager(logger);
+        this.chatHistory = new ChatHistoryStore(configManager.getMaxHistory());
+        this.promptBuilder = new PromptBuilder(configManager, chatHistory, contextService, promptTemplates, this::summarizeAsync);
+        this.adaptiveLimiter = new AdaptiveLimiter(
+            configManager.getMinInFlightRequests(),
+            configManager.getMaxInFlightRequests(),
+            configManager.isAdaptiveLimitEnabled()
+        );
+        this.requestEngine = new RequestEngine(
+            configManager.getMaxInFlightRequests(),
+            configManager.getRequestQueueCapacity(),
+            RequestEngine.OverflowPolicy.fromConfig(configManager.getRequestOverflowPolicy()),
+            adaptiveLimiter
+        );
+        configureRequestClasses();
+        this.rateLimiter = new RateLimiter(
+            configManager.getRequestsPerWindow(),
+            configManager.getGlobalRequestsPerWindow(),
+            configManager.getRateLimitWindowSeconds()
+        );
+        this.circuitBreaker = new CircuitBreaker(
+            configManager.isCircuitBreakerEnabled(),
+            configManager.getCircuitBreakerFailureThreshold(),
+            configManager.getCircuitBreakerOpenSeconds()
+        );
+        // Hedged requests run both of their calls here while the request thread waits for the first answer. Two threads
+        // per request slot are enough for every request to be hedged; past that a request goes unhedged.
+        this.hedgeExecutor = new ThreadPoolExecutor(0, getHedgeThreads(), 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            BackgroundTasks.numberedThreads("Hedge"), new ThreadPoolExecutor.AbortPolicy());
+        // Requests waiting to be retried wait here, without a request thread
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(BackgroundTasks.threads("Retry"));
+        this.commandCache = new ResponseCache(
+            configManager.getCommandCacheMaxEntries(),
+            configManager.getCommandCacheTtlSeconds()
+        );
+        this.semanticCache = new SemanticCache(
+            configManager.getSemanticCacheMaxEntries(),
+            configManager.getSemanticCacheThreshold(),
+            configManager.getSemanticCacheTtlSeconds()
+        );
+        persistentStore.open(commandCache, semanticCache);
         initializeClient();
     }
     
     /**
-     * Initializes the OpenAI client with current configuration
+     * Applies a reloaded configuration. The client is rebuilt only if a setting it was built with changed,
+     * or if it could not be built before; everything else is adjusted in place.
+     * @param previous The settings before the reload
+     * @param current The settings after the reload
+     */
+    public void onConfigChanged(ConfigSnapshot previous, ConfigSnapshot current) {
+        boolean clientChanged = !previous.getApiKey().equals(current.getApiKey())
+            || !previous.getBaseUrl().equals(current.getBaseUrl())
+            || previous.getConnectionTimeout() != current.getConnectionTimeout()
+            || previous.getConnectTimeout() != current.getConnectTimeout()
+            || previous.getReadTimeout() != current.getReadTimeout()
+            || previous.getWriteTimeout() != current.getWriteTimeout()
+            || previous.getHttpMaxIdleConnections() != current.getHttpMaxIdleConnections()
+            || previous.getHttpKeepAliveSeconds() != current.getHttpKeepAliveSeconds()
+            || previous.getHttpMaxRequests() != current.getHttpMaxRequests()
+            || previous.getHttpMaxRequestsPerHost() != current.getHttpMaxRequestsPerHost()
+            || previous.isHttp2Enabled() != current.isHttp2Enabled();
+        if (clientChanged || !isInitialized) {
+            initializeClient();
+        }
+        // Reconfiguring the rate limiter carries its buckets over, so only do it when a limit changed
+        if (previous.getRequestsPerWindow() != current.getRequestsPerWindow()
+            || previous.getGlobalRequestsPerWindow() != current.getGlobalRequestsPerWindow()
+            || previous.getRateLimitWindowSeconds() != current.getRateLimitWindowSeconds()) {
+            rateLimiter.configure(
+                current.getRequestsPerWindow(),
+                current.getGlobalRequestsPerWindow(),
+                current.getRateLimitWindowSeconds()
+            );
+        }
+        reloadSettings();
+    }
+    
+    /**
+     * Applies request limits and cache sizes from the current configuration. Rate limits are applied by
+     * onConfigChanged, and only when they changed.
+     */
+    public void reloadSettings() {
+        requestEngine.resize(
+            configManager.getMaxInFlightRequests(),
+            RequestEngine.OverflowPolicy.fromConfig(configManager.getRequestOverflowPolicy())
+        );
+        configureRequestClasses();
+        hedgeExecutor.setMaximumPoolSize(getHedgeThreads());
+        chatHistory.setCapacity(configManager.getMaxHistory());
+        commandCache.configure(
+            configManager.getCommandCacheMaxEntries(),
+            configManager.getCommandCacheTtlSeconds()
+        );
+        semanticCache.configure(
+            configManager.getSemanticCacheMaxEntries(),
+            configManager.getSemanticCacheThreshold(),
+            configManager.getSemanticCacheTtlSeconds()
+        );
+        adaptiveLimiter.configure(
+            configManager.getMinInFlightRequests(),
+            configManager.getMaxInFlightRequests(),
+            configManager.isAdaptiveLimitEnabled()
+        );
+        circuitBreaker.configure(
+            configManager.isCircuitBreakerEnabled(),
+            configManager.getCircuitBreakerFailureThreshold(),
+            configManager.getCircuitBreakerOpenSeconds()
+        );
+    }
+    
+    /**
+     * Gets how many threads hedged requests may use at once
+     * @return Two per request slot
+     */
+    private int getHedgeThreads() {
+        return Math.max(1, configManager.getMaxInFlightRequests()) * 2;
+    }
+    
+    /**
+     * Applies the configured share and maximum age of each request class to the engine
+     */
+    private void configureRequestClasses() {
+        for (RequestPriority priority : RequestPriority.values()) {
+            requestEngine.configureClass(
+                priority,
+                configManager.getRequestShare(priority),
+                configManager.getRequestMaxAgeSeconds(priority)
+            );
+        }
+    }
+    
+    /**
+     * Gets the engine executing OpenAI requests
+     * @return The request engine
+     */
+    public RequestEngine getRequestEngine() {
+        return requestEngine;
+    }
+    
+    /**
+     * Gets the owner of the OpenAI client
+     * @return The client manager
+     */
+    public ClientManager getClientManager() {
+        return clientManager;
+    }
+    
+    /**
+     * Stops the request engine and closes the OpenAI client. Requests still queued are failed, and so are requests
+     * waiting to be retried once their backoff passed.
+     */
+    public void shutdown() {
+        requestEngine.shutdown();
+        retryScheduler.shutdown();
+        hedgeExecutor.shutdownNow();
+        clientManager.shutdown();
+    }
+    
+    /**
+     * Initializes the OpenAI client with current configuration, on an HTTP client with its own connection pool and
+     * dispatcher. The previous client, if any, is closed once the calls still using it have finished.
      * @return true if initialization was successful
      */
     public boolean initializeClient() {
-        String apiKey = configManager.getApiKey();
+        ConfigSnapshot config = configManager.getSnapshot();
+        String apiKey = config.getApiKey();
         
         if (apiKey == null || apiKey.isEmpty()) {
             logger.severe("OpenAI API key is not configured. The plugin will not function correctly.");
             isInitialized = false;
+            clientManager.clear();
             return false;
         }
         
         try {
-            this.client = OpenAIOkHttpClient.builder()
+            PooledHttpClient httpClient = PooledHttpClient.create(config);
+            ClientOptions clientOptions = ClientOptions.builder()
+                .httpClient(httpClient)
+                .baseUrl(httpClient.getBaseUrl())
                 .apiKey(apiKey)
-                .timeout(Duration.ofSeconds(configManager.getConnectionTimeout()))
+                .timeout(Timeout.builder()
+                    .connect(Duration.ofSeconds(config.getConnectTimeout()))
+                    .read(Duration.ofSeconds(config.getReadTimeout()))
+                    .write(Duration.ofSeconds(config.getWriteTimeout()))
+                    .request(Duration.ofSeconds(config.getConnectionTimeout()))
+                    .build())
+                // Retries are made by createCompletion and streamCompletion, which know the request's deadline
+                .maxRetries(0)
                 .build();
+            
+            clientManager.replace(new OpenAIClientImpl(clientOptions), httpClient);
+            String baseUrl = config.getBaseUrl();
             isInitialized = true;
-            logger.info("OpenAI client initialized successfully");
+            logger.info(baseUrl.isEmpty()
+                ? "OpenAI client initialized successfully"
+                : "OpenAI client initialized successfully against " + baseUrl);
             return true;
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to initialize OpenAI client", e);
@@ -65,11 +299,211 @@ public class OpenAIService {
      * @return The AI-generated response or error message
      */
     public String generateSimpleResponse(String prompt) {
-        if (!isInitialized || client == null) {
+        return generateSimpleResponse(prompt, configManager.getMaxTokens());
+    }
+    
+    /**
+     * Generates a simple response to a prompt with an explicit completion token limit, on the request engine while the
+     * calling thread waits
+     * @param prompt The prompt to send to the model
+     * @param maxTokens The maximum number of tokens in the response
+     * @return The AI-generated response or error message
+     */
+    public String generateSimpleResponse(String prompt, long maxTokens) {
+        RequestTrace trace = metricsService.startRequest(RequestType.SIMPLE, null);
+        try {
+            return submit(trace, RequestPriority.COMMAND, null, () -> generateSimpleResponse(prompt, maxTokens, trace)).join();
+        } catch (CompletionException e) {
+            return describeError(unwrap(e), trace.getType());
+        }
+    }
+    
+    /**
+     * Generates a simple response to a prompt for a traced request
+     * @param prompt The prompt to send to the model
+     * @param maxTokens The maximum number of tokens in the response
+     * @param trace The request's metrics trace
+     * @return The AI-generated response or error message
+     */
+    private String generateSimpleResponse(String prompt, long maxTokens, RequestTrace trace) {
+        if (!isInitialized || !clientManager.hasClient()) {
             return "Error: OpenAI service is not properly initialized. Check server logs.";
         }
         
         try {
+            String response = requestSimpleResponse(prompt, maxTokens, trace);
+            return response != null ? response : "No response generated";
+        } catch (RetryLaterException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error generating simple response", e);
+            return describeError(e, trace.getType());
+        }
+    }
+    
+    /**
+     * Sends a simple prompt for a traced request, letting failures through to the caller
+     * @param prompt The prompt to send to the model
+     * @param maxTokens The maximum number of tokens in the response
+     * @param trace The request's metrics trace
+     * @return The response, or null if the model returned no content
+     * @throws InterruptedException if the thread was interrupted while waiting for a call
+     */
+    private String requestSimpleResponse(String prompt, long maxTokens, RequestTrace trace) throws InterruptedException {
+        ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+            .addUserMessage(prompt)
+            .model(configManager.getModel())
+            .temperature(configManager.getTemperature())
+            .maxCompletionTokens(maxTokens)
+            .build();
+        
+        ChatCompletion chatCompletion = createCompletion(params, trace);
+        return chatCompletion.choices().get(0).message().content().orElse(null);
+    }
+    
+    /**
+     * Generates event commentary on the request engine, counted against the global rate limit
+     * @param prompt The prompt to send to the model
+     * @param feature The feature the commentary is for, which sets the request's scheduling class and metrics type
+     * @param stillRelevant Checked before the request starts; returning false drops it. May be null.
+     * @return A future completed with the response, or exceptionally if the request was rate limited, not admitted, expired
+     *         or failed
+     */
+    public CompletableFuture<String> generateSimpleResponseAsync(String prompt, Feature feature, BooleanSupplier stillRelevant) {
+        return generateSimpleResponseAsync(prompt, configManager.getMaxTokens(), feature, stillRelevant);
+    }
+    
+    /**
+     * Generates event commentary with an explicit completion token limit on the request engine,
+     * counted against the global rate limit
+     * @param prompt The prompt to send to the model
+     * @param maxTokens The maximum number of tokens in the response
+     * @param feature The feature the commentary is for, which sets the request's scheduling class and metrics type
+     * @param stillRelevant Checked before the request starts; returning false drops it. May be null.
+     * @return A future completed with the response, or exceptionally if the request was rate limited, not admitted, expired
+     *         or failed; {@link #getFallback(Throwable, RequestType)} tells if a canned line should stand in for it
+     */
+    public CompletableFuture<String> generateSimpleResponseAsync(String prompt, long maxTokens, Feature feature, BooleanSupplier stillRelevant) {
+        RequestTrace trace = metricsService.startRequest(feature.getRequestType(), null);
+        long waitNanos = rateLimiter.tryAcquire(null);
+        if (waitNanos > 0) {
+            metricsService.recordFailure(trace, FailureType.REJECTED);
+            return CompletableFuture.failedFuture(new RateLimitedException(waitNanos));
+        }
+        
+        return submit(trace, feature.getPriority(), stillRelevant, () -> {
+            if (!isInitialized || !clientManager.hasClient()) {
+                throw new IllegalStateException("OpenAI service is not initialized");
+            }
+            
+            String response;
+            try {
+                response = requestSimpleResponse(prompt, maxTokens, trace);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating commentary", e);
+            }
+            if (response == null || response.isBlank()) {
+                throw new IllegalStateException("OpenAI returned no commentary");
+            }
+            return response;
+        });
+    }
+    
+    /**
+     * Answers a /chatgpt prompt on the request engine, serving near-duplicate prompts from the semantic cache
+     * @param prompt The prompt to send to the model
+     * @param playerUUID The player asking, or null if the prompt came from the console
+     * @return A future completed with the response, or exceptionally if the request was not admitted
+     */
+    public CompletableFuture<String> generateChatCommandResponseAsync(String prompt, UUID playerUUID) {
+        String flightKey = flightKey(CHAT_NAMESPACE, configManager.getTemperature(), prompt);
+        UnaryOperator<CompletableFuture<String>> onJoin = flight -> countDeduplicated(flight, RequestType.SIMPLE);
+        CompletableFuture<String> joined = inFlightRequests.join(flightKey, onJoin);
+        if (joined != null) {
+            return joined;
+        }
+        
+        RequestTrace trace = metricsService.startRequest(RequestType.SIMPLE, playerUUID);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            return CompletableFuture.completedFuture(rateLimitMessage);
+        }
+        
+        return inFlightRequests.execute(flightKey, () -> submit(trace, RequestPriority.COMMAND, null, () -> {
+            String cached = getCachedChatResponse(prompt, trace);
+            if (cached != null) {
+                return cached;
+            }
+            if (!isInitialized || !clientManager.hasClient()) {
+                return "Error: OpenAI service is not properly initialized. Check server logs.";
+            }
+            
+            try {
+                ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                    .addUserMessage(prompt)
+                    .model(configManager.getModel())
+                    .temperature(configManager.getTemperature())
+                    .maxCompletionTokens(configManager.getMaxTokens())
+                    .build();
+                
+                ChatCompletion chatCompletion = createCompletion(params, trace);
+                Optional<String> content = chatCompletion.choices().get(0).message().content();
+                if (content.isEmpty()) {
+                    return "No response generated";
+                }
+                
+                putSemanticCachedResponse(CHAT_NAMESPACE, prompt, content.get());
+                return content.get();
+            } catch (RetryLaterException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error generating chat command response", e);
+                return describeError(e, trace.getType());
+            }
+        }), onJoin);
+    }
+    
+    /**
+     * Streams the answer to a /chatgpt prompt on the request engine, handing sentence-sized chunks to a consumer
+     * as they arrive. Near-duplicate prompts are served from the semantic cache in a single chunk, and a prompt that is
+     * already being answered for someone else is answered with that response, in a single chunk once it is complete.
+     * @param prompt The prompt to send to the model
+     * @param playerUUID The player asking, or null if the prompt came from the console
+     * @param chunkConsumer Receives each chunk
+     * @return A future completed with the full response, or exceptionally if the request was not admitted
+     */
+    public CompletableFuture<String> streamChatCommandResponseAsync(String prompt, UUID playerUUID, Consumer<String> chunkConsumer) {
+        String flightKey = flightKey(CHAT_NAMESPACE, configManager.getTemperature(), prompt);
+        UnaryOperator<CompletableFuture<String>> onJoin = flight -> countDeduplicated(flight, RequestType.SIMPLE)
+            .thenApply(response -> {
+                chunkConsumer.accept(response);
+                return response;
+            });
+        CompletableFuture<String> joined = inFlightRequests.join(flightKey, onJoin);
+        if (joined != null) {
+            return joined;
+        }
+        
+        RequestTrace trace = metricsService.startRequest(RequestType.SIMPLE, playerUUID);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            chunkConsumer.accept(rateLimitMessage);
+            return CompletableFuture.completedFuture(rateLimitMessage);
+        }
+        
+        return inFlightRequests.execute(flightKey, () -> submit(trace, RequestPriority.COMMAND, null, () -> {
+            String cached = getCachedChatResponse(prompt, trace);
+            if (cached != null) {
+                chunkConsumer.accept(cached);
+                return cached;
+            }
+            if (!isInitialized || !clientManager.hasClient()) {
+                String error = "Error: OpenAI service is not properly initialized. Check server logs.";
+                chunkConsumer.accept(error);
+                return error;
+            }
+            
             ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
                 .addUserMessage(prompt)
                 .model(configManager.getModel())
@@ -77,229 +511,1239 @@ public class OpenAIService {
                 .maxCompletionTokens(configManager.getMaxTokens())
                 .build();
             
-            ChatCompletion chatCompletion = client.chat().completions().create(params);
-            return chatCompletion.choices().get(0).message().content().orElse("No response generated");
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error generating simple response", e);
-            return "Sorry, I encountered an error processing your request. Please try again later.";
-        }
+            String response = streamCompletion(params, chunkConsumer, null, trace);
+            if (response == null) {
+                return "Sorry, I encountered an error processing your request. Please try again later.";
+            }
+            
+            putSemanticCachedResponse(CHAT_NAMESPACE, prompt, response);
+            return response;
+        }), onJoin);
     }
     
     /**
-     * Generates a Minecraft command from natural language input
+     * Generates a Minecraft command from natural language input, on the request engine while the calling thread waits
      * @param prompt The natural language description of what the user wants to do
      * @return The generated Minecraft command
      */
     public String generateMinecraftCommand(String prompt) {
-        if (!isInitialized || client == null) {
+        String cacheKey = commandCacheKey(prompt);
+        String cached = getCachedCommand(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        
+        RequestTrace trace = metricsService.startRequest(RequestType.COMMAND, null);
+        try {
+            return submit(trace, RequestPriority.COMMAND, null, () -> requestMinecraftCommand(prompt, cacheKey, trace)).join();
+        } catch (CompletionException e) {
+            return "Error: " + describeError(unwrap(e), trace.getType());
+        }
+    }
+    
+    /**
+     * Asks the model for a Minecraft command and caches the result
+     * @param prompt The natural language description of what the user wants to do
+     * @param cacheKey The key to cache the generated command under
+     * @param trace The request's metrics trace
+     * @return The generated Minecraft command
+     */
+    private String requestMinecraftCommand(String prompt, String cacheKey, RequestTrace trace) {
+        if (!isInitialized || !clientManager.hasClient()) {
             return "Error: OpenAI service is not properly initialized. Check server logs.";
         }
         
         try {
-            String systemPrompt = 
-                "You are a Minecraft command generator. Convert natural language descriptions into valid Minecraft commands. " +
-                "Only output the exact command to run, nothing else. " +
-                "Make sure to format commands properly with appropriate syntax, including proper use of selectors (@p, @a, @e, etc), " +
-                "coordinates, and proper escaping of text for JSON components. " +
-                "If the request seems ambiguous, generate the most reasonable command that seems to match the intent. " +
-                "Do not include any explanation, just output the command. " +
-                "Always start commands with '/'. " +
-                "Examples: " +
-                "User: give me a diamond sword with sharpness 5 named Excalibur " +
-                "Output: /give @p diamond_sword{display:{Name:'{\"text\":\"Excalibur\"}'},Enchantments:[{id:\"minecraft:sharpness\",lvl:5}]} 1 " +
-                "User: teleport me to coordinates 100 64 -200 " +
-                "Output: /tp @p 100 64 -200 " +
-                "User: kill all zombies in a 50 block radius " +
-                "Output: /kill @e[type=zombie,distance=..50]";
+            String systemPrompt = promptTemplates.render(PromptKey.COMMAND_GENERATOR);
             
             ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
                 .addSystemMessage(systemPrompt)
                 .addUserMessage(prompt)
                 .model(configManager.getModel())
-                .temperature(0.3) // Lower temperature for more predictable outputs
+                .temperature(COMMAND_TEMPERATURE)
                 .maxCompletionTokens(configManager.getMaxTokens())
                 .build();
             
-            ChatCompletion chatCompletion = client.chat().completions().create(params);
-            String command = chatCompletion.choices().get(0).message().content().orElse("No command generated");
+            ChatCompletion chatCompletion = createCompletion(params, trace);
+            Optional<String> content = chatCompletion.choices().get(0).message().content();
+            if (content.isEmpty()) {
+                return "No command generated";
+            }
+            
+            String command = content.get().trim();
             
             // Ensure the command starts with a slash
             if (!command.startsWith("/") && !command.startsWith("Error:")) {
                 command = "/" + command;
             }
             
+            if (!command.startsWith("Error:")) {
+                commandCache.put(cacheKey, command);
+                persistentStore.appendCommand(cacheKey, command);
+            }
+            
             return command;
+        } catch (RetryLaterException e) {
+            throw e;
         } catch (Exception e) {
             logger.log(Level.WARNING, "Error generating Minecraft command", e);
+            if (e instanceof RateLimitException || e instanceof RateLimitedException) {
+                return "Error: " + describeError(e, trace.getType());
+            }
+            String fallback = getFallback(e, trace.getType());
+            if (fallback != null) {
+                return "Error: " + fallback;
+            }
             return "Error: Failed to generate command. Please try again later.";
         }
     }
     
     /**
-     * Checks if a player is rate limited
-     * @param playerUUID The UUID of the player to check
-     * @return true if the player is currently rate limited
+     * Generates a Minecraft command on the request engine
+     * @param prompt The natural language description of what the user wants to do
+     * @param playerUUID The player asking, or null if the prompt came from the console
+     * @return A future completed with the command, or exceptionally if the request was not admitted
      */
-    public boolean isRateLimited(UUID playerUUID) {
-        RateLimitInfo info = rateLimits.get(playerUUID);
-        if (info == null) {
-            return false;
+    public CompletableFuture<String> generateMinecraftCommandAsync(String prompt, UUID playerUUID) {
+        String cacheKey = commandCacheKey(prompt);
+        String cached = getCachedCommand(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
         
-        Instant now = Instant.now();
-        if (now.isAfter(info.getResetTime())) {
-            rateLimits.remove(playerUUID);
-            return false;
+        String flightKey = flightKey(COMMAND_NAMESPACE, COMMAND_TEMPERATURE, prompt);
+        UnaryOperator<CompletableFuture<String>> onJoin = flight -> countDeduplicated(flight, RequestType.COMMAND);
+        CompletableFuture<String> joined = inFlightRequests.join(flightKey, onJoin);
+        if (joined != null) {
+            return joined;
         }
         
-        if (info.getRemainingRequests() <= 0) {
-            return true;
+        RequestTrace trace = metricsService.startRequest(RequestType.COMMAND, playerUUID);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            return CompletableFuture.completedFuture("Error: " + rateLimitMessage);
         }
         
-        info.decrementRemainingRequests();
-        return false;
+        return inFlightRequests.execute(flightKey,
+            () -> submit(trace, RequestPriority.COMMAND, null, () -> requestMinecraftCommand(prompt, cacheKey, trace)), onJoin);
+    }
+    
+    /**
+     * Builds the key under which identical requests in flight at the same time are answered by a single call.
+     * Only the exact same prompt for the same operation shares a call, and only while the model, temperature and token
+     * limit match; the cache keys' folding of case and punctuation is too lossy to hand one player another's answer.
+     * @param operation The operation namespace
+     * @param temperature The temperature the request is sent with
+     * @param prompt The prompt as typed by the player
+     * @return The in-flight request key
+     */
+    private String flightKey(String operation, double temperature, String prompt) {
+        return operation + configManager.getModel() + '\n' + temperature + '\n' + configManager.getMaxTokens() + '\n' + prompt;
+    }
+    
+    /**
+     * Counts a request that was attached to an identical one in flight instead of calling the API
+     * @param joined The future of the attached request
+     * @param type The request type to count it under
+     * @return The same future
+     */
+    private CompletableFuture<String> countDeduplicated(CompletableFuture<String> joined, RequestType type) {
+        metricsService.recordDeduplicated(type);
+        return joined;
+    }
+    
+    /**
+     * Builds the command cache key from the current model and the normalized prompt
+     * @param prompt The natural language description of what the user wants to do
+     * @return The cache key
+     */
+    private String commandCacheKey(String prompt) {
+        return configManager.getModel() + '\n' + PromptNormalizer.normalize(prompt);
+    }
+    
+    /**
+     * Looks up a previously generated command and records the hit or miss. Commands are only reused for the same
+     * normalized prompt: a similar prompt may name another player, item or target, and a command that acts on the wrong
+     * one is worse than none, so command generation does not use the semantic cache.
+     * @param cacheKey The exact cache key
+     * @return The cached command, or null on a miss
+     */
+    private String getCachedCommand(String cacheKey) {
+        String cached = commandCache.get(cacheKey);
+        if (cached != null) {
+            metricsService.recordCacheHit();
+        } else {
+            metricsService.recordCacheMiss();
+        }
+        return cached;
+    }
+    
+    /**
+     * Looks up a /chatgpt prompt in the semantic cache on the request thread, where the scan over every cached
+     * prompt cannot hold up the server thread. A request answered from the cache is recorded as such, not as a failure.
+     * @param prompt The prompt
+     * @param trace The request's metrics trace
+     * @return The cached response, or null on a miss or when the request is being retried
+     */
+    private String getCachedChatResponse(String prompt, RequestTrace trace) {
+        if (trace.getRetries() > 0) {
+            return null;
+        }
+        
+        String cached = getSemanticCachedResponse(CHAT_NAMESPACE, prompt);
+        if (cached != null) {
+            metricsService.recordCacheAnswer(trace);
+        }
+        return cached;
+    }
+    
+    /**
+     * Looks up the response to a similar prompt if the semantic cache is enabled
+     * @param operation The operation the prompt belongs to
+     * @param prompt The prompt
+     * @return The cached response, or null on a miss
+     */
+    private String getSemanticCachedResponse(String operation, String prompt) {
+        if (!configManager.isSemanticCacheEnabled()) {
+            return null;
+        }
+        
+        String cached = semanticCache.get(operation + configManager.getModel(), prompt);
+        if (cached != null) {
+            metricsService.recordSemanticCacheHit();
+        } else {
+            metricsService.recordSemanticCacheMiss();
+        }
+        return cached;
+    }
+    
+    /**
+     * Remembers a response in the semantic cache if it is enabled
+     * @param operation The operation the prompt belongs to
+     * @param prompt The prompt
+     * @param response The response
+     */
+    private void putSemanticCachedResponse(String operation, String prompt, String response) {
+        if (configManager.isSemanticCacheEnabled()) {
+            String namespace = operation + configManager.getModel();
+            semanticCache.put(namespace, prompt, response);
+            persistentStore.appendSemantic(namespace, prompt, response);
+        }
+    }
+    
+    /**
+     * Clears the command and semantic caches, in memory and on disk
+     */
+    public void clearCaches() {
+        commandCache.clear();
+        semanticCache.clear();
+        persistentStore.clearCaches();
+    }
+    
+    /**
+     * Gets the semantic cache of /chatgpt responses
+     * @return The semantic cache
+     */
+    public SemanticCache getSemanticCache() {
+        return semanticCache;
+    }
+    
+    /**
+     * Gets the cache of generated Minecraft commands
+     * @return The command cache
+     */
+    public ResponseCache getCommandCache() {
+        return commandCache;
+    }
+    
+    /**
+     * Takes a rate limit token for a request
+     * @param playerUUID The player making the request, or null for requests not made by a player
+     * @return A message for the requester if the request is rate limited, or null if it may proceed
+     */
+    public String checkRateLimit(UUID playerUUID) {
+        long waitNanos = rateLimiter.tryAcquire(playerUUID);
+        if (waitNanos == 0) {
+            return null;
+        }
+        
+        long secondsRemaining = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        return "Rate limit reached. Please try again in " + secondsRemaining + " seconds.";
+    }
+    
+    /**
+     * Takes a rate limit token for a traced request, counting a denial as a rejected request
+     * @param trace The request's metrics trace
+     * @return A message for the requester if the request is rate limited, or null if it may proceed
+     */
+    private String checkRateLimit(RequestTrace trace) {
+        String rateLimitMessage = checkRateLimit(trace.getPlayerUUID());
+        if (rateLimitMessage != null) {
+            metricsService.recordFailure(trace, FailureType.REJECTED);
+        }
+        return rateLimitMessage;
     }
     
     /**
      * Generates a response to a player's chat message with context
      * @param playerName The name of the player
      * @param message The message sent by the player
-     * @param event The player chat event
+     * @param playerUUID The UUID of the player
+     * @param stillRelevant Checked before the reply is recorded in the player's history. May be null.
+     * @param trace The request's metrics trace
      * @return The AI-generated response or error message
      */
-    public String generatePlayerChatResponse(String playerName, String message, AsyncPlayerChatEvent event) {
-        if (!isInitialized || client == null) {
+    private String generatePlayerChatResponse(String playerName, String message, UUID playerUUID, BooleanSupplier stillRelevant,
+                                              RequestTrace trace) {
+        if (!isInitialized || !clientManager.hasClient()) {
             return "Error: OpenAI service is not properly initialized. Check server logs.";
         }
         
-        Player player = event.getPlayer();
-        UUID playerUUID = player.getUniqueId();
+        try {
+            ChatCompletionCreateParams params = buildPlayerChatParams(playerName, message, playerUUID);
+            
+            ChatCompletion chatCompletion = createCompletion(params, trace);
+            Optional<String> content = chatCompletion.choices().get(0).message().content();
+            if (content.isEmpty()) {
+                return "No response generated";
+            }
+            
+            recordReply(List.of(playerUUID), content.get(), stillRelevant);
+            return content.get();
+        } catch (RetryLaterException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error generating player chat response", e);
+            return describeError(e, trace.getType());
+        }
+    }
+    
+    /**
+     * Streams a response to a player's chat message, handing sentence-sized chunks to a consumer as they arrive
+     * @param playerName The name of the player
+     * @param message The message sent by the player
+     * @param playerUUID The UUID of the player
+     * @param chunkConsumer Receives each chunk on the request thread
+     * @param stillRelevant Checked before every streamed chunk; returning false abandons the stream. May be null.
+     * @param trace The request's metrics trace
+     * @return The full AI-generated response or error message
+     */
+    private String streamPlayerChatResponse(String playerName, String message, UUID playerUUID, Consumer<String> chunkConsumer,
+                                            BooleanSupplier stillRelevant, RequestTrace trace) {
+        if (!isInitialized || !clientManager.hasClient()) {
+            String error = "Error: OpenAI service is not properly initialized. Check server logs.";
+            chunkConsumer.accept(error);
+            return error;
+        }
         
-        // Check rate limits
-        if (isRateLimited(playerUUID)) {
-            RateLimitInfo info = rateLimits.get(playerUUID);
-            long secondsRemaining = Duration.between(Instant.now(), info.getResetTime()).getSeconds();
-            return "Rate limit reached. Please try again in " + secondsRemaining + " seconds.";
+        ChatCompletionCreateParams params;
+        try {
+            params = buildPlayerChatParams(playerName, message, playerUUID);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error building player chat request", e);
+            String error = "Sorry, I encountered an error processing your request. Please try again later.";
+            chunkConsumer.accept(error);
+            return error;
         }
         
-        // Initialize rate limit for new users
-        if (!rateLimits.containsKey(playerUUID)) {
-            rateLimits.put(playerUUID, new RateLimitInfo(
-                configManager.getRequestsPerWindow(),
-                Instant.now().plus(Duration.ofSeconds(configManager.getRateLimitWindowSeconds()))
-            ));
+        String response = streamCompletion(params, chunkConsumer, stillRelevant, trace);
+        if (response == null) {
+            return "Sorry, I encountered an error processing your request. Please try again later.";
         }
         
-        try {
-            // Gather world and server information
-            String worldName = player.getWorld().getName();
-            int onlinePlayers = player.getServer().getOnlinePlayers().size();
-            String serverVersion = player.getServer().getVersion();
-            String timeOfDay = player.getWorld().getTime() < 12000 ? "day" : "night";
-            String biome = player.getLocation().getBlock().getBiome().toString();
-            
-            // Generate inventory summary
-            String inventorySummary = getInventorySummary(player);
-            
-            // Get chat history for this player
-            String chatHistorySummary = getChatHistorySummary(playerUUID);
-            
-            String systemPrompt = String.format(
-                "You are a helpful AI assistant inside a Minecraft server. " +
-                "You're conversing with %s. " +
-                "Current server details: %d players online, running %s. " +
-                "World '%s' is currently experiencing %s time. " +
-                "Player is in %s biome. " +
-                "Player's inventory: %s. " +
-                "Recent conversation: %s " +
-                "Be concise, funny, and helpful.",
-                playerName, onlinePlayers, serverVersion, worldName, timeOfDay, biome, 
-                inventorySummary, chatHistorySummary
-            );
+        recordReply(List.of(playerUUID), response, stillRelevant);
+        return response;
+    }
+    
+    /**
+     * Builds the completion request for a player's chat message from the player's cached context
+     * @param playerName The name of the player
+     * @param message The message sent by the player
+     * @param playerUUID The UUID of the player
+     * @return The completion request parameters
+     */
+    private ChatCompletionCreateParams buildPlayerChatParams(String playerName, String message, UUID playerUUID) {
+        String systemPrompt = promptBuilder.buildPlayerChatSystemPrompt(playerName, message, playerUUID);
+        
+        return ChatCompletionCreateParams.builder()
+            .addSystemMessage(systemPrompt)
+            .addUserMessage(message)
+            .model(configManager.getModel())
+            .temperature(configManager.getTemperature())
+            .maxCompletionTokens(configManager.getMaxTokens())
+            .build();
+    }
+    
+    /**
+     * Asks the model for a summary on the request engine, behind every request a player is waiting for
+     * @param prompt The summarization prompt
+     * @return A future completed with the summary, or exceptionally if none was generated
+     */
+    private CompletableFuture<String> summarizeAsync(String prompt) {
+        RequestTrace trace = metricsService.startRequest(RequestType.SUMMARY, null);
+        return submit(trace, RequestPriority.BACKGROUND, null, () -> {
+            if (!isInitialized || !clientManager.hasClient()) {
+                throw new IllegalStateException("OpenAI service is not initialized");
+            }
             
             ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
-                .addSystemMessage(systemPrompt)
-                .addUserMessage(message)
+                .addUserMessage(prompt)
                 .model(configManager.getModel())
                 .temperature(configManager.getTemperature())
-                .maxCompletionTokens(configManager.getMaxTokens())
+                .maxCompletionTokens(SUMMARY_MAX_TOKENS)
                 .build();
             
-            ChatCompletion chatCompletion = client.chat().completions().create(params);
-            String response = chatCompletion.choices().get(0).message().content().orElse("No response generated");
-            
-            // Add to chat history
-            addMessageToHistory(playerUUID, "Player", message);
-            addMessageToHistory(playerUUID, "AI", response);
-            
-            return response;
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error generating player chat response", e);
-            return "Sorry, I encountered an error processing your request. Please try again later.";
+            try {
+                return createCompletion(params, trace).choices().get(0).message().content().orElse(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while summarizing", e);
+            }
+        });
+    }
+    
+    /**
+     * Submits traced work to the request engine, recording the request's outcome when its future completes
+     * @param trace The request's metrics trace
+     * @param priority The scheduling class of the request
+     * @param stillRelevant Checked before the request starts; returning false drops it. May be null.
+     * @param work The work to run on a request thread
+     * @return A future completed with the result, or exceptionally if the request was not admitted, expired or was shed
+     */
+    private <T> CompletableFuture<T> submit(RequestTrace trace, RequestPriority priority, BooleanSupplier stillRelevant, Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        dispatch(future, priority, stillRelevant, work);
+        future.whenComplete((result, error) ->
+            metricsService.recordCompletion(trace, error != null ? classifyFailure(error) : null));
+        return future;
+    }
+    
+    /**
+     * Runs one attempt of a request on the request engine. An attempt that ends with a {@link RetryLaterException} gives
+     * its request thread back, and the request is queued again once the backoff passed; it then competes for a thread
+     * and a limiter slot like any other request, and is dropped if it stopped being relevant meanwhile.
+     * @param future The request's future, completed by the last attempt
+     * @param priority The scheduling class of the request
+     * @param stillRelevant Checked before every attempt starts; returning false drops the request. May be null.
+     * @param work The work to run on a request thread
+     */
+    private <T> void dispatch(CompletableFuture<T> future, RequestPriority priority, BooleanSupplier stillRelevant, Supplier<T> work) {
+        requestEngine.submit(priority, stillRelevant, work).whenComplete((result, error) -> {
+            if (error instanceof RetryLaterException retry) {
+                try {
+                    retryScheduler.schedule(() -> dispatch(future, priority, stillRelevant, work), retry.getBackoffNanos(),
+                        TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    future.completeExceptionally(retry.getCause());
+                }
+            } else if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        });
+    }
+    
+    /**
+     * Sends a completion request within its type's deadline. A call that takes longer than its type usually does may be
+     * raced by a second one, and no call is made while the circuit breaker is open. A call that fails in a way that may
+     * pass ends the attempt with a {@link RetryLaterException}, for {@link #dispatch} to send the request again after
+     * a backoff; the work calling this must let it through.
+     * @param params The completion request parameters
+     * @param trace The request's metrics trace
+     * @return The completion
+     * @throws InterruptedException if the thread was interrupted while waiting for a call
+     * @throws RetryLaterException if the request is to be sent again after a backoff
+     */
+    private ChatCompletion createCompletion(ChatCompletionCreateParams params, RequestTrace trace) throws InterruptedException {
+        long deadlineNanos = getDeadlineNanos(trace);
+        try {
+            circuitBreaker.acquire();
+        } catch (CircuitOpenException e) {
+            metricsService.recordFailure(trace, classifyFailure(e));
+            throw e;
+        }
+        
+        try {
+            long hedgeDelayNanos = getHedgeDelayNanos(trace.getType(), deadlineNanos);
+            ChatCompletion chatCompletion = hedgeDelayNanos > 0
+                ? createHedgedCompletion(params, trace, deadlineNanos, hedgeDelayNanos)
+                : attemptCompletion(params, trace, deadlineNanos, false, null);
+            circuitBreaker.onSuccess();
+            return chatCompletion;
+        } catch (InterruptedException e) {
+            circuitBreaker.onIgnored();
+            throw e;
+        } catch (RuntimeException e) {
+            reportToCircuitBreaker(e);
+            throw retryOrFail(e, trace, deadlineNanos, "");
         }
     }
     
     /**
-     * Adds a message to the player's chat history
-     * @param playerUUID The UUID of the player
-     * @param sender The sender of the message
-     * @param content The content of the message
+     * Gets the failure a request's future completed with
+     * @param e The exception thrown by join()
+     * @return The request's failure
      */
-    public void addMessageToHistory(UUID playerUUID, String sender, String content) {
-        chatHistory.putIfAbsent(playerUUID, new LinkedList<>());
-        LinkedList<ChatMessage> playerHistory = chatHistory.get(playerUUID);
+    private static Exception unwrap(CompletionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+    
+    /**
+     * Decides what becomes of a request whose call failed: a failure that may pass is retried if there is still time,
+     * anything else is recorded as the request's failure
+     * @param e The failure
+     * @param trace The request's metrics trace
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @param kind How the request is described in the log, such as "streamed "
+     * @return A {@link RetryLaterException} to throw if the request is retried, or the failure itself
+     */
+    private RuntimeException retryOrFail(RuntimeException e, RequestTrace trace, long deadlineNanos, String kind) {
+        long backoffNanos = getRetryBackoffNanos(e, trace.getRetries(), deadlineNanos);
+        if (backoffNanos < 0) {
+            metricsService.recordFailure(trace, classifyFailure(e));
+            return e;
+        }
         
-        playerHistory.add(new ChatMessage(sender, content));
+        logger.log(Level.FINE, "Retrying " + kind + trace.getType().getMetricName() + " request in "
+            + TimeUnit.NANOSECONDS.toMillis(backoffNanos) + " ms", e);
+        metricsService.recordRetry(trace.getType());
+        trace.countRetry();
+        return new RetryLaterException(e, backoffNanos);
+    }
+    
+    /**
+     * Makes one call and adapts the adaptive limit to the outcome. The request engine took the request's limiter slot
+     * before dispatching it; a hedge needs a slot of its own.
+     * @param params The completion request parameters
+     * @param trace The request's metrics trace
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @param hedge true if the call races a slower one; it is then only sent if the limiter has a slot free right away
+     * @param settled Set once a hedged request has its answer, so a call failing afterwards was cancelled rather than
+     *                failed. Null if the call is not hedged.
+     * @return The completion
+     * @throws RateLimitedException if the call is a hedge and the limiter has no free slot
+     */
+    private ChatCompletion attemptCompletion(ChatCompletionCreateParams params, RequestTrace trace, long deadlineNanos,
+                                             boolean hedge, AtomicBoolean settled) {
+        if (hedge && !adaptiveLimiter.tryAcquire()) {
+            throw new RateLimitedException(adaptiveLimiter.getRemainingPauseNanos());
+        }
         
-        // Keep only the last MAX_HISTORY messages
-        while (playerHistory.size() > configManager.getMaxHistory()) {
-            playerHistory.removeFirst();
+        try {
+            return callCompletion(params, trace, deadlineNanos, hedge, settled);
+        } finally {
+            if (hedge) {
+                adaptiveLimiter.release();
+            }
         }
     }
     
     /**
-     * Gets a summary of the player's inventory
-     * @param player The player
-     * @return A string summary of the player's inventory
+     * Makes one call within a limiter slot that is already held, and adapts the adaptive limit to the outcome
+     * @param params The completion request parameters
+     * @param trace The request's metrics trace
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @param hedge true if the call races a slower one
+     * @param settled Set once a hedged request has its answer, or null if the call is not hedged
+     * @return The completion
      */
-    private String getInventorySummary(Player player) {
+    private ChatCompletion callCompletion(ChatCompletionCreateParams params, RequestTrace trace, long deadlineNanos,
+                                          boolean hedge, AtomicBoolean settled) {
+        metricsService.recordQueueWait(trace);
+        if (hedge) {
+            metricsService.recordHedge(trace.getType());
+        }
+        long startNanos = System.nanoTime();
+        
+        ClientManager.Handle handle = clientManager.acquire();
         try {
-            Map<String, Integer> itemCount = new HashMap<>();
+            if (handle == null) {
+                throw new IllegalStateException("OpenAI client is closed");
+            }
+            ChatCompletion chatCompletion = handle.getClient().chat().completions().create(params, getRequestOptions(deadlineNanos));
+            long apiNanos = System.nanoTime() - startNanos;
+            adaptiveLimiter.onSuccess(apiNanos);
+            metricsService.recordSuccess(trace, apiNanos);
+            chatCompletion.usage().ifPresent(usage ->
+                metricsService.recordTokenUsage(trace.getType(), usage.promptTokens(), usage.completionTokens()));
+            return chatCompletion;
+        } catch (RuntimeException e) {
+            // A call cancelled because the other call of its hedged request answered says nothing about load
+            if (settled == null || !settled.get()) {
+                reportOverload(e);
+            }
+            throw e;
+        } finally {
+            if (handle != null) {
+                handle.release();
+            }
+        }
+    }
+    
+    /**
+     * Makes a call and races it with a second one if it has not answered within the hedge delay.
+     * The first answer wins and the other call is cancelled; interrupting its thread aborts its HTTP exchange.
+     * @param params The completion request parameters
+     * @param trace The request's metrics trace
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @param hedgeDelayNanos How long the first call runs alone
+     * @return The completion of whichever call answered first
+     * @throws InterruptedException if the thread was interrupted while waiting for the calls
+     */
+    private ChatCompletion createHedgedCompletion(ChatCompletionCreateParams params, RequestTrace trace, long deadlineNanos,
+                                                  long hedgeDelayNanos) throws InterruptedException {
+        AtomicBoolean settled = new AtomicBoolean();
+        CompletionService<ChatCompletion> calls = new ExecutorCompletionService<>(hedgeExecutor);
+        Future<ChatCompletion> primary;
+        try {
+            primary = calls.submit(() -> attemptCompletion(params, trace, deadlineNanos, false, settled));
+        } catch (RejectedExecutionException e) {
+            // Every hedge thread is busy, so this request goes unhedged
+            return attemptCompletion(params, trace, deadlineNanos, false, null);
+        }
+        Future<ChatCompletion> hedge = null;
+        
+        try {
+            Future<ChatCompletion> done = calls.poll(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            int pending = 1;
+            if (done == null && circuitBreaker.isClosed()) {
+                try {
+                    hedge = calls.submit(() -> attemptCompletion(params, trace, deadlineNanos, true, settled));
+                    pending++;
+                } catch (RejectedExecutionException e) {
+                    // Every hedge thread is busy; keep waiting for the first call alone
+                }
+            }
             
-            Arrays.stream(player.getInventory().getContents())
-                .filter(Objects::nonNull)
-                .forEach(item -> {
-                    String itemName = item.getType().toString().toLowerCase().replace('_', ' ');
-                    itemCount.put(itemName, itemCount.getOrDefault(itemName, 0) + item.getAmount());
-                });
+            RuntimeException failure = null;
+            while (pending-- > 0) {
+                if (done == null) {
+                    done = calls.take();
+                }
+                try {
+                    ChatCompletion chatCompletion = done.get();
+                    if (done == hedge) {
+                        metricsService.recordHedgeWin(trace.getType());
+                    }
+                    return chatCompletion;
+                } catch (ExecutionException e) {
+                    // The first call's failure is the one reported; the hedge's only if it is the only one, such as
+                    // when the hedge found no free slot
+                    if (failure == null || done == primary) {
+                        failure = e.getCause() instanceof RuntimeException cause ? cause : new CompletionException(e.getCause());
+                    }
+                }
+                done = null;
+            }
+            throw failure;
+        } finally {
+            settled.set(true);
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Gets how long a call runs alone before it is raced by a second one. Calls are only hedged once their type's
+     * latency is known, while the circuit breaker is closed, and if the hedge could still start before the deadline.
+     * @param type The request type, whose API latency percentile sets the delay
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @return The delay in nanoseconds, or 0 if the call is not hedged
+     */
+    private long getHedgeDelayNanos(RequestType type, long deadlineNanos) {
+        ConfigSnapshot config = configManager.getSnapshot();
+        if (!config.isHedgingEnabled() || !circuitBreaker.isClosed()) {
+            return 0;
+        }
+        
+        LatencyHistogram apiLatency = metricsService.getTypeMetrics(type).getApiLatency();
+        if (apiLatency.getCount() < Math.max(1, config.getHedgingMinSamples())) {
+            return 0;
+        }
+        
+        long delayNanos = Math.max(
+            TimeUnit.MICROSECONDS.toNanos(apiLatency.getRecentPercentileMicros(config.getHedgingPercentile())),
+            TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getHedgingMinDelayMillis()))
+        );
+        return delayNanos < deadlineNanos - System.nanoTime() ? delayNanos : 0;
+    }
+    
+    /**
+     * Decides if a failed call is sent again, and after how long. Timeouts, connection errors and 408, 409, 429 and
+     * 5xx answers are retried up to the configured number of times, after a random backoff of up to the base backoff
+     * doubled for every retry so far (full jitter). The backoff is never shorter than a Retry-After the API asked for,
+     * and a call is not retried if the backoff would outlast the request's deadline.
+     * @param e The failure
+     * @param retries The number of times the request was already retried
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @return The backoff in nanoseconds, or -1 if the call is not retried
+     */
+    private long getRetryBackoffNanos(Exception e, int retries, long deadlineNanos) {
+        ConfigSnapshot config = configManager.getSnapshot();
+        if (retries >= config.getMaxRetries() || !isRetryable(e)) {
+            return -1;
+        }
+        
+        long maxNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getBackoffMaxMillis()));
+        long ceilingNanos = Math.min(maxNanos, TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getBackoffBaseMillis())) << Math.min(retries, 20));
+        long backoffNanos = ceilingNanos > 0 ? ThreadLocalRandom.current().nextLong(ceilingNanos + 1) : 0;
+        if (e instanceof RateLimitException rateLimitException) {
+            backoffNanos = Math.max(backoffNanos, parseRetryAfterNanos(rateLimitException.headers()));
+        }
+        return backoffNanos < deadlineNanos - System.nanoTime() ? backoffNanos : -1;
+    }
+    
+    /**
+     * Checks if a failed call may succeed when sent again
+     * @param e The failure
+     * @return true for timeouts, connection errors, and 408, 409, 429 and 5xx answers
+     */
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof OpenAIIoException || e instanceof RateLimitException || e instanceof InternalServerException) {
+            return true;
+        }
+        if (e instanceof OpenAIServiceException serviceException) {
+            int status = serviceException.statusCode();
+            return status == 408 || status == 409;
+        }
+        return false;
+    }
+    
+    /**
+     * Checks if a failure means OpenAI is unreachable or broken, rather than that it refused or could not use the request
+     * @param e The failure
+     * @return true for timeouts, connection errors and 5xx answers
+     */
+    static boolean isUnavailable(Throwable e) {
+        FailureType failure = classifyFailure(e);
+        return failure == FailureType.TIMEOUT || failure == FailureType.SERVER_ERROR || e instanceof OpenAIIoException;
+    }
+    
+    /**
+     * Reports a failed call to the circuit breaker
+     * @param e The failure
+     */
+    private void reportToCircuitBreaker(Exception e) {
+        // A call cut short because its own thread was interrupted says nothing about the API
+        if (isUnavailable(e) && !Thread.currentThread().isInterrupted()) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onIgnored();
+        }
+    }
+    
+    /**
+     * Gets when a request's time for all its attempts runs out
+     * @param trace The request's metrics trace
+     * @return The deadline on the System.nanoTime clock
+     */
+    private long getDeadlineNanos(RequestTrace trace) {
+        int deadlineSeconds = configManager.getRequestDeadlineSeconds(trace.getType());
+        return trace.getSubmittedNanos() + (deadlineSeconds > 0 ? TimeUnit.SECONDS.toNanos(deadlineSeconds) : NO_DEADLINE_NANOS);
+    }
+    
+    /**
+     * Builds the timeouts of one call, with its overall timeout cut short to what is left of the request's deadline
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @return The call's request options
+     * @throws RejectedExecutionException if the deadline already passed
+     */
+    private RequestOptions getRequestOptions(long deadlineNanos) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+            throw new RejectedExecutionException("Request deadline passed before it was sent");
+        }
+        
+        ConfigSnapshot config = configManager.getSnapshot();
+        long requestNanos = config.getConnectionTimeout() > 0
+            ? Math.min(TimeUnit.SECONDS.toNanos(config.getConnectionTimeout()), remainingNanos)
+            : remainingNanos;
+        return RequestOptions.builder()
+            .timeout(Timeout.builder()
+                .connect(Duration.ofSeconds(config.getConnectTimeout()))
+                .read(Duration.ofSeconds(config.getReadTimeout()))
+                .write(Duration.ofSeconds(config.getWriteTimeout()))
+                .request(Duration.ofNanos(requestNanos))
+                .build())
+            .build();
+    }
+    
+    /**
+     * Sorts a failure into the classes reported by the metrics
+     * @param error The failure, possibly wrapped in a CompletionException
+     * @return The failure class
+     */
+    static FailureType classifyFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RateLimitException) {
+            return FailureType.RATE_LIMITED;
+        }
+        if (cause instanceof InternalServerException) {
+            return FailureType.SERVER_ERROR;
+        }
+        if (cause instanceof OpenAIInvalidDataException) {
+            return FailureType.PARSE;
+        }
+        if (cause instanceof RateLimitedException || cause instanceof RejectedExecutionException || cause instanceof CircuitOpenException) {
+            return FailureType.REJECTED;
+        }
+        
+        // OkHttp reports connect, read and call timeouts as InterruptedIOException subclasses, wrapped by the SDK
+        for (Throwable current = cause; current != null; current = current.getCause()) {
+            if (current instanceof InterruptedIOException) {
+                return FailureType.TIMEOUT;
+            }
+        }
+        return FailureType.OTHER;
+    }
+    
+    /**
+     * Shrinks the adaptive limit after a failed call if the API signalled overload
+     * @param e The failure
+     */
+    private void reportOverload(Exception e) {
+        if (e instanceof RateLimitException rateLimitException) {
+            adaptiveLimiter.onOverload(parseRetryAfterNanos(rateLimitException.headers()));
+        } else if (e instanceof OpenAIIoException || e instanceof InternalServerException) {
+            adaptiveLimiter.onOverload(0);
+        }
+    }
+    
+    /**
+     * Reads how long OpenAI asked us to back off
+     * @param headers The response headers
+     * @return The wait in nanoseconds, or 0 if the response did not say
+     */
+    private static long parseRetryAfterNanos(Headers headers) {
+        try {
+            List<String> millis = headers.values("retry-after-ms");
+            if (!millis.isEmpty()) {
+                return (long) (Double.parseDouble(millis.get(0).trim()) * 1_000_000L);
+            }
             
-            // Generate a summary string
-            if (itemCount.isEmpty()) {
-                return "empty";
+            List<String> seconds = headers.values("retry-after");
+            if (!seconds.isEmpty()) {
+                return (long) (Double.parseDouble(seconds.get(0).trim()) * 1_000_000_000L);
+            }
+        } catch (NumberFormatException e) {
+            // An HTTP date or garbage, fall back to the limiter's own backoff
+        }
+        return 0;
+    }
+    
+    /**
+     * Turns a failure into a message for players. While OpenAI is unavailable, a request of a type with fallback lines
+     * is answered with one of them instead.
+     * @param e The failure
+     * @param type The request type
+     * @return The message
+     */
+    private String describeError(Exception e, RequestType type) {
+        if (e instanceof RateLimitException || e instanceof RateLimitedException) {
+            return "The AI is receiving too many requests right now. Please try again in a moment.";
+        }
+        String fallback = getFallback(e, type);
+        return fallback != null ? fallback : "Sorry, I encountered an error processing your request. Please try again later.";
+    }
+    
+    /**
+     * Picks a canned line to answer a request with while OpenAI is unavailable
+     * @param error The failure, possibly wrapped in a CompletionException
+     * @param type The request type
+     * @return One of the type's fallback lines at random, or null if OpenAI is not unavailable or the type has none
+     */
+    public String getFallback(Throwable error, RequestType type) {
+        Throwable e = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!(e instanceof CircuitOpenException) && !isUnavailable(e)) {
+            return null;
+        }
+        
+        List<String> fallbacks = configManager.getFallbacks(type);
+        if (fallbacks.isEmpty()) {
+            return null;
+        }
+        metricsService.recordFallback(type);
+        return fallbacks.get(ThreadLocalRandom.current().nextInt(fallbacks.size()));
+    }
+    
+    /**
+     * Checks if requests are currently sent to OpenAI, rather than failed by the open circuit breaker
+     * @return true if the circuit breaker is closed
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.isClosed();
+    }
+    
+    /**
+     * Gets the circuit breaker that stops calls while OpenAI is down
+     * @return The circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    /**
+     * Gets the adaptive limiter capping OpenAI calls in flight
+     * @return The adaptive limiter
+     */
+    public AdaptiveLimiter getAdaptiveLimiter() {
+        return adaptiveLimiter;
+    }
+    
+    /**
+     * Streams a completion within its type's deadline, handing sentence-sized chunks to a consumer and recording
+     * latency metrics. A stream that fails in a way that may pass ends the attempt with a {@link RetryLaterException},
+     * for {@link #dispatch} to send it again after a backoff, as long as none of it was handed to the consumer yet;
+     * streams are never hedged.
+     * @param params The completion request parameters
+     * @param chunkConsumer Receives each chunk on the request thread
+     * @param stillRelevant Checked before every streamed chunk; returning false closes the stream without handing
+     *                      the consumer anything more. May be null.
+     * @param trace The request's metrics trace
+     * @return The full response, or null if the stream failed, was empty or was abandoned
+     * @throws RetryLaterException if the request is to be sent again after a backoff
+     */
+    private String streamCompletion(ChatCompletionCreateParams params, Consumer<String> chunkConsumer, BooleanSupplier stillRelevant,
+                                    RequestTrace trace) {
+        // Ask for the token usage, which is only sent in a final chunk without choices
+        ChatCompletionCreateParams streamParams = params.toBuilder().streamOptions(INCLUDE_USAGE).build();
+        long deadlineNanos = getDeadlineNanos(trace);
+        
+        StreamChunker chunker = new StreamChunker(
+            configManager.getStreamingMinChunkChars(),
+            configManager.getStreamingMaxChunkChars(),
+            chunkConsumer
+        );
+        StringBuilder response = new StringBuilder();
+        
+        boolean finished;
+        try {
+            circuitBreaker.acquire();
+            try {
+                finished = attemptStream(streamParams, chunker, response, stillRelevant, trace, deadlineNanos);
+                circuitBreaker.onSuccess();
+            } catch (RuntimeException e) {
+                reportToCircuitBreaker(e);
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            // A retry would repeat whatever part of the response the consumer already has
+            if (chunker.getEmittedChunks() == 0) {
+                RuntimeException failure = retryOrFail(e, trace, deadlineNanos, "streamed ");
+                if (failure instanceof RetryLaterException) {
+                    throw failure;
+                }
+            } else {
+                metricsService.recordFailure(trace, classifyFailure(e));
             }
             
-            return itemCount.entrySet().stream()
-                .map(entry -> entry.getValue() + " " + entry.getKey())
-                .collect(Collectors.joining(", "));
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error generating inventory summary", e);
-            return "unknown inventory";
+            if (e instanceof RateLimitedException || e instanceof CircuitOpenException) {
+                logger.log(Level.FINE, "No capacity for streaming response", e);
+            } else {
+                logger.log(Level.WARNING, "Error streaming response", e);
+            }
+            chunkConsumer.accept(describeError(e, trace.getType()));
+            return null;
+        }
+        
+        if (!finished) {
+            return null;
+        }
+        if (chunker.getEmittedChunks() == 0) {
+            chunkConsumer.accept("No response generated");
+            return null;
+        }
+        return response.toString();
+    }
+    
+    /**
+     * Streams one call within the limiter slot the request engine took for the request, and adapts the limit to the outcome
+     * @param streamParams The completion request parameters, asking for the token usage
+     * @param chunker Splits the streamed text into chunks for the consumer
+     * @param response Receives the full streamed text
+     * @param stillRelevant Checked before every streamed chunk; returning false closes the stream. May be null.
+     * @param trace The request's metrics trace
+     * @param deadlineNanos When the request's time runs out, on the System.nanoTime clock
+     * @return true if the stream ended, false if it was abandoned
+     */
+    private boolean attemptStream(ChatCompletionCreateParams streamParams, StreamChunker chunker, StringBuilder response,
+                                  BooleanSupplier stillRelevant, RequestTrace trace, long deadlineNanos) {
+        CompletionUsage usage = null;
+        long firstTokenNanos = 0;
+        boolean abandoned = false;
+        
+        metricsService.recordQueueWait(trace);
+        long startNanos = System.nanoTime();
+        
+        ClientManager.Handle handle = clientManager.acquire();
+        try {
+            if (handle == null) {
+                throw new IllegalStateException("OpenAI client is closed");
+            }
+            try (StreamResponse<ChatCompletionChunk> stream =
+                     handle.getClient().chat().completions().createStreaming(streamParams, getRequestOptions(deadlineNanos))) {
+                Iterator<ChatCompletionChunk> chunks = stream.stream().iterator();
+                while (chunks.hasNext()) {
+                    if (stillRelevant != null && !stillRelevant.getAsBoolean()) {
+                        // Closing the stream below cancels the rest of the response
+                        abandoned = true;
+                        break;
+                    }
+                    ChatCompletionChunk chunk = chunks.next();
+                    usage = chunk.usage().orElse(usage);
+                    for (ChatCompletionChunk.Choice choice : chunk.choices()) {
+                        String delta = choice.delta().content().orElse("");
+                        if (delta.isEmpty()) {
+                            continue;
+                        }
+                        
+                        if (firstTokenNanos == 0) {
+                            firstTokenNanos = System.nanoTime();
+                        }
+                        response.append(delta);
+                        chunker.append(delta);
+                    }
+                }
+                if (!abandoned) {
+                    chunker.finish();
+                }
+            }
+        } catch (RuntimeException e) {
+            reportOverload(e);
+            throw e;
+        } finally {
+            if (handle != null) {
+                handle.release();
+            }
+        }
+        
+        long endNanos = System.nanoTime();
+        adaptiveLimiter.onSuccess((firstTokenNanos != 0 ? firstTokenNanos : endNanos) - startNanos);
+        metricsService.recordSuccess(trace, endNanos - startNanos);
+        if (firstTokenNanos != 0) {
+            metricsService.recordStreamLatency(trace, firstTokenNanos - startNanos);
+        }
+        if (usage != null) {
+            metricsService.recordTokenUsage(trace.getType(), usage.promptTokens(), usage.completionTokens());
+        }
+        return !abandoned;
+    }
+    
+    /**
+     * Generates a response to a player's chat message on the request engine
+     * @param playerName The name of the player
+     * @param message The message sent by the player
+     * @param playerUUID The UUID of the player
+     * @return A future completed with the response, or exceptionally if the request was not admitted
+     */
+    public CompletableFuture<String> generatePlayerChatResponseAsync(String playerName, String message, UUID playerUUID) {
+        return generatePlayerChatResponseAsync(playerName, message, playerUUID, null);
+    }
+    
+    /**
+     * Generates a response to a player's chat message on the request engine, unless it stops being wanted before it starts
+     * @param playerName The name of the player
+     * @param message The message sent by the player
+     * @param playerUUID The UUID of the player
+     * @param stillRelevant Checked before the request starts; returning false drops it. May be null.
+     * @return A future completed with the response, or exceptionally if the request was not admitted or was dropped
+     */
+    public CompletableFuture<String> generatePlayerChatResponseAsync(String playerName, String message, UUID playerUUID,
+                                                                     BooleanSupplier stillRelevant) {
+        RequestTrace trace = metricsService.startRequest(RequestType.CHAT, playerUUID);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            return CompletableFuture.completedFuture(rateLimitMessage);
         }
+        
+        return submit(trace, RequestPriority.CHAT, stillRelevant, () -> generatePlayerChatResponse(playerName, message, playerUUID, stillRelevant, trace));
+    }
+    
+    /**
+     * Streams a response to a player's chat message on the request engine
+     * @param playerName The name of the player
+     * @param message The message sent by the player
+     * @param playerUUID The UUID of the player
+     * @param chunkConsumer Receives each chunk on a request thread
+     * @return A future completed with the full response, or exceptionally if the request was not admitted
+     */
+    public CompletableFuture<String> streamPlayerChatResponseAsync(String playerName, String message, UUID playerUUID, Consumer<String> chunkConsumer) {
+        return streamPlayerChatResponseAsync(playerName, message, playerUUID, null, chunkConsumer);
     }
     
     /**
-     * Gets a summary of the player's chat history
+     * Streams a response to a player's chat message on the request engine, unless it stops being wanted
+     * @param playerName The name of the player
+     * @param message The message sent by the player
      * @param playerUUID The UUID of the player
-     * @return A string summary of the player's chat history
+     * @param stillRelevant Checked before the request starts and before every streamed chunk; returning false drops
+     *                      the request or abandons its stream. May be null.
+     * @param chunkConsumer Receives each chunk on a request thread
+     * @return A future completed with the full response, or exceptionally if the request was not admitted or was dropped
+     */
+    public CompletableFuture<String> streamPlayerChatResponseAsync(String playerName, String message, UUID playerUUID,
+                                                                   BooleanSupplier stillRelevant, Consumer<String> chunkConsumer) {
+        RequestTrace trace = metricsService.startRequest(RequestType.CHAT, playerUUID);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            chunkConsumer.accept(rateLimitMessage);
+            return CompletableFuture.completedFuture(rateLimitMessage);
+        }
+        
+        return submit(trace, RequestPriority.CHAT, stillRelevant,
+            () -> streamPlayerChatResponse(playerName, message, playerUUID, chunkConsumer, stillRelevant, trace));
+    }
+    
+    /**
+     * Generates one reply to several chat messages of a world on the request engine
+     * @param world The name of the world
+     * @param transcript The messages in the order they were sent, by player name
+     * @param speakers The players who sent the messages, in whose histories the reply is recorded
+     * @param lastSpeaker The player who sent the last message, whose rate limit the request counts against
+     * @param stillRelevant Checked before the request starts and before the reply is recorded; returning false drops
+     *                      the request. May be null.
+     * @return A future completed with the reply, or exceptionally if the request was not admitted or was dropped
+     */
+    public CompletableFuture<String> generateConversationResponseAsync(String world, List<ChatMessage> transcript, Collection<UUID> speakers,
+                                                                       UUID lastSpeaker, BooleanSupplier stillRelevant) {
+        RequestTrace trace = metricsService.startRequest(RequestType.CHAT, lastSpeaker);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            return CompletableFuture.completedFuture(rateLimitMessage);
+        }
+        
+        return submit(trace, RequestPriority.CHAT, stillRelevant, () -> {
+            if (!isInitialized || !clientManager.hasClient()) {
+                return "Error: OpenAI service is not properly initialized. Check server logs.";
+            }
+            
+            try {
+                ChatCompletion chatCompletion = createCompletion(buildConversationParams(world, transcript), trace);
+                Optional<String> content = chatCompletion.choices().get(0).message().content();
+                if (content.isEmpty()) {
+                    return "No response generated";
+                }
+                
+                recordReply(speakers, content.get(), stillRelevant);
+                return content.get();
+            } catch (RetryLaterException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error generating conversation response", e);
+                return describeError(e, trace.getType());
+            }
+        });
+    }
+    
+    /**
+     * Streams one reply to several chat messages of a world on the request engine
+     * @param world The name of the world
+     * @param transcript The messages in the order they were sent, by player name
+     * @param speakers The players who sent the messages, in whose histories the reply is recorded
+     * @param lastSpeaker The player who sent the last message, whose rate limit the request counts against
+     * @param stillRelevant Checked before the request starts, before every streamed chunk and before the reply is
+     *                      recorded; returning false drops the request or abandons its stream. May be null.
+     * @param chunkConsumer Receives each chunk on a request thread
+     * @return A future completed with the full reply, or exceptionally if the request was not admitted or was dropped
+     */
+    public CompletableFuture<String> streamConversationResponseAsync(String world, List<ChatMessage> transcript, Collection<UUID> speakers,
+                                                                     UUID lastSpeaker, BooleanSupplier stillRelevant,
+                                                                     Consumer<String> chunkConsumer) {
+        RequestTrace trace = metricsService.startRequest(RequestType.CHAT, lastSpeaker);
+        String rateLimitMessage = checkRateLimit(trace);
+        if (rateLimitMessage != null) {
+            chunkConsumer.accept(rateLimitMessage);
+            return CompletableFuture.completedFuture(rateLimitMessage);
+        }
+        
+        return submit(trace, RequestPriority.CHAT, stillRelevant, () -> {
+            if (!isInitialized || !clientManager.hasClient()) {
+                String error = "Error: OpenAI service is not properly initialized. Check server logs.";
+                chunkConsumer.accept(error);
+                return error;
+            }
+            
+            String response = streamCompletion(buildConversationParams(world, transcript), chunkConsumer, stillRelevant, trace);
+            if (response == null) {
+                return "Sorry, I encountered an error processing your request. Please try again later.";
+            }
+            
+            recordReply(speakers, response, stillRelevant);
+            return response;
+        });
+    }
+    
+    /**
+     * Builds the completion request for a reply to several chat messages of a world
+     * @param world The name of the world
+     * @param transcript The messages in the order they were sent, by player name
+     * @return The completion request parameters
      */
-    private String getChatHistorySummary(UUID playerUUID) {
-        if (!chatHistory.containsKey(playerUUID) || chatHistory.get(playerUUID).isEmpty()) {
-            return "No previous messages.";
+    private ChatCompletionCreateParams buildConversationParams(String world, List<ChatMessage> transcript) {
+        StringBuilder messages = new StringBuilder();
+        for (ChatMessage message : transcript) {
+            if (messages.length() > 0) {
+                messages.append('\n');
+            }
+            messages.append(message.getSender()).append(": ").append(message.getContent());
         }
         
-        return chatHistory.get(playerUUID).stream()
-            .map(ChatMessage::toString)
-            .collect(Collectors.joining(" | "));
+        return ChatCompletionCreateParams.builder()
+            .addSystemMessage(promptTemplates.render(PromptKey.WORLD_CHAT, world))
+            .addUserMessage(messages.toString())
+            .model(configManager.getModel())
+            .temperature(configManager.getTemperature())
+            .maxCompletionTokens(configManager.getMaxTokens())
+            .build();
+    }
+    
+    /**
+     * Records a chat reply OpenAI generated in the history of every player it answered. This is the only place replies
+     * are recorded; the players' own messages are recorded by the chat listener as they are sent.
+     * @param players The players the reply answered
+     * @param response The reply
+     * @param stillRelevant Checked first; a reply that is no longer wanted, such as one superseded by a newer reply,
+     *                      is not recorded. May be null.
+     */
+    private void recordReply(Collection<UUID> players, String response, BooleanSupplier stillRelevant) {
+        if (stillRelevant != null && !stillRelevant.getAsBoolean()) {
+            return;
+        }
+        for (UUID playerUUID : players) {
+            addMessageToHistory(playerUUID, "AI", response);
+        }
+    }
+    
+    /**
+     * Adds a message to the player's chat history
+     * @param playerUUID The UUID of the player
+     * @param sender The sender of the message
+     * @param content The content of the message
+     */
+    public void addMessageToHistory(UUID playerUUID, String sender, String content) {
+        chatHistory.add(playerUUID, sender, content);
+        persistentStore.appendHistory(playerUUID, sender, content);
+    }
+    
+    /**
+     * Restores a player's chat history from disk in the background, if persistence is enabled
+     * @param playerUUID The UUID of the player
+     */
+    public void loadChatHistory(UUID playerUUID) {
+        persistentStore.loadHistory(playerUUID).thenAccept(messages -> chatHistory.preload(playerUUID, messages));
+    }
+    
+    /**
+     * Drops a player's chat history from memory, keeping any copy on disk for the next session
+     * @param playerUUID The UUID of the player
+     */
+    public void unloadChatHistory(UUID playerUUID) {
+        chatHistory.clear(playerUUID);
+        promptBuilder.forget(playerUUID);
     }
     
     /**
@@ -307,7 +1751,9 @@ public class OpenAIService {
      * @param playerUUID The UUID of the player
      */
     public void clearChatHistory(UUID playerUUID) {
-        chatHistory.remove(playerUUID);
+        chatHistory.clear(playerUUID);
+        promptBuilder.forget(playerUUID);
+        persistentStore.clearHistory(playerUUID);
     }
     
     /**
@@ -315,6 +1761,6 @@ public class OpenAIService {
      * @param playerUUID The UUID of the player
      */
     public void resetRateLimit(UUID playerUUID) {
-        rateLimits.remove(playerUUID);
+        rateLimiter.reset(playerUUID);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,699 @@
+package rs.meine.services;
+
+import rs.meine.config.ConfigManager;
+import rs.meine.models.ChatMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps chat history and cached responses across restarts in an append-only log in the plugin data folder.
+ * The log is one memory-mapped file of length-prefixed, checksummed records. Appends only copy into the mapping;
+ * the pages are forced to disk periodically, and the log is rewritten with just the live records once most of it
+ * is garbage or it runs full. Chat history is indexed by player and only read back when the player joins.
+ * Every file operation runs on one dedicated thread, never on the main thread.
+ * <p>
+ * Each rewrite goes to a new file numbered one higher (store.1.log, store.2.log, ...) whose header is only written
+ * once all of its records are on disk. Loading picks the newest file with a header and deletes the others, so the log
+ * is never renamed or replaced while it is mapped, which Windows refuses, and a crash during a rewrite loses nothing.
+ */
+public class PersistentStore {
+    private static final String LOG_PREFIX = "store.";
+    private static final String LOG_SUFFIX = ".log";
+    private static final Pattern LOG_NAME = Pattern.compile("store\\.(\\d{1,18})\\.log");
+    /** The single unnumbered log written before rewrites went to new files */
+    private static final String LEGACY_LOG_NAME = "store.log";
+    /** Marks a log file whose records were all written; "MGPT" */
+    private static final int MAGIC = 0x4D475054;
+    private static final int FORMAT_VERSION = 1;
+    /** Magic number and format version at the start of a numbered log */
+    static final int FILE_HEADER_BYTES = 8;
+    private static final byte HISTORY_APPEND = 1;
+    private static final byte HISTORY_CLEAR = 2;
+    private static final byte COMMAND_PUT = 3;
+    private static final byte SEMANTIC_PUT = 4;
+    private static final byte CACHE_CLEAR = 5;
+
+    /** Record length and CRC32 of the body */
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final ConfigManager configManager;
+    private final Logger logger;
+    private final boolean enabled;
+    private final ScheduledExecutorService executor;
+
+    // Only touched on the store thread
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+    private final Map<UUID, ArrayDeque<Integer>> historyIndex = new HashMap<>();
+    private final LinkedHashMap<String, Integer> commandIndex = new LinkedHashMap<>();
+    private final ArrayDeque<Integer> semanticIndex = new ArrayDeque<>();
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private Path logFile;
+    private long generation;
+    private int position = 0;
+    private long liveBytes = 0;
+    private boolean dirty = false;
+
+    /**
+     * Creates a new PersistentStore. Nothing is read or written unless persistence is enabled in the configuration.
+     * @param dataFolder The plugin data folder
+     * @param configManager The configuration manager
+     * @param logger The plugin logger
+     */
+    public PersistentStore(File dataFolder, ConfigManager configManager, Logger logger) {
+        this.directory = dataFolder.toPath().resolve("store");
+        this.configManager = configManager;
+        this.logger = logger;
+        this.enabled = configManager.isPersistenceEnabled();
+        this.executor = enabled ? Executors.newSingleThreadScheduledExecutor(BackgroundTasks.threads("Store")) : null;
+    }
+
+    /**
+     * Checks if persistence is enabled. Changing the setting takes effect after a restart.
+     * @return true if history and caches are persisted
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Opens the log in the background and restores the cached responses that have not expired yet
+     * @param commandCache The command cache to restore
+     * @param semanticCache The semantic cache to restore
+     */
+    public void open(ResponseCache commandCache, SemanticCache semanticCache) {
+        if (!enabled) {
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                load(commandCache, semanticCache);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.SEVERE, "Could not open the persistent store, history and caches will not be saved", e);
+                closeLog();
+            }
+        });
+
+        long interval = Math.max(1, configManager.getPersistenceFlushSeconds());
+        executor.scheduleWithFixedDelay(this::safeMaintain, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Persists a chat message
+     * @param playerUUID The UUID of the player
+     * @param sender The sender of the message
+     * @param content The content of the message
+     */
+    public void appendHistory(UUID playerUUID, String sender, String content) {
+        submit(() -> {
+            scratch.clear();
+            scratch.put(HISTORY_APPEND);
+            putUUID(playerUUID);
+            putString(sender);
+            putString(content);
+            indexHistory(playerUUID, writeRecord());
+        });
+    }
+
+    /**
+     * Forgets a player's persisted chat history
+     * @param playerUUID The UUID of the player
+     */
+    public void clearHistory(UUID playerUUID) {
+        submit(() -> {
+            scratch.clear();
+            scratch.put(HISTORY_CLEAR);
+            putUUID(playerUUID);
+            writeRecord();
+            dropHistory(playerUUID);
+        });
+    }
+
+    /**
+     * Persists a generated command
+     * @param key The command cache key
+     * @param command The generated command
+     */
+    public void appendCommand(String key, String command) {
+        long createdMillis = System.currentTimeMillis();
+        submit(() -> {
+            scratch.clear();
+            scratch.put(COMMAND_PUT);
+            scratch.putLong(createdMillis);
+            putString(key);
+            putString(command);
+            indexCommand(key, writeRecord());
+        });
+    }
+
+    /**
+     * Persists a response stored in the semantic cache
+     * @param namespace The semantic cache namespace
+     * @param prompt The prompt as typed by the player
+     * @param response The response
+     */
+    public void appendSemantic(String namespace, String prompt, String response) {
+        long createdMillis = System.currentTimeMillis();
+        submit(() -> {
+            scratch.clear();
+            scratch.put(SEMANTIC_PUT);
+            scratch.putLong(createdMillis);
+            putString(namespace);
+            putString(prompt);
+            putString(response);
+            indexSemantic(writeRecord());
+        });
+    }
+
+    /**
+     * Forgets all persisted cached responses
+     */
+    public void clearCaches() {
+        submit(() -> {
+            scratch.clear();
+            scratch.put(CACHE_CLEAR);
+            writeRecord();
+            dropCaches();
+        });
+    }
+
+    /**
+     * Reads a player's persisted chat history in the background
+     * @param playerUUID The UUID of the player
+     * @return A future completed with the messages, oldest first
+     */
+    public CompletableFuture<List<ChatMessage>> loadHistory(UUID playerUUID) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> readHistory(playerUUID), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Writes everything still queued, forces it to disk and closes the log
+     */
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        executor.execute(() -> {
+            force();
+            closeLog();
+        });
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("The persistent store did not finish writing before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a write on the store thread, logging and dropping it if it fails
+     * @param write The write
+     */
+    private void submit(Runnable write) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                if (log == null) {
+                    return;
+                }
+                try {
+                    write.run();
+                } catch (BufferOverflowException e) {
+                    logger.fine("Skipped persisting a record larger than " + MAX_RECORD_BYTES + " bytes");
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Could not write to the persistent store", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the record is lost like any other in-memory state
+        }
+    }
+
+    /**
+     * Maps the log and rebuilds the indexes from its records
+     * @param commandCache The command cache to restore
+     * @param semanticCache The semantic cache to restore
+     * @throws IOException if the log cannot be opened
+     */
+    private void load(ResponseCache commandCache, SemanticCache semanticCache) throws IOException {
+        Files.createDirectories(directory);
+        Path legacy = directory.resolve(LEGACY_LOG_NAME);
+        long newest = removeStaleGenerations();
+        int start = FILE_HEADER_BYTES;
+        if (newest > 0) {
+            generation = newest;
+            deleteLog(legacy);
+        } else if (Files.exists(legacy)) {
+            // Replayed once, then rewritten as the first numbered log below
+            generation = 0;
+            start = 0;
+        } else {
+            generation = 1;
+        }
+        logFile = generation > 0 ? logFile(generation) : legacy;
+
+        int capacity = (int) Math.max(Files.exists(logFile) ? Files.size(logFile) : 0, getSegmentBytes());
+        map(logFile, capacity);
+        if (newest == 0 && generation > 0) {
+            seal();
+        }
+
+        int pos = start;
+        while (pos + HEADER_BYTES <= log.capacity()) {
+            int length = log.getInt(pos);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > MAX_RECORD_BYTES || pos + HEADER_BYTES + length > log.capacity()
+                    || checksum(log, pos + HEADER_BYTES, length) != log.getInt(pos + 4)) {
+                // A record torn by a crash; wipe it so later appends are not followed by garbage
+                int end = Math.min(log.capacity(), pos + HEADER_BYTES + Math.max(0, Math.min(length, MAX_RECORD_BYTES)));
+                for (int i = pos; i < end; i++) {
+                    log.put(i, (byte) 0);
+                }
+                logger.warning("Discarded a damaged record at the end of the persistent store");
+                break;
+            }
+
+            replay(pos);
+            pos += HEADER_BYTES + length;
+        }
+        position = pos;
+
+        long now = System.currentTimeMillis();
+        for (int record : commandIndex.values()) {
+            ByteBuffer body = body(record);
+            body.get();
+            long ageNanos = TimeUnit.MILLISECONDS.toNanos(now - body.getLong());
+            commandCache.put(getString(body), getString(body), ageNanos);
+        }
+        for (int record : semanticIndex) {
+            ByteBuffer body = body(record);
+            body.get();
+            long ageNanos = TimeUnit.MILLISECONDS.toNanos(now - body.getLong());
+            semanticCache.put(getString(body), getString(body), getString(body), ageNanos);
+        }
+
+        if (generation == 0) {
+            compact(0);
+        }
+
+        logger.info("Persistent store loaded: " + historyIndex.size() + " player histories, " +
+            commandIndex.size() + " commands, " + semanticIndex.size() + " semantic cache entries");
+    }
+
+    /**
+     * Finds the newest numbered log that was completely written and deletes every other one: older logs a rewrite
+     * replaced, and a newer one a crash interrupted before its header was written
+     * @return The generation of the newest complete log, or 0 if there is none
+     * @throws IOException if the store folder cannot be listed or a log header cannot be read
+     */
+    private long removeStaleGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = LOG_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    generations.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        generations.sort(Collections.reverseOrder());
+
+        long newest = 0;
+        for (long candidate : generations) {
+            if (newest == 0 && isSealed(logFile(candidate))) {
+                newest = candidate;
+            } else {
+                deleteLog(logFile(candidate));
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Applies one record read from the log to the indexes
+     * @param record The position of the record
+     */
+    private void replay(int record) {
+        ByteBuffer body = body(record);
+        switch (body.get()) {
+            case HISTORY_APPEND -> indexHistory(getUUID(body), record);
+            case HISTORY_CLEAR -> dropHistory(getUUID(body));
+            case COMMAND_PUT -> {
+                body.getLong();
+                indexCommand(getString(body), record);
+            }
+            case SEMANTIC_PUT -> indexSemantic(record);
+            case CACHE_CLEAR -> dropCaches();
+            default -> logger.fine("Skipped an unknown record in the persistent store");
+        }
+    }
+
+    private List<ChatMessage> readHistory(UUID playerUUID) {
+        ArrayDeque<Integer> records = historyIndex.get(playerUUID);
+        if (log == null || records == null) {
+            return Collections.emptyList();
+        }
+
+        List<ChatMessage> messages = new ArrayList<>(records.size());
+        for (int record : records) {
+            ByteBuffer body = body(record);
+            body.get();
+            getUUID(body);
+            messages.add(new ChatMessage(getString(body), getString(body)));
+        }
+        return messages;
+    }
+
+    private void indexHistory(UUID playerUUID, int record) {
+        ArrayDeque<Integer> records = historyIndex.computeIfAbsent(playerUUID, uuid -> new ArrayDeque<>());
+        records.addLast(record);
+        liveBytes += recordBytes(record);
+
+        int maxHistory = Math.max(0, configManager.getMaxHistory());
+        while (records.size() > maxHistory) {
+            liveBytes -= recordBytes(records.pollFirst());
+        }
+        if (records.isEmpty()) {
+            historyIndex.remove(playerUUID);
+        }
+    }
+
+    private void dropHistory(UUID playerUUID) {
+        ArrayDeque<Integer> records = historyIndex.remove(playerUUID);
+        if (records != null) {
+            for (int record : records) {
+                liveBytes -= recordBytes(record);
+            }
+        }
+    }
+
+    private void indexCommand(String key, int record) {
+        Integer previous = commandIndex.remove(key);
+        if (previous != null) {
+            liveBytes -= recordBytes(previous);
+        }
+        commandIndex.put(key, record);
+        liveBytes += recordBytes(record);
+
+        Iterator<Integer> oldest = commandIndex.values().iterator();
+        while (commandIndex.size() > Math.max(0, configManager.getCommandCacheMaxEntries()) && oldest.hasNext()) {
+            liveBytes -= recordBytes(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    private void indexSemantic(int record) {
+        semanticIndex.addLast(record);
+        liveBytes += recordBytes(record);
+
+        int maxEntries = configManager.isSemanticCacheEnabled() ? Math.max(0, configManager.getSemanticCacheMaxEntries()) : 0;
+        while (semanticIndex.size() > maxEntries) {
+            liveBytes -= recordBytes(semanticIndex.pollFirst());
+        }
+    }
+
+    private void dropCaches() {
+        for (int record : commandIndex.values()) {
+            liveBytes -= recordBytes(record);
+        }
+        for (int record : semanticIndex) {
+            liveBytes -= recordBytes(record);
+        }
+        commandIndex.clear();
+        semanticIndex.clear();
+    }
+
+    /**
+     * Appends the record in the scratch buffer to the log, compacting or growing the log if it is full
+     * @return The position of the record
+     */
+    private int writeRecord() {
+        scratch.flip();
+        int length = scratch.remaining();
+
+        if (position + HEADER_BYTES + length > log.capacity()) {
+            compact(HEADER_BYTES + length);
+        }
+
+        int record = position;
+        log.put(record + HEADER_BYTES, scratch, 0, length);
+        log.putInt(record + 4, checksum(log, record + HEADER_BYTES, length));
+        // The length goes in last: until it is non-zero, a crash leaves the record invisible
+        log.putInt(record, length);
+
+        position += HEADER_BYTES + length;
+        dirty = true;
+        return record;
+    }
+
+    /**
+     * Forces dirty pages to disk and compacts the log once most of it is garbage
+     */
+    private void safeMaintain() {
+        try {
+            if (log == null) {
+                return;
+            }
+            if (position > getSegmentBytes() / 2 && liveBytes < position / 3) {
+                compact(0);
+            }
+            force();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error maintaining the persistent store", e);
+        }
+    }
+
+    /**
+     * Rewrites the log with only its live records, growing it if they would leave too little room
+     * @param reserve Bytes that must be free after compaction
+     */
+    private void compact(int reserve) {
+        long needed = Math.max(getSegmentBytes(), 2 * (liveBytes + reserve));
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (needed + 0xFFFFF) & ~0xFFFFFL);
+        Path compacted = logFile(generation + 1);
+
+        Path oldFile = logFile;
+        FileChannel oldChannel = channel;
+        MappedByteBuffer oldLog = log;
+        long cacheTtlMillis = TimeUnit.SECONDS.toMillis(configManager.getCommandCacheTtlSeconds());
+        long semanticTtlMillis = TimeUnit.SECONDS.toMillis(configManager.getSemanticCacheTtlSeconds());
+        long now = System.currentTimeMillis();
+
+        try {
+            Files.deleteIfExists(compacted);
+            map(compacted, capacity);
+        } catch (IOException e) {
+            channel = oldChannel;
+            log = oldLog;
+            throw new IllegalStateException("Could not create the compacted persistent store", e);
+        }
+
+        position = FILE_HEADER_BYTES;
+        liveBytes = 0;
+        for (ArrayDeque<Integer> records : historyIndex.values()) {
+            int count = records.size();
+            for (int i = 0; i < count; i++) {
+                records.addLast(copyRecord(oldLog, records.pollFirst()));
+            }
+        }
+        for (Map.Entry<String, Integer> entry : new ArrayList<>(commandIndex.entrySet())) {
+            if (now - createdMillis(oldLog, entry.getValue()) > cacheTtlMillis) {
+                commandIndex.remove(entry.getKey());
+            } else {
+                commandIndex.put(entry.getKey(), copyRecord(oldLog, entry.getValue()));
+            }
+        }
+        int count = semanticIndex.size();
+        for (int i = 0; i < count; i++) {
+            int record = semanticIndex.pollFirst();
+            if (now - createdMillis(oldLog, record) <= semanticTtlMillis) {
+                semanticIndex.addLast(copyRecord(oldLog, record));
+            }
+        }
+
+        // Until the header is written, a crash leaves the previous log the newest complete one
+        seal();
+        generation++;
+        logFile = compacted;
+        try {
+            oldChannel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close the persistent store's previous log", e);
+        }
+        deleteLog(oldFile);
+    }
+
+    /**
+     * Forces the records of a freshly written log to disk, then writes and forces its header, making it the log that
+     * is loaded from now on
+     */
+    private void seal() {
+        log.force();
+        log.putInt(4, FORMAT_VERSION);
+        log.putInt(0, MAGIC);
+        log.force();
+        dirty = false;
+    }
+
+    /**
+     * Checks if a numbered log was completely written
+     * @param file The log
+     * @return true if it starts with the header
+     * @throws IOException if the log cannot be read
+     */
+    private static boolean isSealed(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+        }
+        return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+    }
+
+    /**
+     * Deletes a log that was replaced, if the file system lets it
+     * @param file The log
+     */
+    private void deleteLog(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Windows refuses while the old mapping has not been garbage collected; the next load deletes it
+            logger.log(Level.FINE, "Could not delete the replaced persistent store " + file.getFileName(), e);
+        }
+    }
+
+    private int copyRecord(MappedByteBuffer from, int record) {
+        int bytes = HEADER_BYTES + from.getInt(record);
+        int copy = position;
+        log.put(copy, from, record, bytes);
+        position += bytes;
+        liveBytes += bytes;
+        return copy;
+    }
+
+    private void map(Path file, int capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void force() {
+        if (log != null && dirty) {
+            log.force();
+            dirty = false;
+        }
+    }
+
+    private void closeLog() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not close the persistent store", e);
+        }
+        channel = null;
+        log = null;
+    }
+
+    private Path logFile(long number) {
+        return directory.resolve(LOG_PREFIX + number + LOG_SUFFIX);
+    }
+
+    private long getSegmentBytes() {
+        return Math.max(1, configManager.getPersistenceSegmentMegabytes()) * 1024L * 1024L;
+    }
+
+    private ByteBuffer body(int record) {
+        return log.slice(record + HEADER_BYTES, log.getInt(record));
+    }
+
+    private int recordBytes(int record) {
+        return HEADER_BYTES + log.getInt(record);
+    }
+
+    private static long createdMillis(MappedByteBuffer from, int record) {
+        return from.getLong(record + HEADER_BYTES + 1);
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private void putUUID(UUID uuid) {
+        scratch.putLong(uuid.getMostSignificantBits());
+        scratch.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (scratch.remaining() < 4 + bytes.length) {
+            throw new BufferOverflowException();
+        }
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private static UUID getUUID(ByteBuffer body) {
+        return new UUID(body.getLong(), body.getLong());
+    }
+
+    private static String getString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,251 @@
+package rs.meine.services;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.config.ConfigManager;
+import rs.meine.models.PlayerContext;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Captures each player's world and inventory context on the main thread and caches it per player,
+ * so chat requests running on other threads never touch Bukkit world state.
+ * Snapshots are only recaptured when events mark them dirty or the shared server state changes.
+ */
+public class PlayerContextService {
+    /** The player moved far enough to possibly be in another biome or world */
+    public static final int DIRTY_LOCATION = 1;
+    /** The player's inventory changed */
+    public static final int DIRTY_INVENTORY = 2;
+    public static final int DIRTY_ALL = DIRTY_LOCATION | DIRTY_INVENTORY;
+
+    private static final String NO_CONTEXT = "No details about the player's surroundings are available yet.";
+
+    private final JavaPlugin plugin;
+    private final ConfigManager configManager;
+    private final Logger logger;
+
+    private final Map<UUID, PlayerContext> contexts = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> dirtyPlayers = new ConcurrentHashMap<>();
+
+    // Shared server state, only touched on the main thread
+    private final Map<UUID, Boolean> dayByWorld = new HashMap<>();
+    private final Map<Material, String> materialNames = new EnumMap<>(Material.class);
+    private int onlinePlayers = -1;
+    private String serverVersion = "";
+    private long ticksSinceFullRefresh = 0;
+
+    /**
+     * Creates a new PlayerContextService and starts the refresh task
+     * @param plugin The plugin instance
+     * @param configManager The configuration manager
+     * @param tickProfiler The profiler to run the refresh task through
+     */
+    public PlayerContextService(JavaPlugin plugin, ConfigManager configManager, TickProfiler tickProfiler) {
+        this.plugin = plugin;
+        this.configManager = configManager;
+        this.logger = plugin.getLogger();
+
+        long period = Math.max(1, configManager.getContextRefreshTicks());
+        tickProfiler.runTaskTimer("PlayerContextService.refresh", () -> refresh(period), period, period);
+    }
+
+    /**
+     * Gets the cached context of a player. Safe to call from any thread.
+     * @param playerUUID The UUID of the player
+     * @return The context rendered for the system prompt
+     */
+    public String getPromptContext(UUID playerUUID) {
+        PlayerContext context = contexts.get(playerUUID);
+        return context != null ? context.getPromptText() : NO_CONTEXT;
+    }
+
+    /**
+     * Marks parts of a player's context as stale. Safe to call from any thread.
+     * @param playerUUID The UUID of the player
+     * @param flags DIRTY_LOCATION, DIRTY_INVENTORY or both
+     */
+    public void markDirty(UUID playerUUID, int flags) {
+        dirtyPlayers.merge(playerUUID, flags, (current, added) -> current | added);
+    }
+
+    /**
+     * Captures a player's context immediately. Must be called on the main thread.
+     * @param player The player
+     */
+    public void capture(Player player) {
+        dirtyPlayers.remove(player.getUniqueId());
+        if (refreshServerState()) {
+            // Re-render everyone else with the new player count on the next refresh
+            for (UUID playerUUID : contexts.keySet()) {
+                markDirty(playerUUID, 0);
+            }
+        }
+        recapture(player, DIRTY_ALL);
+    }
+
+    /**
+     * Drops the cached context of a player
+     * @param playerUUID The UUID of the player
+     */
+    public void remove(UUID playerUUID) {
+        contexts.remove(playerUUID);
+        dirtyPlayers.remove(playerUUID);
+    }
+
+    /**
+     * Recaptures dirty players, and everyone if the shared server state changed. Runs on the main thread.
+     * @param elapsedTicks Ticks since the previous run
+     */
+    private void refresh(long elapsedTicks) {
+        try {
+            ticksSinceFullRefresh += elapsedTicks;
+            boolean fullRefresh = refreshServerState()
+                || ticksSinceFullRefresh >= configManager.getContextFullRefreshSeconds() * 20L;
+
+            if (fullRefresh) {
+                ticksSinceFullRefresh = 0;
+                for (Player player : plugin.getServer().getOnlinePlayers()) {
+                    dirtyPlayers.remove(player.getUniqueId());
+                    recapture(player, DIRTY_ALL);
+                }
+                return;
+            }
+
+            if (dirtyPlayers.isEmpty()) {
+                return;
+            }
+
+            for (UUID playerUUID : dirtyPlayers.keySet()) {
+                Integer flags = dirtyPlayers.remove(playerUUID);
+                Player player = plugin.getServer().getPlayer(playerUUID);
+                if (flags != null && player != null) {
+                    recapture(player, flags);
+                }
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error refreshing player context", e);
+        }
+    }
+
+    /**
+     * Updates the online player count, server version and day/night state of each world
+     * @return true if anything that appears in every player's context changed
+     */
+    private boolean refreshServerState() {
+        boolean changed = false;
+
+        int online = plugin.getServer().getOnlinePlayers().size();
+        if (online != onlinePlayers) {
+            onlinePlayers = online;
+            changed = true;
+        }
+
+        String version = plugin.getServer().getVersion();
+        if (!version.equals(serverVersion)) {
+            serverVersion = version;
+            changed = true;
+        }
+
+        for (World world : plugin.getServer().getWorlds()) {
+            Boolean day = world.getTime() < 12000;
+            if (!day.equals(dayByWorld.put(world.getUID(), day))) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Rebuilds the stale parts of a player's context and renders it for prompts
+     * @param player The player
+     * @param flags The stale parts
+     */
+    private void recapture(Player player, int flags) {
+        PlayerContext previous = contexts.get(player.getUniqueId());
+
+        String worldName;
+        String biome;
+        if (previous == null || (flags & DIRTY_LOCATION) != 0) {
+            worldName = player.getWorld().getName();
+            biome = player.getLocation().getBlock().getBiome().toString();
+        } else {
+            worldName = previous.getWorldName();
+            biome = previous.getBiome();
+        }
+
+        String inventorySummary = previous == null || (flags & DIRTY_INVENTORY) != 0
+            ? getInventorySummary(player)
+            : previous.getInventorySummary();
+
+        boolean day = dayByWorld.getOrDefault(player.getWorld().getUID(), Boolean.TRUE);
+
+        String promptText = "Current server details: " + onlinePlayers + " players online, running " + serverVersion + ". " +
+            "World '" + worldName + "' is currently experiencing " + (day ? "day" : "night") + " time. " +
+            "Player is in " + biome + " biome. " +
+            "Player's inventory: " + inventorySummary + ".";
+
+        contexts.put(player.getUniqueId(), new PlayerContext(worldName, biome, inventorySummary, promptText));
+    }
+
+    /**
+     * Gets a summary of the player's inventory. Package-private for the benchmarks.
+     * @param player The player
+     * @return A string summary of the player's inventory
+     */
+    String getInventorySummary(Player player) {
+        try {
+            Map<Material, Integer> itemCount = new EnumMap<>(Material.class);
+
+            for (ItemStack item : player.getInventory().getContents()) {
+                if (item != null) {
+                    itemCount.merge(item.getType(), item.getAmount(), Integer::sum);
+                }
+            }
+
+            // Generate a summary string of the largest stacks, so a full inventory does not blow up the prompt
+            if (itemCount.isEmpty()) {
+                return "empty";
+            }
+
+            List<Map.Entry<Material, Integer>> entries = new ArrayList<>(itemCount.entrySet());
+            int topN = configManager.getInventoryTopN();
+            int listed = topN > 0 ? Math.min(topN, entries.size()) : entries.size();
+            if (listed < entries.size()) {
+                entries.sort(Map.Entry.<Material, Integer>comparingByValue().reversed());
+            }
+
+            StringBuilder summary = new StringBuilder(listed * 16 + 24);
+            for (int i = 0; i < listed; i++) {
+                Map.Entry<Material, Integer> entry = entries.get(i);
+                if (summary.length() > 0) {
+                    summary.append(", ");
+                }
+                summary.append(entry.getValue()).append(' ').append(getMaterialName(entry.getKey()));
+            }
+            if (listed < entries.size()) {
+                summary.append(" and ").append(entries.size() - listed).append(" other kinds of items");
+            }
+            return summary.toString();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error generating inventory summary", e);
+            return "unknown inventory";
+        }
+    }
+
+    private String getMaterialName(Material material) {
+        return materialNames.computeIfAbsent(material, type -> type.toString().toLowerCase().replace('_', ' '));
+    }
+}
@@ -0,0 +1,352 @@
+package rs.meine.services;
+
+import com.openai.core.RequestOptions;
+import com.openai.core.Timeout;
+import com.openai.core.http.Headers;
+import com.openai.core.http.HttpClient;
+import com.openai.core.http.HttpMethod;
+import com.openai.core.http.HttpRequest;
+import com.openai.core.http.HttpRequestBody;
+import com.openai.core.http.HttpResponse;
+import com.openai.core.http.QueryParams;
+import com.openai.errors.OpenAIIoException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import rs.meine.config.ConfigSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The transport of the OpenAI client, over an OkHttp client whose connection pool, dispatcher and protocols are set
+ * from the config instead of left at the SDK's defaults.
+ * Every call, blocking ones included, goes through the dispatcher, so the request limits count it until its response
+ * headers arrive; a streamed body is read after that, outside the limits. With HTTP/2 all calls to the API share one
+ * multiplexed connection, so the pool mostly matters for HTTP/1.1 endpoints such as a local proxy.
+ */
+public final class PooledHttpClient implements HttpClient {
+    private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+    private static final RequestBody EMPTY_BODY = RequestBody.create(new byte[0], null);
+
+    private final OkHttpClient okHttpClient;
+    private final HttpUrl baseUrl;
+
+    private PooledHttpClient(OkHttpClient okHttpClient, HttpUrl baseUrl) {
+        this.okHttpClient = okHttpClient;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Creates a client with its own connection pool and dispatcher
+     * @param config The config to take the pool, dispatcher, protocol and timeout settings from
+     * @return The client
+     * @throws IllegalArgumentException if the configured base URL is not an HTTP or HTTPS URL
+     */
+    public static PooledHttpClient create(ConfigSnapshot config) {
+        String baseUrl = config.getBaseUrl().isEmpty() ? DEFAULT_BASE_URL : config.getBaseUrl();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), BackgroundTasks.numberedThreads("HTTP"));
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(Math.max(1, config.getHttpMaxRequests()));
+        dispatcher.setMaxRequestsPerHost(Math.max(1, config.getHttpMaxRequestsPerHost()));
+
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(Math.max(0, config.getHttpMaxIdleConnections()),
+                Math.max(1, config.getHttpKeepAliveSeconds()), TimeUnit.SECONDS))
+            // HTTP/2 is negotiated per connection over TLS and needs HTTP/1.1 as its fallback
+            .protocols(config.isHttp2Enabled() ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+            .connectTimeout(Duration.ofSeconds(config.getConnectTimeout()))
+            .readTimeout(Duration.ofSeconds(config.getReadTimeout()))
+            .writeTimeout(Duration.ofSeconds(config.getWriteTimeout()))
+            .callTimeout(Duration.ofSeconds(config.getConnectionTimeout()))
+            .build();
+        return new PooledHttpClient(okHttpClient, HttpUrl.get(baseUrl));
+    }
+
+    /**
+     * Gets the URL requests are sent to
+     * @return The base URL
+     */
+    public String getBaseUrl() {
+        return baseUrl.toString();
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request, RequestOptions requestOptions) {
+        OkHttpClient client = clientFor(requestOptions);
+        Call call = client.newCall(toRequest(request));
+        CompletableFuture<HttpResponse> future = enqueue(call, request);
+        try {
+            // The call timeout only starts once the dispatcher runs the call, so bound the wait for a free slot too
+            long waitMillis = client.callTimeoutMillis() > 0 ? 2L * client.callTimeoutMillis() : Long.MAX_VALUE;
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new OpenAIIoException("Request failed", e.getCause());
+        } catch (InterruptedException e) {
+            abandon(call, future);
+            Thread.currentThread().interrupt();
+            throw new OpenAIIoException("Request interrupted", new InterruptedIOException("interrupted"));
+        } catch (TimeoutException e) {
+            abandon(call, future);
+            throw new OpenAIIoException("Request failed", new InterruptedIOException("Timed out waiting for a request slot"));
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request, RequestOptions requestOptions) {
+        return enqueue(clientFor(requestOptions).newCall(toRequest(request)), request);
+    }
+
+    /**
+     * Stops the dispatcher's threads and closes the pooled connections. Responses already received can still be read.
+     */
+    @Override
+    public void close() {
+        okHttpClient.dispatcher().executorService().shutdown();
+        okHttpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * Gets the number of connections in the pool, busy or idle
+     * @return The number of connections
+     */
+    public int getConnectionCount() {
+        return okHttpClient.connectionPool().connectionCount();
+    }
+
+    /**
+     * Gets the number of pooled connections no call is using
+     * @return The number of connections
+     */
+    public int getIdleConnectionCount() {
+        return okHttpClient.connectionPool().idleConnectionCount();
+    }
+
+    /**
+     * Gets the number of calls the dispatcher is running, waiting for their response headers
+     * @return The number of calls
+     */
+    public int getRunningCalls() {
+        return okHttpClient.dispatcher().runningCallsCount();
+    }
+
+    /**
+     * Gets the number of calls waiting in the dispatcher for the request limits
+     * @return The number of calls
+     */
+    public int getQueuedCalls() {
+        return okHttpClient.dispatcher().queuedCallsCount();
+    }
+
+    /**
+     * Gets the most calls the dispatcher runs at once
+     * @return The limit
+     */
+    public int getMaxRequests() {
+        return okHttpClient.dispatcher().getMaxRequests();
+    }
+
+    /**
+     * Gets the most calls the dispatcher runs at once against one host
+     * @return The limit
+     */
+    public int getMaxRequestsPerHost() {
+        return okHttpClient.dispatcher().getMaxRequestsPerHost();
+    }
+
+    /**
+     * Derives a client with a call's timeouts. It shares the pool and dispatcher of this one.
+     * @param requestOptions The call's options
+     * @return The client to make the call with
+     */
+    private OkHttpClient clientFor(RequestOptions requestOptions) {
+        Timeout timeout = requestOptions.getTimeout();
+        if (timeout == null) {
+            return okHttpClient;
+        }
+        return okHttpClient.newBuilder()
+            .connectTimeout(timeout.connect())
+            .readTimeout(timeout.read())
+            .writeTimeout(timeout.write())
+            .callTimeout(timeout.request())
+            .build();
+    }
+
+    /**
+     * Hands a call to the dispatcher
+     * @param call The call
+     * @param request The request it was made from, whose body is closed when the call ends
+     * @return The response, or an OpenAIIoException if the call failed
+     */
+    private static CompletableFuture<HttpResponse> enqueue(Call call, HttpRequest request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        HttpRequestBody body = request.body();
+        if (body != null) {
+            future.whenComplete((response, error) -> body.close());
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (!future.complete(new PooledResponse(response))) {
+                    // Nobody waits for it anymore
+                    response.close();
+                }
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(new OpenAIIoException("Request failed", e));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Cancels a call nobody waits for anymore, closing its response if it arrived in the meantime
+     * @param call The call
+     * @param future The call's response
+     */
+    private static void abandon(Call call, CompletableFuture<HttpResponse> future) {
+        call.cancel();
+        if (!future.cancel(false)) {
+            future.thenAccept(HttpResponse::close);
+        }
+    }
+
+    /**
+     * Converts an SDK request to an OkHttp one
+     * @param request The SDK request
+     * @return The OkHttp request
+     */
+    private Request toRequest(HttpRequest request) {
+        HttpMethod method = request.method();
+        RequestBody body = request.body() != null ? toRequestBody(request.body()) : null;
+        if (body == null && (method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.PATCH)) {
+            body = EMPTY_BODY;
+        }
+
+        Request.Builder builder = new Request.Builder()
+            .url(toUrl(request))
+            .method(method.name(), body);
+        Headers headers = request.headers();
+        for (String name : headers.names()) {
+            for (String value : headers.values(name)) {
+                builder.addHeader(name, value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the URL of a request from the base URL, unless the request has a full URL of its own
+     * @param request The SDK request
+     * @return The URL
+     */
+    private String toUrl(HttpRequest request) {
+        if (request.url() != null) {
+            return request.url();
+        }
+
+        HttpUrl.Builder builder = baseUrl.newBuilder();
+        for (String segment : request.pathSegments()) {
+            builder.addPathSegment(segment);
+        }
+        QueryParams queryParams = request.queryParams();
+        for (String key : queryParams.keys()) {
+            for (String value : queryParams.values(key)) {
+                builder.addQueryParameter(key, value);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Wraps an SDK request body, which is written when OkHttp sends it
+     * @param body The SDK body
+     * @return The OkHttp body
+     */
+    private static RequestBody toRequestBody(HttpRequestBody body) {
+        MediaType contentType = body.contentType() != null ? MediaType.parse(body.contentType()) : null;
+        long contentLength = body.contentLength();
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return !body.repeatable();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) {
+                body.writeTo(sink.outputStream());
+            }
+        };
+    }
+
+    /**
+     * An OkHttp response read by the SDK. Closing it returns its connection to the pool.
+     */
+    private static final class PooledResponse implements HttpResponse {
+        private final Response response;
+        private final Headers headers;
+
+        private PooledResponse(Response response) {
+            this.response = response;
+            okhttp3.Headers received = response.headers();
+            Headers.Builder builder = Headers.builder();
+            for (int i = 0; i < received.size(); i++) {
+                builder.put(received.name(i), received.value(i));
+            }
+            this.headers = builder.build();
+        }
+
+        @Override
+        public int statusCode() {
+            return response.code();
+        }
+
+        @Override
+        public Headers headers() {
+            return headers;
+        }
+
+        @Override
+        public InputStream body() {
+            return response.body().byteStream();
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package rs.meine.services;
+
+import rs.meine.config.ConfigManager;
+import rs.meine.models.ChatMessage;
+import rs.meine.models.PromptKey;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Assembles the system prompt of player chat requests within the configured input token budget.
+ * The player's context is already limited to the largest item stacks when it is captured. If the full chat history
+ * does not fit into what is left, only the newest messages are kept verbatim and the older ones are replaced by a short
+ * summary, which is regenerated in the background at most once per refresh interval.
+ */
+public class PromptBuilder {
+    static final String NO_HISTORY = "No previous messages.";
+
+    private static final String EARLIER_PREFIX = "Earlier: ";
+    private static final int HISTORY_SLOT = PromptKey.PLAYER_CHAT.getPlaceholders().indexOf("history");
+
+    private final ConfigManager configManager;
+    private final ChatHistoryStore chatHistory;
+    private final PlayerContextService contextService;
+    private final PromptTemplates promptTemplates;
+    private final Function<String, CompletableFuture<String>> summarizer;
+    private final Logger logger;
+
+    private final Map<UUID, HistorySummary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new PromptBuilder
+     * @param configManager The configuration manager
+     * @param chatHistory The chat history store
+     * @param contextService The player context service
+     * @param promptTemplates The prompt templates
+     * @param summarizer Sends a summarization prompt to the model; the future fails if no summary was generated
+     */
+    public PromptBuilder(ConfigManager configManager, ChatHistoryStore chatHistory, PlayerContextService contextService,
+                         PromptTemplates promptTemplates, Function<String, CompletableFuture<String>> summarizer) {
+        this.configManager = configManager;
+        this.chatHistory = chatHistory;
+        this.contextService = contextService;
+        this.promptTemplates = promptTemplates;
+        this.summarizer = summarizer;
+        this.logger = Logger.getLogger(PromptBuilder.class.getName());
+    }
+
+    /**
+     * Builds the system prompt for a player's chat message
+     * @param playerName The name of the player
+     * @param message The message sent by the player
+     * @param playerUUID The UUID of the player
+     * @return The system prompt
+     */
+    public String buildPlayerChatSystemPrompt(String playerName, String message, UUID playerUUID) {
+        // World, server and inventory details are captured on the main thread by the context service
+        PromptTemplate template = promptTemplates.get(PromptKey.PLAYER_CHAT);
+        String context = contextService.getPromptContext(playerUUID);
+        if (!template.uses(HISTORY_SLOT)) {
+            return template.render(playerName, context, "");
+        }
+
+        // The history gets whatever the rest of the prompt and the message leave of the budget
+        int available = configManager.getMaxInputTokens()
+            - 2 * TokenCounter.MESSAGE_OVERHEAD
+            - template.countTokens(playerName, context, "")
+            - TokenCounter.count(message);
+
+        return template.render(playerName, context, fitHistory(playerUUID, available));
+    }
+
+    /**
+     * Drops the summary kept for a player
+     * @param playerUUID The UUID of the player
+     */
+    public void forget(UUID playerUUID) {
+        summaries.remove(playerUUID);
+    }
+
+    /**
+     * Renders as much of a player's history as fits into a number of tokens
+     * @param playerUUID The UUID of the player
+     * @param available The tokens left for the history
+     * @return The rendered history
+     */
+    private String fitHistory(UUID playerUUID, int available) {
+        String full = chatHistory.getSummary(playerUUID);
+        if (full == null) {
+            return NO_HISTORY;
+        }
+        if (TokenCounter.count(full) <= available) {
+            return full;
+        }
+
+        List<ChatMessage> messages = chatHistory.getMessages(playerUUID);
+        HistorySummary summary = summaries.get(playerUUID);
+        String earlier = summary != null ? summary.text : null;
+
+        int budget = available;
+        if (earlier != null) {
+            budget -= TokenCounter.count(EARLIER_PREFIX) + TokenCounter.count(earlier) + 1;
+            if (budget <= 0) {
+                earlier = null;
+                budget = available;
+            }
+        }
+
+        // Walk back from the newest message while the lines still fit
+        int first = messages.size();
+        int used = 0;
+        while (first > 0) {
+            int cost = TokenCounter.count(messages.get(first - 1).toString()) + (first < messages.size() ? 1 : 0);
+            if (used + cost > budget) {
+                break;
+            }
+            used += cost;
+            first--;
+        }
+
+        if (first > 0) {
+            requestSummary(playerUUID, messages.subList(0, first));
+        }
+
+        StringBuilder history = new StringBuilder(full.length());
+        if (earlier != null) {
+            history.append(EARLIER_PREFIX).append(earlier);
+        }
+        for (int i = first; i < messages.size(); i++) {
+            if (history.length() > 0) {
+                history.append(ChatHistoryStore.SEPARATOR);
+            }
+            history.append(messages.get(i));
+        }
+
+        return history.length() > 0 ? history.toString() : NO_HISTORY;
+    }
+
+    /**
+     * Rolls messages that no longer fit into the player's summary, unless it was attempted recently
+     * @param playerUUID The UUID of the player
+     * @param older The messages that did not fit, oldest first
+     */
+    private void requestSummary(UUID playerUUID, List<ChatMessage> older) {
+        HistorySummary state = summaries.computeIfAbsent(playerUUID, uuid -> new HistorySummary());
+        long refreshNanos = TimeUnit.SECONDS.toNanos(Math.max(0, configManager.getSummaryRefreshSeconds()));
+        long now = System.nanoTime();
+
+        if (state.attempted && now - state.attemptedNanos < refreshNanos) {
+            return;
+        }
+        if (!state.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        state.attempted = true;
+        state.attemptedNanos = now;
+
+        StringBuilder prompt = new StringBuilder(512)
+            .append("Summarize this Minecraft chat between a player and an AI assistant in one short sentence. ")
+            .append("Keep names, items and open questions, and answer with the summary only.\n");
+        if (state.text != null) {
+            prompt.append("Summary so far: ").append(state.text).append('\n');
+        }
+        for (ChatMessage message : older) {
+            prompt.append(message).append('\n');
+        }
+
+        summarizer.apply(prompt.toString()).whenComplete((text, error) -> {
+            if (error == null && text != null && !text.isBlank()) {
+                state.text = text.trim();
+            } else if (error != null) {
+                logger.log(Level.FINE, "Could not summarize chat history", error);
+            }
+            state.refreshing.set(false);
+        });
+    }
+
+    /**
+     * The rolling summary of a player's older messages
+     */
+    private static final class HistorySummary {
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile String text;
+        private volatile boolean attempted;
+        private volatile long attemptedNanos;
+    }
+}
@@ -0,0 +1,68 @@
+package rs.meine.services;
+
+/**
+ * Folds prompts that only differ in case, whitespace or punctuation onto the same key.
+ * Characters that change the meaning of a Minecraft command (minus signs and decimal points
+ * in numbers, selectors, relative coordinates) or of a question (arithmetic and comparison operators) are kept.
+ */
+public final class PromptNormalizer {
+    private PromptNormalizer() {
+    }
+
+    /**
+     * Normalizes a prompt for use as a cache key
+     * @param prompt The prompt as typed by the player
+     * @return The lower-cased prompt with punctuation folded to spaces and whitespace collapsed
+     */
+    public static String normalize(String prompt) {
+        StringBuilder builder = new StringBuilder(prompt.length());
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+
+            if (isKept(prompt, i, c)) {
+                if (pendingSpace && builder.length() > 0) {
+                    builder.append(' ');
+                }
+                pendingSpace = false;
+                builder.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static boolean isKept(String prompt, int index, char c) {
+        if (Character.isLetterOrDigit(c)) {
+            return true;
+        }
+
+        switch (c) {
+            case '@':
+            case '~':
+            case '^':
+            case '_':
+            case '=':
+            case '[':
+            case ']':
+            case '+':
+            case '*':
+            case '/':
+            case '%':
+            case '<':
+            case '>':
+            case '!':
+                // "2+2" and "2*2", or "x<5" and "x>5", must not share an answer
+                return true;
+            case '-':
+            case '.':
+                // Keep signs and decimal points that belong to a number
+                return index + 1 < prompt.length() && Character.isDigit(prompt.charAt(index + 1));
+            default:
+                return false;
+        }
+    }
+}
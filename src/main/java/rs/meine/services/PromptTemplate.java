@@ -0,0 +1,200 @@
+package rs.meine.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A prompt parsed once into literal text and placeholder slots.
+ * Placeholders are written as {name} and must be one of the names the template was compiled with; {{ stands for a
+ * literal brace. Any other brace, such as the NBT and JSON in command examples, is kept as text. Rendering appends
+ * the literals and values into a StringBuilder reused by the calling thread, appending text without copying it
+ * and whole numbers without converting them to strings first.
+ */
+public final class PromptTemplate {
+    private static final int INITIAL_BUFFER = 1024;
+    // Buffers grown past this by an unusually long prompt are dropped instead of kept for the thread's lifetime
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER));
+
+    private final String source;
+    private final int placeholderCount;
+    // literals[i] comes before the value of slots[i]; the last literal ends the prompt
+    private final String[] literals;
+    private final int[] slots;
+
+    private PromptTemplate(String source, int placeholderCount, String[] literals, int[] slots) {
+        this.source = source;
+        this.placeholderCount = placeholderCount;
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    /**
+     * Parses a template
+     * @param source The template text
+     * @param placeholders The placeholder names the template may use, in the order their values are passed
+     * @return The parsed template
+     * @throws IllegalArgumentException if the template uses a placeholder that is not in the list
+     */
+    public static PromptTemplate compile(String source, List<String> placeholders) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(source.length());
+
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            if (i + 1 < length && source.charAt(i + 1) == '{') {
+                literal.append('{');
+                i += 2;
+                continue;
+            }
+
+            int end = i + 1;
+            while (end < length && isNameChar(source.charAt(end))) {
+                end++;
+            }
+            if (end == i + 1 || end == length || source.charAt(end) != '}') {
+                // Not a placeholder, just a brace
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            String name = source.substring(i + 1, end);
+            int slot = placeholders.indexOf(name);
+            if (slot < 0) {
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "}, expected one of " + placeholders);
+            }
+            literals.add(literal.toString());
+            slots.add(slot);
+            literal.setLength(0);
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+
+        int[] slotArray = new int[slots.size()];
+        for (int s = 0; s < slotArray.length; s++) {
+            slotArray[s] = slots.get(s);
+        }
+        return new PromptTemplate(source, placeholders.size(), literals.toArray(new String[0]), slotArray);
+    }
+
+    /**
+     * Checks if a character may appear in a placeholder name
+     * @param c The character
+     * @return true for letters, digits and underscores
+     */
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Renders the prompt
+     * @param values One value per placeholder name, in the order the template was compiled with
+     * @return The prompt
+     * @throws IllegalArgumentException if the number of values does not match the placeholder names
+     */
+    public String render(Object... values) {
+        checkValues(values);
+        if (slots.length == 0) {
+            return literals[0];
+        }
+        return appendTo(buffer(), values).toString();
+    }
+
+    /**
+     * Estimates the tokens of the rendered prompt without creating it
+     * @param values One value per placeholder name, in the order the template was compiled with
+     * @return The estimated token count
+     * @throws IllegalArgumentException if the number of values does not match the placeholder names
+     */
+    public int countTokens(Object... values) {
+        checkValues(values);
+        if (slots.length == 0) {
+            return TokenCounter.count(literals[0]);
+        }
+        return TokenCounter.count(appendTo(buffer(), values));
+    }
+
+    /**
+     * Appends the rendered prompt to a builder
+     * @param builder The builder
+     * @param values One value per placeholder name, in the order the template was compiled with
+     * @return The builder
+     */
+    private StringBuilder appendTo(StringBuilder builder, Object[] values) {
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+            appendValue(builder, values[slots[i]]);
+        }
+        return builder.append(literals[slots.length]);
+    }
+
+    /**
+     * Appends one placeholder value by its type
+     * @param builder The builder
+     * @param value The value
+     */
+    private static void appendValue(StringBuilder builder, Object value) {
+        if (value instanceof CharSequence) {
+            builder.append((CharSequence) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            builder.append(((Number) value).longValue());
+        } else {
+            builder.append(value);
+        }
+    }
+
+    /**
+     * Checks that a value was passed for every placeholder name
+     * @param values The values
+     */
+    private void checkValues(Object[] values) {
+        if (values.length != placeholderCount) {
+            throw new IllegalArgumentException("Expected " + placeholderCount + " values, got " + values.length);
+        }
+    }
+
+    /**
+     * Gets the calling thread's cleared buffer
+     * @return The buffer
+     */
+    private static StringBuilder buffer() {
+        StringBuilder builder = BUFFER.get();
+        if (builder.capacity() > MAX_RETAINED_BUFFER) {
+            builder = new StringBuilder(INITIAL_BUFFER);
+            BUFFER.set(builder);
+        }
+        builder.setLength(0);
+        return builder;
+    }
+
+    /**
+     * Gets the text the template was parsed from
+     * @return The template text
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Checks if the template uses a placeholder
+     * @param slot The placeholder's position in the names the template was compiled with
+     * @return true if the placeholder appears at least once
+     */
+    public boolean uses(int slot) {
+        for (int used : slots) {
+            if (used == slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package rs.meine.services;
+
+import rs.meine.config.ConfigManager;
+import rs.meine.models.PromptKey;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Holds the parsed prompt templates. Templates are parsed from the configuration when the plugin starts and on every
+ * reload; the parsed set is swapped in at once, so a request renders either all old or all new templates.
+ * A template that fails to parse is reported and replaced by its default, leaving the other templates in effect.
+ */
+public class PromptTemplates {
+    private final ConfigManager configManager;
+    private final Logger logger;
+
+    private volatile Map<PromptKey, PromptTemplate> templates;
+
+    /**
+     * Creates a new PromptTemplates and parses the configured templates
+     * @param configManager The configuration manager
+     * @param logger The logger to report invalid templates to
+     */
+    public PromptTemplates(ConfigManager configManager, Logger logger) {
+        this.configManager = configManager;
+        this.logger = logger;
+        reload();
+    }
+
+    /**
+     * Parses the templates from the current configuration and swaps them in
+     */
+    public void reload() {
+        Map<PromptKey, PromptTemplate> parsed = new EnumMap<>(PromptKey.class);
+        for (PromptKey key : PromptKey.values()) {
+            String source = configManager.getPromptTemplate(key);
+            try {
+                parsed.put(key, PromptTemplate.compile(source, key.getPlaceholders()));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid prompt template prompts." + key.getConfigKey() + ": " + e.getMessage() +
+                    ". Using the default template instead.");
+                parsed.put(key, PromptTemplate.compile(key.getDefaultTemplate(), key.getPlaceholders()));
+            }
+        }
+        templates = parsed;
+    }
+
+    /**
+     * Gets a parsed template
+     * @param key The prompt
+     * @return The template
+     */
+    public PromptTemplate get(PromptKey key) {
+        return templates.get(key);
+    }
+
+    /**
+     * Renders a prompt
+     * @param key The prompt
+     * @param values One value per placeholder of the prompt, in the order listed by the key
+     * @return The rendered prompt
+     */
+    public String render(PromptKey key, Object... values) {
+        return templates.get(key).render(values);
+    }
+}
@@ -0,0 +1,27 @@
+package rs.meine.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails a request future when the request was denied by the rate limiter
+ */
+public class RateLimitedException extends RuntimeException {
+    private final long retryAfterNanos;
+
+    /**
+     * Creates a new RateLimitedException
+     * @param retryAfterNanos Nanoseconds until the request may be retried
+     */
+    public RateLimitedException(long retryAfterNanos) {
+        super("Rate limit reached, retry in " + TimeUnit.NANOSECONDS.toMillis(retryAfterNanos) + " ms", null, false, false);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * Gets how long to wait before retrying
+     * @return The wait time in nanoseconds
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+}
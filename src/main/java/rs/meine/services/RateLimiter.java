@@ -0,0 +1,103 @@
+package rs.meine.services;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits OpenAI requests with a token bucket per player plus a global bucket protecting the organization quota.
+ * Player requests must pass both buckets; requests without a player, such as event commentary, only the global one.
+ */
+public class RateLimiter {
+    private final Map<UUID, TokenBucket> playerBuckets = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private volatile TokenBucket globalBucket;
+    private volatile int playerCapacity;
+    private volatile int globalCapacity;
+    private volatile long windowNanos;
+
+    /**
+     * Creates a new RateLimiter
+     * @param playerRequestsPerWindow The number of requests each player may make per window
+     * @param globalRequestsPerWindow The number of requests the whole server may make per window
+     * @param windowSeconds The window size in seconds
+     */
+    public RateLimiter(int playerRequestsPerWindow, int globalRequestsPerWindow, int windowSeconds) {
+        this(playerRequestsPerWindow, globalRequestsPerWindow, windowSeconds, System::nanoTime);
+    }
+
+    /**
+     * Creates a new RateLimiter on a given clock
+     * @param playerRequestsPerWindow The number of requests each player may make per window
+     * @param globalRequestsPerWindow The number of requests the whole server may make per window
+     * @param windowSeconds The window size in seconds
+     * @param clock The time in nanoseconds, on the System.nanoTime() scale
+     */
+    RateLimiter(int playerRequestsPerWindow, int globalRequestsPerWindow, int windowSeconds, LongSupplier clock) {
+        this.clock = clock;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds));
+        this.playerCapacity = playerRequestsPerWindow;
+        this.globalCapacity = globalRequestsPerWindow;
+        this.globalBucket = new TokenBucket(globalRequestsPerWindow, windowNanos, clock.getAsLong());
+    }
+
+    /**
+     * Applies new limits. Every bucket keeps the tokens it has left, up to its new capacity, so a change does not hand
+     * out a fresh allowance. A request racing with the change may take its token from the bucket being replaced.
+     * @param playerRequestsPerWindow The number of requests each player may make per window
+     * @param globalRequestsPerWindow The number of requests the whole server may make per window
+     * @param windowSeconds The window size in seconds
+     */
+    public void configure(int playerRequestsPerWindow, int globalRequestsPerWindow, int windowSeconds) {
+        long window = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds));
+        if (playerRequestsPerWindow == playerCapacity && globalRequestsPerWindow == globalCapacity && window == windowNanos) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        this.windowNanos = window;
+        this.playerCapacity = playerRequestsPerWindow;
+        this.globalCapacity = globalRequestsPerWindow;
+        this.globalBucket = globalBucket.resize(globalRequestsPerWindow, window, now);
+        playerBuckets.replaceAll((uuid, bucket) -> bucket.resize(playerRequestsPerWindow, window, now));
+    }
+
+    /**
+     * Takes a token for a request
+     * @param playerUUID The player making the request, or null for requests not made by a player
+     * @return 0 if the request may proceed, otherwise the nanoseconds until it may be retried
+     */
+    public long tryAcquire(UUID playerUUID) {
+        long now = clock.getAsLong();
+
+        TokenBucket playerBucket = null;
+        if (playerUUID != null) {
+            playerBucket = playerBuckets.get(playerUUID);
+            if (playerBucket == null) {
+                playerBucket = playerBuckets.computeIfAbsent(playerUUID, uuid -> new TokenBucket(playerCapacity, windowNanos, now));
+            }
+
+            long wait = playerBucket.tryAcquire(now);
+            if (wait > 0) {
+                return wait;
+            }
+        }
+
+        long wait = globalBucket.tryAcquire(now);
+        if (wait > 0 && playerBucket != null) {
+            // The player's token was not used, give it back
+            playerBucket.refund();
+        }
+        return wait;
+    }
+
+    /**
+     * Refills a player's bucket
+     * @param playerUUID The UUID of the player
+     */
+    public void reset(UUID playerUUID) {
+        playerBuckets.remove(playerUUID);
+    }
+}
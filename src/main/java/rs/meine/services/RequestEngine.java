@@ -0,0 +1,585 @@
+package rs.meine.services;
+
+import rs.meine.models.RequestPriority;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Dedicated executor for blocking OpenAI calls, so they never park threads of the Bukkit async scheduler.
+ * The number of requests in flight and the number waiting for a slot are both bounded.
+ * Requests are scheduled by priority: a free slot always goes to the most urgent waiting request whose class
+ * is below its share of the slots, so a burst of join greetings can never hold up a player's /cmd.
+ * Ambient commentary that waited longer than its class allows, or is no longer relevant, is dropped unsent.
+ * Futures are completed and relevance checks are made outside the engine's lock, since both run code of the caller's.
+ * An optional adaptive limiter gates dispatch: a request is only handed to a worker once the limiter has a slot for
+ * its API call, so requests that wait for the API wait in the priority queues rather than on a worker.
+ */
+public class RequestEngine {
+    private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+
+    /**
+     * What to do with a new request when every slot is busy and the admission queue is full
+     */
+    public enum OverflowPolicy {
+        /** Reject the new request unless a less urgent one can be shed */
+        REJECT,
+        /** Shed the oldest queued request of the same or a less urgent class to make room for the new one */
+        DROP_OLDEST;
+
+        /**
+         * Parses a policy name from the configuration
+         * @param name The configured name
+         * @return The matching policy, or REJECT if the name is unknown
+         */
+        public static OverflowPolicy fromConfig(String name) {
+            if (name != null && name.trim().equalsIgnoreCase("drop_oldest")) {
+                return DROP_OLDEST;
+            }
+            return REJECT;
+        }
+    }
+
+    private final Logger logger;
+    private final int queueCapacity;
+    private final AdaptiveLimiter gate;
+    private final LongSupplier clock;
+    private final ThreadFactory threadFactory = BackgroundTasks.numberedThreads("Request");
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    // Guarded by lock, indexed by RequestPriority ordinal
+    private final List<ArrayDeque<Job<?>>> queues = new ArrayList<>(PRIORITIES.length);
+    private final int[] running = new int[PRIORITIES.length];
+    private final double[] shares = new double[PRIORITIES.length];
+    private final long[] maxAgeNanos = new long[PRIORITIES.length];
+    private final Set<Thread> workers = new HashSet<>();
+    private int maxInFlight;
+    private int queued = 0;
+    private OverflowPolicy overflowPolicy;
+    private boolean shutdown = false;
+    private long rejectedRequests = 0;
+    private long shedRequests = 0;
+    private long expiredRequests = 0;
+
+    /**
+     * Creates a new RequestEngine. Every class may use all slots and never expires until configured otherwise.
+     * @param maxInFlight The maximum number of requests executing at the same time
+     * @param queueCapacity The maximum number of requests waiting for a free slot
+     * @param overflowPolicy What to do when the queue is full
+     * @param gate The limiter each request takes a slot from before it is dispatched, or null to dispatch whenever a
+     *             worker is free. The engine gives the slot back once the request finished.
+     */
+    public RequestEngine(int maxInFlight, int queueCapacity, OverflowPolicy overflowPolicy, AdaptiveLimiter gate) {
+        this(maxInFlight, queueCapacity, overflowPolicy, gate, System::nanoTime);
+    }
+
+    /**
+     * Creates a new RequestEngine on a given clock, which decides when queued requests expire
+     * @param maxInFlight The maximum number of requests executing at the same time
+     * @param queueCapacity The maximum number of requests waiting for a free slot
+     * @param overflowPolicy What to do when the queue is full
+     * @param gate The limiter each request takes a slot from before it is dispatched, or null
+     * @param clock The time in nanoseconds, on the System.nanoTime() scale
+     */
+    RequestEngine(int maxInFlight, int queueCapacity, OverflowPolicy overflowPolicy, AdaptiveLimiter gate, LongSupplier clock) {
+        this.clock = clock;
+        this.logger = Logger.getLogger(RequestEngine.class.getName());
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.gate = gate;
+        if (gate != null) {
+            gate.setCapacityListener(this::signalCapacity);
+        }
+
+        for (RequestPriority priority : PRIORITIES) {
+            queues.add(new ArrayDeque<>());
+            shares[priority.ordinal()] = 1.0;
+        }
+
+        resize(maxInFlight, overflowPolicy);
+    }
+
+    /**
+     * Submits blocking work to the engine
+     * @param priority The scheduling class of the request
+     * @param work The work to run on a request thread
+     * @return A future completed with the result, or exceptionally with a RejectedExecutionException if the request was not admitted
+     */
+    public <T> CompletableFuture<T> submit(RequestPriority priority, Supplier<T> work) {
+        return submit(priority, null, work);
+    }
+
+    /**
+     * Submits blocking work to the engine
+     * @param priority The scheduling class of the request
+     * @param stillRelevant Checked on a request thread just before the request starts; returning false drops it.
+     *                      It must be safe to call off the server thread. May be null.
+     * @param work The work to run on a request thread
+     * @return A future completed with the result, or exceptionally with a RejectedExecutionException if the request was not admitted, expired or was shed
+     */
+    public <T> CompletableFuture<T> submit(RequestPriority priority, BooleanSupplier stillRelevant, Supplier<T> work) {
+        Job<T> job = new Job<>(priority, stillRelevant, work, clock.getAsLong());
+        Job<?> shed = null;
+        String rejection = null;
+
+        lock.lock();
+        try {
+            if (shutdown) {
+                rejection = "Request engine is shutting down";
+            } else if (queued >= queueCapacity && (shed = shedFor(priority)) == null) {
+                rejectedRequests++;
+                rejection = "Request queue is full";
+            } else {
+                queues.get(priority.ordinal()).addLast(job);
+                queued++;
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (shed != null) {
+            shed.fail(new RejectedExecutionException("Request shed to make room for a more urgent one"));
+        }
+        if (rejection != null) {
+            job.fail(new RejectedExecutionException(rejection));
+        }
+        return job.future;
+    }
+
+    /**
+     * Applies new limits to the running engine. The queue capacity is fixed for the lifetime of the engine.
+     * @param maxInFlight The maximum number of requests executing at the same time
+     * @param overflowPolicy What to do when the queue is full
+     */
+    public void resize(int maxInFlight, OverflowPolicy overflowPolicy) {
+        lock.lock();
+        try {
+            this.maxInFlight = Math.max(1, maxInFlight);
+            this.overflowPolicy = overflowPolicy;
+
+            // Surplus workers notice the lower limit when they next look for work and exit
+            while (!shutdown && workers.size() < this.maxInFlight) {
+                Thread thread = threadFactory.newThread(this::runWorker);
+                workers.add(thread);
+                thread.start();
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how much of the engine a class may use and how long its requests may wait
+     * @param priority The scheduling class
+     * @param share The fraction of the in-flight slots the class may occupy at once; it always gets at least one
+     * @param maxAgeSeconds How long a request of this class may wait before it is dropped, 0 for no limit
+     */
+    public void configureClass(RequestPriority priority, double share, long maxAgeSeconds) {
+        lock.lock();
+        try {
+            shares[priority.ordinal()] = Math.min(1.0, Math.max(0.0, share));
+            maxAgeNanos[priority.ordinal()] = TimeUnit.SECONDS.toNanos(Math.max(0, maxAgeSeconds));
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting requests and interrupts the ones in flight
+     */
+    public void shutdown() {
+        List<Thread> threads;
+        List<Job<?>> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            for (ArrayDeque<Job<?>> queue : queues) {
+                dropped.addAll(queue);
+                queue.clear();
+            }
+            queued = 0;
+            threads = new ArrayList<>(workers);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Job<?> job : dropped) {
+            job.fail(new RejectedExecutionException("Request engine is shutting down"));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                if (thread.isAlive()) {
+                    logger.warning("Some OpenAI requests did not finish before shutdown");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of requests currently executing
+     * @return The number of requests in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            int total = 0;
+            for (int count : running) {
+                total += count;
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests waiting for a free slot
+     * @return The queue depth
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests of one class waiting for a free slot
+     * @param priority The scheduling class
+     * @return The queue depth of the class
+     */
+    public int getQueued(RequestPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests of one class currently executing
+     * @param priority The scheduling class
+     * @return The number of requests in flight
+     */
+    public int getInFlight(RequestPriority priority) {
+        lock.lock();
+        try {
+            return running[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the configured maximum number of requests in flight
+     * @return The in-flight limit
+     */
+    public int getMaxInFlight() {
+        lock.lock();
+        try {
+            return maxInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests rejected because the queue was full
+     * @return The number of rejected requests
+     */
+    public long getRejectedRequests() {
+        lock.lock();
+        try {
+            return rejectedRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of queued requests shed in favour of newer or more urgent ones
+     * @return The number of shed requests
+     */
+    public long getShedRequests() {
+        lock.lock();
+        try {
+            return shedRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of queued requests dropped because they waited too long or were no longer relevant
+     * @return The number of expired requests
+     */
+    public long getExpiredRequests() {
+        lock.lock();
+        try {
+            return expiredRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes jobs until the engine shuts down or shrinks below this worker
+     */
+    private void runWorker() {
+        List<Job<?>> expired = new ArrayList<>();
+        while (true) {
+            Job<?> job = take(expired);
+            if (job == null) {
+                return;
+            }
+
+            try {
+                job.run();
+            } finally {
+                finish(job, false);
+            }
+        }
+    }
+
+    /**
+     * Frees the slot and the gate slot of a job that was taken
+     * @param job The job
+     * @param expired true if the job was dropped unrun because it was no longer relevant
+     */
+    private void finish(Job<?> job, boolean expired) {
+        lock.lock();
+        try {
+            running[job.priority.ordinal()]--;
+            if (expired) {
+                expiredRequests++;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (gate != null) {
+            gate.release();
+        }
+    }
+
+    /**
+     * Wakes the workers after the gate may have freed a slot
+     */
+    private void signalCapacity() {
+        lock.lock();
+        try {
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next job this worker may run. Jobs that waited too long are failed, and the job found is checked
+     * for relevance, after the lock is released.
+     * @param expired Scratch list for the jobs that waited too long, empty between calls
+     * @return The job, or null if the worker should exit
+     */
+    private Job<?> take(List<Job<?>> expired) {
+        while (true) {
+            Job<?> job = waitForJob(expired);
+            if (job == null && expired.isEmpty()) {
+                return null;
+            }
+
+            for (Job<?> stale : expired) {
+                stale.fail(new RejectedExecutionException("Request expired before a slot became free"));
+            }
+            expired.clear();
+
+            if (job == null) {
+                continue;
+            }
+
+            RuntimeException failure = null;
+            try {
+                if (job.isRelevant()) {
+                    return job;
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            job.fail(failure != null ? failure : new RejectedExecutionException("Request is no longer relevant"));
+            finish(job, true);
+        }
+    }
+
+    /**
+     * Waits until a job may run, some jobs expired, or the worker should exit
+     * @param expired Receives the jobs that waited too long
+     * @return The job, which counts as running, or null if only expired jobs were found or the worker should exit
+     */
+    private Job<?> waitForJob(List<Job<?>> expired) {
+        lock.lock();
+        try {
+            while (true) {
+                if (shutdown || workers.size() > maxInFlight) {
+                    workers.remove(Thread.currentThread());
+                    return null;
+                }
+
+                Job<?> job = pollRunnable(expired);
+                if (job != null) {
+                    running[job.priority.ordinal()]++;
+                    return job;
+                }
+                if (!expired.isEmpty()) {
+                    return null;
+                }
+
+                // Nothing frees a slot when a Retry-After pause ends, so wake up by then
+                long pauseNanos = gate != null && queued > 0 ? gate.getRemainingPauseNanos() : 0;
+                if (pauseNanos > 0) {
+                    try {
+                        available.awaitNanos(pauseNanos);
+                    } catch (InterruptedException e) {
+                        // Workers are only interrupted on shutdown, which the loop checks for
+                    }
+                } else {
+                    available.awaitUninterruptibly();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the most urgent job whose class has a free share of the slots and takes a gate slot for it,
+     * removing jobs that waited too long on the way. Must be called with the lock held.
+     * @param expired Receives the jobs that waited too long, to be failed once the lock is released
+     * @return The job, or null if no class may start a request right now or the gate has no free slot
+     */
+    private Job<?> pollRunnable(List<Job<?>> expired) {
+        long now = clock.getAsLong();
+        Job<?> result = null;
+        boolean gateClosed = false;
+
+        for (RequestPriority priority : PRIORITIES) {
+            int index = priority.ordinal();
+            ArrayDeque<Job<?>> queue = queues.get(index);
+
+            // Queues are in arrival order, so only the heads can be too old
+            while (!queue.isEmpty() && isExpired(queue.peekFirst(), now)) {
+                expired.add(queue.pollFirst());
+                queued--;
+                expiredRequests++;
+            }
+
+            if (result == null && !gateClosed && !queue.isEmpty() && running[index] < getClassLimit(index)) {
+                // A less urgent class would not get a slot either, so the job stays queued at the head of its class
+                if (gate == null || gate.tryAcquire()) {
+                    result = queue.pollFirst();
+                    queued--;
+                } else {
+                    gateClosed = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sheds one queued job to make room for a new job. Must be called with the lock held.
+     * @param priority The class of the new job
+     * @return The shed job, to be failed once the lock is released, or null if no job could be shed
+     */
+    private Job<?> shedFor(RequestPriority priority) {
+        int lowest = overflowPolicy == OverflowPolicy.DROP_OLDEST ? priority.ordinal() : priority.ordinal() + 1;
+
+        for (int index = PRIORITIES.length - 1; index >= lowest; index--) {
+            Job<?> oldest = queues.get(index).pollFirst();
+            if (oldest != null) {
+                queued--;
+                shedRequests++;
+                return oldest;
+            }
+        }
+
+        return null;
+    }
+
+    private int getClassLimit(int index) {
+        return Math.max(1, (int) Math.ceil(maxInFlight * shares[index]));
+    }
+
+    private boolean isExpired(Job<?> job, long now) {
+        long maxAge = maxAgeNanos[job.priority.ordinal()];
+        return maxAge > 0 && now - job.enqueuedNanos > maxAge;
+    }
+
+    /**
+     * A unit of work whose future can be failed while it is still queued
+     */
+    private static final class Job<T> implements Runnable {
+        private final RequestPriority priority;
+        private final BooleanSupplier stillRelevant;
+        private final Supplier<T> work;
+        private final long enqueuedNanos;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Job(RequestPriority priority, BooleanSupplier stillRelevant, Supplier<T> work, long enqueuedNanos) {
+            this.priority = priority;
+            this.stillRelevant = stillRelevant;
+            this.work = work;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+
+            try {
+                future.complete(work.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+
+        private boolean isRelevant() {
+            return stillRelevant == null || stillRelevant.getAsBoolean();
+        }
+
+        private void fail(Throwable cause) {
+            future.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package rs.meine.services;
+
+import rs.meine.models.RequestType;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Follows one request from submission to completion so MetricsService can split the time spent queued from the
+ * time spent waiting on OpenAI, and count the request's outcome exactly once
+ */
+public final class RequestTrace {
+    private final RequestType type;
+    private final UUID playerUUID;
+    private final long submittedNanos;
+    private final AtomicBoolean queueWaitRecorded = new AtomicBoolean();
+    private final AtomicBoolean outcomeRecorded = new AtomicBoolean();
+    private volatile boolean succeeded;
+    private volatile int retries;
+
+    RequestTrace(RequestType type, UUID playerUUID, long submittedNanos) {
+        this.type = type;
+        this.playerUUID = playerUUID;
+        this.submittedNanos = submittedNanos;
+    }
+
+    /**
+     * Gets what the request is for
+     * @return The request type
+     */
+    public RequestType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the player the request is for
+     * @return The UUID of the player, or null if the request was not made for a player
+     */
+    public UUID getPlayerUUID() {
+        return playerUUID;
+    }
+
+    /**
+     * Gets when the request was submitted
+     * @return The System.nanoTime() at submission
+     */
+    public long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+    /**
+     * Gets how many times the request was sent again after a failed call
+     * @return The number of retries so far
+     */
+    int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Counts a retry. Attempts of a request run one after the other, never at the same time.
+     */
+    void countRetry() {
+        retries++;
+    }
+
+    /**
+     * Marks the queue wait as recorded
+     * @return true the first time, false afterwards
+     */
+    boolean markQueueWaitRecorded() {
+        return queueWaitRecorded.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the outcome as recorded
+     * @return true the first time, false afterwards
+     */
+    boolean markOutcomeRecorded() {
+        return outcomeRecorded.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the request as answered by OpenAI
+     */
+    void markSucceeded() {
+        succeeded = true;
+    }
+
+    /**
+     * Checks whether the request was answered by OpenAI
+     * @return true if the recorded outcome was a success
+     */
+    boolean isSucceeded() {
+        return succeeded;
+    }
+}
@@ -0,0 +1,129 @@
+package rs.meine.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded LRU cache of generated responses whose entries expire after a fixed time to live
+ */
+public class ResponseCache {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int maxEntries;
+    private long ttlNanos;
+    private long evictions = 0;
+
+    /**
+     * Creates a new ResponseCache
+     * @param maxEntries The maximum number of cached responses, 0 to disable caching
+     * @param ttlSeconds How long a response stays valid
+     */
+    public ResponseCache(int maxEntries, long ttlSeconds) {
+        configure(maxEntries, ttlSeconds);
+    }
+
+    /**
+     * Applies new limits, evicting the least recently used entries if the cache is now too large
+     * @param maxEntries The maximum number of cached responses, 0 to disable caching
+     * @param ttlSeconds How long a response stays valid
+     */
+    public synchronized void configure(int maxEntries, long ttlSeconds) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+        evictOverflow();
+    }
+
+    /**
+     * Gets a cached response
+     * @param key The cache key
+     * @return The cached response, or null if there is none or it has expired
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.nanoTime() - entry.createdNanos > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Caches a response
+     * @param key The cache key
+     * @param value The response
+     */
+    public void put(String key, String value) {
+        put(key, value, 0);
+    }
+
+    /**
+     * Caches a response that was generated some time ago, such as one restored from disk
+     * @param key The cache key
+     * @param value The response
+     * @param ageNanos How long ago the response was generated
+     */
+    public synchronized void put(String key, String value, long ageNanos) {
+        if (maxEntries == 0 || ageNanos > ttlNanos) {
+            return;
+        }
+
+        entries.put(key, new Entry(value, System.nanoTime() - Math.max(0, ageNanos)));
+        evictOverflow();
+    }
+
+    /**
+     * Removes all cached responses
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of cached responses, including expired ones not yet removed
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the maximum number of cached responses
+     * @return The maximum number of entries
+     */
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Gets the number of entries evicted because the cache was full
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final long createdNanos;
+
+        private Entry(String value, long createdNanos) {
+            this.value = value;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
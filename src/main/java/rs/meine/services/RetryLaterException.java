@@ -0,0 +1,38 @@
+package rs.meine.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ends an attempt of a request whose call failed in a way that may pass. The request gives its request thread back
+ * and is queued again once the backoff passed, instead of holding the thread while it waits.
+ */
+final class RetryLaterException extends RuntimeException {
+    private final long backoffNanos;
+
+    /**
+     * Creates a new RetryLaterException
+     * @param cause The failure of the attempt
+     * @param backoffNanos Nanoseconds to wait before the next attempt
+     */
+    RetryLaterException(RuntimeException cause, long backoffNanos) {
+        super("Retrying in " + TimeUnit.NANOSECONDS.toMillis(backoffNanos) + " ms", cause, false, false);
+        this.backoffNanos = backoffNanos;
+    }
+
+    /**
+     * Gets how long to wait before the next attempt
+     * @return The wait time in nanoseconds
+     */
+    long getBackoffNanos() {
+        return backoffNanos;
+    }
+
+    /**
+     * Gets the failure of the attempt, which becomes the request's failure if it cannot be retried after all
+     * @return The failure
+     */
+    @Override
+    public synchronized RuntimeException getCause() {
+        return (RuntimeException) super.getCause();
+    }
+}
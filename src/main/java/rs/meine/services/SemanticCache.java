@@ -0,0 +1,318 @@
+package rs.meine.services;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Second-tier cache that serves responses for prompts that are worded differently but mean the same,
+ * such as "tp me to 100 64 -200" and "teleport me to 100,64,-200".
+ * Prompts are embedded offline as hashed character trigram vectors and compared by cosine similarity.
+ * Numbers are not part of the embedding; a cached response is only served when the prompt contains
+ * exactly the same numbers, so coordinates and amounts can never be mixed up. Words that look like names or
+ * identifiers (capitalized mid-sentence, or containing digits, underscores, colons or selectors) must match exactly
+ * and in the same order too, so "give Steve a sword" never answers "give Steven a sword". A name typed in lower case
+ * cannot be told from any other word, so prompts whose arguments must be exact should not be served from this cache.
+ */
+public class SemanticCache {
+    static final int DIMENSIONS = 128;
+
+    /** Common Minecraft abbreviations expanded before embedding */
+    private static final Map<String, String> ALIASES = Map.of(
+        "tp", "teleport",
+        "gm", "gamemode",
+        "xp", "experience",
+        "exp", "experience",
+        "ench", "enchant",
+        "inv", "inventory",
+        "pls", "please",
+        "plz", "please"
+    );
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Entry i occupies vectors[i * DIMENSIONS, (i + 1) * DIMENSIONS)
+    private float[] vectors;
+    private int[] signatureHashes;
+    private String[] signatures;
+    private String[] values;
+    private long[] createdNanos;
+    private int count = 0;
+    private int next = 0;
+
+    private volatile double threshold;
+    private volatile long ttlNanos;
+
+    /**
+     * Creates a new SemanticCache
+     * @param maxEntries The maximum number of cached responses, 0 to disable caching
+     * @param threshold The minimum cosine similarity for a cached response to be served
+     * @param ttlSeconds How long a response stays valid
+     */
+    public SemanticCache(int maxEntries, double threshold, long ttlSeconds) {
+        allocate(Math.max(0, maxEntries));
+        this.threshold = threshold;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+    }
+
+    /**
+     * Applies new limits. Changing the capacity drops all cached responses.
+     * @param maxEntries The maximum number of cached responses, 0 to disable caching
+     * @param threshold The minimum cosine similarity for a cached response to be served
+     * @param ttlSeconds How long a response stays valid
+     */
+    public void configure(int maxEntries, double threshold, long ttlSeconds) {
+        this.threshold = threshold;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+
+        lock.writeLock().lock();
+        try {
+            if (Math.max(0, maxEntries) != values.length) {
+                allocate(Math.max(0, maxEntries));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the cached response for the most similar prompt
+     * @param namespace Separates responses that must never be shared, such as different models or operations
+     * @param prompt The prompt as typed by the player
+     * @return The cached response, or null if no prompt is similar enough
+     */
+    public String get(String namespace, String prompt) {
+        String normalized = PromptNormalizer.normalize(prompt);
+        String signature = signature(namespace, prompt, normalized);
+        int signatureHash = signature.hashCode();
+        float[] query = embed(normalized);
+        double minScore = threshold;
+        long now = System.nanoTime();
+
+        lock.readLock().lock();
+        try {
+            int best = -1;
+            double bestScore = minScore;
+
+            for (int i = 0; i < count; i++) {
+                if (signatureHashes[i] != signatureHash || now - createdNanos[i] > ttlNanos
+                        || !signature.equals(signatures[i])) {
+                    continue;
+                }
+
+                double score = dot(query, vectors, i * DIMENSIONS);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+
+            return best >= 0 ? values[best] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Caches a response, replacing the oldest entry once the cache is full
+     * @param namespace Separates responses that must never be shared, such as different models or operations
+     * @param prompt The prompt as typed by the player
+     * @param value The response
+     */
+    public void put(String namespace, String prompt, String value) {
+        put(namespace, prompt, value, 0);
+    }
+
+    /**
+     * Caches a response that was generated some time ago, such as one restored from disk
+     * @param namespace Separates responses that must never be shared, such as different models or operations
+     * @param prompt The prompt as typed by the player
+     * @param value The response
+     * @param ageNanos How long ago the response was generated
+     */
+    public void put(String namespace, String prompt, String value, long ageNanos) {
+        if (ageNanos > ttlNanos) {
+            return;
+        }
+
+        String normalized = PromptNormalizer.normalize(prompt);
+        String signature = signature(namespace, prompt, normalized);
+        float[] vector = embed(normalized);
+
+        lock.writeLock().lock();
+        try {
+            if (values.length == 0) {
+                return;
+            }
+
+            int slot = next;
+            System.arraycopy(vector, 0, vectors, slot * DIMENSIONS, DIMENSIONS);
+            signatureHashes[slot] = signature.hashCode();
+            signatures[slot] = signature;
+            values[slot] = value;
+            createdNanos[slot] = System.nanoTime() - Math.max(0, ageNanos);
+
+            next = (slot + 1) % values.length;
+            count = Math.min(count + 1, values.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all cached responses
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate(values.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of cached responses, including expired ones not yet replaced
+     * @return The number of entries
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Embeds a normalized prompt as an L2-normalized hashed trigram vector.
+     * Digits are masked because numbers are matched exactly through the signature instead.
+     * @param normalized The normalized prompt
+     * @return The embedding
+     */
+    static float[] embed(String normalized) {
+        float[] vector = new float[DIMENSIONS];
+        StringBuilder text = new StringBuilder(normalized.length() + 16).append(' ');
+
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String expanded = ALIASES.getOrDefault(word, word);
+            for (int i = 0; i < expanded.length(); i++) {
+                char c = expanded.charAt(i);
+                text.append(Character.isDigit(c) ? '#' : c);
+            }
+            text.append(' ');
+        }
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            int hash = 0x811C9DC5;
+            for (int j = i; j < i + 3; j++) {
+                hash = (hash ^ text.charAt(j)) * 0x01000193;
+            }
+            float sign = (hash & 0x80000000) == 0 ? 1f : -1f;
+            vector[Math.floorMod(hash, DIMENSIONS)] += sign;
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] *= scale;
+            }
+        }
+
+        return vector;
+    }
+
+    /**
+     * Builds the exact-match part of the key: the namespace, every number in the prompt and every word that looks
+     * like a name or identifier, each in order
+     * @param namespace The cache namespace
+     * @param prompt The prompt as typed by the player
+     * @param normalized The normalized prompt
+     * @return The signature
+     */
+    static String signature(String namespace, String prompt, String normalized) {
+        StringBuilder signature = new StringBuilder(namespace.length() + 16).append(namespace).append('|');
+        boolean inNumber = false;
+
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            boolean numberChar = Character.isDigit(c)
+                || ((c == '-' || c == '.') && i + 1 < normalized.length() && Character.isDigit(normalized.charAt(i + 1)));
+
+            if (numberChar) {
+                signature.append(c);
+                inNumber = true;
+            } else if (inNumber) {
+                signature.append(',');
+                inNumber = false;
+            }
+        }
+
+        signature.append('|');
+        boolean sentenceStart = true;
+        for (String word : prompt.split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (isIdentifier(word, sentenceStart)) {
+                signature.append(PromptNormalizer.normalize(word)).append(',');
+            }
+            char last = word.charAt(word.length() - 1);
+            sentenceStart = last == '.' || last == '!' || last == '?';
+        }
+
+        return signature.toString();
+    }
+
+    /**
+     * Checks if a word looks like a name or identifier rather than an ordinary word
+     * @param word The word as typed, with any punctuation around it
+     * @param sentenceStart true if the word starts a sentence, where a capital letter says nothing
+     * @return true for words such as "Steve", "McSteve", "diamond_sword", "minecraft:stone", "@p" or "Steve2"
+     */
+    static boolean isIdentifier(String word, boolean sentenceStart) {
+        int letters = 0;
+        boolean marks = false;
+        boolean capitalized = false;
+
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isLetter(c)) {
+                if (Character.isUpperCase(c) && (letters > 0 || !sentenceStart)) {
+                    capitalized = true;
+                }
+                letters++;
+            } else if (Character.isDigit(c) || c == '_' || c == ':' || c == '@') {
+                marks = true;
+            }
+        }
+
+        // A lone capital letter, such as the pronoun "I", is not a name
+        return letters > 0 && (marks || (capitalized && letters > 1));
+    }
+
+    private static double dot(float[] query, float[] vectors, int offset) {
+        float sum = 0f;
+        for (int j = 0; j < DIMENSIONS; j++) {
+            sum += query[j] * vectors[offset + j];
+        }
+        return sum;
+    }
+
+    private void allocate(int capacity) {
+        vectors = new float[capacity * DIMENSIONS];
+        signatureHashes = new int[capacity];
+        signatures = new String[capacity];
+        values = new String[capacity];
+        createdNanos = new long[capacity];
+        count = 0;
+        next = 0;
+    }
+}
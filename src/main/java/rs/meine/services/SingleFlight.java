@@ -0,0 +1,73 @@
+package rs.meine.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses identical requests that are in flight at the same time into one call.
+ * The first caller of a key starts the call; callers of the same key that arrive before it completes are attached to
+ * its result instead of starting their own. A key is forgotten as soon as its call completes, so a result is never
+ * handed out afterwards; keeping results around is left to the response caches.
+ * Every caller gets its own future, so one caller cancelling or completing its future does not affect the others.
+ * @param <K> The key type, which must identify everything that affects the result
+ * @param <V> The result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Attaches to the call in flight for a key
+     * @param key The request key
+     * @param onJoin Applied to the caller's future if it was attached, e.g. to count or adapt it
+     * @return The caller's future, or null if no call is in flight for the key
+     */
+    public CompletableFuture<V> join(K key, UnaryOperator<CompletableFuture<V>> onJoin) {
+        CompletableFuture<V> flight = flights.get(key);
+        return flight != null ? onJoin.apply(flight.copy()) : null;
+    }
+
+    /**
+     * Starts a call for a key, or attaches to the one in flight if another caller started it first
+     * @param key The request key
+     * @param call Starts the call; only invoked if no call is in flight for the key
+     * @param onJoin Applied to the caller's future if it was attached instead of starting the call
+     * @return The caller's future
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call, UnaryOperator<CompletableFuture<V>> onJoin) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            return onJoin.apply(existing.copy());
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+
+        result.whenComplete((value, error) -> {
+            // Forget the key first, so a caller arriving from here on starts a fresh call
+            flights.remove(key, flight);
+            if (error != null) {
+                flight.completeExceptionally(error);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return flight.copy();
+    }
+
+    /**
+     * Gets the number of calls in flight
+     * @return The number of distinct keys being requested
+     */
+    public int size() {
+        return flights.size();
+    }
+}
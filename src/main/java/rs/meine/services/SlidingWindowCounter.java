@@ -0,0 +1,74 @@
+package rs.meine.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events in a ring of fixed-length time slots, so rates over the last few minutes can be read
+ * without keeping a timestamp per event. A slot is claimed for a new time period the first time it is
+ * written in that period; reads only include slots whose period is still inside the window.
+ */
+public class SlidingWindowCounter {
+    private final long slotNanos;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray periods;
+
+    /**
+     * Creates a new SlidingWindowCounter
+     * @param slots The number of slots, i.e. the longest window that can be read
+     * @param slotNanos The length of one slot in nanoseconds
+     */
+    public SlidingWindowCounter(int slots, long slotNanos) {
+        this.slotNanos = slotNanos;
+        this.counts = new AtomicLongArray(slots);
+        this.periods = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            periods.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Counts one event
+     * @param nowNanos The current System.nanoTime()
+     */
+    public void increment(long nowNanos) {
+        long period = Math.floorDiv(nowNanos, slotNanos);
+        int slot = (int) Math.floorMod(period, (long) counts.length());
+        if (periods.get(slot) != period) {
+            claim(slot, period);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * Resets a slot left over from an earlier period
+     * @param slot The slot
+     * @param period The period now starting in it
+     */
+    private synchronized void claim(int slot, long period) {
+        if (periods.get(slot) < period) {
+            counts.set(slot, 0);
+            periods.set(slot, period);
+        }
+    }
+
+    /**
+     * Gets the average rate over the most recent slots, including the current partial one
+     * @param windowSlots The number of slots to read, at most the number of slots
+     * @param nowNanos The current System.nanoTime()
+     * @return The events per second
+     */
+    public double getRatePerSecond(int windowSlots, long nowNanos) {
+        int window = Math.min(windowSlots, counts.length());
+        long period = Math.floorDiv(nowNanos, slotNanos);
+        long total = 0;
+        for (int i = 0; i < window; i++) {
+            int slot = (int) Math.floorMod(period - i, (long) counts.length());
+            if (periods.get(slot) == period - i) {
+                total += counts.get(slot);
+            }
+        }
+
+        long elapsedNanos = (window - 1) * slotNanos + (nowNanos - period * slotNanos);
+        return elapsedNanos <= 0 ? 0 : total * 1_000_000_000.0 / elapsedNanos;
+    }
+}
@@ -0,0 +1,106 @@
+package rs.meine.services;
+
+import java.util.function.Consumer;
+
+/**
+ * Assembles streamed completion deltas into sentence-sized chunks for chat.
+ * A chunk is emitted at the last sentence boundary once at least the minimum length has arrived,
+ * or at the last space once the maximum length is exceeded, so players see text early without
+ * one chat line per token.
+ */
+class StreamChunker {
+    private final int minChars;
+    private final int maxChars;
+    private final Consumer<String> consumer;
+    private final StringBuilder buffer = new StringBuilder();
+    private int emittedChunks = 0;
+
+    /**
+     * Creates a new StreamChunker
+     * @param minChars The minimum length of a chunk ending at a sentence boundary
+     * @param maxChars The length after which a chunk is emitted even without a sentence boundary
+     * @param consumer Receives each chunk
+     */
+    StreamChunker(int minChars, int maxChars, Consumer<String> consumer) {
+        this.minChars = Math.max(1, minChars);
+        this.maxChars = Math.max(this.minChars, maxChars);
+        this.consumer = consumer;
+    }
+
+    /**
+     * Appends a streamed delta, emitting any chunks that are now complete
+     * @param delta The text received from the stream
+     */
+    void append(String delta) {
+        buffer.append(delta);
+
+        while (true) {
+            int end = findSentenceEnd();
+            if (end < minChars) {
+                if (buffer.length() < maxChars) {
+                    return;
+                }
+                end = findSplitPoint();
+            }
+            emit(end);
+        }
+    }
+
+    /**
+     * Emits whatever is left once the stream has ended
+     */
+    void finish() {
+        if (buffer.length() > 0) {
+            emit(buffer.length());
+        }
+    }
+
+    /**
+     * Gets the number of chunks emitted so far
+     * @return The number of chunks
+     */
+    int getEmittedChunks() {
+        return emittedChunks;
+    }
+
+    /**
+     * Finds the end of the last complete sentence in the buffer
+     * @return The index just past the sentence end, or 0 if there is none
+     */
+    private int findSentenceEnd() {
+        // A punctuation mark only ends a sentence once the following character has arrived
+        for (int i = buffer.length() - 2; i >= 0; i--) {
+            char c = buffer.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            }
+            if ((c == '.' || c == '!' || c == '?') && Character.isWhitespace(buffer.charAt(i + 1))) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds where to split an overlong buffer without a sentence boundary
+     * @return The index to split at
+     */
+    private int findSplitPoint() {
+        for (int i = maxChars; i > minChars; i--) {
+            if (Character.isWhitespace(buffer.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return maxChars;
+    }
+
+    private void emit(int end) {
+        String chunk = buffer.substring(0, end).trim();
+        buffer.delete(0, end);
+
+        if (!chunk.isEmpty()) {
+            emittedChunks++;
+            consumer.accept(chunk);
+        }
+    }
+}
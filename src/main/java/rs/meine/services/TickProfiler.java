@@ -0,0 +1,405 @@
+package rs.meine.services;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.java.JavaPlugin;
+import rs.meine.config.ConfigManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Measures how much of each server tick the plugin spends on the main thread.
+ * Event handlers registered through registerEvents and callbacks scheduled through runTask and runTaskTimer are
+ * timed as named sections. Main-thread time is summed per tick, where a tick ends each time the profiler's own
+ * one-tick timer runs; ticks over the configured budget are counted and reported with their worst section.
+ * When deferral is enabled, one-shot callbacks that would start in a tick already over budget are moved to
+ * the next tick, a bounded number of times, keeping their order; repeating callbacks can skip a tick the same way.
+ */
+public class TickProfiler {
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final JavaPlugin plugin;
+    private final ConfigManager configManager;
+    private final Logger logger;
+
+    private final Map<String, Section> sectionsByName = new ConcurrentHashMap<>();
+    private final List<Section> sections = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram tickTime = new LatencyHistogram();
+    private final LongAdder ticksOverBudget = new LongAdder();
+    private final LongAdder deferredTasks = new LongAdder();
+
+    private volatile boolean enabled;
+    private volatile long budgetNanos;
+    private volatile boolean deferOverBudget;
+    private volatile int maxDeferTicks;
+    private volatile long warningIntervalNanos;
+
+    // Only touched on the main thread
+    private long currentTickNanos = 0;
+    private Section currentTickWorst;
+    private long currentTickWorstNanos = 0;
+    private long lastWarningNanos = 0;
+    private int overrunsSinceWarning = 0;
+    private volatile long worstTickNanos = 0;
+
+    /**
+     * Creates a new TickProfiler. Ticks are not closed until start is called.
+     * @param plugin The plugin instance
+     * @param configManager The configuration manager
+     */
+    public TickProfiler(JavaPlugin plugin, ConfigManager configManager) {
+        this.plugin = plugin;
+        this.configManager = configManager;
+        this.logger = plugin.getLogger();
+        reload();
+    }
+
+    /**
+     * Starts the one-tick timer that closes each tick
+     */
+    public void start() {
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::endTick, 1, 1);
+    }
+
+    /**
+     * Applies the profiler settings from the current configuration
+     */
+    public void reload() {
+        enabled = configManager.isProfilerEnabled();
+        budgetNanos = (long) (configManager.getProfilerTickBudgetMillis() * 1_000_000L);
+        deferOverBudget = configManager.isProfilerDeferEnabled();
+        maxDeferTicks = Math.max(0, configManager.getProfilerMaxDeferTicks());
+        warningIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(1, configManager.getProfilerWarningIntervalSeconds()));
+    }
+
+    /**
+     * Registers every @EventHandler method of a listener, timing each one as its own section
+     * @param listener The listener
+     */
+    public void registerEvents(Listener listener) {
+        for (Method method : listener.getClass().getMethods()) {
+            EventHandler handler = method.getAnnotation(EventHandler.class);
+            if (handler == null || method.getParameterCount() != 1
+                    || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+
+            Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+            Section section = section(listener.getClass().getSimpleName() + "." + method.getName());
+            method.setAccessible(true);
+
+            EventExecutor executor = (registered, event) -> {
+                // Bukkit also hands executors events of unrelated subclasses sharing the handler list
+                if (!eventClass.isInstance(event)) {
+                    return;
+                }
+                long startNanos = System.nanoTime();
+                try {
+                    method.invoke(registered, event);
+                } catch (InvocationTargetException e) {
+                    throw new EventException(e.getCause());
+                } catch (IllegalAccessException e) {
+                    throw new EventException(e);
+                } finally {
+                    record(section, System.nanoTime() - startNanos);
+                }
+            };
+
+            plugin.getServer().getPluginManager().registerEvent(
+                eventClass, listener, handler.priority(), executor, plugin, handler.ignoreCancelled());
+        }
+    }
+
+    /**
+     * Runs a callback on the main thread on the next tick, timed as a section. If deferral is enabled and the
+     * tick is already over budget when the callback is due, it is moved to the following tick instead.
+     * @param name The section name
+     * @param task The callback
+     */
+    public void runTask(String name, Runnable task) {
+        Section section = section(name);
+        plugin.getServer().getScheduler().runTask(plugin, () -> runDeferrable(section, task, 0));
+    }
+
+    /**
+     * Runs a callback on the main thread repeatedly, timed as a section. Repeating callbacks are never deferred.
+     * @param name The section name
+     * @param task The callback
+     * @param delayTicks Ticks before the first run
+     * @param periodTicks Ticks between runs
+     */
+    public void runTaskTimer(String name, Runnable task, long delayTicks, long periodTicks) {
+        Section section = section(name);
+        plugin.getServer().getScheduler().runTaskTimer(plugin, () -> run(section, task), delayTicks, periodTicks);
+    }
+
+    /**
+     * Runs a one-shot callback now or moves it to the next tick
+     * @param section The callback's section
+     * @param task The callback
+     * @param deferrals How many times the callback was already moved
+     */
+    private void runDeferrable(Section section, Runnable task, int deferrals) {
+        if (defer(section, deferrals)) {
+            plugin.getServer().getScheduler().runTask(plugin, () -> runDeferrable(section, task, deferrals + 1));
+            return;
+        }
+        run(section, task);
+    }
+
+    /**
+     * Checks if a repeating callback should skip this tick because deferral is enabled and the tick is already
+     * over budget. Must be called on the main thread.
+     * @param name The callback's section name
+     * @param deferrals How many ticks in a row the callback already skipped
+     * @return true if the callback should skip this tick; the skip is counted as a deferral
+     */
+    public boolean deferIfOverBudget(String name, int deferrals) {
+        return defer(section(name), deferrals);
+    }
+
+    /**
+     * Decides if a callback moves to the next tick, counting the deferral if it does
+     * @param section The callback's section
+     * @param deferrals How many times the callback was already moved
+     * @return true if the callback should move
+     */
+    private boolean defer(Section section, int deferrals) {
+        if (!enabled || !deferOverBudget || deferrals >= maxDeferTicks || currentTickNanos <= budgetNanos) {
+            return false;
+        }
+        deferredTasks.increment();
+        section.deferrals.increment();
+        return true;
+    }
+
+    /**
+     * Runs a callback, timing it as a section
+     * @param section The section
+     * @param task The callback
+     */
+    private void run(Section section, Runnable task) {
+        long startNanos = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            record(section, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Adds a timed run to its section and, on the main thread, to the current tick
+     * @param section The section
+     * @param nanos The time the run took
+     */
+    private void record(Section section, long nanos) {
+        if (!enabled) {
+            return;
+        }
+
+        section.calls.increment();
+        section.totalNanos.add(nanos);
+        section.maxNanos.accumulate(nanos);
+
+        if (plugin.getServer().isPrimaryThread()) {
+            section.mainThreadNanos.add(nanos);
+            currentTickNanos += nanos;
+            if (nanos > currentTickWorstNanos) {
+                currentTickWorstNanos = nanos;
+                currentTickWorst = section;
+            }
+        }
+    }
+
+    /**
+     * Closes the current tick, counting it against the budget
+     */
+    private void endTick() {
+        long nanos = currentTickNanos;
+        Section worst = currentTickWorst;
+        long worstNanos = currentTickWorstNanos;
+        currentTickNanos = 0;
+        currentTickWorst = null;
+        currentTickWorstNanos = 0;
+
+        if (!enabled) {
+            return;
+        }
+
+        tickTime.record(nanos);
+        worstTickNanos = Math.max(worstTickNanos, nanos);
+        if (nanos <= budgetNanos) {
+            return;
+        }
+
+        ticksOverBudget.increment();
+        overrunsSinceWarning++;
+        long now = System.nanoTime();
+        if (lastWarningNanos == 0 || now - lastWarningNanos >= warningIntervalNanos) {
+            logger.warning(String.format("Plugin used %.2f ms (%.1f%%) of a tick, over the %.2f ms budget; slowest: %s (%.2f ms). " +
+                    "%d tick(s) over budget since the last warning",
+                nanos / 1_000_000.0, nanos * 100.0 / NANOS_PER_TICK, budgetNanos / 1_000_000.0,
+                worst != null ? worst.name : "unknown", worstNanos / 1_000_000.0, overrunsSinceWarning));
+            lastWarningNanos = now;
+            overrunsSinceWarning = 0;
+        }
+    }
+
+    /**
+     * Gets or creates a section
+     * @param name The section name
+     * @return The section
+     */
+    private Section section(String name) {
+        return sectionsByName.computeIfAbsent(name, key -> {
+            Section created = new Section(key);
+            sections.add(created);
+            return created;
+        });
+    }
+
+    /**
+     * Gets every section in the order it was first used
+     * @return The sections
+     */
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    /**
+     * Gets the sections that took the most main-thread time
+     * @param limit The number of sections to return
+     * @return The sections, most main-thread time first
+     */
+    public List<Section> getWorstSections(int limit) {
+        List<Section> sorted = new ArrayList<>(sections);
+        sorted.sort(Comparator.comparingLong(Section::getMainThreadNanos).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Gets the distribution of the plugin's main-thread time per tick
+     * @return The per-tick histogram
+     */
+    public LatencyHistogram getTickTime() {
+        return tickTime;
+    }
+
+    /**
+     * Gets the number of ticks in which the plugin went over its budget
+     * @return The number of ticks
+     */
+    public long getTicksOverBudget() {
+        return ticksOverBudget.sum();
+    }
+
+    /**
+     * Gets the number of times a callback was moved to a later tick
+     * @return The number of deferrals
+     */
+    public long getDeferredTasks() {
+        return deferredTasks.sum();
+    }
+
+    /**
+     * Gets the most main-thread time the plugin used in one tick
+     * @return The time in nanoseconds
+     */
+    public long getWorstTickNanos() {
+        return worstTickNanos;
+    }
+
+    /**
+     * Gets the plugin's main-thread budget per tick
+     * @return The budget in nanoseconds
+     */
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * Checks if the profiler is recording
+     * @return true if the profiler is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Timing totals of one event handler or scheduled callback
+     */
+    public static final class Section {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder mainThreadNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder deferrals = new LongAdder();
+
+        private Section(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets the section's name, the listener class and method or the callback's name
+         * @return The name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the number of timed runs
+         * @return The number of runs
+         */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * Gets the time spent in the section on any thread
+         * @return The time in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Gets the time spent in the section on the main thread
+         * @return The time in nanoseconds
+         */
+        public long getMainThreadNanos() {
+            return mainThreadNanos.sum();
+        }
+
+        /**
+         * Gets the longest single run
+         * @return The time in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Gets the number of times the section's callback was moved to a later tick
+         * @return The number of deferrals
+         */
+        public long getDeferrals() {
+            return deferrals.sum();
+        }
+    }
+}
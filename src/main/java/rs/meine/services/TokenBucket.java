@@ -0,0 +1,84 @@
+package rs.meine.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket whose whole state is one AtomicLong.
+ * Instead of a token count and a refill timestamp, the bucket stores the System.nanoTime()
+ * at which it will be full again (the generic cell rate algorithm). Taking a token pushes that
+ * time forward by one refill interval; a request is denied if it would push it further than
+ * one full bucket into the future. Every operation is a single CAS with no allocation.
+ */
+public class TokenBucket {
+    private final AtomicLong fullAtNanos;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    /**
+     * Creates a full bucket
+     * @param capacity The maximum number of tokens, i.e. the largest burst allowed
+     * @param windowNanos The time in which a completely empty bucket refills
+     */
+    public TokenBucket(int capacity, long windowNanos) {
+        this(capacity, windowNanos, System.nanoTime());
+    }
+
+    /**
+     * Creates a bucket that is full at a given time
+     * @param capacity The maximum number of tokens, i.e. the largest burst allowed
+     * @param windowNanos The time in which a completely empty bucket refills
+     * @param fullAtNanos The System.nanoTime() at which the bucket is full; the current time for a full bucket
+     */
+    TokenBucket(int capacity, long windowNanos, long fullAtNanos) {
+        int tokens = Math.max(1, capacity);
+        this.intervalNanos = Math.max(1, windowNanos / tokens);
+        this.burstNanos = intervalNanos * tokens;
+        this.fullAtNanos = new AtomicLong(fullAtNanos);
+    }
+
+    /**
+     * Creates a bucket with a new capacity and window holding as many tokens as this one does now, or its capacity if
+     * that is fewer
+     * @param capacity The maximum number of tokens of the new bucket
+     * @param windowNanos The time in which the new bucket refills completely
+     * @param nowNanos The current System.nanoTime()
+     * @return The new bucket
+     */
+    public TokenBucket resize(int capacity, long windowNanos, long nowNanos) {
+        TokenBucket resized = new TokenBucket(capacity, windowNanos, nowNanos);
+        double tokens = (double) (burstNanos - Math.max(0, fullAtNanos.get() - nowNanos)) / intervalNanos;
+        long availableNanos = (long) Math.min(resized.burstNanos, Math.max(0, tokens) * resized.intervalNanos);
+        resized.fullAtNanos.set(nowNanos + resized.burstNanos - availableNanos);
+        return resized;
+    }
+
+    /**
+     * Takes a token if one is available
+     * @param nowNanos The current System.nanoTime()
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAtNanos.get();
+            // A bucket that has been full for a while must not bank extra tokens
+            long base = current - nowNanos < 0 ? nowNanos : current;
+            long next = base + intervalNanos;
+            long overflow = next - nowNanos - burstNanos;
+
+            if (overflow > 0) {
+                return overflow;
+            }
+
+            if (fullAtNanos.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken by tryAcquire that ended up unused
+     */
+    public void refund() {
+        fullAtNanos.addAndGet(-intervalNanos);
+    }
+}
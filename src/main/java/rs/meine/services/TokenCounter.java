@@ -0,0 +1,133 @@
+package rs.meine.services;
+
+/**
+ * Counts prompt tokens locally, without a round trip to the API.
+ * Text is split exactly like the GPT (cl100k/o200k) BPE pre-tokenizer splits it: contractions, letter runs with one
+ * optional leading symbol or space, digit groups of up to three, punctuation runs and whitespace. Instead of merging
+ * each piece against the vocabulary, which would mean shipping a multi-megabyte merge table in the plugin jar,
+ * each piece is charged an estimate of its merged length that leans high: four letters per token, where common English
+ * words merge into one token whole. Ordinary chat therefore counts at or above what the API charges, but rare words,
+ * player names and mixed scripts can split into more tokens than estimated, so budgets keep a margin of their own;
+ * exact counts are taken from the usage the API reports.
+ */
+public final class TokenCounter {
+    /** Letters charged per token of an ASCII word piece, fewer than common words merge into */
+    private static final int LETTERS_PER_TOKEN = 4;
+    /** Punctuation characters that merge into one token, on average */
+    private static final int SYMBOLS_PER_TOKEN = 2;
+    /** Tokens the chat format adds around each message */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenCounter() {
+    }
+
+    /**
+     * Estimates the number of tokens in a piece of text
+     * @param text The text
+     * @return The estimated token count
+     */
+    public static int count(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = text.charAt(i);
+
+            // 's 't 're 've 'm 'll 'd
+            if (c == '\'' && i + 1 < length) {
+                int contraction = contractionLength(text, i + 1);
+                if (contraction > 0) {
+                    tokens++;
+                    i += 1 + contraction;
+                    continue;
+                }
+            }
+
+            // One optional non-letter, non-digit, non-newline character joins the letter run after it
+            int start = i;
+            if (!Character.isLetter(c) && !Character.isDigit(c) && c != '\r' && c != '\n'
+                    && i + 1 < length && Character.isLetter(text.charAt(i + 1))) {
+                i++;
+            }
+            if (Character.isLetter(text.charAt(i))) {
+                int ascii = 0;
+                int other = 0;
+                while (i < length && Character.isLetter(text.charAt(i))) {
+                    if (text.charAt(i) < 0x80) {
+                        ascii++;
+                    } else {
+                        other++;
+                    }
+                    i++;
+                }
+                // Non-ASCII letters rarely merge, so charge each of them a full token
+                tokens += (ascii > 0 ? 1 + (ascii - 1) / LETTERS_PER_TOKEN : 0) + other;
+                continue;
+            }
+            i = start;
+
+            if (Character.isDigit(c)) {
+                int digits = 0;
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    digits++;
+                    i++;
+                }
+                tokens += (digits + 2) / 3;
+                continue;
+            }
+
+            if (Character.isWhitespace(c)) {
+                boolean newline = false;
+                while (i < length && Character.isWhitespace(text.charAt(i))) {
+                    newline |= text.charAt(i) == '\n' || text.charAt(i) == '\r';
+                    i++;
+                }
+                if (newline || i == length) {
+                    tokens++;
+                    continue;
+                }
+                // The last space joins a following word or symbol run, but digit groups never take a leading space
+                boolean beforeDigit = Character.isDigit(text.charAt(i));
+                tokens += (i - start > 1 ? 1 : 0) + (beforeDigit ? 1 : 0);
+                continue;
+            }
+
+            int symbols = 0;
+            while (i < length) {
+                char s = text.charAt(i);
+                if (Character.isLetterOrDigit(s) || Character.isWhitespace(s)) {
+                    break;
+                }
+                symbols++;
+                i++;
+            }
+            tokens += 1 + (symbols - 1) / SYMBOLS_PER_TOKEN;
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Gets the length of the contraction suffix starting at an index
+     * @param text The text
+     * @param index The index after the apostrophe
+     * @return The number of letters in the contraction, or 0 if there is none
+     */
+    private static int contractionLength(CharSequence text, int index) {
+        char first = Character.toLowerCase(text.charAt(index));
+        char second = index + 1 < text.length() ? Character.toLowerCase(text.charAt(index + 1)) : 0;
+
+        if ((first == 'r' && second == 'e') || (first == 'v' && second == 'e') || (first == 'l' && second == 'l')) {
+            return 2;
+        }
+        if (first == 's' || first == 't' || first == 'm' || first == 'd') {
+            return 1;
+        }
+        return 0;
+    }
+}
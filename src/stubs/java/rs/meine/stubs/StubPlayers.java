@@ -0,0 +1,54 @@
+package rs.meine.stubs;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.UUID;
+
+/**
+ * Lightweight stand-ins for online players. Only the methods the plugin reads about a player outside the world are
+ * answered: name, UUID, online state, permissions and inventory contents. Everything else returns zero, false or null.
+ */
+public final class StubPlayers {
+    private StubPlayers() {
+    }
+
+    /**
+     * Creates an online player holding the given items
+     * @param name The player's name
+     * @param uuid The player's UUID
+     * @param contents The inventory slots, with null for empty ones. Every read returns a copy, as the server does.
+     * @return The player
+     */
+    public static Player player(String name, UUID uuid, ItemStack[] contents) {
+        PlayerInventory inventory = StubPlugin.proxy(PlayerInventory.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getContents":
+                case "getStorageContents":
+                    return contents.clone();
+                case "getSize":
+                    return contents.length;
+                default:
+                    return StubPlugin.defaultValue(method);
+            }
+        });
+
+        return StubPlugin.proxy(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName":
+                    return name;
+                case "getUniqueId":
+                    return uuid;
+                case "getInventory":
+                    return inventory;
+                case "isOnline":
+                case "hasPermission":
+                    return true;
+                default:
+                    return StubPlugin.defaultValue(method);
+            }
+        });
+    }
+}
@@ -0,0 +1,148 @@
+package rs.meine.stubs;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * Lets the plugin's services run outside a server, for the load-test harness and the benchmarks. The plugin is
+ * created through JavaPlugin's initialization constructor, which Bukkit keeps for running plugins without a plugin
+ * class loader, on top of a Server proxy. Its scheduler runs main-thread tasks in order on one executor and async
+ * tasks on the common pool; repeating and delayed tasks are never started, so no player context is captured and no
+ * periodic metrics are logged.
+ */
+public final class StubPlugin extends JavaPlugin {
+    /**
+     * Creates a new StubPlugin
+     * @param dataFolder The folder config.yml and the persistent store are written to
+     * @param logger The logger standing in for the server's
+     * @param mainThread Runs tasks scheduled on the main thread, one at a time
+     */
+    @SuppressWarnings("deprecation")
+    public StubPlugin(File dataFolder, Logger logger, Executor mainThread) {
+        super(
+            new JavaPluginLoader(createServer(logger, mainThread)),
+            new PluginDescriptionFile("MinecraftGPTCommenter", "loadtest", StubPlugin.class.getName()),
+            dataFolder,
+            new File(dataFolder, "MinecraftGPTCommenter.jar")
+        );
+    }
+
+    /**
+     * Creates the Server proxy
+     * @param logger The server logger
+     * @param mainThread Runs tasks scheduled on the main thread
+     * @return The server
+     */
+    private static Server createServer(Logger logger, Executor mainThread) {
+        BukkitScheduler scheduler = proxy(BukkitScheduler.class, (method, args) -> {
+            switch (method.getName()) {
+                case "runTask":
+                    if (args[1] instanceof Runnable task) {
+                        mainThread.execute(task);
+                    }
+                    return null;
+                case "runTaskAsynchronously":
+                    if (args[1] instanceof Runnable task) {
+                        ForkJoinPool.commonPool().execute(task);
+                    }
+                    return null;
+                default:
+                    return defaultValue(method);
+            }
+        });
+
+        return proxy(Server.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getLogger":
+                    return logger;
+                case "getScheduler":
+                    return scheduler;
+                case "getName":
+                    return "StubServer";
+                case "getVersion":
+                case "getBukkitVersion":
+                    return "loadtest";
+                case "getOnlinePlayers":
+                case "getWorlds":
+                    return List.of();
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Implements an interface with a handler, answering the Object methods itself
+     * @param type The interface
+     * @param handler Answers every other method
+     * @param <T> The interface type
+     * @return The proxy
+     */
+    static <T> T proxy(Class<T> type, Handler handler) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            switch (method.getName()) {
+                case "toString":
+                    return "Stub " + type.getSimpleName();
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "equals":
+                    return self == args[0];
+                default:
+                    return handler.invoke(method, args != null ? args : new Object[0]);
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    /**
+     * Gets the value an unimplemented method returns: zero, false or null
+     * @param method The method
+     * @return The default value of its return type
+     */
+    static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Answers the proxied methods of one interface
+     */
+    interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,50 @@
+package rs.meine.services;
+
+import org.bukkit.ChatColor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Splits long messages into chat lines and checks the lines still read, and look, like the message
+ */
+class ChatDeliveryTest {
+    private static final String RED = String.valueOf(ChatColor.COLOR_CHAR) + 'c';
+
+    /**
+     * Messages within the limit, and any message when splitting is disabled, stay one line
+     */
+    @Test
+    void keepsShortMessages() {
+        assertEquals(List.of("hello world"), ChatDelivery.split("hello world", 11));
+        assertEquals(List.of("hello world"), ChatDelivery.split("hello world", 0));
+    }
+
+    /**
+     * Lines end at the last whitespace that fits, and the whitespace is dropped
+     */
+    @Test
+    void splitsAtWhitespace() {
+        assertEquals(List.of("hello world", "foo"), ChatDelivery.split("hello world foo", 11));
+        assertEquals(List.of("one", "two", "three"), ChatDelivery.split("one   two\tthree", 5));
+    }
+
+    /**
+     * A word longer than a line is cut, but never between a color code's two characters
+     */
+    @Test
+    void cutsLongWords() {
+        assertEquals(List.of("abcd", "efgh", "ij"), ChatDelivery.split("abcdefghij", 4));
+        assertEquals(List.of("ab", RED + "d", RED + "e"), ChatDelivery.split("ab" + RED + "de", 3));
+    }
+
+    /**
+     * Each line after the first starts with the color the previous one ended in
+     */
+    @Test
+    void carriesColorsOver() {
+        assertEquals(List.of(RED + "abc", RED + "def", RED + "ghi"), ChatDelivery.split(RED + "abc def ghi", 8));
+    }
+}
@@ -0,0 +1,49 @@
+package rs.meine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Parses numbered batch answers the way models actually write them, and rejects the ones that cannot be matched back
+ * to their events
+ */
+class CommentaryBatcherTest {
+
+    /**
+     * Lines come back in event order whatever numbering style and order the model used
+     */
+    @Test
+    void parsesNumberedLines() {
+        assertEquals(List.of("Ouch.", "Nice jump.", "Welcome back!"),
+            CommentaryBatcher.parseNumberedLines("1. Ouch.\n2) Nice jump.\n3: Welcome back!", 3));
+        assertEquals(List.of("first", "second"),
+            CommentaryBatcher.parseNumberedLines(" 2 - second \r\n  1.first", 2));
+    }
+
+    /**
+     * Lines without a number, such as a preamble or blank lines, are skipped
+     */
+    @Test
+    void skipsUnnumberedLines() {
+        assertEquals(List.of("a", "b"),
+            CommentaryBatcher.parseNumberedLines("Here you go:\n\n1. a\n\n2. b\nHope that helps", 2));
+    }
+
+    /**
+     * An answer that misses, repeats or invents a number, or leaves a line empty, is rejected as a whole
+     */
+    @Test
+    void rejectsIncompleteAnswers() {
+        assertNull(CommentaryBatcher.parseNumberedLines(null, 1));
+        assertNull(CommentaryBatcher.parseNumberedLines("1. a", 2));
+        assertNull(CommentaryBatcher.parseNumberedLines("1. a\n1. b", 2));
+        assertNull(CommentaryBatcher.parseNumberedLines("1. a\n3. b", 2));
+        assertNull(CommentaryBatcher.parseNumberedLines("0. a\n1. b", 2));
+        assertNull(CommentaryBatcher.parseNumberedLines("1. a\n2.  ", 2));
+        assertNull(CommentaryBatcher.parseNumberedLines("1. a\n99999999999. b", 2));
+    }
+}
@@ -0,0 +1,97 @@
+package rs.meine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Matches chat-like texts against small phrase sets, including the cases where the automaton's fallback transitions
+ * and the word boundary checks matter
+ */
+class KeywordMatcherTest {
+
+    /**
+     * Phrases only match as whole words, whatever their case
+     */
+    @Test
+    void matchesWholeWordsIgnoringCase() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("creeper", "TNT"));
+
+        assertTrue(matcher.matches("A Creeper blew up my house"));
+        assertTrue(matcher.matches("who placed the tnt?"));
+        assertTrue(matcher.matches("creeper"));
+        assertFalse(matcher.matches("creepers everywhere"));
+        assertFalse(matcher.matches("the tntminecart"));
+        assertFalse(matcher.matches("my_creeper farm"));
+        assertFalse(matcher.matches(""));
+    }
+
+    /**
+     * Every occurrence is counted, including phrases that overlap or end inside each other
+     */
+    @Test
+    void countsEveryOccurrence() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("diamond", "diamond sword", "sword"));
+
+        assertEquals(3, matcher.count("a diamond sword"));
+        assertEquals(2, matcher.count("diamond, diamond"));
+        assertEquals(0, matcher.count("diamonds and swords"));
+    }
+
+    /**
+     * A failed partial match falls back to the longest suffix that is still a phrase prefix, so a phrase starting
+     * inside another one's near miss is found
+     */
+    @Test
+    void followsFailureLinks() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("nether portal", "portal room"));
+
+        assertTrue(matcher.matches("the nether portal room"));
+        assertEquals(2, matcher.count("the nether portal room"));
+        assertTrue(matcher.matches("nether portal"));
+        assertTrue(matcher.matches("the portal room"));
+        assertFalse(matcher.matches("nether room"));
+    }
+
+    /**
+     * Whitespace runs and kinds are the same thing in the phrases and in the text
+     */
+    @Test
+    void collapsesWhitespace() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("  ender\tdragon "));
+
+        assertTrue(matcher.matches("the ender dragon"));
+        assertTrue(matcher.matches("the ender  dragon"));
+        assertTrue(matcher.matches("ender \t\n dragon!"));
+        assertEquals(2, matcher.count("ender   dragon ender dragon"));
+        assertFalse(matcher.matches("enderdragon"));
+        assertFalse(matcher.matches("xender   dragon"));
+    }
+
+    /**
+     * Characters outside ASCII are matched and folded like the others
+     */
+    @Test
+    void matchesNonAsciiPhrases() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("Grüße", "☃"));
+
+        assertTrue(matcher.matches("GRÜSSE? nein, grüße"));
+        assertTrue(matcher.matches("a ☃ appeared"));
+        assertFalse(matcher.matches("grüßen"));
+    }
+
+    /**
+     * Blank phrases are ignored, and a matcher without phrases matches nothing
+     */
+    @Test
+    void ignoresBlankPhrases() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("", "   "));
+
+        assertFalse(matcher.matches("anything at all"));
+        assertEquals(0, matcher.count(" "));
+    }
+}
@@ -0,0 +1,255 @@
+package rs.meine.services;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rs.meine.config.ConfigManager;
+import rs.meine.models.ChatMessage;
+import rs.meine.stubs.StubPlugin;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes to a store on disk, reopens it the way a restarted server does, and checks what comes back
+ */
+class PersistentStoreTest {
+    // Held so the level set on it is not lost when the log manager's weak references are cleared
+    private static final Logger SERVER_LOGGER = Logger.getLogger("PersistentStoreTest");
+    private static final String NAMESPACE = "chat|gpt-4o-mini";
+
+    @TempDir
+    Path dataFolder;
+
+    private StubPlugin plugin;
+    private ConfigManager configManager;
+    private PersistentStore store;
+    private ResponseCache commandCache;
+    private SemanticCache semanticCache;
+
+    @BeforeEach
+    void setUp() {
+        plugin = new StubPlugin(dataFolder.toFile(), SERVER_LOGGER, Runnable::run);
+        // The missing API key warning and the damaged record warning are expected here
+        plugin.getLogger().setLevel(Level.SEVERE);
+
+        FileConfiguration config = plugin.getConfig();
+        config.set("persistence.enabled", true);
+        config.set("persistence.segment_size_mb", 1);
+        config.set("chat.max_history", 3);
+        config.set("cache.semantic.enabled", true);
+        configManager = new ConfigManager(plugin);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    /**
+     * Chat history comes back in order and by player, and a cleared history stays cleared
+     */
+    @Test
+    void historySurvivesRestart() throws Exception {
+        UUID steve = UUID.randomUUID();
+        UUID alex = UUID.randomUUID();
+
+        reopen();
+        store.appendHistory(steve, "Steve", "hello");
+        store.appendHistory(alex, "Alex", "hi");
+        store.appendHistory(steve, "AI", "Grüße, Steve ☃");
+        store.clearHistory(alex);
+
+        reopen();
+        assertMessages(List.of("Steve: hello", "AI: Grüße, Steve ☃"), store.loadHistory(steve).get());
+        assertTrue(store.loadHistory(alex).get().isEmpty());
+    }
+
+    /**
+     * Only the newest messages up to the history limit are kept
+     */
+    @Test
+    void historyIsTrimmedToTheLimit() throws Exception {
+        UUID steve = UUID.randomUUID();
+
+        reopen();
+        for (int i = 1; i <= 5; i++) {
+            store.appendHistory(steve, "Steve", "message " + i);
+        }
+
+        reopen();
+        assertMessages(List.of("Steve: message 3", "Steve: message 4", "Steve: message 5"), store.loadHistory(steve).get());
+    }
+
+    /**
+     * Generated commands and semantic cache entries are restored into the caches, and a clear drops both
+     */
+    @Test
+    void cachedResponsesSurviveRestart() throws Exception {
+        reopen();
+        store.appendCommand("gpt-4o-mini\ngive me a sword", "/give @p diamond_sword");
+        store.appendSemantic(NAMESPACE, "how do I tame a wolf", "Give it bones.");
+
+        reopen();
+        assertEquals("/give @p diamond_sword", commandCache.get("gpt-4o-mini\ngive me a sword"));
+        assertEquals("Give it bones.", semanticCache.get(NAMESPACE, "how do I tame a wolf"));
+
+        store.clearCaches();
+        reopen();
+        assertNull(commandCache.get("gpt-4o-mini\ngive me a sword"));
+        assertNull(semanticCache.get(NAMESPACE, "how do I tame a wolf"));
+    }
+
+    /**
+     * A record whose checksum does not match, as a crash in the middle of a write leaves it, is dropped with nothing
+     * after it, and the store keeps appending where the last good record ended
+     */
+    @Test
+    void tornRecordAtTheEndIsDiscarded() throws Exception {
+        UUID steve = UUID.randomUUID();
+
+        reopen();
+        store.appendHistory(steve, "Steve", "first");
+        store.appendHistory(steve, "Steve", "second");
+        store.shutdown();
+        store = null;
+
+        Path log = newestLog();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int second = PersistentStore.FILE_HEADER_BYTES + 8 + readInt(channel, PersistentStore.FILE_HEADER_BYTES);
+            int length = readInt(channel, second);
+            // Flip the last byte of the second record's body
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, second + 8 + length - 1);
+            last.put(0, (byte) ~last.get(0));
+            channel.write(last.rewind(), second + 8 + length - 1);
+        }
+
+        reopen();
+        assertMessages(List.of("Steve: first"), store.loadHistory(steve).get());
+        store.appendHistory(steve, "Steve", "third");
+
+        reopen();
+        assertMessages(List.of("Steve: first", "Steve: third"), store.loadHistory(steve).get());
+    }
+
+    /**
+     * Filling the log rewrites it into the next numbered file, which is the one loaded after a restart, and the file
+     * it replaced is deleted
+     */
+    @Test
+    void compactionMovesToTheNextLog() throws Exception {
+        UUID steve = UUID.randomUUID();
+        String filler = "x".repeat(60 * 1024 - 100);
+
+        reopen();
+        Path first = newestLog();
+        // Far more than the 1 MB log holds; all but the last three messages are garbage
+        for (int i = 1; i <= 40; i++) {
+            store.appendHistory(steve, "Steve", i + filler);
+        }
+        List<ChatMessage> written = store.loadHistory(steve).get();
+
+        Path compacted = newestLog();
+        assertFalse(first.equals(compacted));
+        assertFalse(Files.exists(first));
+        assertEquals(1, logCount());
+
+        reopen();
+        List<ChatMessage> loaded = store.loadHistory(steve).get();
+        assertEquals(3, loaded.size());
+        assertEquals("38" + filler, loaded.get(0).getContent());
+        assertEquals(written.get(2).getContent(), loaded.get(2).getContent());
+        assertEquals(compacted, newestLog());
+    }
+
+    /**
+     * A numbered log without its header, as a crash during a rewrite leaves it, is ignored and deleted, and the
+     * previous log is loaded instead
+     */
+    @Test
+    void unfinishedCompactionIsIgnored() throws Exception {
+        UUID steve = UUID.randomUUID();
+
+        reopen();
+        store.appendHistory(steve, "Steve", "kept");
+        store.shutdown();
+        store = null;
+
+        Path log = newestLog();
+        Path unfinished = log.resolveSibling("store." + (number(log) + 1) + ".log");
+        Files.write(unfinished, new byte[64 * 1024]);
+
+        reopen();
+        assertMessages(List.of("Steve: kept"), store.loadHistory(steve).get());
+        assertFalse(Files.exists(unfinished));
+        assertEquals(log, newestLog());
+    }
+
+    /**
+     * Closes the store if it is open and opens it again on fresh caches, waiting until it is loaded
+     */
+    private void reopen() throws Exception {
+        if (store != null) {
+            store.shutdown();
+        }
+        commandCache = new ResponseCache(256, 3600);
+        semanticCache = new SemanticCache(256, 0.9, 3600);
+        store = new PersistentStore(dataFolder.toFile(), configManager, plugin.getLogger());
+        store.open(commandCache, semanticCache);
+        // Runs on the store thread after the load
+        store.loadHistory(UUID.randomUUID()).get();
+    }
+
+    /**
+     * Finds the numbered log with the highest number
+     * @return The log
+     */
+    private Path newestLog() throws IOException {
+        try (Stream<Path> files = Files.list(dataFolder.resolve("store"))) {
+            return files
+                .filter(file -> file.getFileName().toString().matches("store\\.\\d+\\.log"))
+                .max((a, b) -> Long.compare(number(a), number(b)))
+                .orElseThrow();
+        }
+    }
+
+    private long logCount() throws IOException {
+        try (Stream<Path> files = Files.list(dataFolder.resolve("store"))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private static long number(Path log) {
+        String name = log.getFileName().toString();
+        return Long.parseLong(name.substring("store.".length(), name.length() - ".log".length()));
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer, position);
+        return buffer.getInt(0);
+    }
+
+    private static void assertMessages(List<String> expected, List<ChatMessage> actual) {
+        assertEquals(expected, actual.stream().map(message -> message.getSender() + ": " + message.getContent()).toList());
+    }
+}
@@ -0,0 +1,79 @@
+package rs.meine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the per-player and global buckets together, on a clock the test moves by hand
+ */
+class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000_000L);
+    private final UUID steve = UUID.randomUUID();
+    private final UUID alex = UUID.randomUUID();
+
+    /**
+     * A player is held to their own limit, which does not affect other players or requests without a player
+     */
+    @Test
+    void limitsEachPlayer() {
+        // 2 per player and 10 in total per minute
+        RateLimiter rateLimiter = new RateLimiter(2, 10, 60, clock::get);
+
+        assertEquals(0, rateLimiter.tryAcquire(steve));
+        assertEquals(0, rateLimiter.tryAcquire(steve));
+        assertEquals(30 * SECOND, rateLimiter.tryAcquire(steve));
+        assertEquals(0, rateLimiter.tryAcquire(alex));
+        assertEquals(0, rateLimiter.tryAcquire(null));
+
+        clock.addAndGet(30 * SECOND);
+        assertEquals(0, rateLimiter.tryAcquire(steve));
+    }
+
+    /**
+     * A request the global bucket turns away gives the player's token back, so it does not count against the player
+     */
+    @Test
+    void globalRejectionKeepsThePlayerToken() {
+        // 2 per player and 1 in total per minute
+        RateLimiter rateLimiter = new RateLimiter(2, 1, 60, clock::get);
+
+        assertEquals(0, rateLimiter.tryAcquire(null));
+        for (int i = 0; i < 5; i++) {
+            // Without the refund the third attempt would be refused by the player's own bucket after 30 s
+            assertEquals(60 * SECOND, rateLimiter.tryAcquire(steve));
+        }
+
+        clock.addAndGet(60 * SECOND);
+        assertEquals(0, rateLimiter.tryAcquire(steve));
+        clock.addAndGet(60 * SECOND);
+        assertEquals(0, rateLimiter.tryAcquire(steve));
+    }
+
+    /**
+     * Applying the same limits again, or new ones, does not refill the buckets
+     */
+    @Test
+    void reconfiguringKeepsUsedTokens() {
+        RateLimiter rateLimiter = new RateLimiter(2, 10, 60, clock::get);
+        rateLimiter.tryAcquire(steve);
+        rateLimiter.tryAcquire(steve);
+
+        rateLimiter.configure(2, 10, 60);
+        assertTrue(rateLimiter.tryAcquire(steve) > 0);
+
+        rateLimiter.configure(4, 10, 60);
+        assertEquals(15 * SECOND, rateLimiter.tryAcquire(steve));
+        assertEquals(0, rateLimiter.tryAcquire(alex));
+
+        rateLimiter.reset(steve);
+        assertEquals(0, rateLimiter.tryAcquire(steve));
+    }
+}
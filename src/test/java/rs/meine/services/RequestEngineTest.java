@@ -0,0 +1,256 @@
+package rs.meine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import rs.meine.models.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fills the engine's slots with requests that block until the test releases them, then checks what runs next
+ */
+class RequestEngineTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000_000L);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+    private final List<RequestEngine> engines = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        for (RequestEngine engine : engines) {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Once a slot frees up, the queued requests run in order of their class, not of their arrival
+     */
+    @Test
+    void runsTheMostUrgentFirst() throws Exception {
+        RequestEngine engine = engine(1, 10, RequestEngine.OverflowPolicy.REJECT);
+        CompletableFuture<String> blocker = block(engine, RequestPriority.BACKGROUND, "blocker");
+        awaitState(() -> engine.getInFlight() == 1);
+
+        List<CompletableFuture<String>> futures = List.of(
+            record(engine, RequestPriority.GREETING, "greeting"),
+            record(engine, RequestPriority.EVENT, "event"),
+            record(engine, RequestPriority.CHAT, "chat"),
+            record(engine, RequestPriority.COMMAND, "command"));
+        assertEquals(4, engine.getQueued());
+
+        release.countDown();
+        assertEquals("blocker", blocker.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<String> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("blocker", "command", "chat", "event", "greeting"), ran);
+    }
+
+    /**
+     * A class at its share of the slots waits, while the other classes still get the slots left over
+     */
+    @Test
+    void holdsEachClassToItsShare() throws Exception {
+        RequestEngine engine = engine(4, 10, RequestEngine.OverflowPolicy.REJECT);
+        engine.configureClass(RequestPriority.GREETING, 0.25, 0);
+
+        List<CompletableFuture<String>> greetings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            greetings.add(block(engine, RequestPriority.GREETING, "greeting"));
+        }
+        awaitState(() -> engine.getInFlight(RequestPriority.GREETING) == 1);
+        assertEquals(2, engine.getQueued(RequestPriority.GREETING));
+
+        List<CompletableFuture<String>> commands = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            commands.add(block(engine, RequestPriority.COMMAND, "command"));
+        }
+        awaitState(() -> engine.getInFlight(RequestPriority.COMMAND) == 3);
+        assertEquals(1, engine.getInFlight(RequestPriority.GREETING));
+        assertEquals(2, engine.getQueued(RequestPriority.GREETING));
+        assertEquals(0, engine.getQueued(RequestPriority.COMMAND));
+
+        release.countDown();
+        for (CompletableFuture<String> future : commands) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        for (CompletableFuture<String> future : greetings) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A request that waited longer than its class allows is failed without running
+     */
+    @Test
+    void dropsExpiredRequests() throws Exception {
+        RequestEngine engine = engine(1, 10, RequestEngine.OverflowPolicy.REJECT);
+        engine.configureClass(RequestPriority.GREETING, 1.0, 15);
+        CompletableFuture<String> blocker = block(engine, RequestPriority.COMMAND, "blocker");
+        awaitState(() -> engine.getInFlight() == 1);
+
+        CompletableFuture<String> greeting = record(engine, RequestPriority.GREETING, "greeting");
+        clock.addAndGet(16 * SECOND);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+
+        assertRejected(greeting);
+        assertEquals(List.of("blocker"), ran);
+        assertEquals(1, engine.getExpiredRequests());
+    }
+
+    /**
+     * A request that is no longer relevant when its turn comes is failed without running
+     */
+    @Test
+    void dropsIrrelevantRequests() throws Exception {
+        RequestEngine engine = engine(1, 10, RequestEngine.OverflowPolicy.REJECT);
+        CompletableFuture<String> blocker = block(engine, RequestPriority.COMMAND, "blocker");
+        awaitState(() -> engine.getInFlight() == 1);
+
+        AtomicBoolean relevant = new AtomicBoolean(true);
+        CompletableFuture<String> chat = engine.submit(RequestPriority.CHAT, relevant::get, () -> {
+            ran.add("chat");
+            return "chat";
+        });
+        relevant.set(false);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+
+        assertRejected(chat);
+        assertEquals(List.of("blocker"), ran);
+        awaitState(() -> engine.getExpiredRequests() == 1);
+    }
+
+    /**
+     * A full queue rejects a request of the least urgent queued class, but sheds that class for a more urgent one
+     */
+    @Test
+    void shedsWhenFull() throws Exception {
+        RequestEngine engine = engine(1, 2, RequestEngine.OverflowPolicy.REJECT);
+        CompletableFuture<String> blocker = block(engine, RequestPriority.COMMAND, "blocker");
+        awaitState(() -> engine.getInFlight() == 1);
+
+        CompletableFuture<String> first = record(engine, RequestPriority.GREETING, "first");
+        CompletableFuture<String> second = record(engine, RequestPriority.GREETING, "second");
+        CompletableFuture<String> third = record(engine, RequestPriority.GREETING, "third");
+        assertRejected(third);
+        assertEquals(1, engine.getRejectedRequests());
+
+        CompletableFuture<String> command = record(engine, RequestPriority.COMMAND, "command");
+        assertRejected(first);
+        assertEquals(1, engine.getShedRequests());
+        assertEquals(2, engine.getQueued());
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        command.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("blocker", "command", "second"), ran);
+    }
+
+    /**
+     * With drop_oldest a full queue makes room for a request of the same class too
+     */
+    @Test
+    void dropOldestShedsTheSameClass() throws Exception {
+        RequestEngine engine = engine(1, 1, RequestEngine.OverflowPolicy.DROP_OLDEST);
+        CompletableFuture<String> blocker = block(engine, RequestPriority.COMMAND, "blocker");
+        awaitState(() -> engine.getInFlight() == 1);
+
+        CompletableFuture<String> first = record(engine, RequestPriority.GREETING, "first");
+        CompletableFuture<String> second = record(engine, RequestPriority.GREETING, "second");
+        assertRejected(first);
+        assertEquals(1, engine.getShedRequests());
+        assertEquals(0, engine.getRejectedRequests());
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("blocker", "second"), ran);
+    }
+
+    /**
+     * Shutting down fails the queued requests, interrupts the running ones and rejects new ones
+     */
+    @Test
+    void shutdownFailsPendingRequests() throws Exception {
+        RequestEngine engine = engine(1, 10, RequestEngine.OverflowPolicy.REJECT);
+        CompletableFuture<String> blocker = block(engine, RequestPriority.COMMAND, "blocker");
+        awaitState(() -> engine.getInFlight() == 1);
+        CompletableFuture<String> chat = record(engine, RequestPriority.CHAT, "chat");
+        CompletableFuture<String> greeting = record(engine, RequestPriority.GREETING, "greeting");
+
+        engine.shutdown();
+
+        assertRejected(chat);
+        assertRejected(greeting);
+        ExecutionException interrupted = assertThrows(ExecutionException.class, () -> blocker.get(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.getCause() instanceof IllegalStateException);
+        assertRejected(record(engine, RequestPriority.COMMAND, "late"));
+        assertEquals(0, engine.getQueued());
+        assertEquals(List.of(), ran);
+    }
+
+    private RequestEngine engine(int maxInFlight, int queueCapacity, RequestEngine.OverflowPolicy overflowPolicy) {
+        RequestEngine engine = new RequestEngine(maxInFlight, queueCapacity, overflowPolicy, null, clock::get);
+        engines.add(engine);
+        return engine;
+    }
+
+    /**
+     * Submits a request that holds its slot until the test releases it
+     */
+    private CompletableFuture<String> block(RequestEngine engine, RequestPriority priority, String name) {
+        return engine.submit(priority, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("interrupted", e);
+            }
+            ran.add(name);
+            return name;
+        });
+    }
+
+    /**
+     * Submits a request that only notes that it ran
+     */
+    private CompletableFuture<String> record(RequestEngine engine, RequestPriority priority, String name) {
+        return engine.submit(priority, () -> {
+            ran.add(name);
+            return name;
+        });
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException, "unexpected " + e.getCause());
+    }
+
+    private static void awaitState(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5 * SECOND;
+        while (!condition.getAsBoolean()) {
+            assertFalse(System.nanoTime() > deadline, "timed out waiting for the engine");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package rs.meine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives buckets with an explicit clock, starting at an arbitrary System.nanoTime()-like value
+ */
+class TokenBucketTest {
+    private static final long START = 1_000_000_000_000L;
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+    // 5 tokens per 10 seconds refill one every 2 seconds
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * A full bucket allows a burst of exactly its capacity, then tells how long until the next token
+     */
+    @Test
+    void allowsBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(5, WINDOW, START);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(START));
+        }
+        assertEquals(INTERVAL, bucket.tryAcquire(START));
+        assertEquals(INTERVAL - 500, bucket.tryAcquire(START + 500));
+    }
+
+    /**
+     * Tokens come back one interval at a time, and a bucket left idle never holds more than its capacity
+     */
+    @Test
+    void refillsOverTheWindow() {
+        TokenBucket bucket = new TokenBucket(5, WINDOW, START);
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire(START);
+        }
+
+        long now = START + INTERVAL;
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(INTERVAL, bucket.tryAcquire(now));
+
+        now += 100 * WINDOW;
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(now));
+        }
+        assertEquals(INTERVAL, bucket.tryAcquire(now));
+    }
+
+    /**
+     * A refunded token can be taken again
+     */
+    @Test
+    void refundReturnsAToken() {
+        TokenBucket bucket = new TokenBucket(1, WINDOW, START);
+
+        assertEquals(0, bucket.tryAcquire(START));
+        bucket.refund();
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(WINDOW, bucket.tryAcquire(START));
+    }
+
+    /**
+     * A resized bucket keeps the tokens that were left, but no more than its new capacity
+     */
+    @Test
+    void resizeKeepsTheLevel() {
+        TokenBucket bucket = new TokenBucket(5, WINDOW, START);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(START);
+        }
+
+        assertEquals(2, drain(bucket.resize(10, WINDOW, START), START));
+        assertEquals(2, drain(bucket.resize(5, 2 * WINDOW, START), START));
+        assertEquals(1, drain(bucket.resize(1, WINDOW, START), START));
+
+        TokenBucket full = new TokenBucket(5, WINDOW, START);
+        assertEquals(3, drain(full.resize(3, WINDOW, START), START));
+    }
+
+    private static int drain(TokenBucket bucket, long now) {
+        int tokens = 0;
+        while (bucket.tryAcquire(now) == 0) {
+            tokens++;
+        }
+        return tokens;
+    }
+}